@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.lang;
+
+/**
+ * A walker over the stack frames of the current thread.
+ *
+ * <p>Unlike {@link Throwable#getStackTrace()}, which builds a
+ * {@link StackTraceElement} for every frame on the stack before returning,
+ * a {@code StackWalker} materializes frames one at a time, from the top
+ * of the stack down, and stops as soon as the caller has seen enough.
+ * Callers that only need the first few frames, or the first frame that
+ * satisfies some condition, therefore create elements only for the
+ * frames they look at.  The virtual machine still records the whole
+ * stack when a walk begins, as it does when a {@code Throwable} is
+ * created; a walker saves the cost of the elements, not of the capture.
+ *
+ * <p>A walker may be created with a {@linkplain FrameFilter filter}, in
+ * which case frames that the filter rejects are skipped, and with a
+ * maximum depth, in which case no frame deeper than that is visited.
+ * The frames of the walker itself are never visited; the first frame
+ * visited is the method that called {@link #walk walk} or
+ * {@link #findFirst findFirst}.
+ *
+ * <p>Instances of this class are immutable and may be shared by multiple
+ * threads.
+ *
+ * @since 1.8
+ */
+public final class StackWalker {
+
+    /**
+     * A predicate on stack frames.
+     *
+     * @since 1.8
+     */
+    public interface FrameFilter {
+        /**
+         * Returns {@code true} if the given frame should be accepted.
+         *
+         * @param frame the stack frame
+         * @return {@code true} if the frame is accepted
+         */
+        boolean accept(StackTraceElement frame);
+    }
+
+    /**
+     * A callback invoked for each frame visited by
+     * {@link StackWalker#walk(FrameVisitor)}.
+     *
+     * @since 1.8
+     */
+    public interface FrameVisitor {
+        /**
+         * Visits the given frame.
+         *
+         * @param frame the stack frame
+         * @return {@code true} to continue the walk with the next frame,
+         *         or {@code false} to stop it
+         */
+        boolean visit(StackTraceElement frame);
+    }
+
+    private static final StackWalker DEFAULT =
+        new StackWalker(null, Integer.MAX_VALUE);
+
+    /* The filter applied to frames before they are visited, or null */
+    private final FrameFilter filter;
+
+    /* The maximum number of frames, counted from the top, to examine */
+    private final int maxDepth;
+
+    private StackWalker(FrameFilter filter, int maxDepth) {
+        this.filter = filter;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Returns a walker that visits every frame of the stack.
+     *
+     * @return a walker without filter or depth limit
+     */
+    public static StackWalker getInstance() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns a walker that visits only the frames accepted by the given
+     * filter.
+     *
+     * @param filter the frame filter
+     * @return a walker with the given filter
+     * @throws NullPointerException if {@code filter} is {@code null}
+     */
+    public static StackWalker getInstance(FrameFilter filter) {
+        return getInstance(filter, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns a walker that visits only the frames accepted by the given
+     * filter, among the topmost {@code maxDepth} frames of the stack.
+     *
+     * @param filter the frame filter
+     * @param maxDepth the maximum number of frames to examine
+     * @return a walker with the given filter and depth limit
+     * @throws NullPointerException if {@code filter} is {@code null}
+     * @throws IllegalArgumentException if {@code maxDepth} is negative
+     */
+    public static StackWalker getInstance(FrameFilter filter, int maxDepth) {
+        if (filter == null)
+            throw new NullPointerException();
+        if (maxDepth < 0)
+            throw new IllegalArgumentException("maxDepth: " + maxDepth);
+        return new StackWalker(filter, maxDepth);
+    }
+
+    /**
+     * Visits the frames of the current thread's stack, starting with the
+     * caller of this method, until the visitor returns {@code false} or
+     * the bottom of the stack (or the depth limit) is reached.
+     *
+     * @param visitor the visitor
+     * @throws NullPointerException if {@code visitor} is {@code null}
+     */
+    public void walk(FrameVisitor visitor) {
+        if (visitor == null)
+            throw new NullPointerException();
+        walk(new Throwable(), visitor);
+    }
+
+    /**
+     * Returns the first frame of the current thread's stack, starting with
+     * the caller of this method, that is accepted by both this walker's
+     * filter and the given predicate.
+     *
+     * @param predicate the predicate
+     * @return the first matching frame, or {@code null} if there is none
+     * @throws NullPointerException if {@code predicate} is {@code null}
+     */
+    public StackTraceElement findFirst(final FrameFilter predicate) {
+        if (predicate == null)
+            throw new NullPointerException();
+        final StackTraceElement[] result = new StackTraceElement[1];
+        walk(new Throwable(), new FrameVisitor() {
+            public boolean visit(StackTraceElement frame) {
+                if (predicate.accept(frame)) {
+                    result[0] = frame;
+                    return false;
+                }
+                return true;
+            }
+        });
+        return result[0];
+    }
+
+    private void walk(Throwable t, FrameVisitor visitor) {
+        // Calling getStackTraceElement directly prevents the VM
+        // from paying the cost of building the entire stack frame.
+        int depth = t.getStackTraceDepth();
+        int ix = 0;
+        while (ix < depth && t.getStackTraceElement(ix).getClassName()
+                                 .equals("java.lang.StackWalker"))
+            ix++;
+        int limit = (depth - ix > maxDepth) ? ix + maxDepth : depth;
+        for (; ix < limit; ix++) {
+            StackTraceElement frame = t.getStackTraceElement(ix);
+            if (filter != null && !filter.accept(frame))
+                continue;
+            if (!visitor.visit(frame))
+                return;
+        }
+    }
+}
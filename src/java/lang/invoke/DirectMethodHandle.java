@@ -672,6 +672,30 @@ class DirectMethodHandle extends MethodHandle {
             } catch (ReflectiveOperationException ex) {
                 throw newInternalError(ex);
             }
+            if (PREGENERATE_ARITY != null)
+                pregenerateForms(Math.min(PREGENERATE_ARITY, PREGENERATE_ARITY_LIMIT));
+        }
+    }
+
+    /** Upper bound on PREGENERATE_ARITY, to keep startup work bounded. */
+    private static final int PREGENERATE_ARITY_LIMIT = 16;
+
+    /**
+     * Prepare and compile the invoker forms for direct method handles
+     * of all-reference signatures, returning Object or void, up to the
+     * given arity.  Runtimes that bind many such handles at startup then
+     * find the common shapes already compiled.
+     */
+    private static void pregenerateForms(int maxArity) {
+        final int[] kinds = { LF_INVVIRTUAL, LF_INVSTATIC, LF_INVSPECIAL, LF_INVINTERFACE };
+        for (int arity = 0; arity <= maxArity; arity++) {
+            for (int which : kinds) {
+                // all but invokeStatic take the receiver as a leading argument
+                int count = (which == LF_INVSTATIC) ? arity : arity + 1;
+                MethodType mtype = MethodType.genericMethodType(count);
+                preparedLambdaForm(mtype, which).compileToBytecode();
+                preparedLambdaForm(mtype.changeReturnType(void.class), which).compileToBytecode();
+            }
         }
     }
 }
@@ -33,6 +33,9 @@ import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
 import sun.invoke.util.Wrapper;
 import static java.lang.invoke.MethodHandleStatics.*;
 import static java.lang.invoke.MethodHandleNatives.Constants.*;
@@ -451,7 +454,21 @@ class LambdaForm {
             return vmentry;  // already compiled somehow
         }
         try {
-            vmentry = InvokerBytecodeGenerator.generateCustomizedCode(this, invokerType);
+            // Structurally identical forms compile to identical bytecode,
+            // so share one compiled invoker among them where possible.
+            CompiledFormKey key = CompiledFormKey.of(this, invokerType);
+            MemberName entry = (key == null) ? null : COMPILED_FORMS.get(key);
+            if (entry != null) {
+                FORMS_SHARED.incrementAndGet();
+            } else {
+                entry = InvokerBytecodeGenerator.generateCustomizedCode(this, invokerType);
+                FORMS_COMPILED.incrementAndGet();
+                if (key != null) {
+                    MemberName prev = COMPILED_FORMS.putIfAbsent(key, entry);
+                    if (prev != null)  entry = prev;
+                }
+            }
+            vmentry = entry;
             if (TRACE_INTERPRETER)
                 traceInterpreter("compileToBytecode", this);
             isCompiled = true;
@@ -461,6 +478,136 @@ class LambdaForm {
         }
     }
 
+    /** Compiled invokers, keyed by the canonical structure of their forms. */
+    private static final ConcurrentHashMap<CompiledFormKey,MemberName> COMPILED_FORMS
+            = new ConcurrentHashMap<>(256, 0.75f, 1);
+
+    /** Statistics on form compilation, reported if FORM_STATISTICS is set. */
+    static final AtomicLong FORMS_COMPILED = new AtomicLong();
+    static final AtomicLong FORMS_SHARED = new AtomicLong();
+    static final AtomicLong INTERPRETER_ENTRIES = new AtomicLong();
+    static {
+        if (FORM_STATISTICS) {
+            AccessController.doPrivileged(new PrivilegedAction<Void>() {
+                public Void run() {
+                    Runtime.getRuntime().addShutdownHook(new Thread() {
+                        public void run() {
+                            System.err.println("LambdaForm statistics: " + formStatistics());
+                        }
+                    });
+                    return null;
+                }
+            });
+        }
+    }
+
+    static String formStatistics() {
+        return "compiled=" + FORMS_COMPILED.get() +
+               ", shared=" + FORMS_SHARED.get() +
+               ", interpreterEntries=" + INTERPRETER_ENTRIES.get() +
+               ", cachedInvokers=" + COMPILED_FORMS.size();
+    }
+
+    /**
+     * The canonical structure of a form, as seen by InvokerBytecodeGenerator.
+     * Two forms with equal keys compile to the same bytecode with the same
+     * constant pool patches.  The structure string records the invoker type,
+     * arity, result and, for each temporary, its type and argument wiring;
+     * functions and constant arguments are kept in refs and compared by
+     * member equality or identity, as the generator embeds them.
+     * <p>
+     * Only forms whose functions are defined on the boot class path and whose
+     * constants are literals are keyed, so that the cache does not keep any
+     * user class loader alive.
+     */
+    private static final class CompiledFormKey {
+        final String structure;
+        final Object[] refs;
+        final int hash;
+
+        private CompiledFormKey(String structure, Object[] refs) {
+            this.structure = structure;
+            this.refs = refs;
+            int h = structure.hashCode();
+            for (Object r : refs)
+                h = 31 * h + refHash(r);
+            this.hash = h;
+        }
+
+        static CompiledFormKey of(LambdaForm form, MethodType invokerType) {
+            StringBuilder buf = new StringBuilder(invokerType.toMethodDescriptorString());
+            buf.append(form.arity).append('/').append(form.result);
+            ArrayList<Object> refs = new ArrayList<>();
+            for (int i = form.arity; i < form.names.length; i++) {
+                Name n = form.names[i];
+                NamedFunction f = n.function;
+                MemberName m = f.member;
+                if (m == null || m.getDeclaringClass().getClassLoader() != null)
+                    return null;
+                if (InvokerBytecodeGenerator.isStaticallyInvocable(m)) {
+                    refs.add(m);
+                } else if (f.resolvedHandle != null) {
+                    refs.add(new Identity(f.resolvedHandle));
+                } else {
+                    return null;
+                }
+                buf.append(';').append(n.type).append('=');
+                for (Object a : n.arguments) {
+                    if (a instanceof Name) {
+                        buf.append(((Name) a).index()).append(',');
+                    } else if (a == null || a instanceof String ||
+                               Wrapper.isWrapperType(a.getClass())) {
+                        buf.append("k,");
+                        refs.add(a == null ? Identity.NULL : a);
+                    } else {
+                        return null;
+                    }
+                }
+            }
+            return new CompiledFormKey(buf.toString(), refs.toArray());
+        }
+
+        private static int refHash(Object r) {
+            // Boxed literals hash by class as well, since 1 and 1L differ.
+            return r.getClass().hashCode() ^ r.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof CompiledFormKey))  return false;
+            CompiledFormKey that = (CompiledFormKey) other;
+            if (this.hash != that.hash || !this.structure.equals(that.structure)
+                    || this.refs.length != that.refs.length)
+                return false;
+            for (int i = 0; i < refs.length; i++) {
+                Object a = this.refs[i], b = that.refs[i];
+                if (a.getClass() != b.getClass() || !a.equals(b))
+                    return false;
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        /** Wraps a reference so that it is compared by identity. */
+        private static final class Identity {
+            static final Identity NULL = new Identity(null);
+            final Object ref;
+            Identity(Object ref) { this.ref = ref; }
+            @Override
+            public boolean equals(Object other) {
+                return other instanceof Identity && ((Identity) other).ref == ref;
+            }
+            @Override
+            public int hashCode() {
+                return System.identityHashCode(ref);
+            }
+        }
+    }
+
     private static final ConcurrentHashMap<String,LambdaForm> PREPARED_FORMS;
     static {
         int   capacity   = 512;    // expect many distinct signatures over time
@@ -528,6 +675,7 @@ class LambdaForm {
         assert(isValidSignature(sig));
         prep = new LambdaForm(sig);
         prep.vmentry = InvokerBytecodeGenerator.generateLambdaFormInterpreterEntryPoint(sig);
+        INTERPRETER_ENTRIES.incrementAndGet();
         //LambdaForm prep2 = PREPARED_FORMS.putIfAbsent(sig.intern(), prep);
         return mtype.form().setCachedLambdaForm(MethodTypeForm.LF_INTERPRET, prep);
     }
@@ -38,6 +38,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import static java.lang.invoke.MethodHandleNatives.Constants.*;
 import static java.lang.invoke.MethodHandleStatics.*;
 import java.util.Objects;
@@ -767,6 +768,76 @@ import java.util.Objects;
     /*non-public*/ static Factory getFactory() {
         return Factory.INSTANCE;
     }
+
+    /**
+     * Per-class cache of resolved member names, so that repeated lookups of
+     * the same member do not go back to the JVM.  The cache is attached to
+     * the symbolic reference class through a {@link ClassValue}, and so does
+     * not keep that class alive.
+     * <p>
+     * Only resolutions whose outcome cannot depend on the lookup class are
+     * cached: public members of public classes, reached through a public
+     * reference class, by any reference kind except {@code invokeSpecial}.
+     * Access checks on behalf of the lookup class are still made by the
+     * caller on every lookup.  Hits are returned as fresh copies, since
+     * callers may side-effect the member name they get back.
+     */
+    private static class ResolvedCache {
+        private static final ClassValue<ConcurrentHashMap<Key,MemberName>> CACHE
+                = new ClassValue<ConcurrentHashMap<Key,MemberName>>() {
+            @Override
+            protected ConcurrentHashMap<Key,MemberName> computeValue(Class<?> type) {
+                return new ConcurrentHashMap<>(16, 0.75f, 1);
+            }
+        };
+
+        static MemberName get(byte refKind, MemberName ref) {
+            if (!isCacheable(refKind, ref))
+                return null;
+            MemberName m = CACHE.get(ref.clazz).get(new Key(refKind, ref));
+            return (m == null) ? null : m.clone();
+        }
+
+        static void put(byte refKind, MemberName ref, MemberName resolved) {
+            if (!isCacheable(refKind, ref) || !resolved.isPublic()
+                    || !Modifier.isPublic(resolved.getDeclaringClass().getModifiers()))
+                return;
+            CACHE.get(ref.clazz).putIfAbsent(new Key(refKind, ref), resolved.clone());
+        }
+
+        private static boolean isCacheable(byte refKind, MemberName ref) {
+            return refKind != REF_invokeSpecial && ref.clazz != null
+                    && ref.name != null
+                    && (ref.type instanceof MethodType || ref.type instanceof Class)
+                    && Modifier.isPublic(ref.clazz.getModifiers());
+        }
+
+        private static final class Key {
+            final byte refKind;
+            final String name;
+            final Object type;  // Class or MethodType, both canonical
+
+            Key(byte refKind, MemberName ref) {
+                this.refKind = refKind;
+                this.name = ref.name;
+                this.type = ref.type;
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                if (!(o instanceof Key))  return false;
+                Key that = (Key) o;
+                return refKind == that.refKind && type == that.type
+                        && name.equals(that.name);
+            }
+
+            @Override
+            public int hashCode() {
+                return (name.hashCode() * 31 + System.identityHashCode(type)) * 31 + refKind;
+            }
+        }
+    }
+
     /** A factory type for resolving member names with the help of the VM.
      *  TBD: Define access-safe public constructors for this factory.
      */
@@ -869,9 +940,14 @@ import java.util.Objects;
         MemberName resolveOrFail(byte refKind, MemberName m, Class<?> lookupClass,
                                  Class<NoSuchMemberException> nsmClass)
                 throws IllegalAccessException, NoSuchMemberException {
-            MemberName result = resolve(refKind, m, lookupClass);
-            if (result.isResolved())
+            MemberName result = ResolvedCache.get(refKind, m);
+            if (result != null)
                 return result;
+            result = resolve(refKind, m, lookupClass);
+            if (result.isResolved()) {
+                ResolvedCache.put(refKind, m, result);
+                return result;
+            }
             ReflectiveOperationException ex = result.makeAccessException();
             if (ex instanceof IllegalAccessException)  throw (IllegalAccessException) ex;
             throw nsmClass.cast(ex);
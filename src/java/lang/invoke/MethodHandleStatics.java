@@ -46,8 +46,10 @@ import sun.misc.Unsafe;
     static final boolean TRACE_INTERPRETER;
     static final boolean TRACE_METHOD_LINKAGE;
     static final Integer COMPILE_THRESHOLD;
+    static final boolean FORM_STATISTICS;
+    static final Integer PREGENERATE_ARITY;
     static {
-        final Object[] values = { false, false, false, false, null };
+        final Object[] values = { false, false, false, false, null, false, null };
         AccessController.doPrivileged(new PrivilegedAction<Void>() {
                 public Void run() {
                     values[0] = Boolean.getBoolean("java.lang.invoke.MethodHandle.DEBUG_NAMES");
@@ -55,6 +57,8 @@ import sun.misc.Unsafe;
                     values[2] = Boolean.getBoolean("java.lang.invoke.MethodHandle.TRACE_INTERPRETER");
                     values[3] = Boolean.getBoolean("java.lang.invoke.MethodHandle.TRACE_METHOD_LINKAGE");
                     values[4] = Integer.getInteger("java.lang.invoke.MethodHandle.COMPILE_THRESHOLD");
+                    values[5] = Boolean.getBoolean("java.lang.invoke.MethodHandle.FORM_STATISTICS");
+                    values[6] = Integer.getInteger("java.lang.invoke.MethodHandle.PREGENERATE_ARITY");
                     return null;
                 }
             });
@@ -63,6 +67,8 @@ import sun.misc.Unsafe;
         TRACE_INTERPRETER         = (Boolean) values[2];
         TRACE_METHOD_LINKAGE      = (Boolean) values[3];
         COMPILE_THRESHOLD         = (Integer) values[4];
+        FORM_STATISTICS           = (Boolean) values[5];
+        PREGENERATE_ARITY         = (Integer) values[6];
     }
 
     /*non-public*/ static String getNameString(MethodHandle target, MethodType type) {
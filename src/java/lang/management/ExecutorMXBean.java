@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+
+package java.lang.management;
+
+/**
+ * The management interface for the statistics of an executor, for example
+ * a {@link java.util.concurrent.ThreadPoolExecutor ThreadPoolExecutor} or
+ * {@link java.util.concurrent.ForkJoinPool ForkJoinPool}, on which
+ * statistics have been enabled.
+ *
+ * <p> A class implementing this interface is an
+ * {@link javax.management.MXBean}. A Java
+ * virtual machine has zero or more implementations of this interface, one
+ * for each executor whose statistics are enabled. The {@link
+ * java.lang.management.ManagementFactory#getPlatformMXBeans getPlatformMXBeans}
+ * method can be used to obtain the list of {@code ExecutorMXBean} objects
+ * as follows:
+ * <pre>
+ *     List&lt;ExecutorMXBean&gt; executors = ManagementFactory.getPlatformMXBeans(ExecutorMXBean.class);
+ * </pre>
+ *
+ * <p> The management interfaces of executors whose statistics are enabled
+ * at the time the platform {@link javax.management.MBeanServer MBeanServer}
+ * is created are also registered with it. The {@link
+ * javax.management.ObjectName ObjectName} that uniquely identifies the
+ * management interface within the {@code MBeanServer} takes the form:
+ * <pre>
+ *     java.util.concurrent:type=Executor,name=<i>executor name</i>
+ * </pre>
+ * where <em>executor name</em> is the {@link #getName name} of the executor.
+ *
+ * <p> Times are histogrammed in nanoseconds. Element <i>i</i> of a
+ * histogram array counts the samples whose value <i>v</i> satisfies
+ * 2<sup><i>i</i></sup>&nbsp;&le;&nbsp;<i>v</i>&nbsp;&lt;&nbsp;2<sup><i>i</i>+1</sup>,
+ * except that element 0 also counts samples of zero and the last element
+ * also counts all larger samples.
+ *
+ * @see java.util.concurrent.ThreadPoolExecutor#setStatisticsEnabled
+ * @see java.util.concurrent.ForkJoinPool#setStatisticsEnabled
+ * @since   1.8
+ */
+public interface ExecutorMXBean extends PlatformManagedObject {
+
+    /**
+     * Returns the name representing this executor.
+     *
+     * @return  The name of this executor.
+     */
+    String getName();
+
+    /**
+     * Returns the fully qualified class name of this executor.
+     *
+     * @return  The class name of this executor.
+     */
+    String getType();
+
+    /**
+     * Returns the approximate number of threads in the pool of this executor.
+     *
+     * @return  The number of threads, or {@code 0} if the executor has
+     *          been garbage collected
+     */
+    int getPoolSize();
+
+    /**
+     * Returns the approximate number of threads that are actively
+     * executing tasks.
+     *
+     * @return  The number of active threads
+     */
+    int getActiveCount();
+
+    /**
+     * Returns the approximate number of tasks waiting to be executed.
+     *
+     * @return  The number of queued tasks
+     */
+    long getQueuedTaskCount();
+
+    /**
+     * Returns the number of tasks that have completed execution since
+     * statistics were enabled or last {@link #reset reset}.
+     *
+     * @return  The number of completed tasks
+     */
+    long getCompletedTaskCount();
+
+    /**
+     * Returns the number of tasks that have been rejected since
+     * statistics were enabled or last {@link #reset reset}.
+     *
+     * @return  The number of rejected tasks
+     */
+    long getRejectedTaskCount();
+
+    /**
+     * Returns an estimate of the number of tasks taken by a worker thread
+     * from the queue of another worker thread. The returned value is
+     * maintained by the executor itself and is not affected by
+     * {@link #reset reset}.
+     *
+     * @return  The number of steals, or {@code 0} if the executor does not
+     *          steal work
+     */
+    long getStealCount();
+
+    /**
+     * Returns the histogram of the times that tasks waited between being
+     * submitted (or, for delayed tasks, becoming due) and starting to run.
+     * Only tasks whose submission time is known to the executor are
+     * sampled.
+     *
+     * @return  The queue wait time histogram
+     */
+    long[] getQueueWaitTimeHistogram();
+
+    /**
+     * Returns the histogram of the run times of tasks.
+     *
+     * @return  The run time histogram
+     */
+    long[] getRunTimeHistogram();
+
+    /**
+     * Returns the mean of the sampled queue wait times.
+     *
+     * @return  The mean queue wait time in nanoseconds, or {@code 0} if
+     *          no samples have been taken
+     */
+    long getMeanQueueWaitTime();
+
+    /**
+     * Returns the mean of the sampled run times.
+     *
+     * @return  The mean run time in nanoseconds, or {@code 0} if no
+     *          samples have been taken
+     */
+    long getMeanRunTime();
+
+    /**
+     * Clears the histograms and the completed and rejected task counts.
+     */
+    void reset();
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+
+package java.lang.management;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Contention statistics of a synchronizer built on
+ * {@link java.util.concurrent.locks.AbstractQueuedSynchronizer
+ * AbstractQueuedSynchronizer}, as gathered by the
+ * {@link LockContentionMXBean lock contention monitor}.  The lock object
+ * described is the synchronizer itself, for example the internal
+ * {@code Sync} object of a {@link java.util.concurrent.locks.ReentrantLock
+ * ReentrantLock}; the {@linkplain #getAllocationSite allocation site}
+ * identifies the code that created it.
+ *
+ * <p>Only acquisitions that had to wait in the queue of the synchronizer,
+ * and that were sampled, are counted.  Wait times are in nanoseconds.
+ *
+ * <h4><a name="MappedType">MXBean Mapping</a></h4>
+ * <tt>LockContentionInfo</tt> is mapped to a {@link
+ * javax.management.openmbean.CompositeData CompositeData}
+ * as specified in the <a href="../../../javax/management/MXBean.html#mapping-rules">
+ * type mapping rules</a> of {@linkplain javax.management.MXBean MXBeans}.
+ *
+ * @see LockContentionMXBean
+ * @since   1.8
+ */
+
+public class LockContentionInfo extends LockInfo {
+
+    private final String allocationSite;
+    private final long   contendedCount;
+    private final long   totalWaitTime;
+    private final long   maxWaitTime;
+    private final long   totalQueueLength;
+    private final int    maxQueueLength;
+
+    /**
+     * Constructs a <tt>LockContentionInfo</tt> object.
+     *
+     * @param className the fully qualified name of the class of the lock object.
+     * @param identityHashCode the {@link System#identityHashCode
+     *                         identity hash code} of the lock object.
+     * @param allocationSite the allocation site of the lock object, or
+     *                       {@code null} if unknown.
+     * @param contendedCount the number of sampled contended acquisitions.
+     * @param totalWaitTime the total time waited by those acquisitions.
+     * @param maxWaitTime the longest time waited by one of them.
+     * @param totalQueueLength the sum of the numbers of threads found
+     *                         waiting ahead of each of them.
+     * @param maxQueueLength the largest number of threads found waiting
+     *                       ahead of one of them.
+     */
+    @ConstructorProperties({"className", "identityHashCode",
+                            "allocationSite", "contendedCount",
+                            "totalWaitTime", "maxWaitTime",
+                            "totalQueueLength", "maxQueueLength"})
+    public LockContentionInfo(String className, int identityHashCode,
+                              String allocationSite, long contendedCount,
+                              long totalWaitTime, long maxWaitTime,
+                              long totalQueueLength, int maxQueueLength) {
+        super(className, identityHashCode);
+        this.allocationSite = allocationSite;
+        this.contendedCount = contendedCount;
+        this.totalWaitTime = totalWaitTime;
+        this.maxWaitTime = maxWaitTime;
+        this.totalQueueLength = totalQueueLength;
+        this.maxQueueLength = maxQueueLength;
+    }
+
+    /**
+     * Returns the stack frame from which the lock object was created,
+     * in the form returned by {@link StackTraceElement#toString}.  The
+     * allocation site is only known for lock objects created while the
+     * contention monitor was enabled.
+     *
+     * @return the allocation site, or {@code null} if unknown.
+     */
+    public String getAllocationSite() {
+        return allocationSite;
+    }
+
+    /**
+     * Returns the number of sampled acquisitions of the lock object
+     * that had to wait.
+     *
+     * @return the number of sampled contended acquisitions.
+     */
+    public long getContendedCount() {
+        return contendedCount;
+    }
+
+    /**
+     * Returns the total time in nanoseconds that the sampled contended
+     * acquisitions waited.
+     *
+     * @return the total wait time.
+     */
+    public long getTotalWaitTime() {
+        return totalWaitTime;
+    }
+
+    /**
+     * Returns the longest time in nanoseconds that a sampled contended
+     * acquisition waited.
+     *
+     * @return the maximum wait time.
+     */
+    public long getMaxWaitTime() {
+        return maxWaitTime;
+    }
+
+    /**
+     * Returns the sum, over the sampled contended acquisitions, of the
+     * number of threads that were already waiting when the acquisition
+     * started to wait.
+     *
+     * @return the total queue length.
+     */
+    public long getTotalQueueLength() {
+        return totalQueueLength;
+    }
+
+    /**
+     * Returns the largest number of threads that were already waiting
+     * when a sampled contended acquisition started to wait.
+     *
+     * @return the maximum queue length.
+     */
+    public int getMaxQueueLength() {
+        return maxQueueLength;
+    }
+
+    /**
+     * Returns a string representation of this object, consisting of the
+     * {@linkplain LockInfo#toString string representation} of the lock
+     * followed by its statistics.
+     *
+     * @return the string representation of this object.
+     */
+    public String toString() {
+        StringBuilder sb = new StringBuilder(super.toString());
+        sb.append(" contended=").append(contendedCount);
+        sb.append(" totalWait=").append(totalWaitTime).append("ns");
+        sb.append(" maxWait=").append(maxWaitTime).append("ns");
+        sb.append(" maxQueue=").append(maxQueueLength);
+        if (allocationSite != null)
+            sb.append(" allocated at ").append(allocationSite);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+
+package java.lang.management;
+
+/**
+ * The management interface for the lock contention monitor, which samples
+ * the acquisitions of {@link
+ * java.util.concurrent.locks.AbstractQueuedSynchronizer
+ * AbstractQueuedSynchronizer} based synchronizers, such as {@link
+ * java.util.concurrent.locks.ReentrantLock ReentrantLock}, {@link
+ * java.util.concurrent.locks.ReentrantReadWriteLock ReentrantReadWriteLock}
+ * and {@link java.util.concurrent.Semaphore Semaphore}, that had to wait
+ * in the queue of the synchronizer, and records how long they waited and
+ * how many threads were waiting ahead of them.
+ *
+ * <p> The monitor is disabled by default.  It may be enabled with
+ * {@link #setEnabled setEnabled}, or at startup by setting the system
+ * property {@code java.util.concurrent.locks.contentionMonitor} to
+ * {@code true}; only in the latter case are the allocation sites of
+ * the synchronizers created before it was enabled known.  While
+ * disabled, the monitor costs one volatile read per acquisition that
+ * has to wait, and nothing otherwise.
+ *
+ * <p> A Java virtual machine has a single instance of the implementation
+ * class of this interface.  This instance implementing this interface is
+ * an <a href="ManagementFactory.html#MXBean">MXBean</a> that can be
+ * obtained by calling the {@link
+ * ManagementFactory#getPlatformMXBean(Class)
+ * ManagementFactory.getPlatformMXBean} method or from the {@link
+ * ManagementFactory#getPlatformMBeanServer platform
+ * <tt>MBeanServer</tt>}.  The {@link javax.management.ObjectName
+ * ObjectName} for uniquely identifying it within an <tt>MBeanServer</tt>
+ * is:
+ * <pre>
+ *     java.util.concurrent.locks:type=LockContention
+ * </pre>
+ *
+ * @see LockContentionInfo
+ * @since   1.8
+ */
+public interface LockContentionMXBean extends PlatformManagedObject {
+
+    /**
+     * Tests if the lock contention monitor is enabled.
+     *
+     * @return {@code true} if contended acquisitions are sampled.
+     */
+    boolean isEnabled();
+
+    /**
+     * Enables or disables the lock contention monitor.  Disabling it
+     * keeps the statistics gathered so far.
+     *
+     * @param enable {@code true} to sample contended acquisitions.
+     *
+     * @throws java.lang.SecurityException if a security manager
+     *         exists and the caller does not have
+     *         ManagementPermission("control").
+     */
+    void setEnabled(boolean enable);
+
+    /**
+     * Returns the sampling interval: on average, one in this many
+     * contended acquisitions is sampled.
+     *
+     * @return the sampling interval.
+     */
+    int getSampleInterval();
+
+    /**
+     * Sets the sampling interval.
+     *
+     * @param interval the sampling interval; {@code 1} samples every
+     *                 contended acquisition.
+     *
+     * @throws IllegalArgumentException if {@code interval} is not positive.
+     * @throws java.lang.SecurityException if a security manager
+     *         exists and the caller does not have
+     *         ManagementPermission("control").
+     */
+    void setSampleInterval(int interval);
+
+    /**
+     * Returns the statistics of the most contended synchronizers that
+     * are still reachable, ordered by decreasing total wait time.
+     *
+     * @param maxLocks the maximum number of synchronizers to return.
+     *
+     * @return the statistics of at most {@code maxLocks} synchronizers.
+     *
+     * @throws IllegalArgumentException if {@code maxLocks} is negative.
+     */
+    LockContentionInfo[] getTopContendedLocks(int maxLocks);
+
+    /**
+     * Discards the statistics gathered so far.
+     *
+     * @throws java.lang.SecurityException if a security manager
+     *         exists and the caller does not have
+     *         ManagementPermission("control").
+     */
+    void reset();
+}
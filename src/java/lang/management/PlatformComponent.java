@@ -32,6 +32,8 @@ import java.util.HashSet;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorStatistics;
+import java.util.concurrent.locks.ContentionMonitor;
 import javax.management.MBeanServerConnection;
 import javax.management.ObjectName;
 
@@ -216,6 +218,33 @@ enum PlatformComponent {
             }
         }),
 
+    /**
+     * Executor statistics.
+     */
+    EXECUTOR(
+        "java.lang.management.ExecutorMXBean",
+        "java.util.concurrent", "Executor", keyProperties("name"),
+        false, // zero or more instances
+        new MXBeanFetcher<ExecutorMXBean>() {
+            public List<ExecutorMXBean> getMXBeans() {
+                return ExecutorStatistics.getMXBeans();
+            }
+        }),
+
+    /**
+     * Lock contention monitor.
+     */
+    LOCK_CONTENTION(
+        "java.lang.management.LockContentionMXBean",
+        "java.util.concurrent.locks", "LockContention", defaultKeyProperties(),
+        true, // singleton
+        new MXBeanFetcher<LockContentionMXBean>() {
+            public List<LockContentionMXBean> getMXBeans() {
+                return Collections.<LockContentionMXBean>singletonList(
+                    ContentionMonitor.getInstance());
+            }
+        }),
+
 
     // Sun Platform Extension
 
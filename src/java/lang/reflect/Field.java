@@ -1054,7 +1054,9 @@ class Field extends AccessibleObject implements Member {
                 fieldAccessor = tmp;
         } else {
             // Otherwise fabricate one and propagate it up to the root
-            tmp = reflectionFactory.newFieldAccessor(this, overrideFinalCheck);
+            tmp = MethodHandleAccessors.newFieldAccessor(this);
+            if (tmp == null)
+                tmp = reflectionFactory.newFieldAccessor(this, overrideFinalCheck);
             setFieldAccessor(tmp, overrideFinalCheck);
         }
 
@@ -0,0 +1,562 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.lang.reflect;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.security.AccessController;
+import sun.misc.Unsafe;
+import sun.reflect.FieldAccessor;
+import sun.reflect.MethodAccessor;
+import sun.security.action.GetBooleanAction;
+
+/**
+ * Method and field accessors implemented on top of direct method handles.
+ *
+ * <p>The default accessors invoke a method natively for the first few calls
+ * and then spin a bytecode accessor class per {@code Method}, and access
+ * fields through {@code Unsafe}. When the system property
+ * {@code java.lang.reflect.useMethodHandles} is {@code true}, methods and
+ * fields of application classes are instead accessed through a direct
+ * method handle, adapted once to a uniform shape when the accessor is
+ * created and shared by all copies of the member through its root.
+ * There is no inflation threshold and no class is generated per member.
+ *
+ * <p>Members of classes defined by the bootstrap or extension class
+ * loaders keep the default accessors: these may be caller-sensitive, and
+ * the method handle machinery itself relies on them. Final fields also
+ * keep the default accessors, which implement the rules for writing
+ * them through reflection.
+ *
+ * <p>Arguments are checked against the member's signature before the
+ * handle is invoked, so that any exception thrown by the invocation
+ * itself comes from the target and can be reported as an
+ * {@code InvocationTargetException}.
+ */
+class MethodHandleAccessors {
+
+    private static final boolean ENABLED =
+        AccessController.doPrivileged(
+            new GetBooleanAction("java.lang.reflect.useMethodHandles"));
+
+    /* The generic shapes all method and field handles are adapted to */
+    private static final MethodType INVOKE_TYPE =
+        MethodType.methodType(Object.class, Object.class, Object[].class);
+    private static final MethodType GET_TYPE =
+        MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SET_TYPE =
+        MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static final Unsafe UNSAFE = Unsafe.getUnsafe();
+
+    /* Set while an accessor is being created on the current thread */
+    private static final ThreadLocal<Boolean> creating = new ThreadLocal<>();
+
+    private MethodHandleAccessors() {}
+
+    /**
+     * Returns a method handle based accessor for the given method, or
+     * {@code null} if the default accessor should be used.
+     */
+    static MethodAccessor newMethodAccessor(Method method) {
+        if (!ENABLED || !isEligible(method.getDeclaringClass()))
+            return null;
+        if (creating.get() != null)
+            return null;
+        if (Modifier.isStatic(method.getModifiers())) {
+            // Initialization errors are thrown as is, not as the cause
+            // of an InvocationTargetException
+            UNSAFE.ensureClassInitialized(method.getDeclaringClass());
+        }
+        creating.set(Boolean.TRUE);
+        try {
+            Method m = method.copy();
+            m.override = true;
+            MethodHandle mh = MethodHandles.publicLookup().unreflect(m)
+                                           .asFixedArity();
+            int paramCount = method.getParameterTypes().length;
+            if (Modifier.isStatic(method.getModifiers()))
+                mh = MethodHandles.dropArguments(mh, 0, Object.class);
+            mh = mh.asSpreader(Object[].class, paramCount).asType(INVOKE_TYPE);
+            return new MethodHandleMethodAccessor(method, mh);
+        } catch (IllegalAccessException | RuntimeException e) {
+            return null;
+        } finally {
+            creating.remove();
+        }
+    }
+
+    /**
+     * Returns a method handle based accessor for the given field, or
+     * {@code null} if the default accessor should be used.
+     */
+    static FieldAccessor newFieldAccessor(Field field) {
+        if (!ENABLED || !isEligible(field.getDeclaringClass())
+                || Modifier.isFinal(field.getModifiers()))
+            return null;
+        if (creating.get() != null)
+            return null;
+        if (Modifier.isStatic(field.getModifiers()))
+            UNSAFE.ensureClassInitialized(field.getDeclaringClass());
+        creating.set(Boolean.TRUE);
+        try {
+            Field f = field.copy();
+            f.override = true;
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            MethodHandle getter = lookup.unreflectGetter(f);
+            MethodHandle setter = lookup.unreflectSetter(f);
+            Class<?> type = field.getType();
+            if (Modifier.isStatic(field.getModifiers())) {
+                getter = MethodHandles.dropArguments(getter, 0, Object.class);
+                setter = MethodHandles.dropArguments(setter, 0, Object.class);
+            }
+            getter = getter.asType(MethodType.methodType(type, Object.class));
+            setter = setter.asType(MethodType.methodType(void.class,
+                                                         Object.class, type));
+            return new MethodHandleFieldAccessor(field, getter, setter);
+        } catch (IllegalAccessException | RuntimeException e) {
+            return null;
+        } finally {
+            creating.remove();
+        }
+    }
+
+    private static boolean isEligible(Class<?> c) {
+        ClassLoader cl = c.getClassLoader();
+        return cl != null && cl != ExtLoaderHolder.EXT_LOADER;
+    }
+
+    private static class ExtLoaderHolder {
+        static final ClassLoader EXT_LOADER =
+            ClassLoader.getSystemClassLoader().getParent();
+    }
+
+    /*
+     * Returns true if a value of the primitive type from can be assigned
+     * to the primitive type to by identity or widening conversion.
+     */
+    static boolean canWiden(Class<?> from, Class<?> to) {
+        if (from == to)
+            return true;
+        if (from == boolean.class || to == boolean.class || to == char.class)
+            return false;
+        if (from == char.class)
+            return rank(to) >= rank(int.class);
+        if (to == short.class)
+            return from == byte.class;
+        return rank(from) < rank(to);
+    }
+
+    private static int rank(Class<?> c) {
+        if (c == byte.class)   return 1;
+        if (c == short.class)  return 2;
+        if (c == char.class)   return 2;
+        if (c == int.class)    return 3;
+        if (c == long.class)   return 4;
+        if (c == float.class)  return 5;
+        if (c == double.class) return 6;
+        return 0;
+    }
+
+    /*
+     * Returns the primitive type of a wrapper object, or null if the
+     * object is not a wrapper.
+     */
+    static Class<?> primitiveTypeOf(Object o) {
+        if (o instanceof Integer)   return int.class;
+        if (o instanceof Long)      return long.class;
+        if (o instanceof Double)    return double.class;
+        if (o instanceof Boolean)   return boolean.class;
+        if (o instanceof Byte)      return byte.class;
+        if (o instanceof Character) return char.class;
+        if (o instanceof Short)     return short.class;
+        if (o instanceof Float)     return float.class;
+        return null;
+    }
+
+    /*
+     * Converts a wrapper object to the wrapper of the primitive type to,
+     * which the caller has checked it widens to.
+     */
+    static Object widen(Object o, Class<?> to) {
+        if (to == boolean.class)
+            return o;
+        if (o instanceof Character) {
+            char c = (Character) o;
+            if (to == char.class)   return o;
+            if (to == int.class)    return (int) c;
+            if (to == long.class)   return (long) c;
+            if (to == float.class)  return (float) c;
+            return (double) c;
+        }
+        Number n = (Number) o;
+        if (to == byte.class)   return n.byteValue();
+        if (to == short.class)  return n.shortValue();
+        if (to == int.class)    return n.intValue();
+        if (to == long.class)   return n.longValue();
+        if (to == float.class)  return n.floatValue();
+        return n.doubleValue();
+    }
+
+    static InternalError newInternalError(Throwable t) {
+        InternalError e = new InternalError(t.toString());
+        e.initCause(t);
+        return e;
+    }
+
+    /**
+     * Invokes a method through a spread method handle of type
+     * {@code (Object,Object[])Object}.
+     */
+    static final class MethodHandleMethodAccessor implements MethodAccessor {
+        private final MethodHandle target;
+        private final Class<?> declaringClass;
+        private final Class<?>[] parameterTypes;
+        private final boolean isStatic;
+
+        MethodHandleMethodAccessor(Method method, MethodHandle target) {
+            this.target = target;
+            this.declaringClass = method.getDeclaringClass();
+            this.parameterTypes = method.getParameterTypes();
+            this.isStatic = Modifier.isStatic(method.getModifiers());
+        }
+
+        public Object invoke(Object obj, Object[] args)
+            throws IllegalArgumentException, InvocationTargetException
+        {
+            if (!isStatic) {
+                if (obj == null)
+                    throw new NullPointerException();
+                if (!declaringClass.isInstance(obj))
+                    throw new IllegalArgumentException(
+                        "object is not an instance of declaring class");
+            }
+            Object[] a = checkArguments(args);
+            try {
+                return (Object) target.invokeExact(obj, a);
+            } catch (Throwable t) {
+                throw new InvocationTargetException(t);
+            }
+        }
+
+        /*
+         * Returns the arguments with each primitive argument converted
+         * to the wrapper of its parameter type, after checking they can
+         * be passed to the method without a conversion failure.
+         */
+        private Object[] checkArguments(Object[] args) {
+            int n = parameterTypes.length;
+            if (args == null) {
+                if (n == 0)
+                    return new Object[0];
+                throw new IllegalArgumentException("wrong number of arguments");
+            }
+            if (args.length != n)
+                throw new IllegalArgumentException("wrong number of arguments");
+            Object[] a = args;
+            for (int i = 0; i < n; i++) {
+                Class<?> type = parameterTypes[i];
+                Object arg = args[i];
+                if (type.isPrimitive()) {
+                    Class<?> argType = primitiveTypeOf(arg);
+                    if (argType == null || !canWiden(argType, type))
+                        throw new IllegalArgumentException("argument type mismatch");
+                    if (argType != type) {
+                        if (a == args)
+                            a = args.clone();
+                        a[i] = widen(arg, type);
+                    }
+                } else if (arg != null && !type.isInstance(arg)) {
+                    throw new IllegalArgumentException("argument type mismatch");
+                }
+            }
+            return a;
+        }
+    }
+
+    /**
+     * Accesses a non-final field through a getter of type
+     * {@code (Object)T} and a setter of type {@code (Object,T)void},
+     * where {@code T} is the field type.
+     */
+    static final class MethodHandleFieldAccessor implements FieldAccessor {
+        private final Field field;
+        private final Class<?> type;
+        private final boolean isStatic;
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+        private final MethodHandle genericGetter;
+        private final MethodHandle genericSetter;
+
+        MethodHandleFieldAccessor(Field field, MethodHandle getter,
+                                  MethodHandle setter) {
+            this.field = field;
+            this.type = field.getType();
+            this.isStatic = Modifier.isStatic(field.getModifiers());
+            this.getter = getter;
+            this.setter = setter;
+            this.genericGetter = getter.asType(GET_TYPE);
+            this.genericSetter = setter.asType(SET_TYPE);
+        }
+
+        private void ensureObj(Object obj) {
+            if (!isStatic && !field.getDeclaringClass().isInstance(obj)) {
+                if (obj == null)
+                    throw new NullPointerException();
+                throw new IllegalArgumentException(
+                    "Can not set " + type.getName() + " field " +
+                    field.getDeclaringClass().getName() + "." +
+                    field.getName() + " to " + obj.getClass().getName());
+            }
+        }
+
+        private IllegalArgumentException newGetException(String name) {
+            return new IllegalArgumentException(
+                "Attempt to get " + type.getName() + " field \"" +
+                field.getDeclaringClass().getName() + "." + field.getName() +
+                "\" with illegal data type conversion to " + name);
+        }
+
+        private IllegalArgumentException newSetException(Object value) {
+            return new IllegalArgumentException(
+                "Can not set " + type.getName() + " field " +
+                field.getDeclaringClass().getName() + "." + field.getName() +
+                " to " + ((value == null) ? "null value"
+                                          : value.getClass().getName()));
+        }
+
+        public Object get(Object obj) {
+            ensureObj(obj);
+            try {
+                return (Object) genericGetter.invokeExact(obj);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw newInternalError(t);
+            }
+        }
+
+        public boolean getBoolean(Object obj) {
+            if (type != boolean.class)
+                throw newGetException("boolean");
+            ensureObj(obj);
+            try {
+                return (boolean) getter.invokeExact(obj);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw newInternalError(t);
+            }
+        }
+
+        public byte getByte(Object obj) {
+            if (type != byte.class)
+                throw newGetException("byte");
+            ensureObj(obj);
+            try {
+                return (byte) getter.invokeExact(obj);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw newInternalError(t);
+            }
+        }
+
+        public char getChar(Object obj) {
+            if (type != char.class)
+                throw newGetException("char");
+            ensureObj(obj);
+            try {
+                return (char) getter.invokeExact(obj);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw newInternalError(t);
+            }
+        }
+
+        public short getShort(Object obj) {
+            if (type == short.class) {
+                ensureObj(obj);
+                try {
+                    return (short) getter.invokeExact(obj);
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable t) {
+                    throw newInternalError(t);
+                }
+            }
+            return (Short) getWidened(obj, short.class, "short");
+        }
+
+        public int getInt(Object obj) {
+            if (type == int.class) {
+                ensureObj(obj);
+                try {
+                    return (int) getter.invokeExact(obj);
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable t) {
+                    throw newInternalError(t);
+                }
+            }
+            return (Integer) getWidened(obj, int.class, "int");
+        }
+
+        public long getLong(Object obj) {
+            if (type == long.class) {
+                ensureObj(obj);
+                try {
+                    return (long) getter.invokeExact(obj);
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable t) {
+                    throw newInternalError(t);
+                }
+            }
+            return (Long) getWidened(obj, long.class, "long");
+        }
+
+        public float getFloat(Object obj) {
+            if (type == float.class) {
+                ensureObj(obj);
+                try {
+                    return (float) getter.invokeExact(obj);
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable t) {
+                    throw newInternalError(t);
+                }
+            }
+            return (Float) getWidened(obj, float.class, "float");
+        }
+
+        public double getDouble(Object obj) {
+            if (type == double.class) {
+                ensureObj(obj);
+                try {
+                    return (double) getter.invokeExact(obj);
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable t) {
+                    throw newInternalError(t);
+                }
+            }
+            return (Double) getWidened(obj, double.class, "double");
+        }
+
+        private Object getWidened(Object obj, Class<?> to, String name) {
+            if (!type.isPrimitive() || !canWiden(type, to))
+                throw newGetException(name);
+            return widen(get(obj), to);
+        }
+
+        public void set(Object obj, Object value) {
+            ensureObj(obj);
+            if (type.isPrimitive()) {
+                Class<?> valueType = primitiveTypeOf(value);
+                if (valueType == null || !canWiden(valueType, type))
+                    throw newSetException(value);
+                value = widen(value, type);
+            } else if (value != null && !type.isInstance(value)) {
+                throw newSetException(value);
+            }
+            try {
+                genericSetter.invokeExact(obj, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw newInternalError(t);
+            }
+        }
+
+        public void setBoolean(Object obj, boolean z) {
+            set(obj, Boolean.valueOf(z));
+        }
+
+        public void setByte(Object obj, byte b) {
+            set(obj, Byte.valueOf(b));
+        }
+
+        public void setChar(Object obj, char c) {
+            set(obj, Character.valueOf(c));
+        }
+
+        public void setShort(Object obj, short s) {
+            set(obj, Short.valueOf(s));
+        }
+
+        public void setInt(Object obj, int i) {
+            if (type == int.class) {
+                ensureObj(obj);
+                try {
+                    setter.invokeExact(obj, i);
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable t) {
+                    throw newInternalError(t);
+                }
+                return;
+            }
+            set(obj, Integer.valueOf(i));
+        }
+
+        public void setLong(Object obj, long l) {
+            if (type == long.class) {
+                ensureObj(obj);
+                try {
+                    setter.invokeExact(obj, l);
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable t) {
+                    throw newInternalError(t);
+                }
+                return;
+            }
+            set(obj, Long.valueOf(l));
+        }
+
+        public void setFloat(Object obj, float f) {
+            set(obj, Float.valueOf(f));
+        }
+
+        public void setDouble(Object obj, double d) {
+            if (type == double.class) {
+                ensureObj(obj);
+                try {
+                    setter.invokeExact(obj, d);
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable t) {
+                    throw newInternalError(t);
+                }
+                return;
+            }
+            set(obj, Double.valueOf(d));
+        }
+    }
+}
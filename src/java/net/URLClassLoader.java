@@ -34,6 +34,7 @@ import java.net.URLConnection;
 import java.net.URLStreamHandlerFactory;
 import java.util.Enumeration;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.jar.Manifest;
 import java.util.jar.JarFile;
 import java.util.jar.Attributes;
@@ -75,6 +76,16 @@ public class URLClassLoader extends SecureClassLoader implements Closeable {
     /* The context to be used when loading classes and resources */
     private final AccessControlContext acc;
 
+    /* The optional index of the search path, built on first use */
+    private volatile URLClassPathIndex index;
+
+    /* Set by the one thread that undertakes to build the index */
+    private final AtomicBoolean indexClaimed = new AtomicBoolean();
+
+    /* Orders publication of the index with addURL and close */
+    private final Object indexLock = new Object();
+    private boolean indexClosed;    // guarded by indexLock
+
     /**
      * Constructs a new URLClassLoader for the given URLs. The URLs will be
      * searched in the order specified for classes and resources after first
@@ -284,6 +295,12 @@ public class URLClassLoader extends SecureClassLoader implements Closeable {
             security.checkPermission(new RuntimePermission("closeClassLoader"));
         }
         List<IOException> errors = ucp.closeLoaders();
+        synchronized (indexLock) {
+            indexClosed = true;
+            if (index != null) {
+                errors.addAll(index.close());
+            }
+        }
 
         // now close any remaining streams.
 
@@ -324,7 +341,45 @@ public class URLClassLoader extends SecureClassLoader implements Closeable {
      * @param url the URL to be added to the search path of URLs
      */
     protected void addURL(URL url) {
-        ucp.addURL(url);
+        synchronized (indexLock) {
+            ucp.addURL(url);
+            if (index != null) {
+                index.markIncomplete();
+            }
+        }
+    }
+
+    /*
+     * Returns the index of the search path, or null if indexing is
+     * disabled, the search path cannot be indexed, or the index is still
+     * being built. The first caller builds the index, without holding
+     * any lock, while other callers go on searching URLClassPath.
+     * Must be called from a privileged block.
+     */
+    private URLClassPathIndex getIndex() {
+        if (!URLClassPathIndex.isEnabled()) {
+            return null;
+        }
+        URLClassPathIndex idx = index;
+        if (idx != null || !indexClaimed.compareAndSet(false, true)) {
+            return idx;
+        }
+        URL[] urls = ucp.getURLs();
+        idx = URLClassPathIndex.create(urls);
+        if (idx == null) {
+            return null;
+        }
+        synchronized (indexLock) {
+            if (indexClosed) {
+                idx.close();
+                return null;
+            }
+            if (ucp.getURLs().length != urls.length) {
+                idx.markIncomplete();   // addURL raced with the build
+            }
+            index = idx;
+        }
+        return idx;
     }
 
     /**
@@ -355,7 +410,17 @@ public class URLClassLoader extends SecureClassLoader implements Closeable {
                 new PrivilegedExceptionAction<Class>() {
                     public Class run() throws ClassNotFoundException {
                         String path = name.replace('.', '/').concat(".class");
-                        Resource res = ucp.getResource(path, false);
+                        Resource res = null;
+                        URLClassPathIndex idx = getIndex();
+                        if (idx != null) {
+                            res = idx.getResource(path);
+                            if (res == null && idx.isComplete()) {
+                                throw new ClassNotFoundException(name);
+                            }
+                        }
+                        if (res == null) {
+                            res = ucp.getResource(path, false);
+                        }
                         if (res != null) {
                             try {
                                 return defineClass(name, res);
@@ -548,6 +613,17 @@ public class URLClassLoader extends SecureClassLoader implements Closeable {
         URL url = AccessController.doPrivileged(
             new PrivilegedAction<URL>() {
                 public URL run() {
+                    URLClassPathIndex idx = getIndex();
+                    if (idx != null) {
+                        try {
+                            URL u = idx.findResource(name, true);
+                            if (u != null || idx.isComplete()) {
+                                return u;
+                            }
+                        } catch (SecurityException | IOException e) {
+                            // access denied: let URLClassPath search on
+                        }
+                    }
                     return ucp.findResource(name, true);
                 }
             }, acc);
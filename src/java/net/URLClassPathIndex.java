@@ -0,0 +1,500 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.net;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.FilePermission;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.AccessController;
+import java.security.CodeSigner;
+import java.security.Permission;
+import java.security.cert.Certificate;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import sun.misc.Resource;
+import sun.net.www.ParseUtil;
+import sun.security.action.GetPropertyAction;
+
+/**
+ * An optional index of the entries of the JAR files on the search path
+ * of a {@link URLClassLoader}. The index maps every entry name to the
+ * first JAR file on the search path that contains it, so that a class or
+ * resource lookup is a single hash lookup instead of a linear probe of
+ * every JAR file.
+ * <p>
+ * The index is only used when the system property
+ * {@code java.net.URLClassLoader.indexFile} names a file, and only for
+ * search paths made up entirely of local JAR files without a
+ * {@code Class-Path} manifest attribute or a {@code META-INF/INDEX.LIST}
+ * (for these, the search order is decided by {@code URLClassPath} itself).
+ * The entry lists of the JAR files are read in parallel the first time
+ * a loader needs them and persisted to the index file, keyed by the
+ * canonical path of each JAR file; on later starts a record is reused
+ * only if the size and modification time of its JAR file still match.
+ * <p>
+ * A lookup miss is definitive as long as the search path has not been
+ * extended since the index was built; after {@link URLClassLoader#addURL}
+ * the loader falls back to {@code URLClassPath} for names not found here.
+ *
+ * @since 1.8
+ */
+final class URLClassPathIndex {
+
+    /* The file the index is persisted to, or null if indexing is disabled */
+    private static final String INDEX_FILE = AccessController.doPrivileged(
+        new GetPropertyAction("java.net.URLClassLoader.indexFile"));
+
+    /* Index file format magic and version */
+    private static final int MAGIC = 0x55434958;  // "UCIX"
+    private static final int VERSION = 1;
+
+    /* The JAR files covered by this index, in search order */
+    private final File[] files;
+
+    /* The code source URLs and "jar:" base URLs of the JAR files */
+    private final URL[] csus;
+    private final URL[] bases;
+
+    /* Entry name -> index of the first JAR file containing it */
+    private final Map<String,Integer> entries;
+
+    /* Lazily opened JAR files, guarded by this */
+    private final JarFile[] jars;
+
+    /* Whether a miss in this index is a miss on the whole search path */
+    private volatile boolean complete = true;
+
+    private volatile boolean closed;
+
+    private URLClassPathIndex(File[] files, URL[] csus, URL[] bases,
+                              Map<String,Integer> entries) {
+        this.files = files;
+        this.csus = csus;
+        this.bases = bases;
+        this.entries = entries;
+        this.jars = new JarFile[files.length];
+    }
+
+    /**
+     * Returns true if indexing has been requested for this VM.
+     */
+    static boolean isEnabled() {
+        return INDEX_FILE != null;
+    }
+
+    /**
+     * Builds the index for the given search path, or returns null if the
+     * search path cannot be indexed, including when the caller may not
+     * read the JAR files or the index file.
+     */
+    static URLClassPathIndex create(URL[] urls) {
+        if (INDEX_FILE == null || urls.length == 0)
+            return null;
+        int n = urls.length;
+        File[] files = new File[n];
+        URL[] csus = new URL[n];
+        URL[] bases = new URL[n];
+        try {
+            for (int i = 0; i < n; i++) {
+                URL url = urls[i];
+                String path = url.getFile();
+                if (!"file".equals(url.getProtocol()) || path.endsWith("/")
+                    || (url.getHost() != null && url.getHost().length() > 0))
+                    return null;
+                files[i] = new File(ParseUtil.decode(path)
+                                        .replace('/', File.separatorChar))
+                                        .getCanonicalFile();
+                if (!files[i].isFile())
+                    return null;
+                csus[i] = url;
+                bases[i] = new URL("jar", "", -1, url + "!/");
+            }
+
+            Map<String,Record> cache = readIndexFile();
+            Record[] records = new Record[n];
+            List<Integer> stale = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                Record r = cache.get(files[i].getPath());
+                if (r != null && r.isValidFor(files[i])) {
+                    records[i] = r;
+                } else {
+                    stale.add(i);
+                }
+            }
+            if (!stale.isEmpty()) {
+                scan(files, stale, records);
+                for (int i : stale)
+                    cache.put(records[i].path, records[i]);
+                writeIndexFile(cache);
+            }
+
+            Map<String,Integer> entries = new HashMap<>();
+            for (int i = 0; i < n; i++) {
+                Record r = records[i];
+                if (r.hasClassPath)
+                    return null;
+                for (String name : r.names) {
+                    if (!entries.containsKey(name))
+                        entries.put(name, i);
+                }
+            }
+            return new URLClassPathIndex(files, csus, bases, entries);
+        } catch (IOException | SecurityException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Records that the search path has been extended beyond the JAR files
+     * covered by this index.
+     */
+    void markIncomplete() {
+        complete = false;
+    }
+
+    /**
+     * Returns true if a miss in this index means the name cannot be found
+     * anywhere on the search path.
+     */
+    boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Returns the resource for the named JAR entry, or null if it is not
+     * in any indexed JAR file or this index has been closed.
+     */
+    Resource getResource(final String name) {
+        Integer i = entries.get(name);
+        if (i == null || closed)
+            return null;
+        final int index = i;
+        final JarFile jar;
+        final JarEntry entry;
+        final URL url;
+        try {
+            jar = getJarFile(index);
+            entry = jar.getJarEntry(name);
+            if (entry == null)
+                return null;
+            url = new URL(bases[index], ParseUtil.encodePath(name, false));
+        } catch (IOException e) {
+            return null;
+        }
+        final URL csu = csus[index];
+        return new Resource() {
+            public String getName() { return name; }
+            public URL getURL() { return url; }
+            public URL getCodeSourceURL() { return csu; }
+            public InputStream getInputStream() throws IOException
+                { return jar.getInputStream(entry); }
+            public int getContentLength()
+                { return (int)entry.getSize(); }
+            public Manifest getManifest() throws IOException
+                { return jar.getManifest(); }
+            public Certificate[] getCertificates()
+                { return entry.getCertificates(); }
+            public CodeSigner[] getCodeSigners()
+                { return entry.getCodeSigners(); }
+        };
+    }
+
+    /**
+     * Returns the URL of the named JAR entry, or null if it is not in any
+     * indexed JAR file or this index has been closed. If check is true,
+     * the caller must have permission to open the URL, as for
+     * {@code URLClassPath.findResource}.
+     *
+     * @throws SecurityException if check is true and the caller does not
+     *         have permission to open the URL
+     * @throws IOException if check is true and the permission needed to
+     *         open the URL cannot be determined
+     */
+    URL findResource(String name, boolean check) throws IOException {
+        Integer i = entries.get(name);
+        if (i == null || closed)
+            return null;
+        URL url;
+        try {
+            url = new URL(bases[i], ParseUtil.encodePath(name, false));
+        } catch (MalformedURLException e) {
+            return null;
+        }
+        if (check)
+            check(url);
+        return url;
+    }
+
+    /*
+     * Checks that the caller may open the given URL, falling back to
+     * checkRead for security managers predating permissions, as
+     * URLClassPath does.
+     */
+    private static void check(URL url) throws IOException {
+        SecurityManager security = System.getSecurityManager();
+        if (security == null)
+            return;
+        Permission perm = url.openConnection().getPermission();
+        if (perm == null)
+            return;
+        try {
+            security.checkPermission(perm);
+        } catch (SecurityException se) {
+            if ((perm instanceof FilePermission) &&
+                perm.getActions().indexOf("read") != -1) {
+                security.checkRead(perm.getName());
+            } else {
+                throw se;
+            }
+        }
+    }
+
+    /**
+     * Closes the JAR files opened by this index. Lookups made after this
+     * method returns do not find anything.
+     */
+    synchronized List<IOException> close() {
+        closed = true;
+        List<IOException> errors = new ArrayList<>();
+        for (int i = 0; i < jars.length; i++) {
+            if (jars[i] != null) {
+                try {
+                    jars[i].close();
+                } catch (IOException ioex) {
+                    errors.add(ioex);
+                }
+                jars[i] = null;
+            }
+        }
+        return errors;
+    }
+
+    private synchronized JarFile getJarFile(int i) throws IOException {
+        if (closed)
+            throw new IOException("class loader closed");
+        JarFile jar = jars[i];
+        if (jar == null) {
+            jar = new JarFile(files[i]);
+            jars[i] = jar;
+        }
+        return jar;
+    }
+
+    /*
+     * The entry list of one JAR file, together with the size and
+     * modification time it was read at.
+     */
+    private static final class Record {
+        final String path;
+        final long length;
+        final long lastModified;
+        final boolean hasClassPath;
+        final String[] names;
+
+        Record(String path, long length, long lastModified,
+               boolean hasClassPath, String[] names) {
+            this.path = path;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.hasClassPath = hasClassPath;
+            this.names = names;
+        }
+
+        boolean isValidFor(File file) {
+            return file.isFile()
+                && file.length() == length
+                && file.lastModified() == lastModified;
+        }
+
+        static Record read(File file) throws IOException {
+            long length = file.length();
+            long lastModified = file.lastModified();
+            boolean hasClassPath = false;
+            List<String> names = new ArrayList<>();
+            try (JarFile jar = new JarFile(file, false)) {
+                Manifest man = jar.getManifest();
+                if (man != null && man.getMainAttributes()
+                        .getValue(Attributes.Name.CLASS_PATH) != null)
+                    hasClassPath = true;
+                if (jar.getEntry("META-INF/INDEX.LIST") != null)
+                    hasClassPath = true;
+                Enumeration<JarEntry> e = jar.entries();
+                while (e.hasMoreElements())
+                    names.add(e.nextElement().getName());
+            }
+            return new Record(file.getPath(), length, lastModified,
+                              hasClassPath,
+                              names.toArray(new String[names.size()]));
+        }
+    }
+
+    /*
+     * Reads the entry lists of the given JAR files, one task per file,
+     * on a pool sized to the number of processors.
+     */
+    private static void scan(final File[] files, List<Integer> stale,
+                             Record[] records) throws IOException {
+        int nThreads = Math.min(stale.size(),
+                                Runtime.getRuntime().availableProcessors());
+        if (nThreads <= 1) {
+            for (int i : stale)
+                records[i] = Record.read(files[i]);
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(nThreads,
+            new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "URLClassPathIndex");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        try {
+            List<Future<Record>> futures = new ArrayList<>(stale.size());
+            for (final int i : stale) {
+                futures.add(pool.submit(new Callable<Record>() {
+                    public Record call() throws IOException {
+                        return Record.read(files[i]);
+                    }
+                }));
+            }
+            int k = 0;
+            for (int i : stale) {
+                try {
+                    records[i] = futures.get(k++).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException)
+                        throw (IOException)cause;
+                    throw new IOException(cause);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /*
+     * Reads the persisted records; a missing or unreadable index file is
+     * treated as empty.
+     */
+    private static Map<String,Record> readIndexFile() {
+        Map<String,Record> cache = new HashMap<>();
+        File f = new File(INDEX_FILE);
+        if (!f.isFile())
+            return cache;
+        try (DataInputStream in = new DataInputStream(
+                 new BufferedInputStream(new FileInputStream(f)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                return cache;
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                long length = in.readLong();
+                long lastModified = in.readLong();
+                boolean hasClassPath = in.readBoolean();
+                String[] names = new String[in.readInt()];
+                for (int j = 0; j < names.length; j++)
+                    names[j] = in.readUTF();
+                cache.put(path, new Record(path, length, lastModified,
+                                           hasClassPath, names));
+            }
+        } catch (IOException e) {
+            cache.clear();
+        }
+        return cache;
+    }
+
+    /*
+     * Writes the records to a temporary file of its own, which then
+     * atomically replaces the index file, so that concurrent readers
+     * never see a partial index and concurrent writers never mix their
+     * output. Records of JAR files that have since been removed or
+     * changed are dropped. Failure to persist the index is not an error.
+     */
+    private static void writeIndexFile(Map<String,Record> cache) {
+        Iterator<Record> it = cache.values().iterator();
+        while (it.hasNext()) {
+            Record r = it.next();
+            if (!r.isValidFor(new File(r.path)))
+                it.remove();
+        }
+        File f = new File(INDEX_FILE).getAbsoluteFile();
+        File tmp = null;
+        try {
+            tmp = File.createTempFile(f.getName(), ".tmp", f.getParentFile());
+            try (DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(cache.size());
+                for (Record r : cache.values()) {
+                    out.writeUTF(r.path);
+                    out.writeLong(r.length);
+                    out.writeLong(r.lastModified);
+                    out.writeBoolean(r.hasClassPath);
+                    out.writeInt(r.names.length);
+                    for (String name : r.names)
+                        out.writeUTF(name);
+                }
+            }
+            Files.move(tmp.toPath(), f.toPath(),
+                       StandardCopyOption.ATOMIC_MOVE);
+            tmp = null;
+        } catch (IOException | SecurityException e) {
+            // including an unsupported atomic move; keep the old index
+        } finally {
+            if (tmp != null)
+                tmp.delete();
+        }
+    }
+}
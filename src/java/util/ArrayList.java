@@ -720,6 +720,113 @@ public class ArrayList<E> extends AbstractList<E>
         return modified;
     }
 
+    /**
+     * Removes all of the elements of this list that satisfy the given
+     * predicate.  The predicate is first applied to every element, and
+     * only then are the surviving elements compacted within the backing
+     * array, in a single pass, rather than removed one at a time through
+     * an iterator.  If the predicate throws an exception, or modifies
+     * this list, no element is removed.
+     *
+     * @param filter a predicate which returns {@code true} for elements to
+     *        be removed
+     * @return {@code true} if any elements were removed
+     * @throws NullPointerException if the specified filter is null
+     * @throws ConcurrentModificationException if the predicate
+     *         structurally modifies this list
+     * @since 1.8
+     */
+    public boolean removeIf(java.util.function.Predicate<? super E> filter) {
+        if (filter == null)
+            throw new NullPointerException();
+        // Find the elements to remove; any exception thrown by the
+        // predicate leaves the list unmodified
+        final int expectedModCount = modCount;
+        final int size = this.size;
+        final BitSet removeSet = new BitSet(size);
+        int removeCount = 0;
+        for (int i = 0; modCount == expectedModCount && i < size; i++) {
+            @SuppressWarnings("unchecked") E e = (E) elementData[i];
+            if (filter.test(e)) {
+                removeSet.set(i);
+                removeCount++;
+            }
+        }
+        if (modCount != expectedModCount)
+            throw new ConcurrentModificationException();
+
+        // Shift the surviving elements left over the removed ones
+        if (removeCount == 0)
+            return false;
+        final int newSize = size - removeCount;
+        for (int i = 0, j = 0; j < newSize; i++, j++) {
+            i = removeSet.nextClearBit(i);
+            elementData[j] = elementData[i];
+        }
+        // clear to let GC do its work
+        for (int k = newSize; k < size; k++)
+            elementData[k] = null;
+        this.size = newSize;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Replaces each element of this list with the result of applying the
+     * operator to that element.  Like {@link #set set}, this is not a
+     * structural modification.
+     *
+     * @param operator the operator to apply to each element
+     * @throws NullPointerException if the specified operator is null
+     * @throws ConcurrentModificationException if the operator
+     *         structurally modifies this list
+     * @since 1.8
+     */
+    @SuppressWarnings("unchecked")
+    public void replaceAll(java.util.function.UnaryOperator<E> operator) {
+        if (operator == null)
+            throw new NullPointerException();
+        final Object[] elementData = this.elementData;
+        final int expectedModCount = modCount;
+        final int size = this.size;
+        for (int i = 0; modCount == expectedModCount && i < size; i++)
+            elementData[i] = operator.apply((E) elementData[i]);
+        if (modCount != expectedModCount)
+            throw new ConcurrentModificationException();
+    }
+
+    /**
+     * Sorts this list according to the order induced by the specified
+     * comparator, or according to the natural ordering of its elements if
+     * the comparator is {@code null}.  This sort is guaranteed to be
+     * <i>stable</i>: equal elements will not be reordered as a result of
+     * the sort.
+     *
+     * <p>The backing array is sorted in place, using the same algorithm as
+     * {@link Arrays#sort(Object[], int, int, Comparator)}, so that no copy
+     * of the list is made other than the temporary storage of that
+     * algorithm.  {@link Collections#sort(List, Comparator)} uses this
+     * method when given an {@code ArrayList}.  Like {@link #set set},
+     * sorting is not a structural modification.
+     *
+     * @param c the comparator to determine the order of the list, or
+     *        {@code null} to use the elements' natural ordering
+     * @throws ClassCastException if the list contains elements that are
+     *         not <i>mutually comparable</i> using the specified comparator
+     * @throws IllegalArgumentException (optional) if the comparator is
+     *         found to violate the {@link Comparator} contract
+     * @throws ConcurrentModificationException if the comparator
+     *         structurally modifies this list
+     * @since 1.8
+     */
+    @SuppressWarnings("unchecked")
+    public void sort(Comparator<? super E> c) {
+        final int expectedModCount = modCount;
+        Arrays.sort((E[]) elementData, 0, size, c);
+        if (modCount != expectedModCount)
+            throw new ConcurrentModificationException();
+    }
+
     /**
      * Save the state of the <tt>ArrayList</tt> instance to a stream (that
      * is, serialize it).
@@ -0,0 +1,1786 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util;
+
+/**
+ * A B-tree based {@link NavigableMap} implementation.  The map is sorted
+ * according to the {@linkplain Comparable natural ordering} of its keys,
+ * or by a {@link Comparator} provided at map creation time, depending on
+ * which constructor is used.
+ *
+ * <p>This implementation provides the same operations and guaranteed
+ * log(n) time cost for the {@code containsKey}, {@code get},
+ * {@code put} and {@code remove} operations as {@link TreeMap}, but keeps
+ * its mappings in a B+tree: the keys and values are held in arrays of up
+ * to 64 of each in the leaves of a tree of nodes with up to 65 children,
+ * and the leaves are linked in key order.  A lookup therefore reads a
+ * few arrays of adjacent references rather than a path of some
+ * log<sub>2</sub>(n) entry objects scattered over the heap, and an
+ * iteration, including one over a {@linkplain #subMap range}, reads the
+ * leaves in sequence.  The map uses some 10 to 14 bytes per mapping
+ * beside the keys and values, where a {@code TreeMap} uses about 40.
+ *
+ * <p>A map built from a {@link SortedMap} with the same ordering, by the
+ * {@linkplain #BTreeMap(SortedMap) constructor} or by {@link #putAll
+ * putAll} into an empty map, is loaded in linear time, and packs its
+ * leaves full.  Insertions in ascending order at the end of a map also
+ * leave full leaves behind them, and other insertions half to entirely
+ * full ones.
+ *
+ * <p>Note that the ordering maintained by a B-tree map, like any sorted
+ * map, and whether or not an explicit comparator is provided, must be
+ * <em>consistent with {@code equals}</em> if this sorted map is to
+ * correctly implement the {@code Map} interface, in the sense described
+ * in {@link TreeMap}.
+ *
+ * <p><strong>Note that this implementation is not synchronized.</strong>
+ * If multiple threads access a map concurrently, and at least one of the
+ * threads modifies the map structurally, it <em>must</em> be synchronized
+ * externally.
+ *
+ * <p>The iterators returned by the {@code iterator} method of the
+ * collections returned by all of this class's "collection view methods"
+ * are <em>fail-fast</em> in the same sense as those of {@link TreeMap}.
+ * Removal through an iterator costs a search of the tree to find the
+ * next position again.
+ *
+ * <p>All {@code Map.Entry} pairs returned by methods in this class and
+ * its views represent snapshots of mappings at the time they were
+ * produced, except those returned by the iterators of entry sets, whose
+ * {@code setValue} method replaces the value of the mapping.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ * @see TreeMap
+ * @see BTreeSet
+ * @since 1.8
+ */
+public class BTreeMap<K,V>
+    extends AbstractMap<K,V>
+    implements NavigableMap<K,V>, Cloneable, java.io.Serializable
+{
+    /*
+     * The tree is a B+tree.  Leaves hold between MIN_KEYS and MAX_KEYS
+     * sorted keys with their values, and are doubly linked in order.
+     * Inner nodes hold between MIN_KEYS and MAX_KEYS separator keys and
+     * one more child; all keys in children[i] are less than keys[i],
+     * and all those in children[i+1] are greater than or equal to it.
+     * The root may hold fewer keys, and is null when the map is empty.
+     * All leaves are at depth height.
+     *
+     * Insertion splits full nodes on the way back up from the leaf.  A
+     * leaf is split in half, except that the last leaf is split by
+     * starting a new leaf when the key is appended, so that ascending
+     * insertions leave full leaves.  Removal leaves separators in
+     * place, as they still separate the keys correctly, and repairs
+     * nodes with fewer than MIN_KEYS keys by borrowing a key from a
+     * sibling, or merging with it if it has no key to spare.
+     *
+     * Navigation methods locate a position, a leaf and an index in it,
+     * from which entries are exported as snapshots and iterations start.
+     * The views of ranges of the map, including the descending map, are
+     * all instances of SubMap, which restricts the positions found by
+     * the navigation methods of the map to its bounds.
+     */
+
+    private static final long serialVersionUID = -7158347265347234987L;
+
+    static final int MAX_KEYS = 64;
+    static final int MIN_KEYS = MAX_KEYS / 2;
+
+    static class Node {
+        int n;                          // number of keys
+        final Object[] keys = new Object[MAX_KEYS];
+    }
+
+    static final class Leaf extends Node {
+        final Object[] vals = new Object[MAX_KEYS];
+        Leaf next, prev;
+    }
+
+    static final class Inner extends Node {
+        final Node[] children = new Node[MAX_KEYS + 1];
+    }
+
+    /**
+     * A position in the map: an index of a key in a leaf.
+     */
+    static final class Pos {
+        final Leaf leaf;
+        final int index;
+
+        Pos(Leaf leaf, int index) {
+            this.leaf = leaf;
+            this.index = index;
+        }
+
+        Object key() {
+            return leaf.keys[index];
+        }
+    }
+
+    /**
+     * The comparator used to maintain order in this map, or null if it
+     * uses the natural ordering of its keys.
+     *
+     * @serial
+     */
+    private final Comparator<? super K> comparator;
+
+    private transient Node root;
+
+    /** Number of levels of inner nodes */
+    private transient int height;
+
+    private transient int size = 0;
+
+    /** The number of structural modifications to the tree */
+    private transient int modCount = 0;
+
+    /**
+     * Constructs a new, empty map, using the natural ordering of its
+     * keys.  All keys inserted into the map must implement the {@link
+     * Comparable} interface, and be mutually comparable.
+     */
+    public BTreeMap() {
+        comparator = null;
+    }
+
+    /**
+     * Constructs a new, empty map, ordered according to the given
+     * comparator.
+     *
+     * @param comparator the comparator that will be used to order this
+     *        map.  If {@code null}, the {@linkplain Comparable natural
+     *        ordering} of the keys will be used.
+     */
+    public BTreeMap(Comparator<? super K> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * Constructs a new map containing the same mappings as the given
+     * map, ordered according to the <em>natural ordering</em> of its
+     * keys.
+     *
+     * @param  m the map whose mappings are to be placed in this map
+     * @throws ClassCastException if the keys in m are not {@link
+     *         Comparable}, or are not mutually comparable
+     * @throws NullPointerException if the specified map is null
+     */
+    public BTreeMap(Map<? extends K, ? extends V> m) {
+        comparator = null;
+        putAll(m);
+    }
+
+    /**
+     * Constructs a new map containing the same mappings and using the
+     * same ordering as the specified sorted map.  This method runs in
+     * linear time.
+     *
+     * @param  m the sorted map whose mappings are to be placed in this
+     *         map, and whose comparator is to be used to sort this map
+     * @throws NullPointerException if the specified map is null
+     */
+    public BTreeMap(SortedMap<K, ? extends V> m) {
+        comparator = m.comparator();
+        try {
+            buildFromSorted(m.size(), m.entrySet().iterator(), null, null);
+        } catch (java.io.IOException cannotHappen) {
+        } catch (ClassNotFoundException cannotHappen) {
+        }
+    }
+
+    // Comparison and search
+
+    @SuppressWarnings("unchecked")
+    final int compare(Object k1, Object k2) {
+        return (comparator == null)
+            ? ((Comparable<? super K>)k1).compareTo((K)k2)
+            : comparator.compare((K)k1, (K)k2);
+    }
+
+    /**
+     * Returns the index of the key among the first n keys, if present;
+     * otherwise, -(insertion point) - 1.
+     */
+    @SuppressWarnings("unchecked")
+    private int search(Object[] keys, int n, Object key) {
+        int lo = 0, hi = n - 1;
+        Comparator<? super K> cpr = comparator;
+        if (cpr == null) {
+            if (key == null)
+                throw new NullPointerException();
+            Comparable<? super K> k = (Comparable<? super K>) key;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int c = k.compareTo((K) keys[mid]);
+                if (c > 0)
+                    lo = mid + 1;
+                else if (c < 0)
+                    hi = mid - 1;
+                else
+                    return mid;
+            }
+        } else {
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int c = cpr.compare((K) key, (K) keys[mid]);
+                if (c > 0)
+                    lo = mid + 1;
+                else if (c < 0)
+                    hi = mid - 1;
+                else
+                    return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    /** Returns the index of the child of node whose range holds key. */
+    private int childIndex(Inner node, Object key) {
+        int r = search(node.keys, node.n, key);
+        return (r >= 0) ? r + 1 : -r - 1;
+    }
+
+    /** Returns the leaf whose range holds key; root must be non-null. */
+    private Leaf leafFor(Object key) {
+        Node x = root;
+        while (x instanceof Inner) {
+            Inner in = (Inner) x;
+            x = in.children[childIndex(in, key)];
+        }
+        return (Leaf) x;
+    }
+
+    // Positions
+
+    /**
+     * Returns the position of the given index of leaf, which may be one
+     * past either end, or null if there is no such position.
+     */
+    static Pos pos(Leaf leaf, int index) {
+        if (index >= leaf.n) {
+            leaf = leaf.next;
+            index = 0;
+        } else if (index < 0) {
+            leaf = leaf.prev;
+            if (leaf != null)
+                index = leaf.n - 1;
+        }
+        return (leaf == null || leaf.n == 0) ? null : new Pos(leaf, index);
+    }
+
+    final Pos firstPos() {
+        Node x = root;
+        if (x == null)
+            return null;
+        while (x instanceof Inner)
+            x = ((Inner) x).children[0];
+        return pos((Leaf) x, 0);
+    }
+
+    final Pos lastPos() {
+        Node x = root;
+        if (x == null)
+            return null;
+        while (x instanceof Inner)
+            x = ((Inner) x).children[x.n];
+        return pos((Leaf) x, x.n - 1);
+    }
+
+    final Pos getPos(Object key) {
+        if (root == null)
+            return null;
+        Leaf leaf = leafFor(key);
+        int r = search(leaf.keys, leaf.n, key);
+        return (r >= 0) ? new Pos(leaf, r) : null;
+    }
+
+    final Pos ceilingPos(Object key) {
+        if (root == null)
+            return null;
+        Leaf leaf = leafFor(key);
+        int r = search(leaf.keys, leaf.n, key);
+        return pos(leaf, (r >= 0) ? r : -r - 1);
+    }
+
+    final Pos higherPos(Object key) {
+        if (root == null)
+            return null;
+        Leaf leaf = leafFor(key);
+        int r = search(leaf.keys, leaf.n, key);
+        return pos(leaf, (r >= 0) ? r + 1 : -r - 1);
+    }
+
+    final Pos floorPos(Object key) {
+        if (root == null)
+            return null;
+        Leaf leaf = leafFor(key);
+        int r = search(leaf.keys, leaf.n, key);
+        return pos(leaf, (r >= 0) ? r : -r - 2);
+    }
+
+    final Pos lowerPos(Object key) {
+        if (root == null)
+            return null;
+        Leaf leaf = leafFor(key);
+        int r = search(leaf.keys, leaf.n, key);
+        return pos(leaf, (r >= 0) ? r - 1 : -r - 2);
+    }
+
+    /**
+     * Returns a snapshot of the entry at the position, or null.
+     */
+    @SuppressWarnings("unchecked")
+    final Map.Entry<K,V> exportEntry(Pos p) {
+        return (p == null) ? null : new AbstractMap.SimpleImmutableEntry<>(
+            (K) p.leaf.keys[p.index], (V) p.leaf.vals[p.index]);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K> K keyOrNull(Pos p) {
+        return (p == null) ? null : (K) p.key();
+    }
+
+    static <K> K key(Pos p) {
+        if (p == null)
+            throw new NoSuchElementException();
+        @SuppressWarnings("unchecked") K k = (K) p.key();
+        return k;
+    }
+
+    // Query Operations
+
+    /**
+     * Returns the number of key-value mappings in this map.
+     *
+     * @return the number of key-value mappings in this map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns {@code true} if this map contains a mapping for the
+     * specified key.
+     *
+     * @param key key whose presence in this map is to be tested
+     * @return {@code true} if this map contains a mapping for the
+     *         specified key
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public boolean containsKey(Object key) {
+        return getPos(key) != null;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped,
+     * or {@code null} if this map contains no mapping for the key.
+     *
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        Pos p = getPos(key);
+        return (p == null) ? null : (V) p.leaf.vals[p.index];
+    }
+
+    public Comparator<? super K> comparator() {
+        return comparator;
+    }
+
+    /**
+     * @throws NoSuchElementException {@inheritDoc}
+     */
+    public K firstKey() {
+        return key(firstPos());
+    }
+
+    /**
+     * @throws NoSuchElementException {@inheritDoc}
+     */
+    public K lastKey() {
+        return key(lastPos());
+    }
+
+    /**
+     * Copies all of the mappings from the specified map to this map.
+     * These mappings replace any mappings that this map had for any
+     * of the keys currently in the specified map.  If this map is empty
+     * and the specified map is a sorted map with the same ordering, the
+     * mappings are loaded in linear time.
+     *
+     * @param  map mappings to be stored in this map
+     * @throws ClassCastException if the class of a key or value in
+     *         the specified map prevents it from being stored in this map
+     * @throws NullPointerException if the specified map is null or
+     *         the specified map contains a null key and this map does not
+     *         permit null keys
+     */
+    public void putAll(Map<? extends K, ? extends V> map) {
+        if (size == 0 && map.size() != 0 && map instanceof SortedMap) {
+            Comparator<?> c = ((SortedMap<?,?>) map).comparator();
+            if (c == comparator || (c != null && c.equals(comparator))) {
+                modCount++;
+                try {
+                    buildFromSorted(map.size(), map.entrySet().iterator(),
+                                    null, null);
+                } catch (java.io.IOException cannotHappen) {
+                } catch (ClassNotFoundException cannotHappen) {
+                }
+                return;
+            }
+        }
+        super.putAll(map);
+    }
+
+    /**
+     * Associates the specified value with the specified key in this map.
+     * If the map previously contained a mapping for the key, the old
+     * value is replaced.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     *
+     * @return the previous value associated with {@code key}, or
+     *         {@code null} if there was no mapping for {@code key}.
+     *         (A {@code null} return can also indicate that the map
+     *         previously associated {@code null} with {@code key}.)
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        if (root == null) {
+            compare(key, key); // type (and possibly null) check
+            Leaf leaf = new Leaf();
+            leaf.keys[0] = key;
+            leaf.vals[0] = value;
+            leaf.n = 1;
+            root = leaf;
+            height = 0;
+            size = 1;
+            modCount++;
+            return null;
+        }
+        Inner[] path = new Inner[height];
+        int[] idx = new int[height];
+        Node x = root;
+        for (int d = 0; d < height; d++) {
+            Inner in = (Inner) x;
+            int i = childIndex(in, key);
+            path[d] = in;
+            idx[d] = i;
+            x = in.children[i];
+        }
+        Leaf leaf = (Leaf) x;
+        int r = search(leaf.keys, leaf.n, key);
+        if (r >= 0) {
+            V oldValue = (V) leaf.vals[r];
+            leaf.vals[r] = value;
+            return oldValue;
+        }
+        int ip = -r - 1;
+        size++;
+        modCount++;
+        if (leaf.n < MAX_KEYS) {
+            insertAt(leaf, ip, key, value);
+            return null;
+        }
+
+        // Split the leaf, and insert the new leaf in the parents
+        Leaf right = new Leaf();
+        int h = (ip == MAX_KEYS && leaf.next == null) ? MAX_KEYS : MAX_KEYS / 2;
+        System.arraycopy(leaf.keys, h, right.keys, 0, MAX_KEYS - h);
+        System.arraycopy(leaf.vals, h, right.vals, 0, MAX_KEYS - h);
+        Arrays.fill(leaf.keys, h, MAX_KEYS, null);
+        Arrays.fill(leaf.vals, h, MAX_KEYS, null);
+        right.n = MAX_KEYS - h;
+        leaf.n = h;
+        if (ip <= h && h < MAX_KEYS)
+            insertAt(leaf, ip, key, value);
+        else
+            insertAt(right, ip - h, key, value);
+        right.next = leaf.next;
+        right.prev = leaf;
+        if (leaf.next != null)
+            leaf.next.prev = right;
+        leaf.next = right;
+
+        Object sep = right.keys[0];
+        Node child = right;
+        for (int d = height - 1; d >= 0; d--) {
+            Inner p = path[d];
+            int i = idx[d];
+            if (p.n < MAX_KEYS) {
+                insertChild(p, i, sep, child);
+                return null;
+            }
+            // Split p around its middle key, including the new one
+            Object[] ks = new Object[MAX_KEYS + 1];
+            Node[] cs = new Node[MAX_KEYS + 2];
+            System.arraycopy(p.keys, 0, ks, 0, i);
+            ks[i] = sep;
+            System.arraycopy(p.keys, i, ks, i + 1, MAX_KEYS - i);
+            System.arraycopy(p.children, 0, cs, 0, i + 1);
+            cs[i + 1] = child;
+            System.arraycopy(p.children, i + 1, cs, i + 2, MAX_KEYS - i);
+            int m = (MAX_KEYS + 1) / 2;
+            Inner pr = new Inner();
+            System.arraycopy(ks, 0, p.keys, 0, m);
+            Arrays.fill(p.keys, m, MAX_KEYS, null);
+            System.arraycopy(cs, 0, p.children, 0, m + 1);
+            Arrays.fill(p.children, m + 1, MAX_KEYS + 1, null);
+            p.n = m;
+            System.arraycopy(ks, m + 1, pr.keys, 0, MAX_KEYS - m);
+            System.arraycopy(cs, m + 1, pr.children, 0, MAX_KEYS - m + 1);
+            pr.n = MAX_KEYS - m;
+            sep = ks[m];
+            child = pr;
+        }
+        Inner newRoot = new Inner();
+        newRoot.keys[0] = sep;
+        newRoot.children[0] = root;
+        newRoot.children[1] = child;
+        newRoot.n = 1;
+        root = newRoot;
+        height++;
+        return null;
+    }
+
+    private static void insertAt(Leaf leaf, int i, Object key, Object value) {
+        int n = leaf.n;
+        System.arraycopy(leaf.keys, i, leaf.keys, i + 1, n - i);
+        System.arraycopy(leaf.vals, i, leaf.vals, i + 1, n - i);
+        leaf.keys[i] = key;
+        leaf.vals[i] = value;
+        leaf.n = n + 1;
+    }
+
+    /** Inserts sep as key i of p, and child as child i + 1. */
+    private static void insertChild(Inner p, int i, Object sep, Node child) {
+        int n = p.n;
+        System.arraycopy(p.keys, i, p.keys, i + 1, n - i);
+        System.arraycopy(p.children, i + 1, p.children, i + 2, n - i);
+        p.keys[i] = sep;
+        p.children[i + 1] = child;
+        p.n = n + 1;
+    }
+
+    /**
+     * Removes the mapping for this key from this map if present.
+     *
+     * @param  key key for which mapping should be removed
+     * @return the previous value associated with {@code key}, or
+     *         {@code null} if there was no mapping for {@code key}.
+     *         (A {@code null} return can also indicate that the map
+     *         previously associated {@code null} with {@code key}.)
+     * @throws ClassCastException if the specified key cannot be compared
+     *         with the keys currently in the map
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        if (root == null)
+            return null;
+        Inner[] path = new Inner[height];
+        int[] idx = new int[height];
+        Node x = root;
+        for (int d = 0; d < height; d++) {
+            Inner in = (Inner) x;
+            int i = childIndex(in, key);
+            path[d] = in;
+            idx[d] = i;
+            x = in.children[i];
+        }
+        Leaf leaf = (Leaf) x;
+        int r = search(leaf.keys, leaf.n, key);
+        if (r < 0)
+            return null;
+        V oldValue = (V) leaf.vals[r];
+        int n = leaf.n - 1;
+        System.arraycopy(leaf.keys, r + 1, leaf.keys, r, n - r);
+        System.arraycopy(leaf.vals, r + 1, leaf.vals, r, n - r);
+        leaf.keys[n] = null;
+        leaf.vals[n] = null;
+        leaf.n = n;
+        size--;
+        modCount++;
+
+        Node child = leaf;
+        for (int d = height - 1; d >= 0 && child.n < MIN_KEYS; d--) {
+            repair(path[d], idx[d]);
+            child = path[d];
+        }
+        if (root.n == 0) {
+            if (root instanceof Inner) {
+                root = ((Inner) root).children[0];
+                height--;
+            } else
+                root = null;
+        }
+        return oldValue;
+    }
+
+    /**
+     * Restores child i of p to at least MIN_KEYS keys, by moving a key
+     * from a sibling, or merging it with a sibling.
+     */
+    private static void repair(Inner p, int i) {
+        Node child = p.children[i];
+        Node left = (i > 0) ? p.children[i - 1] : null;
+        Node right = (i < p.n) ? p.children[i + 1] : null;
+        if (left != null && left.n > MIN_KEYS)
+            borrowFromLeft(p, i, left, child);
+        else if (right != null && right.n > MIN_KEYS)
+            borrowFromRight(p, i, child, right);
+        else if (left != null)
+            merge(p, i - 1, left, child);
+        else
+            merge(p, i, child, right);
+    }
+
+    private static void borrowFromLeft(Inner p, int i, Node left, Node child) {
+        int ln = left.n - 1, n = child.n;
+        System.arraycopy(child.keys, 0, child.keys, 1, n);
+        if (child instanceof Leaf) {
+            Leaf c = (Leaf) child, l = (Leaf) left;
+            System.arraycopy(c.vals, 0, c.vals, 1, n);
+            c.keys[0] = l.keys[ln];
+            c.vals[0] = l.vals[ln];
+            l.vals[ln] = null;
+            p.keys[i - 1] = c.keys[0];
+        } else {
+            Inner c = (Inner) child, l = (Inner) left;
+            System.arraycopy(c.children, 0, c.children, 1, n + 1);
+            c.keys[0] = p.keys[i - 1];
+            c.children[0] = l.children[ln + 1];
+            l.children[ln + 1] = null;
+            p.keys[i - 1] = l.keys[ln];
+        }
+        left.keys[ln] = null;
+        left.n = ln;
+        child.n = n + 1;
+    }
+
+    private static void borrowFromRight(Inner p, int i, Node child,
+                                        Node right) {
+        int n = child.n, rn = right.n - 1;
+        if (child instanceof Leaf) {
+            Leaf c = (Leaf) child, r = (Leaf) right;
+            c.keys[n] = r.keys[0];
+            c.vals[n] = r.vals[0];
+            System.arraycopy(r.vals, 1, r.vals, 0, rn);
+            r.vals[rn] = null;
+            System.arraycopy(r.keys, 1, r.keys, 0, rn);
+            p.keys[i] = r.keys[0];
+        } else {
+            Inner c = (Inner) child, r = (Inner) right;
+            c.keys[n] = p.keys[i];
+            c.children[n + 1] = r.children[0];
+            p.keys[i] = r.keys[0];
+            System.arraycopy(r.keys, 1, r.keys, 0, rn);
+            System.arraycopy(r.children, 1, r.children, 0, rn + 1);
+            r.children[rn + 1] = null;
+        }
+        right.keys[rn] = null;
+        right.n = rn;
+        child.n = n + 1;
+    }
+
+    /**
+     * Merges right, child i + 1 of p, into left, child i, removing key
+     * i of p.
+     */
+    private static void merge(Inner p, int i, Node left, Node right) {
+        int ln = left.n, rn = right.n;
+        if (left instanceof Leaf) {
+            Leaf l = (Leaf) left, r = (Leaf) right;
+            System.arraycopy(r.keys, 0, l.keys, ln, rn);
+            System.arraycopy(r.vals, 0, l.vals, ln, rn);
+            l.n = ln + rn;
+            l.next = r.next;
+            if (r.next != null)
+                r.next.prev = l;
+        } else {
+            Inner l = (Inner) left, r = (Inner) right;
+            l.keys[ln] = p.keys[i];
+            System.arraycopy(r.keys, 0, l.keys, ln + 1, rn);
+            System.arraycopy(r.children, 0, l.children, ln + 1, rn + 1);
+            l.n = ln + 1 + rn;
+        }
+        int n = p.n - 1;
+        System.arraycopy(p.keys, i + 1, p.keys, i, n - i);
+        System.arraycopy(p.children, i + 2, p.children, i + 1, n - i);
+        p.keys[n] = null;
+        p.children[n + 1] = null;
+        p.n = n;
+    }
+
+    /**
+     * Removes all of the mappings from this map.
+     * The map will be empty after this call returns.
+     */
+    public void clear() {
+        modCount++;
+        size = 0;
+        root = null;
+        height = 0;
+    }
+
+    /**
+     * Returns a shallow copy of this {@code BTreeMap} instance.  (The keys
+     * and values themselves are not cloned.)
+     *
+     * @return a shallow copy of this map
+     */
+    public Object clone() {
+        BTreeMap<K,V> clone;
+        try {
+            @SuppressWarnings("unchecked")
+            BTreeMap<K,V> c = (BTreeMap<K,V>) super.clone();
+            clone = c;
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError();
+        }
+        // Put clone into "virgin" state (except for comparator)
+        clone.root = null;
+        clone.size = 0;
+        clone.height = 0;
+        clone.modCount = 0;
+        clone.entrySet = null;
+        clone.navigableKeySet = null;
+        clone.descendingMap = null;
+        try {
+            clone.buildFromSorted(size, entrySet().iterator(), null, null);
+        } catch (java.io.IOException cannotHappen) {
+        } catch (ClassNotFoundException cannotHappen) {
+        }
+        return clone;
+    }
+
+    // NavigableMap API methods
+
+    public Map.Entry<K,V> firstEntry() {
+        return exportEntry(firstPos());
+    }
+
+    public Map.Entry<K,V> lastEntry() {
+        return exportEntry(lastPos());
+    }
+
+    public Map.Entry<K,V> pollFirstEntry() {
+        Map.Entry<K,V> e = exportEntry(firstPos());
+        if (e != null)
+            remove(e.getKey());
+        return e;
+    }
+
+    public Map.Entry<K,V> pollLastEntry() {
+        Map.Entry<K,V> e = exportEntry(lastPos());
+        if (e != null)
+            remove(e.getKey());
+        return e;
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public Map.Entry<K,V> lowerEntry(K key) {
+        return exportEntry(lowerPos(key));
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public K lowerKey(K key) {
+        return keyOrNull(lowerPos(key));
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public Map.Entry<K,V> floorEntry(K key) {
+        return exportEntry(floorPos(key));
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public K floorKey(K key) {
+        return keyOrNull(floorPos(key));
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public Map.Entry<K,V> ceilingEntry(K key) {
+        return exportEntry(ceilingPos(key));
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public K ceilingKey(K key) {
+        return keyOrNull(ceilingPos(key));
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public Map.Entry<K,V> higherEntry(K key) {
+        return exportEntry(higherPos(key));
+    }
+
+    /**
+     * @throws ClassCastException {@inheritDoc}
+     * @throws NullPointerException if the specified key is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     */
+    public K higherKey(K key) {
+        return keyOrNull(higherPos(key));
+    }
+
+    // Views
+
+    private transient EntrySet entrySet;
+    private transient KeySet<K> navigableKeySet;
+    private transient NavigableMap<K,V> descendingMap;
+
+    /**
+     * Returns a {@link Set} view of the keys contained in this map, in
+     * ascending order.  The set is backed by the map, and supports
+     * element removal but not addition, as for {@link TreeMap#keySet}.
+     */
+    public Set<K> keySet() {
+        return navigableKeySet();
+    }
+
+    public NavigableSet<K> navigableKeySet() {
+        KeySet<K> nks = navigableKeySet;
+        return (nks != null) ? nks : (navigableKeySet = new KeySet<>(this));
+    }
+
+    public NavigableSet<K> descendingKeySet() {
+        return descendingMap().navigableKeySet();
+    }
+
+    /**
+     * Returns a {@link Set} view of the mappings contained in this map,
+     * in ascending key order.  The set is backed by the map, and
+     * supports element removal but not addition, as for
+     * {@link TreeMap#entrySet}.
+     */
+    public Set<Map.Entry<K,V>> entrySet() {
+        EntrySet es = entrySet;
+        return (es != null) ? es : (entrySet = new EntrySet());
+    }
+
+    public NavigableMap<K, V> descendingMap() {
+        NavigableMap<K, V> km = descendingMap;
+        return (km != null) ? km :
+            (descendingMap = new SubMap<>(this,
+                                          true, null, true,
+                                          true, null, true, true));
+    }
+
+    /**
+     * @throws ClassCastException       {@inheritDoc}
+     * @throws NullPointerException if {@code fromKey} or {@code toKey} is
+     *         null and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public NavigableMap<K,V> subMap(K fromKey, boolean fromInclusive,
+                                    K toKey,   boolean toInclusive) {
+        if (compare(fromKey, toKey) > 0)
+            throw new IllegalArgumentException("fromKey > toKey");
+        return new SubMap<>(this,
+                            false, fromKey, fromInclusive,
+                            false, toKey,   toInclusive, false);
+    }
+
+    /**
+     * @throws ClassCastException       {@inheritDoc}
+     * @throws NullPointerException if {@code toKey} is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public NavigableMap<K,V> headMap(K toKey, boolean inclusive) {
+        compare(toKey, toKey); // type (and possibly null) check
+        return new SubMap<>(this,
+                            true,  null,  true,
+                            false, toKey, inclusive, false);
+    }
+
+    /**
+     * @throws ClassCastException       {@inheritDoc}
+     * @throws NullPointerException if {@code fromKey} is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public NavigableMap<K,V> tailMap(K fromKey, boolean inclusive) {
+        compare(fromKey, fromKey); // type (and possibly null) check
+        return new SubMap<>(this,
+                            false, fromKey, inclusive,
+                            true,  null,    true, false);
+    }
+
+    /**
+     * @throws ClassCastException       {@inheritDoc}
+     * @throws NullPointerException if {@code fromKey} or {@code toKey} is
+     *         null and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public SortedMap<K,V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    /**
+     * @throws ClassCastException       {@inheritDoc}
+     * @throws NullPointerException if {@code toKey} is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public SortedMap<K,V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    /**
+     * @throws ClassCastException       {@inheritDoc}
+     * @throws NullPointerException if {@code fromKey} is null
+     *         and this map uses natural ordering, or its comparator
+     *         does not permit null keys
+     * @throws IllegalArgumentException {@inheritDoc}
+     */
+    public SortedMap<K,V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    // View class support
+
+    /** Marks the absence of a fence key in iterators */
+    static final Object UNBOUNDED = new Object();
+
+    class EntrySet extends AbstractSet<Map.Entry<K,V>> {
+        public Iterator<Map.Entry<K,V>> iterator() {
+            return new EntryIterator<>(BTreeMap.this, firstPos(),
+                                       UNBOUNDED, false);
+        }
+
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?,?> entry = (Map.Entry<?,?>) o;
+            Pos p = getPos(entry.getKey());
+            return p != null && eq(p.leaf.vals[p.index], entry.getValue());
+        }
+
+        public boolean remove(Object o) {
+            if (!contains(o))
+                return false;
+            BTreeMap.this.remove(((Map.Entry<?,?>) o).getKey());
+            return true;
+        }
+
+        public int size() {
+            return BTreeMap.this.size();
+        }
+
+        public void clear() {
+            BTreeMap.this.clear();
+        }
+    }
+
+    static boolean eq(Object o1, Object o2) {
+        return (o1 == null) ? o2 == null : o1.equals(o2);
+    }
+
+    /**
+     * An iterator over the positions of a map, in either direction,
+     * stopping before the key fence, compared by identity.
+     */
+    abstract static class PosIterator<K,V,T> implements Iterator<T> {
+        final BTreeMap<K,V> m;
+        final Object fence;
+        final boolean descending;
+        Leaf leaf;                  // position of next, or null
+        int index;
+        Object lastKey;
+        boolean canRemove;
+        int expectedModCount;
+
+        PosIterator(BTreeMap<K,V> m, Pos first, Object fence,
+                    boolean descending) {
+            this.m = m;
+            this.fence = fence;
+            this.descending = descending;
+            expectedModCount = m.modCount;
+            setNext(first);
+        }
+
+        private void setNext(Pos p) {
+            if (p == null || p.key() == fence) {
+                leaf = null;
+            } else {
+                leaf = p.leaf;
+                index = p.index;
+            }
+        }
+
+        public final boolean hasNext() {
+            return leaf != null;
+        }
+
+        /** Returns the element at the given position. */
+        abstract T element(Leaf leaf, int index);
+
+        public final T next() {
+            Leaf l = leaf;
+            if (l == null)
+                throw new NoSuchElementException();
+            if (m.modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            int i = index;
+            T result = element(l, i);
+            lastKey = l.keys[i];
+            canRemove = true;
+            setNext(pos(l, descending ? i - 1 : i + 1));
+            return result;
+        }
+
+        public final void remove() {
+            if (!canRemove)
+                throw new IllegalStateException();
+            if (m.modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            canRemove = false;
+            Object nextKey = (leaf == null) ? null : leaf.keys[index];
+            boolean hadNext = leaf != null;
+            m.remove(lastKey);
+            expectedModCount = m.modCount;
+            // Removal may have moved the next key to another leaf
+            if (hadNext)
+                setNext(m.getPos(nextKey));
+        }
+    }
+
+    static final class EntryIterator<K,V>
+        extends PosIterator<K,V,Map.Entry<K,V>> {
+        EntryIterator(BTreeMap<K,V> m, Pos first, Object fence,
+                      boolean descending) {
+            super(m, first, fence, descending);
+        }
+
+        @SuppressWarnings("unchecked")
+        Map.Entry<K,V> element(Leaf leaf, int index) {
+            return new IteratorEntry<>(m, leaf, index,
+                                       (K) leaf.keys[index],
+                                       (V) leaf.vals[index]);
+        }
+    }
+
+    static final class KeyIterator<K> extends PosIterator<K,Object,K> {
+        @SuppressWarnings("unchecked")
+        KeyIterator(BTreeMap<K,?> m, Pos first, Object fence,
+                    boolean descending) {
+            super((BTreeMap<K,Object>) m, first, fence, descending);
+        }
+
+        @SuppressWarnings("unchecked")
+        K element(Leaf leaf, int index) {
+            return (K) leaf.keys[index];
+        }
+    }
+
+    /**
+     * An entry returned by an iterator, whose setValue replaces the
+     * value of its key in the map.
+     */
+    static final class IteratorEntry<K,V>
+        extends AbstractMap.SimpleEntry<K,V> {
+        private static final long serialVersionUID = 1930436592412934532L;
+
+        private final transient BTreeMap<K,V> m;
+        private final transient Leaf leaf;
+        private final transient int index;
+
+        IteratorEntry(BTreeMap<K,V> m, Leaf leaf, int index, K key, V value) {
+            super(key, value);
+            this.m = m;
+            this.leaf = leaf;
+            this.index = index;
+        }
+
+        public V setValue(V value) {
+            K key = getKey();
+            if (index < leaf.n && leaf.keys[index] == key)
+                leaf.vals[index] = value;
+            else {
+                Pos p = m.getPos(key);
+                if (p != null)
+                    p.leaf.vals[p.index] = value;
+            }
+            return super.setValue(value);
+        }
+    }
+
+    /**
+     * A navigable set of the keys of a map, as {@link TreeMap}'s.
+     */
+    static final class KeySet<E> extends AbstractSet<E>
+        implements NavigableSet<E> {
+        private final NavigableMap<E, ?> m;
+        KeySet(NavigableMap<E,?> map) { m = map; }
+
+        public Iterator<E> iterator() {
+            if (m instanceof BTreeMap) {
+                BTreeMap<E,?> bm = (BTreeMap<E,?>) m;
+                return new KeyIterator<>(bm, bm.firstPos(), UNBOUNDED, false);
+            } else
+                return ((SubMap<E,?>) m).keyIterator(false);
+        }
+
+        public Iterator<E> descendingIterator() {
+            if (m instanceof BTreeMap) {
+                BTreeMap<E,?> bm = (BTreeMap<E,?>) m;
+                return new KeyIterator<>(bm, bm.lastPos(), UNBOUNDED, true);
+            } else
+                return ((SubMap<E,?>) m).keyIterator(true);
+        }
+
+        public int size() { return m.size(); }
+        public boolean isEmpty() { return m.isEmpty(); }
+        public boolean contains(Object o) { return m.containsKey(o); }
+        public void clear() { m.clear(); }
+        public E lower(E e) { return m.lowerKey(e); }
+        public E floor(E e) { return m.floorKey(e); }
+        public E ceiling(E e) { return m.ceilingKey(e); }
+        public E higher(E e) { return m.higherKey(e); }
+        public E first() { return m.firstKey(); }
+        public E last() { return m.lastKey(); }
+        public Comparator<? super E> comparator() { return m.comparator(); }
+        public E pollFirst() {
+            Map.Entry<E,?> e = m.pollFirstEntry();
+            return (e == null) ? null : e.getKey();
+        }
+        public E pollLast() {
+            Map.Entry<E,?> e = m.pollLastEntry();
+            return (e == null) ? null : e.getKey();
+        }
+        public boolean remove(Object o) {
+            int oldSize = size();
+            m.remove(o);
+            return size() != oldSize;
+        }
+        public NavigableSet<E> subSet(E fromElement, boolean fromInclusive,
+                                      E toElement,   boolean toInclusive) {
+            return new KeySet<>(m.subMap(fromElement, fromInclusive,
+                                         toElement,   toInclusive));
+        }
+        public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+            return new KeySet<>(m.headMap(toElement, inclusive));
+        }
+        public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+            return new KeySet<>(m.tailMap(fromElement, inclusive));
+        }
+        public SortedSet<E> subSet(E fromElement, E toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+        public SortedSet<E> headSet(E toElement) {
+            return headSet(toElement, false);
+        }
+        public SortedSet<E> tailSet(E fromElement) {
+            return tailSet(fromElement, true);
+        }
+        public NavigableSet<E> descendingSet() {
+            return new KeySet<>(m.descendingMap());
+        }
+    }
+
+    /**
+     * A view of the mappings of a map within a range of keys, in
+     * ascending or descending order.  The bounds and the navigation
+     * methods relative to them ("abs" methods) are in terms of the
+     * ascending order of the map; the public methods translate them
+     * according to the direction of the view.
+     */
+    static final class SubMap<K,V> extends AbstractMap<K,V>
+        implements NavigableMap<K,V>, java.io.Serializable {
+        private static final long serialVersionUID = -6520786458950516097L;
+
+        /**
+         * The backing map.
+         */
+        final BTreeMap<K,V> m;
+
+        /**
+         * Endpoints are represented as triples (fromStart, lo,
+         * loInclusive) and (toEnd, hi, hiInclusive).  If fromStart is
+         * true, then the low (absolute) bound is the start of the
+         * backing map, and the other values are ignored.  Otherwise,
+         * if loInclusive is true, lo is an inclusive bound, else lo
+         * is an exclusive bound.  Similarly for the upper bound.
+         */
+        final K lo, hi;
+        final boolean fromStart, toEnd;
+        final boolean loInclusive, hiInclusive;
+        final boolean descending;
+
+        SubMap(BTreeMap<K,V> m,
+               boolean fromStart, K lo, boolean loInclusive,
+               boolean toEnd,     K hi, boolean hiInclusive,
+               boolean descending) {
+            if (!fromStart && !toEnd) {
+                if (m.compare(lo, hi) > 0)
+                    throw new IllegalArgumentException("fromKey > toKey");
+            } else {
+                if (!fromStart) // type check
+                    m.compare(lo, lo);
+                if (!toEnd)
+                    m.compare(hi, hi);
+            }
+            this.m = m;
+            this.fromStart = fromStart;
+            this.lo = lo;
+            this.loInclusive = loInclusive;
+            this.toEnd = toEnd;
+            this.hi = hi;
+            this.hiInclusive = hiInclusive;
+            this.descending = descending;
+        }
+
+        // internal utilities
+
+        boolean tooLow(Object key) {
+            if (!fromStart) {
+                int c = m.compare(key, lo);
+                if (c < 0 || (c == 0 && !loInclusive))
+                    return true;
+            }
+            return false;
+        }
+
+        boolean tooHigh(Object key) {
+            if (!toEnd) {
+                int c = m.compare(key, hi);
+                if (c > 0 || (c == 0 && !hiInclusive))
+                    return true;
+            }
+            return false;
+        }
+
+        boolean inRange(Object key) {
+            return !tooLow(key) && !tooHigh(key);
+        }
+
+        boolean inClosedRange(Object key) {
+            return (fromStart || m.compare(key, lo) >= 0)
+                && (toEnd || m.compare(hi, key) >= 0);
+        }
+
+        boolean inRange(Object key, boolean inclusive) {
+            return inclusive ? inRange(key) : inClosedRange(key);
+        }
+
+        /*
+         * Absolute versions of relation operations.
+         */
+
+        Pos absLowest() {
+            Pos p = (fromStart ? m.firstPos() :
+                     (loInclusive ? m.ceilingPos(lo) : m.higherPos(lo)));
+            return (p == null || tooHigh(p.key())) ? null : p;
+        }
+
+        Pos absHighest() {
+            Pos p = (toEnd ? m.lastPos() :
+                     (hiInclusive ? m.floorPos(hi) : m.lowerPos(hi)));
+            return (p == null || tooLow(p.key())) ? null : p;
+        }
+
+        Pos absCeiling(K key) {
+            if (tooLow(key))
+                return absLowest();
+            Pos p = m.ceilingPos(key);
+            return (p == null || tooHigh(p.key())) ? null : p;
+        }
+
+        Pos absHigher(K key) {
+            if (tooLow(key))
+                return absLowest();
+            Pos p = m.higherPos(key);
+            return (p == null || tooHigh(p.key())) ? null : p;
+        }
+
+        Pos absFloor(K key) {
+            if (tooHigh(key))
+                return absHighest();
+            Pos p = m.floorPos(key);
+            return (p == null || tooLow(p.key())) ? null : p;
+        }
+
+        Pos absLower(K key) {
+            if (tooHigh(key))
+                return absHighest();
+            Pos p = m.lowerPos(key);
+            return (p == null || tooLow(p.key())) ? null : p;
+        }
+
+        /** Returns the key just above the range, or UNBOUNDED. */
+        Object absHighFence() {
+            Pos p = toEnd ? null
+                : (hiInclusive ? m.higherPos(hi) : m.ceilingPos(hi));
+            return (p == null) ? UNBOUNDED : p.key();
+        }
+
+        /** Returns the key just below the range, or UNBOUNDED. */
+        Object absLowFence() {
+            Pos p = fromStart ? null
+                : (loInclusive ? m.lowerPos(lo) : m.floorPos(lo));
+            return (p == null) ? UNBOUNDED : p.key();
+        }
+
+        // Relations in the order of this view
+
+        Pos lowest() {
+            return descending ? absHighest() : absLowest();
+        }
+
+        Pos highest() {
+            return descending ? absLowest() : absHighest();
+        }
+
+        Pos ceiling(K key) {
+            return descending ? absFloor(key) : absCeiling(key);
+        }
+
+        Pos higher(K key) {
+            return descending ? absLower(key) : absHigher(key);
+        }
+
+        Pos floor(K key) {
+            return descending ? absCeiling(key) : absFloor(key);
+        }
+
+        Pos lower(K key) {
+            return descending ? absHigher(key) : absLower(key);
+        }
+
+        Iterator<K> keyIterator(boolean reverse) {
+            boolean desc = descending ^ reverse;
+            return desc
+                ? new KeyIterator<>(m, absHighest(), absLowFence(), true)
+                : new KeyIterator<>(m, absLowest(), absHighFence(), false);
+        }
+
+        // public methods
+
+        public boolean isEmpty() {
+            return (fromStart && toEnd) ? m.isEmpty() : absLowest() == null;
+        }
+
+        public int size() {
+            if (fromStart && toEnd)
+                return m.size();
+            int n = 0;
+            for (Iterator<K> it = keyIterator(false); it.hasNext(); it.next())
+                n++;
+            return n;
+        }
+
+        public final boolean containsKey(Object key) {
+            return inRange(key) && m.containsKey(key);
+        }
+
+        public final V put(K key, V value) {
+            if (!inRange(key))
+                throw new IllegalArgumentException("key out of range");
+            return m.put(key, value);
+        }
+
+        public final V get(Object key) {
+            return !inRange(key) ? null : m.get(key);
+        }
+
+        public final V remove(Object key) {
+            return !inRange(key) ? null : m.remove(key);
+        }
+
+        public Comparator<? super K> comparator() {
+            Comparator<? super K> cmp = m.comparator();
+            if (descending)
+                return Collections.reverseOrder(cmp);
+            return cmp;
+        }
+
+        public final K firstKey() { return key(lowest()); }
+        public final K lastKey() { return key(highest()); }
+
+        public final Map.Entry<K,V> firstEntry() {
+            return m.exportEntry(lowest());
+        }
+
+        public final Map.Entry<K,V> lastEntry() {
+            return m.exportEntry(highest());
+        }
+
+        public final Map.Entry<K,V> pollFirstEntry() {
+            Map.Entry<K,V> e = m.exportEntry(lowest());
+            if (e != null)
+                m.remove(e.getKey());
+            return e;
+        }
+
+        public final Map.Entry<K,V> pollLastEntry() {
+            Map.Entry<K,V> e = m.exportEntry(highest());
+            if (e != null)
+                m.remove(e.getKey());
+            return e;
+        }
+
+        public final Map.Entry<K,V> ceilingEntry(K key) {
+            return m.exportEntry(ceiling(key));
+        }
+
+        public final K ceilingKey(K key) { return keyOrNull(ceiling(key)); }
+
+        public final Map.Entry<K,V> higherEntry(K key) {
+            return m.exportEntry(higher(key));
+        }
+
+        public final K higherKey(K key) { return keyOrNull(higher(key)); }
+
+        public final Map.Entry<K,V> floorEntry(K key) {
+            return m.exportEntry(floor(key));
+        }
+
+        public final K floorKey(K key) { return keyOrNull(floor(key)); }
+
+        public final Map.Entry<K,V> lowerEntry(K key) {
+            return m.exportEntry(lower(key));
+        }
+
+        public final K lowerKey(K key) { return keyOrNull(lower(key)); }
+
+        public NavigableMap<K,V> subMap(K fromKey, boolean fromInclusive,
+                                        K toKey,   boolean toInclusive) {
+            if (descending) {
+                K k = fromKey; fromKey = toKey; toKey = k;
+                boolean b = fromInclusive;
+                fromInclusive = toInclusive;
+                toInclusive = b;
+            }
+            if (!inRange(fromKey, fromInclusive))
+                throw new IllegalArgumentException("fromKey out of range");
+            if (!inRange(toKey, toInclusive))
+                throw new IllegalArgumentException("toKey out of range");
+            return new SubMap<>(m,
+                                false, fromKey, fromInclusive,
+                                false, toKey,   toInclusive, descending);
+        }
+
+        public NavigableMap<K,V> headMap(K toKey, boolean inclusive) {
+            if (!inRange(toKey, inclusive))
+                throw new IllegalArgumentException("toKey out of range");
+            return descending
+                ? new SubMap<>(m, false, toKey, inclusive,
+                               toEnd, hi, hiInclusive, true)
+                : new SubMap<>(m, fromStart, lo, loInclusive,
+                               false, toKey, inclusive, false);
+        }
+
+        public NavigableMap<K,V> tailMap(K fromKey, boolean inclusive) {
+            if (!inRange(fromKey, inclusive))
+                throw new IllegalArgumentException("fromKey out of range");
+            return descending
+                ? new SubMap<>(m, fromStart, lo, loInclusive,
+                               false, fromKey, inclusive, true)
+                : new SubMap<>(m, false, fromKey, inclusive,
+                               toEnd, hi, hiInclusive, false);
+        }
+
+        public final SortedMap<K,V> subMap(K fromKey, K toKey) {
+            return subMap(fromKey, true, toKey, false);
+        }
+
+        public final SortedMap<K,V> headMap(K toKey) {
+            return headMap(toKey, false);
+        }
+
+        public final SortedMap<K,V> tailMap(K fromKey) {
+            return tailMap(fromKey, true);
+        }
+
+        public NavigableMap<K,V> descendingMap() {
+            return new SubMap<>(m, fromStart, lo, loInclusive,
+                                toEnd, hi, hiInclusive, !descending);
+        }
+
+        public final Set<K> keySet() {
+            return navigableKeySet();
+        }
+
+        public final NavigableSet<K> navigableKeySet() {
+            return new KeySet<>(this);
+        }
+
+        public NavigableSet<K> descendingKeySet() {
+            return descendingMap().navigableKeySet();
+        }
+
+        public Set<Map.Entry<K,V>> entrySet() {
+            return new AbstractSet<Map.Entry<K,V>>() {
+                public Iterator<Map.Entry<K,V>> iterator() {
+                    return descending
+                        ? new EntryIterator<>(m, absHighest(),
+                                              absLowFence(), true)
+                        : new EntryIterator<>(m, absLowest(),
+                                              absHighFence(), false);
+                }
+
+                public boolean contains(Object o) {
+                    if (!(o instanceof Map.Entry))
+                        return false;
+                    Map.Entry<?,?> entry = (Map.Entry<?,?>) o;
+                    Object key = entry.getKey();
+                    if (!inRange(key))
+                        return false;
+                    Pos p = m.getPos(key);
+                    return p != null &&
+                        eq(p.leaf.vals[p.index], entry.getValue());
+                }
+
+                public boolean remove(Object o) {
+                    if (!contains(o))
+                        return false;
+                    m.remove(((Map.Entry<?,?>) o).getKey());
+                    return true;
+                }
+
+                public int size() {
+                    return SubMap.this.size();
+                }
+
+                public boolean isEmpty() {
+                    return SubMap.this.isEmpty();
+                }
+            };
+        }
+    }
+
+    // Serialization
+
+    /**
+     * Save the state of the {@code BTreeMap} instance to a stream (i.e.,
+     * serialize it).
+     *
+     * @serialData The <em>size</em> of the BTreeMap (the number of
+     *             key-value mappings) is emitted (int), followed by the
+     *             key (Object) and value (Object) for each key-value
+     *             mapping represented by the BTreeMap.  The key-value
+     *             mappings are emitted in key-order (as determined by
+     *             the BTreeMap's Comparator, or by the keys' natural
+     *             ordering if the BTreeMap has no Comparator).
+     */
+    private void writeObject(java.io.ObjectOutputStream s)
+        throws java.io.IOException {
+        // Write out the Comparator and any hidden stuff
+        s.defaultWriteObject();
+
+        // Write out size (number of Mappings)
+        s.writeInt(size);
+
+        // Write out keys and values (alternating)
+        Pos first = firstPos();
+        for (Leaf l = (first == null) ? null : first.leaf;
+             l != null; l = l.next) {
+            for (int i = 0; i < l.n; i++) {
+                s.writeObject(l.keys[i]);
+                s.writeObject(l.vals[i]);
+            }
+        }
+    }
+
+    /**
+     * Reconstitute the {@code BTreeMap} instance from a stream (i.e.,
+     * deserialize it).
+     */
+    private void readObject(final java.io.ObjectInputStream s)
+        throws java.io.IOException, ClassNotFoundException {
+        // Read in the Comparator and any hidden stuff
+        s.defaultReadObject();
+
+        // Read in size
+        int size = s.readInt();
+        if (size < 0)
+            throw new java.io.InvalidObjectException("Illegal size: " + size);
+
+        buildFromSorted(size, null, s, null);
+    }
+
+    /** Intended to be called only from BTreeSet.readObject */
+    void readBTreeSet(int size, java.io.ObjectInputStream s, V defaultVal)
+        throws java.io.IOException, ClassNotFoundException {
+        buildFromSorted(size, null, s, defaultVal);
+    }
+
+    /** Intended to be called only from BTreeSet.addAll */
+    void addAllForBTreeSet(SortedSet<? extends K> set, V defaultVal) {
+        modCount++;
+        try {
+            buildFromSorted(set.size(), set.iterator(), null, defaultVal);
+        } catch (java.io.IOException cannotHappen) {
+        } catch (ClassNotFoundException cannotHappen) {
+        }
+    }
+
+    /**
+     * Replaces the contents of this map, in linear time, by mappings
+     * read in ascending key order from an iterator or stream, as in
+     * {@code TreeMap.buildFromSorted}: if it is non-null, from its
+     * entries, or its keys mapped to defaultVal if that is non-null;
+     * otherwise from the keys and values alternating in str, or its
+     * keys mapped to defaultVal if that is non-null.
+     *
+     * @param size the number of mappings to read
+     * @param it if non-null, new entries or keys are read from it
+     * @param str if non-null, new keys and values are read from it
+     * @param defaultVal if non-null, the value of every mapping
+     */
+    @SuppressWarnings("unchecked")
+    private void buildFromSorted(int size, Iterator<?> it,
+                                 java.io.ObjectInputStream str,
+                                 V defaultVal)
+        throws java.io.IOException, ClassNotFoundException {
+        this.root = null;
+        this.height = 0;
+        this.size = 0;
+        if (size == 0)
+            return;
+
+        // Leaves, with their contents spread evenly
+        int nleaves = (size + MAX_KEYS - 1) / MAX_KEYS;
+        Node[] level = new Node[nleaves];
+        Object[] lowKeys = new Object[nleaves];
+        Leaf prev = null;
+        for (int j = 0; j < nleaves; j++) {
+            int n = size / nleaves + ((j < size % nleaves) ? 1 : 0);
+            Leaf leaf = new Leaf();
+            for (int i = 0; i < n; i++) {
+                if (it != null) {
+                    if (defaultVal == null) {
+                        Map.Entry<?,?> e = (Map.Entry<?,?>) it.next();
+                        leaf.keys[i] = e.getKey();
+                        leaf.vals[i] = e.getValue();
+                    } else {
+                        leaf.keys[i] = it.next();
+                        leaf.vals[i] = defaultVal;
+                    }
+                } else { // use stream
+                    leaf.keys[i] = str.readObject();
+                    leaf.vals[i] = (defaultVal != null)
+                        ? defaultVal : str.readObject();
+                }
+            }
+            leaf.n = n;
+            leaf.prev = prev;
+            if (prev != null)
+                prev.next = leaf;
+            prev = leaf;
+            level[j] = leaf;
+            lowKeys[j] = leaf.keys[0];
+        }
+
+        // Inner levels, each child but the first separated by its low key
+        int h = 0;
+        while (level.length > 1) {
+            int nnodes = (level.length + MAX_KEYS) / (MAX_KEYS + 1);
+            Node[] up = new Node[nnodes];
+            Object[] upLowKeys = new Object[nnodes];
+            int c = 0;
+            for (int j = 0; j < nnodes; j++) {
+                int nc = level.length / nnodes +
+                    ((j < level.length % nnodes) ? 1 : 0);
+                Inner in = new Inner();
+                upLowKeys[j] = lowKeys[c];
+                for (int i = 0; i < nc; i++, c++) {
+                    in.children[i] = level[c];
+                    if (i > 0)
+                        in.keys[i - 1] = lowKeys[c];
+                }
+                in.n = nc - 1;
+                up[j] = in;
+            }
+            level = up;
+            lowKeys = upLowKeys;
+            h++;
+        }
+        this.root = level[0];
+        this.height = h;
+        this.size = size;
+    }
+}
@@ -0,0 +1,558 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util;
+
+import static java.util.ChunkedArrayList.CHUNK_MASK;
+import static java.util.ChunkedArrayList.CHUNK_SHIFT;
+import static java.util.ChunkedArrayList.CHUNK_SIZE;
+
+/**
+ * A growable sequence of elements indexed by {@code long}, for lists
+ * too long to be held in one array or indexed by {@code int}.  Like a
+ * {@link ChunkedArrayList}, it stores its elements in chunks of 4096,
+ * so that it grows without copying its elements, but its size, and the
+ * indices of its elements, are {@code long} values, and it is limited
+ * only by the memory available.
+ *
+ * <p>Elements may be read and replaced at any index with {@link
+ * #get(long)} and {@link #set(long, Object)} in constant time, added at
+ * the end with {@link #add} or, in bulk, {@link #addAll}, and removed
+ * from the end with {@link #removeLast} or {@link #truncate}.  This
+ * class does not implement {@link List}, whose methods take and return
+ * {@code int} indices, and its iterators do not support removal.  The
+ * {@link #size} of a sequence with more than {@code Integer.MAX_VALUE}
+ * elements is {@code Integer.MAX_VALUE}; {@link #longSize} returns its
+ * actual size.  All elements, including {@code null}, are permitted.
+ *
+ * <p><strong>Note that this implementation is not synchronized.</strong>
+ * If multiple threads access a {@code BigArrayList} instance
+ * concurrently, and at least one of the threads modifies it
+ * structurally, it <i>must</i> be synchronized externally.  Its
+ * iterators are <i>fail-fast</i>, as those of {@link ArrayList} are.
+ *
+ * @param <E> the type of elements in this sequence
+ *
+ * @see     ChunkedArrayList
+ * @since   1.8
+ */
+public class BigArrayList<E> extends AbstractCollection<E>
+        implements Cloneable, java.io.Serializable
+{
+    private static final long serialVersionUID = -4937624561205638251L;
+
+    private static final Object[][] EMPTY_DIRECTORY = {};
+
+    /**
+     * The largest number of chunks, bounded by the largest directory.
+     */
+    private static final long MAX_CHUNKS = Integer.MAX_VALUE - 8;
+
+    /**
+     * The chunks holding the elements.  Element i is at index
+     * (i & CHUNK_MASK) of chunk (i >>> CHUNK_SHIFT).  The first
+     * nchunks entries are allocated chunks, and the rest are null.
+     */
+    private transient Object[][] chunks;
+
+    /** The number of allocated chunks. */
+    private transient int nchunks;
+
+    /** The number of elements. */
+    private transient long size;
+
+    /**
+     * The number of times this sequence has been structurally modified,
+     * to make its iterators fail-fast.
+     */
+    private transient int modCount;
+
+    /**
+     * Constructs an empty sequence with room for the chunks holding the
+     * specified number of elements.
+     *
+     * @param  initialCapacity  the expected capacity of the sequence
+     * @throws IllegalArgumentException if the specified initial capacity
+     *         is negative
+     */
+    public BigArrayList(long initialCapacity) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal Capacity: "+
+                                               initialCapacity);
+        long n = chunksFor(initialCapacity);
+        if (n > MAX_CHUNKS)
+            throw new OutOfMemoryError();
+        this.chunks = (n == 0) ? EMPTY_DIRECTORY : new Object[(int) n][];
+    }
+
+    /**
+     * Constructs an empty sequence.
+     */
+    public BigArrayList() {
+        this.chunks = EMPTY_DIRECTORY;
+    }
+
+    /**
+     * Constructs a sequence containing the elements of the specified
+     * collection, in the order they are returned by the collection's
+     * iterator.
+     *
+     * @param c the collection whose elements are to be placed into this
+     *          sequence
+     * @throws NullPointerException if the specified collection is null
+     */
+    public BigArrayList(Collection<? extends E> c) {
+        this();
+        addAll(c);
+    }
+
+    /** Returns the number of chunks holding n elements. */
+    private static long chunksFor(long n) {
+        return (n + CHUNK_MASK) >>> CHUNK_SHIFT;
+    }
+
+    /**
+     * Returns the number of elements in this sequence.
+     *
+     * @return the number of elements in this sequence
+     */
+    public long longSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of elements in this sequence, or
+     * {@code Integer.MAX_VALUE} if it has more elements.
+     *
+     * @return the number of elements in this sequence, up to
+     *         {@code Integer.MAX_VALUE}
+     */
+    public int size() {
+        return (size > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) size;
+    }
+
+    /**
+     * Returns {@code true} if this sequence contains no elements.
+     *
+     * @return {@code true} if this sequence contains no elements
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Trims the capacity of this sequence to the chunks holding its
+     * elements, and its directory of chunks to their number.
+     */
+    public void trimToSize() {
+        modCount++;
+        releaseChunks((int) chunksFor(size));
+        if (nchunks < chunks.length)
+            chunks = (nchunks == 0) ? EMPTY_DIRECTORY
+                : Arrays.copyOf(chunks, nchunks);
+    }
+
+    /**
+     * Increases the capacity of this sequence, if necessary, to ensure
+     * that it can hold at least the number of elements specified by
+     * the minimum capacity argument.
+     *
+     * @param   minCapacity   the desired minimum capacity
+     */
+    public void ensureCapacity(long minCapacity) {
+        if (minCapacity > 0)
+            ensureCapacityInternal(minCapacity);
+    }
+
+    private void ensureCapacityInternal(long minCapacity) {
+        modCount++;
+        long n = chunksFor(minCapacity);
+        if (n > MAX_CHUNKS || minCapacity < 0)
+            throw new OutOfMemoryError();
+        if (n > nchunks) {
+            if (n > chunks.length) {
+                // Grow the directory by half, as ArrayList grows
+                long newLength = chunks.length + (chunks.length >> 1);
+                chunks = Arrays.copyOf(chunks, (int) Math.min(
+                    Math.max(newLength, n), MAX_CHUNKS));
+            }
+            for (int i = nchunks; i < n; i++)
+                chunks[i] = new Object[CHUNK_SIZE];
+            nchunks = (int) n;
+        }
+    }
+
+    /**
+     * Releases the chunks beyond the first n.
+     */
+    private void releaseChunks(int n) {
+        if (n < nchunks) {
+            Arrays.fill(chunks, n, nchunks, null);
+            nchunks = n;
+        }
+    }
+
+    private void rangeCheck(long index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(index));
+    }
+
+    private String outOfBoundsMsg(long index) {
+        return "Index: "+index+", Size: "+size;
+    }
+
+    @SuppressWarnings("unchecked")
+    E elementData(long index) {
+        return (E) chunks[(int) (index >>> CHUNK_SHIFT)]
+            [(int) index & CHUNK_MASK];
+    }
+
+    /**
+     * Returns the element at the specified position in this sequence.
+     *
+     * @param  index index of the element to return
+     * @return the element at the specified position in this sequence
+     * @throws IndexOutOfBoundsException if the index is out of range
+     *         ({@code index < 0 || index >= longSize()})
+     */
+    public E get(long index) {
+        rangeCheck(index);
+
+        return elementData(index);
+    }
+
+    /**
+     * Replaces the element at the specified position in this sequence
+     * with the specified element.
+     *
+     * @param index index of the element to replace
+     * @param element element to be stored at the specified position
+     * @return the element previously at the specified position
+     * @throws IndexOutOfBoundsException if the index is out of range
+     *         ({@code index < 0 || index >= longSize()})
+     */
+    public E set(long index, E element) {
+        rangeCheck(index);
+
+        Object[] chunk = chunks[(int) (index >>> CHUNK_SHIFT)];
+        @SuppressWarnings("unchecked")
+        E oldValue = (E) chunk[(int) index & CHUNK_MASK];
+        chunk[(int) index & CHUNK_MASK] = element;
+        return oldValue;
+    }
+
+    /**
+     * Appends the specified element to the end of this sequence.
+     *
+     * @param e element to be appended to this sequence
+     * @return {@code true} (as specified by {@link Collection#add})
+     */
+    public boolean add(E e) {
+        long s = size;
+        if (((int) s & CHUNK_MASK) == 0 && (s >>> CHUNK_SHIFT) == nchunks)
+            ensureCapacityInternal(s + 1);  // Increments modCount!!
+        else
+            modCount++;
+        chunks[(int) (s >>> CHUNK_SHIFT)][(int) s & CHUNK_MASK] = e;
+        size = s + 1;
+        return true;
+    }
+
+    /**
+     * Appends all of the elements in the specified collection to the
+     * end of this sequence, in the order that they are returned by the
+     * specified collection's iterator.  The elements of another
+     * {@code BigArrayList} are copied a chunk at a time.
+     *
+     * @param c collection containing elements to be added to this
+     *          sequence
+     * @return {@code true} if this sequence changed as a result of the
+     *         call
+     * @throws NullPointerException if the specified collection is null
+     */
+    public boolean addAll(Collection<? extends E> c) {
+        if (c instanceof BigArrayList) {
+            BigArrayList<?> l = (BigArrayList<?>) c;
+            long numNew = l.size;
+            Object[][] src = l.chunks;  // chunks stay put if c == this
+            ensureCapacityInternal(size + numNew);  // Increments modCount
+            long n = numNew;
+            for (int i = 0; n > 0; i++) {
+                int len = (int) Math.min(n, CHUNK_SIZE);
+                copyIn(src[i], 0, len);
+                n -= len;
+            }
+            return numNew != 0;
+        }
+        Object[] a = c.toArray();
+        ensureCapacityInternal(size + a.length);  // Increments modCount
+        for (int off = 0; off < a.length; off += CHUNK_SIZE)
+            copyIn(a, off, Math.min(a.length - off, CHUNK_SIZE));
+        return a.length != 0;
+    }
+
+    /**
+     * Appends len elements of a from index off, a chunk or fewer, to
+     * the end of this sequence, whose capacity has been ensured.
+     */
+    private void copyIn(Object[] a, int off, int len) {
+        long s = size;
+        int c = (int) (s >>> CHUNK_SHIFT);
+        int d = (int) s & CHUNK_MASK;
+        int n = Math.min(len, CHUNK_SIZE - d);
+        System.arraycopy(a, off, chunks[c], d, n);
+        if (n < len)
+            System.arraycopy(a, off + n, chunks[c + 1], 0, len - n);
+        size = s + len;
+    }
+
+    /**
+     * Removes and returns the last element of this sequence.
+     *
+     * @return the element that was removed
+     * @throws NoSuchElementException if this sequence is empty
+     */
+    public E removeLast() {
+        if (size == 0)
+            throw new NoSuchElementException();
+        E oldValue = elementData(size - 1);
+        truncate(size - 1);
+        return oldValue;
+    }
+
+    /**
+     * Removes the elements from the specified index to the end of this
+     * sequence, so that its size becomes {@code newSize}, and releases
+     * the chunks that held them, except one.
+     *
+     * @param newSize the new size of this sequence
+     * @throws IndexOutOfBoundsException if {@code newSize} is negative
+     *         or greater than the size of this sequence
+     */
+    public void truncate(long newSize) {
+        if (newSize < 0 || newSize > size)
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(newSize));
+        modCount++;
+        for (long i = newSize; i < size; ) {
+            int o = (int) i & CHUNK_MASK;
+            int n = (int) Math.min(size - i, CHUNK_SIZE - o);
+            Arrays.fill(chunks[(int) (i >>> CHUNK_SHIFT)], o, o + n, null);
+            i += n;
+        }
+        size = newSize;
+        int keep = (int) chunksFor(newSize) + 1;
+        if (keep < nchunks)
+            releaseChunks(keep);
+    }
+
+    /**
+     * Removes all of the elements from this sequence, and releases the
+     * chunks that held them.
+     */
+    public void clear() {
+        modCount++;
+        releaseChunks(0);
+        size = 0;
+    }
+
+    /**
+     * Returns the index of the first occurrence of the specified element
+     * in this sequence, or -1 if it does not contain the element.
+     *
+     * @param o element to search for
+     * @return the index of the first occurrence of the element, or -1
+     */
+    public long indexOf(Object o) {
+        for (int c = 0; ((long) c << CHUNK_SHIFT) < size; c++) {
+            long base = (long) c << CHUNK_SHIFT;
+            Object[] chunk = chunks[c];
+            int n = (int) Math.min(size - base, CHUNK_SIZE);
+            if (o == null) {
+                for (int i = 0; i < n; i++)
+                    if (chunk[i] == null)
+                        return base + i;
+            } else {
+                for (int i = 0; i < n; i++)
+                    if (o.equals(chunk[i]))
+                        return base + i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns {@code true} if this sequence contains the specified
+     * element.
+     *
+     * @param o element whose presence in this sequence is to be tested
+     * @return {@code true} if this sequence contains the element
+     */
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    /**
+     * Returns an array containing all of the elements in this sequence
+     * in proper sequence.
+     *
+     * @return an array containing all of the elements in this sequence
+     * @throws OutOfMemoryError if this sequence has too many elements to
+     *         be held in an array
+     */
+    public Object[] toArray() {
+        return toArray(new Object[0]);
+    }
+
+    /**
+     * Returns an array containing all of the elements in this sequence
+     * in proper sequence; the runtime type of the returned array is that
+     * of the specified array, as described in
+     * {@link Collection#toArray(Object[])}.
+     *
+     * @param a the array into which the elements of the sequence are to
+     *          be stored, if it is big enough; otherwise, a new array of
+     *          the same runtime type is allocated for this purpose.
+     * @return an array containing the elements of the sequence
+     * @throws ArrayStoreException if the runtime type of the specified
+     *         array is not a supertype of the runtime type of every
+     *         element in this sequence
+     * @throws NullPointerException if the specified array is null
+     * @throws OutOfMemoryError if this sequence has too many elements to
+     *         be held in an array
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a) {
+        if (size > Integer.MAX_VALUE - 8)
+            throw new OutOfMemoryError("Required array size too large");
+        int n = (int) size;
+        if (a.length < n)
+            a = (T[]) java.lang.reflect.Array.newInstance(
+                a.getClass().getComponentType(), n);
+        for (int off = 0, c = 0; off < n; off += CHUNK_SIZE, c++)
+            System.arraycopy(chunks[c], 0, a, off,
+                             Math.min(n - off, CHUNK_SIZE));
+        if (a.length > n)
+            a[n] = null;
+        return a;
+    }
+
+    /**
+     * Returns an iterator over the elements in this sequence in proper
+     * sequence.  The iterator does not support removal.
+     *
+     * @return an iterator over the elements in this sequence
+     */
+    public Iterator<E> iterator() {
+        return new Itr();
+    }
+
+    private class Itr implements Iterator<E> {
+        long cursor;       // index of next element to return
+        int expectedModCount = modCount;
+
+        public boolean hasNext() {
+            return cursor != size;
+        }
+
+        public E next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            long i = cursor;
+            if (i >= size)
+                throw new NoSuchElementException();
+            cursor = i + 1;
+            return elementData(i);
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Returns a shallow copy of this {@code BigArrayList} instance.
+     * (The elements themselves are not copied.)
+     *
+     * @return a clone of this {@code BigArrayList} instance
+     */
+    public Object clone() {
+        try {
+            @SuppressWarnings("unchecked")
+            BigArrayList<E> v = (BigArrayList<E>) super.clone();
+            int n = (int) chunksFor(size);
+            v.chunks = (n == 0) ? EMPTY_DIRECTORY : new Object[n][];
+            for (int i = 0; i < n; i++)
+                v.chunks[i] = chunks[i].clone();
+            v.nchunks = n;
+            v.modCount = 0;
+            return v;
+        } catch (CloneNotSupportedException e) {
+            // this shouldn't happen, since we are Cloneable
+            throw new InternalError();
+        }
+    }
+
+    /**
+     * Save the state of the {@code BigArrayList} instance to a stream
+     * (that is, serialize it).
+     *
+     * @serialData The number of elements is emitted (long), followed by
+     *             all of its elements (each an {@code Object}) in the
+     *             proper order.
+     */
+    private void writeObject(java.io.ObjectOutputStream s)
+        throws java.io.IOException{
+        int expectedModCount = modCount;
+        s.defaultWriteObject();
+
+        s.writeLong(size);
+        for (long i=0; i<size; i++) {
+            s.writeObject(elementData(i));
+        }
+
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * Reconstitute the {@code BigArrayList} instance from a stream
+     * (that is, deserialize it).
+     */
+    private void readObject(java.io.ObjectInputStream s)
+        throws java.io.IOException, ClassNotFoundException {
+        chunks = EMPTY_DIRECTORY;
+        s.defaultReadObject();
+
+        long n = s.readLong();
+        if (n < 0)
+            throw new java.io.InvalidObjectException("Illegal size: " + n);
+        for (long i=0; i<n; i++) {
+            @SuppressWarnings("unchecked")
+            E e = (E) s.readObject();
+            add(e);
+        }
+    }
+}
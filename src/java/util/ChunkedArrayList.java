@@ -0,0 +1,672 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util;
+
+/**
+ * Resizable-array implementation of the {@code List} interface that
+ * stores its elements in fixed-size chunks rather than in one array.
+ * It implements all optional list operations, and permits all
+ * elements, including {@code null}, as {@link ArrayList} does.
+ *
+ * <p>An {@code ArrayList} grows by copying all of its elements into an
+ * array half as large again, so that building a very large list holds
+ * both arrays at once and pauses for each copy.  This list instead adds
+ * chunks of 4096 elements as it grows, and keeps them in a directory
+ * array, which is the only thing copied when the list grows.  Adding an
+ * element at the end of the list therefore takes constant time without
+ * copying elements, its capacity never exceeds its size by more than a
+ * chunk, and it may hold up to {@code Integer.MAX_VALUE} elements.
+ * {@link #addAll(Collection) addAll} copies elements into the chunks
+ * in bulk, directly from the chunks of the collection if it is another
+ * {@code ChunkedArrayList}.  For lists longer than that, see
+ * {@link BigArrayList}.
+ *
+ * <p>The {@code size}, {@code isEmpty}, {@code get}, {@code set},
+ * {@code iterator}, and {@code listIterator} operations run in constant
+ * time; reading an element costs one more array access than it does in
+ * an {@code ArrayList}.  Adding or removing an element elsewhere than at
+ * the end moves the following elements, as in {@code ArrayList}.
+ * Removing elements from the end of the list keeps one chunk beyond
+ * those in use, and releases any others; {@link #clear} releases all.
+ *
+ * <p><strong>Note that this implementation is not synchronized.</strong>
+ * If multiple threads access a {@code ChunkedArrayList} instance
+ * concurrently, and at least one of the threads modifies the list
+ * structurally, it <i>must</i> be synchronized externally.  Its
+ * iterators are <i>fail-fast</i>, as those of {@code ArrayList} are.
+ *
+ * @param <E> the type of elements in this list
+ *
+ * @see     ArrayList
+ * @see     BigArrayList
+ * @since   1.8
+ */
+public class ChunkedArrayList<E> extends AbstractList<E>
+        implements List<E>, RandomAccess, Cloneable, java.io.Serializable
+{
+    private static final long serialVersionUID = 2730712146541264283L;
+
+    static final int CHUNK_SHIFT = 12;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private static final Object[][] EMPTY_DIRECTORY = {};
+
+    /**
+     * The chunks holding the elements.  Element i is at index
+     * (i & CHUNK_MASK) of chunk (i >>> CHUNK_SHIFT).  The first
+     * nchunks entries are allocated chunks, and the rest are null.
+     */
+    private transient Object[][] chunks;
+
+    /** The number of allocated chunks. */
+    private transient int nchunks;
+
+    /**
+     * The size of the ChunkedArrayList (the number of elements it
+     * contains).
+     *
+     * @serial
+     */
+    private int size;
+
+    /**
+     * Constructs an empty list with room for the chunks holding the
+     * specified number of elements.
+     *
+     * @param  initialCapacity  the expected capacity of the list
+     * @throws IllegalArgumentException if the specified initial capacity
+     *         is negative
+     */
+    public ChunkedArrayList(int initialCapacity) {
+        super();
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal Capacity: "+
+                                               initialCapacity);
+        int n = chunksFor(initialCapacity);
+        this.chunks = (n == 0) ? EMPTY_DIRECTORY : new Object[n][];
+    }
+
+    /**
+     * Constructs an empty list.
+     */
+    public ChunkedArrayList() {
+        super();
+        this.chunks = EMPTY_DIRECTORY;
+    }
+
+    /**
+     * Constructs a list containing the elements of the specified
+     * collection, in the order they are returned by the collection's
+     * iterator.
+     *
+     * @param c the collection whose elements are to be placed into this list
+     * @throws NullPointerException if the specified collection is null
+     */
+    public ChunkedArrayList(Collection<? extends E> c) {
+        this();
+        addAll(c);
+    }
+
+    /** Returns the number of chunks holding n elements. */
+    private static int chunksFor(int n) {
+        return (int) (((long) n + CHUNK_MASK) >>> CHUNK_SHIFT);
+    }
+
+    /**
+     * Trims the capacity of this list to the chunks holding its
+     * elements, and its directory of chunks to their number.
+     */
+    public void trimToSize() {
+        modCount++;
+        releaseChunks(chunksFor(size));
+        if (nchunks < chunks.length)
+            chunks = (nchunks == 0) ? EMPTY_DIRECTORY
+                : Arrays.copyOf(chunks, nchunks);
+    }
+
+    /**
+     * Increases the capacity of this list, if necessary, to ensure
+     * that it can hold at least the number of elements specified by
+     * the minimum capacity argument.
+     *
+     * @param   minCapacity   the desired minimum capacity
+     */
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > 0)
+            ensureCapacityInternal(minCapacity);
+    }
+
+    private void ensureCapacityInternal(int minCapacity) {
+        modCount++;
+        if (minCapacity < 0) // overflow
+            throw new OutOfMemoryError();
+        int n = chunksFor(minCapacity);
+        if (n > nchunks) {
+            if (n > chunks.length) {
+                // Grow the directory by half, as ArrayList grows
+                int newLength = chunks.length + (chunks.length >> 1);
+                chunks = Arrays.copyOf(chunks, Math.max(newLength, n));
+            }
+            for (int i = nchunks; i < n; i++)
+                chunks[i] = new Object[CHUNK_SIZE];
+            nchunks = n;
+        }
+    }
+
+    /**
+     * Releases the chunks beyond the first n.
+     */
+    private void releaseChunks(int n) {
+        if (n < nchunks) {
+            Arrays.fill(chunks, n, nchunks, null);
+            nchunks = n;
+        }
+    }
+
+    /**
+     * Moves len elements from index src to index dst, which may
+     * overlap, in chunk-sized copies.
+     */
+    private void moveRange(int src, int dst, int len) {
+        Object[][] cs = chunks;
+        if (dst < src) {
+            while (len > 0) {
+                int so = src & CHUNK_MASK, d = dst & CHUNK_MASK;
+                int n = Math.min(len, CHUNK_SIZE - Math.max(so, d));
+                System.arraycopy(cs[src >>> CHUNK_SHIFT], so,
+                                 cs[dst >>> CHUNK_SHIFT], d, n);
+                src += n;
+                dst += n;
+                len -= n;
+            }
+        } else if (dst > src) {
+            int se = src + len, de = dst + len;  // exclusive ends
+            while (len > 0) {
+                int so = ((se - 1) & CHUNK_MASK) + 1;
+                int d = ((de - 1) & CHUNK_MASK) + 1;
+                int n = Math.min(len, Math.min(so, d));
+                System.arraycopy(cs[(se - 1) >>> CHUNK_SHIFT], so - n,
+                                 cs[(de - 1) >>> CHUNK_SHIFT], d - n, n);
+                se -= n;
+                de -= n;
+                len -= n;
+            }
+        }
+    }
+
+    /**
+     * Copies len elements of a from index off to this list from
+     * index dst.
+     */
+    private void copyIn(Object[] a, int off, int dst, int len) {
+        while (len > 0) {
+            int d = dst & CHUNK_MASK;
+            int n = Math.min(len, CHUNK_SIZE - d);
+            System.arraycopy(a, off, chunks[dst >>> CHUNK_SHIFT], d, n);
+            off += n;
+            dst += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Copies len elements of this list from index src to a from
+     * index off.
+     */
+    private void copyOut(int src, Object[] a, int off, int len) {
+        while (len > 0) {
+            int so = src & CHUNK_MASK;
+            int n = Math.min(len, CHUNK_SIZE - so);
+            System.arraycopy(chunks[src >>> CHUNK_SHIFT], so, a, off, n);
+            src += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Copies the first n elements of l to this list from index dst.
+     */
+    private void copyIn(ChunkedArrayList<?> l, int dst, int n) {
+        for (int i = 0; n > 0; i++) {
+            int len = Math.min(n, CHUNK_SIZE);
+            copyIn(l.chunks[i], 0, dst, len);
+            dst += len;
+            n -= len;
+        }
+    }
+
+    /**
+     * Clears the elements from index newSize to the end of the list,
+     * and releases the chunks no longer needed, keeping one spare.
+     */
+    private void shrinkTo(int newSize) {
+        for (int i = newSize; i < size; ) {
+            int o = i & CHUNK_MASK;
+            int n = Math.min(size - i, CHUNK_SIZE - o);
+            Arrays.fill(chunks[i >>> CHUNK_SHIFT], o, o + n, null);
+            i += n;
+        }
+        size = newSize;
+        int keep = chunksFor(newSize) + 1;
+        if (keep < nchunks)
+            releaseChunks(keep);
+    }
+
+    /**
+     * Returns the number of elements in this list.
+     *
+     * @return the number of elements in this list
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns {@code true} if this list contains no elements.
+     *
+     * @return {@code true} if this list contains no elements
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns {@code true} if this list contains the specified element.
+     *
+     * @param o element whose presence in this list is to be tested
+     * @return {@code true} if this list contains the specified element
+     */
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    /**
+     * Returns the index of the first occurrence of the specified element
+     * in this list, or -1 if this list does not contain the element.
+     */
+    public int indexOf(Object o) {
+        for (int c = 0, base = 0; base < size; c++, base += CHUNK_SIZE) {
+            Object[] chunk = chunks[c];
+            int n = Math.min(size - base, CHUNK_SIZE);
+            if (o == null) {
+                for (int i = 0; i < n; i++)
+                    if (chunk[i] == null)
+                        return base + i;
+            } else {
+                for (int i = 0; i < n; i++)
+                    if (o.equals(chunk[i]))
+                        return base + i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the last occurrence of the specified element
+     * in this list, or -1 if this list does not contain the element.
+     */
+    public int lastIndexOf(Object o) {
+        for (int c = chunksFor(size) - 1; c >= 0; c--) {
+            Object[] chunk = chunks[c];
+            int base = c << CHUNK_SHIFT;
+            int n = Math.min(size - base, CHUNK_SIZE);
+            if (o == null) {
+                for (int i = n - 1; i >= 0; i--)
+                    if (chunk[i] == null)
+                        return base + i;
+            } else {
+                for (int i = n - 1; i >= 0; i--)
+                    if (o.equals(chunk[i]))
+                        return base + i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a shallow copy of this {@code ChunkedArrayList} instance.
+     * (The elements themselves are not copied.)
+     *
+     * @return a clone of this {@code ChunkedArrayList} instance
+     */
+    public Object clone() {
+        try {
+            @SuppressWarnings("unchecked")
+            ChunkedArrayList<E> v = (ChunkedArrayList<E>) super.clone();
+            int n = chunksFor(size);
+            v.chunks = (n == 0) ? EMPTY_DIRECTORY : new Object[n][];
+            for (int i = 0; i < n; i++)
+                v.chunks[i] = chunks[i].clone();
+            v.nchunks = n;
+            v.modCount = 0;
+            return v;
+        } catch (CloneNotSupportedException e) {
+            // this shouldn't happen, since we are Cloneable
+            throw new InternalError();
+        }
+    }
+
+    /**
+     * Returns an array containing all of the elements in this list
+     * in proper sequence (from first to last element).
+     *
+     * @return an array containing all of the elements in this list in
+     *         proper sequence
+     */
+    public Object[] toArray() {
+        Object[] a = new Object[size];
+        copyOut(0, a, 0, size);
+        return a;
+    }
+
+    /**
+     * Returns an array containing all of the elements in this list in
+     * proper sequence (from first to last element); the runtime type of
+     * the returned array is that of the specified array, as described
+     * in {@link ArrayList#toArray(Object[])}.
+     *
+     * @param a the array into which the elements of the list are to
+     *          be stored, if it is big enough; otherwise, a new array of the
+     *          same runtime type is allocated for this purpose.
+     * @return an array containing the elements of the list
+     * @throws ArrayStoreException if the runtime type of the specified array
+     *         is not a supertype of the runtime type of every element in
+     *         this list
+     * @throws NullPointerException if the specified array is null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a) {
+        if (a.length < size)
+            a = (T[]) java.lang.reflect.Array.newInstance(
+                a.getClass().getComponentType(), size);
+        copyOut(0, a, 0, size);
+        if (a.length > size)
+            a[size] = null;
+        return a;
+    }
+
+    // Positional Access Operations
+
+    @SuppressWarnings("unchecked")
+    E elementData(int index) {
+        return (E) chunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    /**
+     * Returns the element at the specified position in this list.
+     *
+     * @param  index index of the element to return
+     * @return the element at the specified position in this list
+     * @throws IndexOutOfBoundsException {@inheritDoc}
+     */
+    public E get(int index) {
+        rangeCheck(index);
+
+        return elementData(index);
+    }
+
+    /**
+     * Replaces the element at the specified position in this list with
+     * the specified element.
+     *
+     * @param index index of the element to replace
+     * @param element element to be stored at the specified position
+     * @return the element previously at the specified position
+     * @throws IndexOutOfBoundsException {@inheritDoc}
+     */
+    public E set(int index, E element) {
+        rangeCheck(index);
+
+        Object[] chunk = chunks[index >>> CHUNK_SHIFT];
+        @SuppressWarnings("unchecked")
+        E oldValue = (E) chunk[index & CHUNK_MASK];
+        chunk[index & CHUNK_MASK] = element;
+        return oldValue;
+    }
+
+    /**
+     * Appends the specified element to the end of this list.
+     *
+     * @param e element to be appended to this list
+     * @return {@code true} (as specified by {@link Collection#add})
+     */
+    public boolean add(E e) {
+        int s = size;
+        if (s == Integer.MAX_VALUE)
+            throw new OutOfMemoryError();
+        if ((s & CHUNK_MASK) == 0 && (s >>> CHUNK_SHIFT) == nchunks)
+            ensureCapacityInternal(s + 1);  // Increments modCount!!
+        else
+            modCount++;
+        chunks[s >>> CHUNK_SHIFT][s & CHUNK_MASK] = e;
+        size = s + 1;
+        return true;
+    }
+
+    /**
+     * Inserts the specified element at the specified position in this
+     * list. Shifts the element currently at that position (if any) and
+     * any subsequent elements to the right (adds one to their indices).
+     *
+     * @param index index at which the specified element is to be inserted
+     * @param element element to be inserted
+     * @throws IndexOutOfBoundsException {@inheritDoc}
+     */
+    public void add(int index, E element) {
+        rangeCheckForAdd(index);
+
+        ensureCapacityInternal(size + 1);  // Increments modCount!!
+        moveRange(index, index + 1, size - index);
+        chunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK] = element;
+        size++;
+    }
+
+    /**
+     * Removes the element at the specified position in this list.
+     * Shifts any subsequent elements to the left (subtracts one from their
+     * indices).
+     *
+     * @param index the index of the element to be removed
+     * @return the element that was removed from the list
+     * @throws IndexOutOfBoundsException {@inheritDoc}
+     */
+    public E remove(int index) {
+        rangeCheck(index);
+
+        modCount++;
+        E oldValue = elementData(index);
+        moveRange(index + 1, index, size - index - 1);
+        shrinkTo(size - 1);
+        return oldValue;
+    }
+
+    /**
+     * Removes the first occurrence of the specified element from this
+     * list, if it is present.
+     *
+     * @param o element to be removed from this list, if present
+     * @return {@code true} if this list contained the specified element
+     */
+    public boolean remove(Object o) {
+        int index = indexOf(o);
+        if (index < 0)
+            return false;
+        remove(index);
+        return true;
+    }
+
+    /**
+     * Removes all of the elements from this list, and releases the
+     * chunks that held them.  The list will be empty after this call
+     * returns.
+     */
+    public void clear() {
+        modCount++;
+        releaseChunks(0);
+        size = 0;
+    }
+
+    /**
+     * Appends all of the elements in the specified collection to the end of
+     * this list, in the order that they are returned by the
+     * specified collection's Iterator.  The behavior of this operation is
+     * undefined if the specified collection is modified while the operation
+     * is in progress.
+     *
+     * @param c collection containing elements to be added to this list
+     * @return {@code true} if this list changed as a result of the call
+     * @throws NullPointerException if the specified collection is null
+     */
+    public boolean addAll(Collection<? extends E> c) {
+        return addAll(size, c);
+    }
+
+    /**
+     * Inserts all of the elements in the specified collection into this
+     * list, starting at the specified position.  Shifts the element
+     * currently at that position (if any) and any subsequent elements to
+     * the right (increases their indices).  The new elements will appear
+     * in the list in the order that they are returned by the
+     * specified collection's iterator.
+     *
+     * @param index index at which to insert the first element from the
+     *              specified collection
+     * @param c collection containing elements to be added to this list
+     * @return {@code true} if this list changed as a result of the call
+     * @throws IndexOutOfBoundsException {@inheritDoc}
+     * @throws NullPointerException if the specified collection is null
+     */
+    public boolean addAll(int index, Collection<? extends E> c) {
+        rangeCheckForAdd(index);
+
+        // Copy directly from the chunks of another list of this class
+        Object[] a = null;
+        int numNew;
+        if (c instanceof ChunkedArrayList && c != this) {
+            numNew = c.size();
+        } else {
+            a = c.toArray();
+            numNew = a.length;
+        }
+        ensureCapacityInternal(size + numNew);  // Increments modCount
+        moveRange(index, index + numNew, size - index);
+        if (a != null)
+            copyIn(a, 0, index, numNew);
+        else
+            copyIn((ChunkedArrayList<?>) c, index, numNew);
+        size += numNew;
+        return numNew != 0;
+    }
+
+    /**
+     * Removes from this list all of the elements whose index is between
+     * {@code fromIndex}, inclusive, and {@code toIndex}, exclusive.
+     * Shifts any succeeding elements to the left (reduces their index).
+     *
+     * @throws IndexOutOfBoundsException if {@code fromIndex} or
+     *         {@code toIndex} is out of range
+     *         ({@code fromIndex < 0 ||
+     *          fromIndex >= size() ||
+     *          toIndex > size() ||
+     *          toIndex < fromIndex})
+     */
+    protected void removeRange(int fromIndex, int toIndex) {
+        modCount++;
+        moveRange(toIndex, fromIndex, size - toIndex);
+        shrinkTo(size - (toIndex - fromIndex));
+    }
+
+    /**
+     * Checks if the given index is in range.  If not, throws an appropriate
+     * runtime exception.
+     */
+    private void rangeCheck(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(index));
+    }
+
+    /**
+     * A version of rangeCheck used by add and addAll.
+     */
+    private void rangeCheckForAdd(int index) {
+        if (index > size || index < 0)
+            throw new IndexOutOfBoundsException(outOfBoundsMsg(index));
+    }
+
+    private String outOfBoundsMsg(int index) {
+        return "Index: "+index+", Size: "+size;
+    }
+
+    /**
+     * Save the state of the {@code ChunkedArrayList} instance to a
+     * stream (that is, serialize it).
+     *
+     * @serialData The length of the list is emitted (int), followed by
+     *             all of its elements (each an {@code Object}) in the
+     *             proper order.
+     */
+    private void writeObject(java.io.ObjectOutputStream s)
+        throws java.io.IOException{
+        // Write out element count, and any hidden stuff
+        int expectedModCount = modCount;
+        s.defaultWriteObject();
+
+        // Write out all elements in the proper order.
+        for (int i=0; i<size; i++) {
+            s.writeObject(elementData(i));
+        }
+
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * Reconstitute the {@code ChunkedArrayList} instance from a stream
+     * (that is, deserialize it).
+     */
+    private void readObject(java.io.ObjectInputStream s)
+        throws java.io.IOException, ClassNotFoundException {
+        chunks = EMPTY_DIRECTORY;
+        nchunks = 0;
+
+        // Read in size, and any hidden stuff
+        s.defaultReadObject();
+        int n = size;
+        if (n < 0)
+            throw new java.io.InvalidObjectException("Illegal size: " + n);
+        size = 0;
+
+        // Read in all elements in the proper order, a chunk at a time
+        for (int i=0; i<n; i++) {
+            @SuppressWarnings("unchecked")
+            E e = (E) s.readObject();
+            add(e);
+        }
+    }
+}
@@ -140,6 +140,10 @@ public class Collections {
      * from the corresponding position in the array.  This avoids the
      * n<sup>2</sup> log(n) performance that would result from attempting
      * to sort a linked list in place.
+     * Instances of {@link ArrayList}, {@link Vector} and
+     * {@link java.util.concurrent.CopyOnWriteArrayList} are instead sorted
+     * by their own {@code sort} methods, which sort the backing array
+     * without this copy.
      *
      * @param  list the list to be sorted.
      * @throws ClassCastException if the list contains elements that are not
@@ -151,6 +155,8 @@ public class Collections {
      *         found to violate the {@link Comparable} contract
      */
     public static <T extends Comparable<? super T>> void sort(List<T> list) {
+        if (sortInPlace(list, null))
+            return;
         Object[] a = list.toArray();
         Arrays.sort(a);
         ListIterator<T> i = list.listIterator();
@@ -200,6 +206,10 @@ public class Collections {
      * from the corresponding position in the array.  This avoids the
      * n<sup>2</sup> log(n) performance that would result from attempting
      * to sort a linked list in place.
+     * Instances of {@link ArrayList}, {@link Vector} and
+     * {@link java.util.concurrent.CopyOnWriteArrayList} are instead sorted
+     * by their own {@code sort} methods, which sort the backing array
+     * without this copy.
      *
      * @param  list the list to be sorted.
      * @param  c the comparator to determine the order of the list.  A
@@ -213,6 +223,8 @@ public class Collections {
      *         found to violate the {@link Comparator} contract
      */
     public static <T> void sort(List<T> list, Comparator<? super T> c) {
+        if (sortInPlace(list, c))
+            return;
         Object[] a = list.toArray();
         Arrays.sort(a, (Comparator)c);
         ListIterator i = list.listIterator();
@@ -222,6 +234,24 @@ public class Collections {
         }
     }
 
+    /**
+     * Sorts the list with its own sort method, if it is one of the lists
+     * that can sort their backing array without the copy and write-back
+     * done by the sort methods above.  Returns false if it is not.
+     */
+    private static <T> boolean sortInPlace(List<T> list,
+                                           Comparator<? super T> c) {
+        if (list instanceof ArrayList)
+            ((ArrayList<T>) list).sort(c);
+        else if (list instanceof Vector)
+            ((Vector<T>) list).sort(c);
+        else if (list instanceof java.util.concurrent.CopyOnWriteArrayList)
+            ((java.util.concurrent.CopyOnWriteArrayList<T>) list).sort(c);
+        else
+            return false;
+        return true;
+    }
+
 
     /**
      * Searches the specified list for the specified object using the binary
@@ -0,0 +1,1972 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * A set of bits indexed by nonnegative integers, like {@link BitSet},
+ * that is stored in compressed form.  The index space is divided into
+ * chunks of 2<sup>16</sup> bits, and only chunks containing set bits
+ * are stored, each in whichever of three representations is smallest:
+ * a sorted array of the indices of its set bits, when there are at most
+ * 4096 of them; a plain bitmap of 8 kilobytes; or a sorted array of
+ * runs of consecutive set bits.  This is the organization of "Roaring
+ * bitmaps", described in "Consistently faster and smaller compressed
+ * bitmaps with Roaring" by D. Lemire et al. (Software: Practice and
+ * Experience, 2016).
+ *
+ * <p>A {@code CompressedBitSet} therefore needs space in proportion to
+ * the number of its set bits, or of their runs, rather than to its
+ * highest set bit: a set of a million bits spread over indices up to
+ * 2<sup>31</sup> needs about two megabytes, where a {@code BitSet}
+ * needs 256.  The logical operations {@link #and and}, {@link #or or},
+ * {@link #xor xor} and {@link #andNot andNot} proceed chunk by chunk,
+ * skip the chunks absent from either operand as appropriate, and choose
+ * an algorithm for each pair of chunks according to their
+ * representations.
+ *
+ * <p>Chunks are converted between the array and bitmap representations
+ * automatically as bits are set and cleared.  Runs are created by
+ * {@link #set(int, int) setting ranges} of bits, and {@link #runOptimize}
+ * converts every chunk for which runs are smaller.
+ *
+ * <p>Besides the operations of {@code BitSet}, this class provides
+ * {@link #rank rank} and {@link #select select}, an ascending
+ * {@link #iterator iterator} that does not box, and conversions from
+ * and to {@code BitSet}.  Instances may be written to a stream with
+ * {@link #writeTo writeTo} and read with {@link #readFrom readFrom}, in
+ * the portable serialization format of Roaring bitmaps, which other
+ * implementations of Roaring bitmaps can read as long as no index
+ * exceeds {@code Integer.MAX_VALUE}.  Java serialization uses the same
+ * format.
+ *
+ * <p>Unless otherwise noted, passing a null parameter to any of the
+ * methods in a {@code CompressedBitSet} will result in a
+ * {@code NullPointerException}.
+ *
+ * <p>A {@code CompressedBitSet} is not safe for multithreaded use without
+ * external synchronization.
+ *
+ * @see BitSet
+ * @since 1.8
+ */
+public class CompressedBitSet implements Cloneable, java.io.Serializable {
+
+    private static final long serialVersionUID = -3553062924457391012L;
+
+    /** Number of bits in a chunk, and of values of a container */
+    static final int CHUNK_BITS = 1 << 16;
+
+    /** Largest cardinality of an array container */
+    static final int ARRAY_MAX = 4096;
+
+    /** Number of longs of a bitmap container */
+    static final int BITMAP_WORDS = CHUNK_BITS / 64;
+
+    /** Cookies of the portable serialization format */
+    static final int SERIAL_COOKIE_NO_RUNCONTAINER = 12346;
+    static final int SERIAL_COOKIE = 12347;
+
+    /**
+     * Smallest number of containers for which the portable format
+     * includes offsets when there are run containers.
+     */
+    static final int NO_OFFSET_THRESHOLD = 4;
+
+    /**
+     * The high 16 bits of the indices in each container, ascending.
+     */
+    private transient char[] keys;
+
+    /**
+     * The containers, at the same indices as their keys.  None is
+     * empty.
+     */
+    private transient Container[] containers;
+
+    /**
+     * The number of containers in use.
+     */
+    private transient int size;
+
+    /**
+     * Creates a new, empty compressed bit set.
+     */
+    public CompressedBitSet() {
+        keys = new char[4];
+        containers = new Container[4];
+    }
+
+    /**
+     * Returns a new compressed bit set containing the given indices.
+     *
+     * @param indices the indices of the bits to set, in any order
+     * @return a compressed bit set with the given bits set
+     * @throws IndexOutOfBoundsException if any index is negative
+     */
+    public static CompressedBitSet valueOf(int... indices) {
+        int[] a = indices.clone();
+        Arrays.sort(a);
+        CompressedBitSet s = new CompressedBitSet();
+        for (int i = 0, n = a.length; i < n; ) {
+            if (a[i] < 0)
+                throw new IndexOutOfBoundsException("bitIndex < 0: " + a[i]);
+            int key = a[i] >>> 16;
+            int j = i;
+            while (j < n && a[j] >>> 16 == key)
+                j++;
+            char[] values = new char[j - i];
+            int card = 0;
+            for (int k = i; k < j; k++)
+                if (card == 0 || values[card - 1] != (char)a[k])
+                    values[card++] = (char)a[k];
+            Container c = (card <= ARRAY_MAX)
+                ? new ArrayContainer(values, card)
+                : new ArrayContainer(values, card).toBitmap();
+            s.append((char)key, c);
+            i = j;
+        }
+        return s;
+    }
+
+    /**
+     * Returns a new compressed bit set containing the same bits as the
+     * given bit set.
+     *
+     * @param bs a bit set
+     * @return a compressed bit set with the bits set in {@code bs}
+     */
+    public static CompressedBitSet valueOf(BitSet bs) {
+        long[] words = bs.toLongArray();
+        CompressedBitSet s = new CompressedBitSet();
+        for (int from = 0; from < words.length; from += BITMAP_WORDS) {
+            int to = Math.min(from + BITMAP_WORDS, words.length);
+            int card = 0;
+            for (int i = from; i < to; i++)
+                card += Long.bitCount(words[i]);
+            if (card == 0)
+                continue;
+            BitmapContainer b = new BitmapContainer();
+            System.arraycopy(words, from, b.words, 0, to - from);
+            b.card = card;
+            s.append((char)(from / BITMAP_WORDS), b.normalize());
+        }
+        return s;
+    }
+
+    /**
+     * Returns a new bit set containing the same bits as this set.
+     *
+     * @return a {@code BitSet} with the bits set in this set
+     */
+    public BitSet toBitSet() {
+        if (size == 0)
+            return new BitSet();
+        long[] words = new long[(length() + 63) >>> 6];
+        for (int i = 0; i < size; i++)
+            containers[i].copyTo(words, keys[i] * BITMAP_WORDS);
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * Checks that fromIndex ... toIndex is a valid range of bit indices.
+     */
+    private static void checkRange(int fromIndex, int toIndex) {
+        if (fromIndex < 0)
+            throw new IndexOutOfBoundsException("fromIndex < 0: " + fromIndex);
+        if (toIndex < 0)
+            throw new IndexOutOfBoundsException("toIndex < 0: " + toIndex);
+        if (fromIndex > toIndex)
+            throw new IndexOutOfBoundsException("fromIndex: " + fromIndex +
+                                                " > toIndex: " + toIndex);
+    }
+
+    private static void checkIndex(int bitIndex) {
+        if (bitIndex < 0)
+            throw new IndexOutOfBoundsException("bitIndex < 0: " + bitIndex);
+    }
+
+    /**
+     * Returns the index of the container with the given key, or
+     * -(insertion point) - 1 if there is none.
+     */
+    private int indexOfKey(int key) {
+        if (size > 0 && keys[size - 1] == key)  // common when appending
+            return size - 1;
+        return Arrays.binarySearch(keys, 0, size, (char)key);
+    }
+
+    private void insertAt(int i, char key, Container c) {
+        if (size == keys.length) {
+            int n = Math.max(4, size + (size >> 1));
+            keys = Arrays.copyOf(keys, n);
+            containers = Arrays.copyOf(containers, n);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        keys[i] = key;
+        containers[i] = c;
+        size++;
+    }
+
+    private void append(char key, Container c) {
+        insertAt(size, key, c);
+    }
+
+    private void removeAt(int i) {
+        System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+        System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+        containers[--size] = null;
+    }
+
+    /**
+     * Replaces the container at the given index, removing it if empty.
+     */
+    private void setContainer(int i, Container c) {
+        if (c.cardinality() == 0)
+            removeAt(i);
+        else
+            containers[i] = c;
+    }
+
+    /**
+     * Sets the bit at the specified index to {@code true}.
+     *
+     * @param  bitIndex a bit index
+     * @throws IndexOutOfBoundsException if the specified index is negative
+     */
+    public void set(int bitIndex) {
+        checkIndex(bitIndex);
+        int i = indexOfKey(bitIndex >>> 16);
+        if (i >= 0)
+            containers[i] = containers[i].add(bitIndex & 0xffff);
+        else
+            insertAt(-i - 1, (char)(bitIndex >>> 16),
+                     new ArrayContainer(bitIndex & 0xffff));
+    }
+
+    /**
+     * Sets the bit at the specified index to the specified value.
+     *
+     * @param  bitIndex a bit index
+     * @param  value a boolean value to set
+     * @throws IndexOutOfBoundsException if the specified index is negative
+     */
+    public void set(int bitIndex, boolean value) {
+        if (value)
+            set(bitIndex);
+        else
+            clear(bitIndex);
+    }
+
+    /**
+     * Sets the bits from the specified {@code fromIndex} (inclusive) to the
+     * specified {@code toIndex} (exclusive) to {@code true}.
+     *
+     * @param  fromIndex index of the first bit to be set
+     * @param  toIndex index after the last bit to be set
+     * @throws IndexOutOfBoundsException if {@code fromIndex} is negative,
+     *         or {@code toIndex} is negative, or {@code fromIndex} is
+     *         larger than {@code toIndex}
+     */
+    public void set(int fromIndex, int toIndex) {
+        checkRange(fromIndex, toIndex);
+        if (fromIndex == toIndex)
+            return;
+        int last = toIndex - 1;
+        for (int key = fromIndex >>> 16; key <= last >>> 16; key++) {
+            int lo = (key == fromIndex >>> 16) ? fromIndex & 0xffff : 0;
+            int hi = (key == last >>> 16) ? (last & 0xffff) + 1 : CHUNK_BITS;
+            int i = indexOfKey(key);
+            if (i >= 0)
+                containers[i] = containers[i].addRange(lo, hi);
+            else
+                insertAt(-i - 1, (char)key, RunContainer.range(lo, hi));
+        }
+    }
+
+    /**
+     * Sets the bits from the specified {@code fromIndex} (inclusive) to the
+     * specified {@code toIndex} (exclusive) to the specified value.
+     *
+     * @param  fromIndex index of the first bit to be set
+     * @param  toIndex index after the last bit to be set
+     * @param  value value to set the selected bits to
+     * @throws IndexOutOfBoundsException if {@code fromIndex} is negative,
+     *         or {@code toIndex} is negative, or {@code fromIndex} is
+     *         larger than {@code toIndex}
+     */
+    public void set(int fromIndex, int toIndex, boolean value) {
+        if (value)
+            set(fromIndex, toIndex);
+        else
+            clear(fromIndex, toIndex);
+    }
+
+    /**
+     * Sets the bit specified by the index to {@code false}.
+     *
+     * @param  bitIndex the index of the bit to be cleared
+     * @throws IndexOutOfBoundsException if the specified index is negative
+     */
+    public void clear(int bitIndex) {
+        checkIndex(bitIndex);
+        int i = indexOfKey(bitIndex >>> 16);
+        if (i >= 0)
+            setContainer(i, containers[i].remove(bitIndex & 0xffff));
+    }
+
+    /**
+     * Sets the bits from the specified {@code fromIndex} (inclusive) to the
+     * specified {@code toIndex} (exclusive) to {@code false}.
+     *
+     * @param  fromIndex index of the first bit to be cleared
+     * @param  toIndex index after the last bit to be cleared
+     * @throws IndexOutOfBoundsException if {@code fromIndex} is negative,
+     *         or {@code toIndex} is negative, or {@code fromIndex} is
+     *         larger than {@code toIndex}
+     */
+    public void clear(int fromIndex, int toIndex) {
+        checkRange(fromIndex, toIndex);
+        if (fromIndex == toIndex)
+            return;
+        int last = toIndex - 1;
+        int i = Arrays.binarySearch(keys, 0, size, (char)(fromIndex >>> 16));
+        if (i < 0)
+            i = -i - 1;
+        while (i < size && keys[i] <= last >>> 16) {
+            int key = keys[i];
+            int lo = (key == fromIndex >>> 16) ? fromIndex & 0xffff : 0;
+            int hi = (key == last >>> 16) ? (last & 0xffff) + 1 : CHUNK_BITS;
+            Container c = containers[i].removeRange(lo, hi);
+            if (c.cardinality() == 0)
+                removeAt(i);
+            else
+                containers[i++] = c;
+        }
+    }
+
+    /**
+     * Sets all of the bits in this set to {@code false}.
+     */
+    public void clear() {
+        Arrays.fill(containers, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Sets the bit at the specified index to the complement of its
+     * current value.
+     *
+     * @param  bitIndex the index of the bit to flip
+     * @throws IndexOutOfBoundsException if the specified index is negative
+     */
+    public void flip(int bitIndex) {
+        if (get(bitIndex))
+            clear(bitIndex);
+        else
+            set(bitIndex);
+    }
+
+    /**
+     * Sets each bit from the specified {@code fromIndex} (inclusive) to the
+     * specified {@code toIndex} (exclusive) to the complement of its current
+     * value.
+     *
+     * @param  fromIndex index of the first bit to flip
+     * @param  toIndex index after the last bit to flip
+     * @throws IndexOutOfBoundsException if {@code fromIndex} is negative,
+     *         or {@code toIndex} is negative, or {@code fromIndex} is
+     *         larger than {@code toIndex}
+     */
+    public void flip(int fromIndex, int toIndex) {
+        checkRange(fromIndex, toIndex);
+        if (fromIndex == toIndex)
+            return;
+        int last = toIndex - 1;
+        for (int key = fromIndex >>> 16; key <= last >>> 16; key++) {
+            int lo = (key == fromIndex >>> 16) ? fromIndex & 0xffff : 0;
+            int hi = (key == last >>> 16) ? (last & 0xffff) + 1 : CHUNK_BITS;
+            Container range = RunContainer.range(lo, hi);
+            int i = indexOfKey(key);
+            if (i >= 0)
+                setContainer(i, xor(containers[i], range));
+            else
+                insertAt(-i - 1, (char)key, range);
+        }
+    }
+
+    /**
+     * Returns the value of the bit with the specified index.
+     *
+     * @param  bitIndex the bit index
+     * @return the value of the bit with the specified index
+     * @throws IndexOutOfBoundsException if the specified index is negative
+     */
+    public boolean get(int bitIndex) {
+        checkIndex(bitIndex);
+        int i = indexOfKey(bitIndex >>> 16);
+        return i >= 0 && containers[i].contains(bitIndex & 0xffff);
+    }
+
+    /**
+     * Returns the index of the first bit that is set to {@code true}
+     * that occurs on or after the specified starting index.  If no such
+     * bit exists then {@code -1} is returned.
+     *
+     * @param  fromIndex the index to start checking from (inclusive)
+     * @return the index of the next set bit, or {@code -1} if there
+     *         is no such bit
+     * @throws IndexOutOfBoundsException if the specified index is negative
+     */
+    public int nextSetBit(int fromIndex) {
+        checkIndex(fromIndex);
+        int key = fromIndex >>> 16;
+        int i = indexOfKey(key);
+        if (i >= 0) {
+            int v = containers[i].nextValue(fromIndex & 0xffff);
+            if (v >= 0)
+                return (key << 16) | v;
+            i++;
+        } else
+            i = -i - 1;
+        return (i < size) ? (keys[i] << 16) | containers[i].first() : -1;
+    }
+
+    /**
+     * Returns the index of the first bit that is set to {@code false}
+     * that occurs on or after the specified starting index.
+     *
+     * @param  fromIndex the index to start checking from (inclusive)
+     * @return the index of the next clear bit, or {@code -1} if every
+     *         bit from {@code fromIndex} to {@code Integer.MAX_VALUE} is
+     *         set
+     * @throws IndexOutOfBoundsException if the specified index is negative
+     */
+    public int nextClearBit(int fromIndex) {
+        checkIndex(fromIndex);
+        int key = fromIndex >>> 16;
+        int i = indexOfKey(key);
+        if (i < 0)
+            return fromIndex;
+        int low = fromIndex & 0xffff;
+        for (;;) {
+            int v = containers[i].nextAbsent(low);
+            if (v < CHUNK_BITS)
+                return (key << 16) | v;
+            if (++key > Integer.MAX_VALUE >>> 16)
+                return -1;
+            if (++i >= size || keys[i] != key)
+                return key << 16;
+            low = 0;
+        }
+    }
+
+    /**
+     * Returns the index of the nearest bit that is set to {@code true}
+     * that occurs on or before the specified starting index.
+     * If no such bit exists, or if {@code -1} is given as the
+     * starting index, then {@code -1} is returned.
+     *
+     * @param  fromIndex the index to start checking from (inclusive)
+     * @return the index of the previous set bit, or {@code -1} if there
+     *         is no such bit
+     * @throws IndexOutOfBoundsException if the specified index is less
+     *         than {@code -1}
+     */
+    public int previousSetBit(int fromIndex) {
+        if (fromIndex < 0) {
+            if (fromIndex == -1)
+                return -1;
+            throw new IndexOutOfBoundsException(
+                "fromIndex < -1: " + fromIndex);
+        }
+        int key = fromIndex >>> 16;
+        int i = indexOfKey(key);
+        if (i >= 0) {
+            int v = containers[i].previousValue(fromIndex & 0xffff);
+            if (v >= 0)
+                return (key << 16) | v;
+            i--;
+        } else
+            i = -i - 2;
+        return (i >= 0) ? (keys[i] << 16) | containers[i].last() : -1;
+    }
+
+    /**
+     * Returns the "logical size" of this set: the index of the highest
+     * set bit plus one.  Returns zero if the set contains no set bits.
+     *
+     * @return the logical size of this set
+     */
+    public int length() {
+        if (size == 0)
+            return 0;
+        return ((keys[size - 1] << 16) | containers[size - 1].last()) + 1;
+    }
+
+    /**
+     * Returns true if this set contains no bits that are set
+     * to {@code true}.
+     *
+     * @return boolean indicating whether this set is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of bits set to {@code true} in this set.  The
+     * result exceeds {@code Integer.MAX_VALUE} only if every nonnegative
+     * index is set.
+     *
+     * @return the number of bits set to {@code true} in this set
+     */
+    public long cardinality() {
+        long n = 0L;
+        for (int i = 0; i < size; i++)
+            n += containers[i].cardinality();
+        return n;
+    }
+
+    /**
+     * Returns the number of bits set to {@code true} at indices less
+     * than the specified index.  For a set bit, this is its position
+     * among the set bits in ascending order, so that
+     * {@code select(rank(i)) == i}.
+     *
+     * @param  bitIndex a bit index
+     * @return the number of set bits at indices less than
+     *         {@code bitIndex}
+     * @throws IndexOutOfBoundsException if the specified index is negative
+     */
+    public long rank(int bitIndex) {
+        checkIndex(bitIndex);
+        int key = bitIndex >>> 16;
+        long n = 0L;
+        for (int i = 0; i < size && keys[i] <= key; i++) {
+            if (keys[i] < key)
+                n += containers[i].cardinality();
+            else
+                n += containers[i].rank(bitIndex & 0xffff);
+        }
+        return n;
+    }
+
+    /**
+     * Returns the index of the set bit at the specified position among
+     * the set bits in ascending order.
+     *
+     * @param  j the position, counting from zero
+     * @return the index of the {@code j}th set bit
+     * @throws IndexOutOfBoundsException if {@code j} is negative or not
+     *         less than the {@linkplain #cardinality cardinality}
+     */
+    public int select(long j) {
+        if (j >= 0) {
+            long remaining = j;
+            for (int i = 0; i < size; i++) {
+                int card = containers[i].cardinality();
+                if (remaining < card)
+                    return (keys[i] << 16) |
+                        containers[i].select((int)remaining);
+                remaining -= card;
+            }
+        }
+        throw new IndexOutOfBoundsException("j: " + j);
+    }
+
+    /**
+     * Returns true if the specified set has any bits set to {@code true}
+     * that are also set to {@code true} in this set.
+     *
+     * @param  set set to intersect with
+     * @return boolean indicating whether this set intersects the
+     *         specified set
+     */
+    public boolean intersects(CompressedBitSet set) {
+        int i = 0, j = 0;
+        while (i < size && j < set.size) {
+            if (keys[i] < set.keys[j])
+                i++;
+            else if (keys[i] > set.keys[j])
+                j++;
+            else if (intersects(containers[i++], set.containers[j++]))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Performs a logical <b>AND</b> of this target set with the argument
+     * set.  This set is modified so that each bit in it has the value
+     * {@code true} if and only if it both initially had the value
+     * {@code true} and the corresponding bit in the set argument also
+     * had the value {@code true}.
+     *
+     * @param set a compressed bit set
+     */
+    public void and(CompressedBitSet set) {
+        int i = 0, j = 0, n = 0;
+        while (i < size && j < set.size) {
+            if (keys[i] < set.keys[j])
+                i++;
+            else if (keys[i] > set.keys[j])
+                j++;
+            else {
+                Container c = and(containers[i], set.containers[j++]);
+                if (c.cardinality() > 0) {
+                    keys[n] = keys[i];
+                    containers[n++] = c;
+                }
+                i++;
+            }
+        }
+        Arrays.fill(containers, n, size, null);
+        size = n;
+    }
+
+    /**
+     * Performs a logical <b>OR</b> of this set with the set argument.
+     * This set is modified so that a bit in it has the value {@code true}
+     * if and only if it either already had the value {@code true} or the
+     * corresponding bit in the set argument has the value {@code true}.
+     *
+     * @param set a compressed bit set
+     */
+    public void or(CompressedBitSet set) {
+        merge(set, OR);
+    }
+
+    /**
+     * Performs a logical <b>XOR</b> of this set with the set argument.
+     * This set is modified so that a bit in it has the value {@code true}
+     * if and only if one of the following statements holds:
+     * <ul>
+     * <li>The bit initially has the value {@code true}, and the
+     *     corresponding bit in the argument has the value {@code false}.
+     * <li>The bit initially has the value {@code false}, and the
+     *     corresponding bit in the argument has the value {@code true}.
+     * </ul>
+     *
+     * @param set a compressed bit set
+     */
+    public void xor(CompressedBitSet set) {
+        merge(set, XOR);
+    }
+
+    /**
+     * Clears all of the bits in this set whose corresponding bit is set
+     * in the specified set.
+     *
+     * @param set the set with which to mask this set
+     */
+    public void andNot(CompressedBitSet set) {
+        int i = 0, j = 0, n = 0;
+        while (i < size) {
+            while (j < set.size && set.keys[j] < keys[i])
+                j++;
+            Container c = containers[i];
+            if (j < set.size && set.keys[j] == keys[i])
+                c = andNot(c, set.containers[j++]);
+            if (c.cardinality() > 0) {
+                keys[n] = keys[i];
+                containers[n++] = c;
+            }
+            i++;
+        }
+        Arrays.fill(containers, n, size, null);
+        size = n;
+    }
+
+    /** Operations of {@link Container#applyTo} and {@link #merge} */
+    static final int OR = 0, XOR = 1, ANDNOT = 2;
+
+    /**
+     * Replaces the containers of this set by their union or symmetric
+     * difference with those of the given set.
+     */
+    private void merge(CompressedBitSet set, int op) {
+        int n = size + set.size;
+        char[] ks = new char[Math.max(4, n)];
+        Container[] cs = new Container[Math.max(4, n)];
+        int i = 0, j = 0, k = 0;
+        while (i < size || j < set.size) {
+            if (j >= set.size || (i < size && keys[i] < set.keys[j])) {
+                ks[k] = keys[i];
+                cs[k++] = containers[i++];
+            } else if (i >= size || keys[i] > set.keys[j]) {
+                ks[k] = set.keys[j];
+                cs[k++] = set.containers[j++].copy();
+            } else {
+                Container c = (op == OR)
+                    ? or(containers[i], set.containers[j])
+                    : xor(containers[i], set.containers[j]);
+                if (c.cardinality() > 0) {
+                    ks[k] = keys[i];
+                    cs[k++] = c;
+                }
+                i++;
+                j++;
+            }
+        }
+        keys = ks;
+        containers = cs;
+        size = k;
+    }
+
+    /**
+     * Converts each container to runs if that would be smaller, and each
+     * run container to another representation if that would be smaller.
+     *
+     * @return {@code true} if any container was converted to runs
+     */
+    public boolean runOptimize() {
+        boolean changed = false;
+        for (int i = 0; i < size; i++) {
+            Container c = containers[i];
+            Container r = c.runOptimize();
+            if (r != c && r instanceof RunContainer)
+                changed = true;
+            containers[i] = r;
+        }
+        return changed;
+    }
+
+    /**
+     * Returns an iterator over the indices of the set bits of this set,
+     * in ascending order.  The iterator does not support removal, and
+     * the result of modifying the set while it is in use is undefined.
+     *
+     * @return an iterator over the indices of the set bits
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new Itr();
+    }
+
+    /**
+     * Returns the indices of the set bits of this set, in ascending
+     * order.
+     *
+     * @return an array of the indices of the set bits
+     * @throws OutOfMemoryError if the cardinality of this set exceeds
+     *         the largest possible size of an array
+     */
+    public int[] toArray() {
+        long card = cardinality();
+        if (card > Integer.MAX_VALUE - 8)
+            throw new OutOfMemoryError("Required array size too large");
+        int[] a = new int[(int)card];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            int high = keys[i] << 16;
+            Container.Cursor c = containers[i].cursor();
+            while (c.hasNext())
+                a[n++] = high | c.next();
+        }
+        return a;
+    }
+
+    /**
+     * Returns the number of bytes written by {@link #writeTo writeTo}.
+     *
+     * @return the serialized size of this set
+     */
+    public int serializedSize() {
+        boolean hasRun = false;
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            Container c = containers[i];
+            if (c instanceof RunContainer)
+                hasRun = true;
+            n += c.serializedSize();
+        }
+        if (hasRun) {
+            n += 4 + (size + 7) / 8 + 4 * size;
+            if (size >= NO_OFFSET_THRESHOLD)
+                n += 4 * size;
+        } else
+            n += 8 + 8 * size;
+        return n;
+    }
+
+    /**
+     * Writes this set to the given output in the portable serialization
+     * format of Roaring bitmaps.
+     *
+     * @param out the output
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        boolean hasRun = false;
+        for (int i = 0; i < size; i++)
+            if (containers[i] instanceof RunContainer)
+                hasRun = true;
+        int startOffset;
+        if (hasRun) {
+            int cookie = SERIAL_COOKIE | ((size - 1) << 16);
+            out.writeInt(Integer.reverseBytes(cookie));
+            byte[] runFlags = new byte[(size + 7) / 8];
+            for (int i = 0; i < size; i++)
+                if (containers[i] instanceof RunContainer)
+                    runFlags[i >>> 3] |= 1 << (i & 7);
+            out.write(runFlags);
+            startOffset = 4 + runFlags.length + 4 * size +
+                ((size >= NO_OFFSET_THRESHOLD) ? 4 * size : 0);
+        } else {
+            out.writeInt(Integer.reverseBytes(SERIAL_COOKIE_NO_RUNCONTAINER));
+            out.writeInt(Integer.reverseBytes(size));
+            startOffset = 8 + 8 * size;
+        }
+        for (int i = 0; i < size; i++) {
+            out.writeShort(Character.reverseBytes(keys[i]));
+            out.writeShort(Character.reverseBytes(
+                               (char)(containers[i].cardinality() - 1)));
+        }
+        if (!hasRun || size >= NO_OFFSET_THRESHOLD) {
+            int offset = startOffset;
+            for (int i = 0; i < size; i++) {
+                out.writeInt(Integer.reverseBytes(offset));
+                offset += containers[i].serializedSize();
+            }
+        }
+        for (int i = 0; i < size; i++)
+            containers[i].writeTo(out);
+    }
+
+    /**
+     * Reads a set in the portable serialization format of Roaring
+     * bitmaps from the given input.
+     *
+     * @param in the input
+     * @return the set read
+     * @throws IOException if an I/O error occurs, or the input is not in
+     *         the expected format or contains an index greater than
+     *         {@code Integer.MAX_VALUE}
+     */
+    public static CompressedBitSet readFrom(DataInput in) throws IOException {
+        CompressedBitSet s = new CompressedBitSet();
+        s.read(in);
+        return s;
+    }
+
+    private void read(DataInput in) throws IOException {
+        int cookie = Integer.reverseBytes(in.readInt());
+        int n;
+        byte[] runFlags = null;
+        if ((cookie & 0xffff) == SERIAL_COOKIE) {
+            n = (cookie >>> 16) + 1;
+            runFlags = new byte[(n + 7) / 8];
+            in.readFully(runFlags);
+        } else if (cookie == SERIAL_COOKIE_NO_RUNCONTAINER) {
+            n = Integer.reverseBytes(in.readInt());
+            if (n < 0 || n > 1 << 16)
+                throw new java.io.StreamCorruptedException(
+                    "Illegal container count: " + n);
+        } else
+            throw new java.io.StreamCorruptedException(
+                "Unknown cookie: " + cookie);
+        char[] ks = new char[Math.max(4, n)];
+        int[] cards = new int[n];
+        for (int i = 0; i < n; i++) {
+            ks[i] = Character.reverseBytes(in.readChar());
+            cards[i] = Character.reverseBytes(in.readChar()) + 1;
+            if (ks[i] > Integer.MAX_VALUE >>> 16 ||
+                (i > 0 && ks[i] <= ks[i - 1]))
+                throw new java.io.StreamCorruptedException(
+                    "Illegal key: " + (int)ks[i]);
+        }
+        if (runFlags == null || n >= NO_OFFSET_THRESHOLD)
+            for (int i = 0; i < n; i++)
+                in.readInt();               // offsets, not needed
+        Container[] cs = new Container[Math.max(4, n)];
+        for (int i = 0; i < n; i++) {
+            Container c;
+            if (runFlags != null && (runFlags[i >>> 3] & (1 << (i & 7))) != 0)
+                c = RunContainer.read(in);
+            else if (cards[i] <= ARRAY_MAX)
+                c = ArrayContainer.read(in, cards[i]);
+            else
+                c = BitmapContainer.read(in);
+            if (c.cardinality() != cards[i])
+                throw new java.io.StreamCorruptedException(
+                    "Inconsistent cardinality");
+            cs[i] = c;
+        }
+        keys = ks;
+        containers = cs;
+        size = n;
+    }
+
+    /**
+     * Save the state of the set to a stream (that is, serialize it).
+     *
+     * @serialData The set in the format written by {@link #writeTo
+     *             writeTo}.
+     */
+    private void writeObject(ObjectOutputStream s) throws IOException {
+        s.defaultWriteObject();
+        writeTo(s);
+    }
+
+    /**
+     * Reconstitute the set from a stream (that is, deserialize it).
+     */
+    private void readObject(ObjectInputStream s)
+        throws IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        read(s);
+    }
+
+    /**
+     * Returns the hash code value for this set, which depends only on
+     * which bits are set.
+     *
+     * @return the hash code value for this set
+     */
+    public int hashCode() {
+        int h = 1;
+        for (int i = 0; i < size; i++) {
+            int high = keys[i] << 16;
+            Container.Cursor c = containers[i].cursor();
+            while (c.hasNext())
+                h = 31 * h + (high | c.next());
+        }
+        return h;
+    }
+
+    /**
+     * Compares this object against the specified object.  The result is
+     * {@code true} if and only if the argument is a
+     * {@code CompressedBitSet} with exactly the same bits set to
+     * {@code true} as this set, whatever their representation.
+     *
+     * @param  obj the object to compare with
+     * @return {@code true} if the objects are the same;
+     *         {@code false} otherwise
+     */
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof CompressedBitSet))
+            return false;
+        CompressedBitSet set = (CompressedBitSet) obj;
+        if (size != set.size)
+            return false;
+        for (int i = 0; i < size; i++) {
+            if (keys[i] != set.keys[i])
+                return false;
+            Container a = containers[i], b = set.containers[i];
+            if (a.cardinality() != b.cardinality())
+                return false;
+            Container.Cursor ca = a.cursor(), cb = b.cursor();
+            while (ca.hasNext())
+                if (ca.next() != cb.next())
+                    return false;
+        }
+        return true;
+    }
+
+    /**
+     * Cloning this {@code CompressedBitSet} produces a new
+     * {@code CompressedBitSet} that is equal to it.
+     *
+     * @return a clone of this set
+     */
+    public Object clone() {
+        try {
+            CompressedBitSet result = (CompressedBitSet) super.clone();
+            result.keys = keys.clone();
+            result.containers = containers.clone();
+            for (int i = 0; i < size; i++)
+                result.containers[i] = containers[i].copy();
+            return result;
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError();
+        }
+    }
+
+    /**
+     * Returns a string representation of this set, in the format of
+     * {@link BitSet#toString}.
+     *
+     * @return a string representation of this set
+     */
+    public String toString() {
+        StringBuilder b = new StringBuilder();
+        b.append('{');
+        PrimitiveIterator.OfInt it = iterator();
+        if (it.hasNext()) {
+            b.append(it.nextInt());
+            while (it.hasNext())
+                b.append(", ").append(it.nextInt());
+        }
+        b.append('}');
+        return b.toString();
+    }
+
+    private class Itr implements PrimitiveIterator.OfInt {
+        int index;                  // index of the current container
+        int high;                   // key of current container, shifted
+        Container.Cursor cursor;    // cursor in current container
+
+        Itr() {
+            advance();
+        }
+
+        private void advance() {
+            while (index < size) {
+                high = keys[index] << 16;
+                cursor = containers[index++].cursor();
+                if (cursor.hasNext())
+                    return;
+            }
+            cursor = null;
+        }
+
+        public boolean hasNext() {
+            return cursor != null;
+        }
+
+        public int nextInt() {
+            if (cursor == null)
+                throw new NoSuchElementException();
+            int v = high | cursor.next();
+            if (!cursor.hasNext())
+                advance();
+            return v;
+        }
+
+        public Integer next() {
+            return nextInt();
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /* ---------------- Operations on pairs of containers -------------- */
+
+    /*
+     * Each of these returns a new container, or one of its arguments if
+     * that is unchanged, except that arguments are never returned when
+     * the result is to be stored in another set.  None modifies its
+     * arguments.  Results may be empty.
+     */
+
+    static Container and(Container a, Container b) {
+        if (a instanceof ArrayContainer)
+            return ((ArrayContainer)a).filter(b, true);
+        if (b instanceof ArrayContainer)
+            return ((ArrayContainer)b).filter(a, true);
+        if (a instanceof RunContainer) {
+            if (b instanceof RunContainer)
+                return RunContainer.and((RunContainer)a, (RunContainer)b);
+            Container t = a; a = b; b = t;
+        }
+        BitmapContainer r = a.toBitmap();
+        if (b instanceof BitmapContainer) {
+            long[] w = r.words, bw = ((BitmapContainer)b).words;
+            for (int k = 0; k < BITMAP_WORDS; k++)
+                w[k] &= bw[k];
+        } else
+            ((RunContainer)b).clearGaps(r.words);
+        r.recount();
+        return r.normalize();
+    }
+
+    static Container or(Container a, Container b) {
+        if (a instanceof ArrayContainer && b instanceof ArrayContainer)
+            return ArrayContainer.merge((ArrayContainer)a,
+                                        (ArrayContainer)b, OR);
+        if (a instanceof RunContainer && b instanceof RunContainer)
+            return RunContainer.or((RunContainer)a, (RunContainer)b);
+        return viaBitmap(a, b, OR);
+    }
+
+    static Container xor(Container a, Container b) {
+        if (a instanceof ArrayContainer && b instanceof ArrayContainer)
+            return ArrayContainer.merge((ArrayContainer)a,
+                                        (ArrayContainer)b, XOR);
+        return viaBitmap(a, b, XOR);
+    }
+
+    static Container andNot(Container a, Container b) {
+        if (a instanceof ArrayContainer)
+            return ((ArrayContainer)a).filter(b, false);
+        return viaBitmap(a, b, ANDNOT);
+    }
+
+    /**
+     * Combines a and b in a fresh bitmap.  For the symmetric operations,
+     * the bitmap is copied from a bitmap operand if there is one, and
+     * the other operand applied to it.  Results involving runs are
+     * converted to runs when that is smaller.
+     */
+    private static Container viaBitmap(Container a, Container b, int op) {
+        boolean runs = a instanceof RunContainer || b instanceof RunContainer;
+        if (op != ANDNOT && b instanceof BitmapContainer) {
+            Container t = a; a = b; b = t;
+        }
+        BitmapContainer r = a.toBitmap();
+        b.applyTo(r.words, 0, op);
+        r.recount();
+        return runs ? r.runOptimize() : r.normalize();
+    }
+
+    static boolean intersects(Container a, Container b) {
+        if (b instanceof ArrayContainer || b instanceof RunContainer) {
+            Container t = a; a = b; b = t;
+        }
+        if (a instanceof ArrayContainer) {
+            ArrayContainer x = (ArrayContainer)a;
+            for (int i = 0; i < x.card; i++)
+                if (b.contains(x.content[i]))
+                    return true;
+            return false;
+        }
+        if (a instanceof RunContainer) {
+            RunContainer x = (RunContainer)a;
+            for (int i = 0; i < x.nruns; i++) {
+                int v = b.nextValue(x.start(i));
+                if (v >= 0 && v < x.end(i))
+                    return true;
+            }
+            return false;
+        }
+        long[] aw = ((BitmapContainer)a).words, bw = ((BitmapContainer)b).words;
+        for (int k = 0; k < BITMAP_WORDS; k++)
+            if ((aw[k] & bw[k]) != 0)
+                return true;
+        return false;
+    }
+
+    /**
+     * Applies op to the bits from lo (inclusive) to hi (exclusive) of
+     * the bitmap starting at words[base].
+     */
+    static void applyRange(long[] words, int base, int lo, int hi, int op) {
+        if (lo >= hi)
+            return;
+        int first = base + (lo >>> 6), last = base + ((hi - 1) >>> 6);
+        long firstMask = -1L << lo, lastMask = -1L >>> -hi;
+        for (int k = first; k <= last; k++) {
+            long m = -1L;
+            if (k == first)
+                m &= firstMask;
+            if (k == last)
+                m &= lastMask;
+            switch (op) {
+            case OR:  words[k] |= m;  break;
+            case XOR: words[k] ^= m;  break;
+            default:  words[k] &= ~m; break;
+            }
+        }
+    }
+
+    /* ---------------- Containers -------------- */
+
+    /**
+     * The set bits of a chunk, as values from 0 to 65535.  Mutative
+     * methods return the container holding the result, which is this
+     * container unless its representation has changed.
+     */
+    abstract static class Container {
+
+        /** An iterator over the values of a container, ascending */
+        interface Cursor {
+            boolean hasNext();
+            int next();
+        }
+
+        abstract int cardinality();
+        abstract boolean contains(int x);
+        abstract Container add(int x);
+        abstract Container remove(int x);
+
+        /** Adds the values from lo (inclusive) to hi (exclusive). */
+        abstract Container addRange(int lo, int hi);
+
+        /** Removes the values from lo (inclusive) to hi (exclusive). */
+        abstract Container removeRange(int lo, int hi);
+
+        /** Returns the least value >= x, or -1 if none. */
+        abstract int nextValue(int x);
+
+        /** Returns the greatest value <= x, or -1 if none. */
+        abstract int previousValue(int x);
+
+        /** Returns the least absent value >= x, or CHUNK_BITS if none. */
+        abstract int nextAbsent(int x);
+
+        /** Returns the number of values less than x. */
+        abstract int rank(int x);
+
+        /** Returns the value with the given rank. */
+        abstract int select(int j);
+
+        abstract int first();
+        abstract int last();
+        abstract Cursor cursor();
+        abstract Container copy();
+
+        /** Returns a new bitmap container holding the same values. */
+        abstract BitmapContainer toBitmap();
+
+        /**
+         * Applies op, with this container as its second operand, to the
+         * bitmap starting at words[base], which may be truncated after
+         * the last value of this container.
+         */
+        abstract void applyTo(long[] words, int base, int op);
+
+        /** Returns this container or an equivalent smaller one. */
+        abstract Container runOptimize();
+
+        /** Returns the size of the payload written by writeTo. */
+        abstract int serializedSize();
+        abstract void writeTo(DataOutput out) throws IOException;
+
+        void copyTo(long[] words, int base) {
+            applyTo(words, base, OR);
+        }
+    }
+
+    /**
+     * A container of at most ARRAY_MAX values, as a sorted array.
+     */
+    static final class ArrayContainer extends Container {
+        char[] content;
+        int card;
+
+        ArrayContainer(char[] content, int card) {
+            this.content = content;
+            this.card = card;
+        }
+
+        ArrayContainer(int x) {
+            content = new char[4];
+            content[0] = (char)x;
+            card = 1;
+        }
+
+        static ArrayContainer read(DataInput in, int card) throws IOException {
+            char[] content = new char[card];
+            for (int i = 0; i < card; i++) {
+                content[i] = Character.reverseBytes(in.readChar());
+                if (i > 0 && content[i] <= content[i - 1])
+                    throw new java.io.StreamCorruptedException(
+                        "Unsorted array container");
+            }
+            return new ArrayContainer(content, card);
+        }
+
+        private int indexOf(int x) {
+            return Arrays.binarySearch(content, 0, card, (char)x);
+        }
+
+        int cardinality() { return card; }
+
+        boolean contains(int x) {
+            return indexOf(x) >= 0;
+        }
+
+        Container add(int x) {
+            int i = indexOf(x);
+            if (i >= 0)
+                return this;
+            if (card == ARRAY_MAX)
+                return toBitmap().add(x);
+            i = -i - 1;
+            if (card == content.length)
+                content = Arrays.copyOf(content,
+                                        Math.min(ARRAY_MAX,
+                                                 card + (card >> 1) + 1));
+            System.arraycopy(content, i, content, i + 1, card - i);
+            content[i] = (char)x;
+            card++;
+            return this;
+        }
+
+        Container remove(int x) {
+            int i = indexOf(x);
+            if (i >= 0) {
+                System.arraycopy(content, i + 1, content, i, card - i - 1);
+                card--;
+            }
+            return this;
+        }
+
+        Container addRange(int lo, int hi) {
+            int a = rank(lo), b = rank(hi);
+            int n = card - (b - a) + (hi - lo);
+            if (n > ARRAY_MAX)
+                return toBitmap().addRange(lo, hi).runOptimize();
+            char[] c = new char[n];
+            System.arraycopy(content, 0, c, 0, a);
+            int k = a;
+            for (int v = lo; v < hi; v++)
+                c[k++] = (char)v;
+            System.arraycopy(content, b, c, k, card - b);
+            content = c;
+            card = n;
+            return this;
+        }
+
+        Container removeRange(int lo, int hi) {
+            int a = rank(lo), b = rank(hi);
+            System.arraycopy(content, b, content, a, card - b);
+            card -= b - a;
+            return this;
+        }
+
+        int nextValue(int x) {
+            int i = rank(x);
+            return (i < card) ? content[i] : -1;
+        }
+
+        int previousValue(int x) {
+            int i = rank(x + 1);
+            return (i > 0) ? content[i - 1] : -1;
+        }
+
+        int nextAbsent(int x) {
+            int i = indexOf(x);
+            if (i < 0)
+                return x;
+            while (i + 1 < card && content[i + 1] == content[i] + 1)
+                i++;
+            return content[i] + 1;
+        }
+
+        int rank(int x) {
+            if (x > 0xffff)
+                return card;
+            int i = indexOf(x);
+            return (i >= 0) ? i : -i - 1;
+        }
+
+        int select(int j) { return content[j]; }
+        int first() { return content[0]; }
+        int last() { return content[card - 1]; }
+
+        Cursor cursor() {
+            return new Cursor() {
+                int i;
+                public boolean hasNext() { return i < card; }
+                public int next() { return content[i++]; }
+            };
+        }
+
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(content, card), card);
+        }
+
+        BitmapContainer toBitmap() {
+            BitmapContainer b = new BitmapContainer();
+            applyTo(b.words, 0, OR);
+            b.card = card;
+            return b;
+        }
+
+        void applyTo(long[] words, int base, int op) {
+            for (int i = 0; i < card; i++) {
+                int v = content[i];
+                int k = base + (v >>> 6);
+                switch (op) {
+                case OR:  words[k] |= 1L << v;  break;
+                case XOR: words[k] ^= 1L << v;  break;
+                default:  words[k] &= ~(1L << v); break;
+                }
+            }
+        }
+
+        Container runOptimize() {
+            int nruns = 0;
+            for (int i = 0; i < card; i++)
+                if (i == 0 || content[i] != content[i - 1] + 1)
+                    nruns++;
+            return (RunContainer.sizeOf(nruns) < serializedSize())
+                ? RunContainer.of(cursor(), nruns) : this;
+        }
+
+        int serializedSize() { return 2 * card; }
+
+        void writeTo(DataOutput out) throws IOException {
+            for (int i = 0; i < card; i++)
+                out.writeShort(Character.reverseBytes(content[i]));
+        }
+
+        /**
+         * Returns the values of this container that other contains (if
+         * keep is true) or does not contain (if keep is false).
+         */
+        ArrayContainer filter(Container other, boolean keep) {
+            char[] c = new char[card];
+            int n = 0;
+            for (int i = 0; i < card; i++)
+                if (other.contains(content[i]) == keep)
+                    c[n++] = content[i];
+            return new ArrayContainer(c, n);
+        }
+
+        /**
+         * Returns the union (op OR) or symmetric difference (op XOR) of
+         * a and b.
+         */
+        static Container merge(ArrayContainer a, ArrayContainer b, int op) {
+            char[] c = new char[a.card + b.card];
+            int i = 0, j = 0, n = 0;
+            while (i < a.card && j < b.card) {
+                char x = a.content[i], y = b.content[j];
+                if (x < y) {
+                    c[n++] = x;
+                    i++;
+                } else if (x > y) {
+                    c[n++] = y;
+                    j++;
+                } else {
+                    if (op == OR)
+                        c[n++] = x;
+                    i++;
+                    j++;
+                }
+            }
+            while (i < a.card)
+                c[n++] = a.content[i++];
+            while (j < b.card)
+                c[n++] = b.content[j++];
+            ArrayContainer r = new ArrayContainer(c, n);
+            return (n <= ARRAY_MAX) ? r : r.toBitmap();
+        }
+    }
+
+    /**
+     * A container of more than ARRAY_MAX values, as a bitmap.
+     */
+    static final class BitmapContainer extends Container {
+        final long[] words = new long[BITMAP_WORDS];
+        int card;
+
+        static BitmapContainer read(DataInput in) throws IOException {
+            BitmapContainer b = new BitmapContainer();
+            for (int k = 0; k < BITMAP_WORDS; k++)
+                b.words[k] = Long.reverseBytes(in.readLong());
+            b.recount();
+            return b;
+        }
+
+        void recount() {
+            int n = 0;
+            for (long w : words)
+                n += Long.bitCount(w);
+            card = n;
+        }
+
+        /** Returns an array container if that is smaller, else this. */
+        Container normalize() {
+            if (card > ARRAY_MAX)
+                return this;
+            char[] c = new char[card];
+            int n = 0;
+            for (int k = 0; k < BITMAP_WORDS; k++) {
+                long w = words[k];
+                while (w != 0) {
+                    c[n++] = (char)((k << 6) + Long.numberOfTrailingZeros(w));
+                    w &= w - 1;
+                }
+            }
+            return new ArrayContainer(c, n);
+        }
+
+        int cardinality() { return card; }
+
+        boolean contains(int x) {
+            return (words[x >>> 6] & (1L << x)) != 0;
+        }
+
+        Container add(int x) {
+            long w = words[x >>> 6];
+            if ((w & (1L << x)) == 0) {
+                words[x >>> 6] = w | (1L << x);
+                card++;
+            }
+            return this;
+        }
+
+        Container remove(int x) {
+            long w = words[x >>> 6];
+            if ((w & (1L << x)) != 0) {
+                words[x >>> 6] = w & ~(1L << x);
+                if (--card <= ARRAY_MAX)
+                    return normalize();
+            }
+            return this;
+        }
+
+        private void applyCounted(int lo, int hi, int op) {
+            if (lo >= hi)
+                return;
+            int first = lo >>> 6, last = (hi - 1) >>> 6;
+            int n = card;
+            for (int k = first; k <= last; k++)
+                n -= Long.bitCount(words[k]);
+            applyRange(words, 0, lo, hi, op);
+            for (int k = first; k <= last; k++)
+                n += Long.bitCount(words[k]);
+            card = n;
+        }
+
+        Container addRange(int lo, int hi) {
+            applyCounted(lo, hi, OR);
+            return this;
+        }
+
+        Container removeRange(int lo, int hi) {
+            applyCounted(lo, hi, ANDNOT);
+            return normalize();
+        }
+
+        int nextValue(int x) {
+            int k = x >>> 6;
+            long w = words[k] & (-1L << x);
+            for (;;) {
+                if (w != 0)
+                    return (k << 6) + Long.numberOfTrailingZeros(w);
+                if (++k == BITMAP_WORDS)
+                    return -1;
+                w = words[k];
+            }
+        }
+
+        int previousValue(int x) {
+            int k = x >>> 6;
+            long w = words[k] & (-1L >>> ~x);
+            for (;;) {
+                if (w != 0)
+                    return (k << 6) + 63 - Long.numberOfLeadingZeros(w);
+                if (--k < 0)
+                    return -1;
+                w = words[k];
+            }
+        }
+
+        int nextAbsent(int x) {
+            int k = x >>> 6;
+            long w = ~words[k] & (-1L << x);
+            for (;;) {
+                if (w != 0)
+                    return (k << 6) + Long.numberOfTrailingZeros(w);
+                if (++k == BITMAP_WORDS)
+                    return CHUNK_BITS;
+                w = ~words[k];
+            }
+        }
+
+        int rank(int x) {
+            int k = x >>> 6, n = 0;
+            for (int i = 0; i < k; i++)
+                n += Long.bitCount(words[i]);
+            return n + Long.bitCount(words[k] & ((1L << x) - 1));
+        }
+
+        int select(int j) {
+            for (int k = 0; ; k++) {
+                long w = words[k];
+                int c = Long.bitCount(w);
+                if (j < c) {
+                    for (; j > 0; j--)
+                        w &= w - 1;
+                    return (k << 6) + Long.numberOfTrailingZeros(w);
+                }
+                j -= c;
+            }
+        }
+
+        int first() { return nextValue(0); }
+        int last() { return previousValue(CHUNK_BITS - 1); }
+
+        Cursor cursor() {
+            return new Cursor() {
+                int k = -1;
+                long w;
+                { advance(); }
+                private void advance() {
+                    while (w == 0 && ++k < BITMAP_WORDS)
+                        w = words[k];
+                }
+                public boolean hasNext() { return w != 0; }
+                public int next() {
+                    int v = (k << 6) + Long.numberOfTrailingZeros(w);
+                    w &= w - 1;
+                    advance();
+                    return v;
+                }
+            };
+        }
+
+        Container copy() {
+            return toBitmap();
+        }
+
+        BitmapContainer toBitmap() {
+            BitmapContainer b = new BitmapContainer();
+            System.arraycopy(words, 0, b.words, 0, BITMAP_WORDS);
+            b.card = card;
+            return b;
+        }
+
+        void applyTo(long[] w, int base, int op) {
+            int n = Math.min(BITMAP_WORDS, w.length - base);
+            for (int k = 0; k < n; k++) {
+                switch (op) {
+                case OR:  w[base + k] |= words[k];  break;
+                case XOR: w[base + k] ^= words[k];  break;
+                default:  w[base + k] &= ~words[k]; break;
+                }
+            }
+        }
+
+        Container runOptimize() {
+            int nruns = 0;
+            long carry = 0L;
+            for (long w : words) {
+                nruns += Long.bitCount(w & ~((w << 1) | carry));
+                carry = w >>> 63;
+            }
+            int size = (card > ARRAY_MAX) ? serializedSize() : 2 * card;
+            return (RunContainer.sizeOf(nruns) < size)
+                ? RunContainer.of(cursor(), nruns) : normalize();
+        }
+
+        int serializedSize() { return 8 * BITMAP_WORDS; }
+
+        void writeTo(DataOutput out) throws IOException {
+            for (long w : words)
+                out.writeLong(Long.reverseBytes(w));
+        }
+    }
+
+    /**
+     * A container of maximal runs of consecutive values.  Run i starts
+     * at runs[2*i] and has length runs[2*i+1] + 1.
+     */
+    static final class RunContainer extends Container {
+        char[] runs;
+        int nruns;
+        int card;
+
+        RunContainer(char[] runs, int nruns) {
+            this.runs = runs;
+            this.nruns = nruns;
+            int n = 0;
+            for (int i = 0; i < nruns; i++)
+                n += runs[2 * i + 1] + 1;
+            card = n;
+        }
+
+        static int sizeOf(int nruns) {
+            return 2 + 4 * nruns;
+        }
+
+        /**
+         * Returns the smallest container holding the values from lo
+         * (inclusive) to hi (exclusive).
+         */
+        static Container range(int lo, int hi) {
+            char[] r = { (char)lo, (char)(hi - lo - 1) };
+            return new RunContainer(r, 1).shrinkIfNeeded();
+        }
+
+        /** Returns a container of the values of c, which form nruns runs. */
+        static RunContainer of(Cursor c, int nruns) {
+            char[] r = new char[2 * nruns];
+            int n = -1, end = -1;
+            while (c.hasNext()) {
+                int v = c.next();
+                if (v != end) {
+                    if (n >= 0)
+                        r[2 * n + 1] = (char)(end - r[2 * n] - 1);
+                    r[2 * ++n] = (char)v;
+                }
+                end = v + 1;
+            }
+            if (n >= 0)
+                r[2 * n + 1] = (char)(end - r[2 * n] - 1);
+            return new RunContainer(r, n + 1);
+        }
+
+        static RunContainer read(DataInput in) throws IOException {
+            int n = Character.reverseBytes(in.readChar());
+            char[] r = new char[2 * n];
+            int prevEnd = -1;
+            for (int i = 0; i < 2 * n; i += 2) {
+                r[i] = Character.reverseBytes(in.readChar());
+                r[i + 1] = Character.reverseBytes(in.readChar());
+                if (r[i] <= prevEnd || r[i] + r[i + 1] >= CHUNK_BITS)
+                    throw new java.io.StreamCorruptedException(
+                        "Illegal run container");
+                prevEnd = r[i] + r[i + 1] + 1;
+            }
+            return new RunContainer(r, n);
+        }
+
+        int start(int i) { return runs[2 * i]; }
+        int end(int i) { return runs[2 * i] + runs[2 * i + 1] + 1; }
+
+        /** Returns the index of the last run starting at or before x. */
+        private int find(int x) {
+            int lo = 0, hi = nruns - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (runs[2 * mid] <= x)
+                    lo = mid + 1;
+                else
+                    hi = mid - 1;
+            }
+            return hi;
+        }
+
+        /**
+         * Returns this container, or an array or bitmap container with
+         * the same values if that would be smaller.
+         */
+        Container shrinkIfNeeded() {
+            int size = sizeOf(nruns);
+            if (card <= ARRAY_MAX) {
+                if (size < 2 * card)
+                    return this;
+                char[] c = new char[card];
+                int n = 0;
+                for (int i = 0; i < nruns; i++)
+                    for (int v = start(i), e = end(i); v < e; v++)
+                        c[n++] = (char)v;
+                return new ArrayContainer(c, n);
+            }
+            return (size < 8 * BITMAP_WORDS) ? this : toBitmap();
+        }
+
+        int cardinality() { return card; }
+
+        boolean contains(int x) {
+            int i = find(x);
+            return i >= 0 && x < end(i);
+        }
+
+        Container add(int x) {
+            return contains(x) ? this : addRange(x, x + 1);
+        }
+
+        Container remove(int x) {
+            return contains(x) ? removeRange(x, x + 1) : this;
+        }
+
+        Container addRange(int lo, int hi) {
+            int first = find(lo);
+            if (first < 0 || end(first) < lo)
+                first++;
+            int last = find(hi);            // may be adjacent to hi
+            char[] r;
+            if (last < first) {
+                r = new char[2 * nruns + 2];
+                System.arraycopy(runs, 0, r, 0, 2 * first);
+                r[2 * first] = (char)lo;
+                r[2 * first + 1] = (char)(hi - lo - 1);
+                System.arraycopy(runs, 2 * first, r, 2 * first + 2,
+                                 2 * (nruns - first));
+                runs = r;
+                nruns++;
+            } else {
+                int s = Math.min(lo, start(first));
+                int e = Math.max(hi, end(last));
+                runs[2 * first] = (char)s;
+                runs[2 * first + 1] = (char)(e - s - 1);
+                System.arraycopy(runs, 2 * (last + 1), runs, 2 * (first + 1),
+                                 2 * (nruns - last - 1));
+                nruns -= last - first;
+            }
+            return new RunContainer(runs, nruns).shrinkIfNeeded();
+        }
+
+        Container removeRange(int lo, int hi) {
+            char[] r = new char[2 * nruns + 2];
+            int n = 0;
+            for (int i = 0; i < nruns; i++) {
+                int s = start(i), e = end(i);
+                if (e <= lo || s >= hi) {
+                    r[2 * n] = (char)s;
+                    r[2 * n++ + 1] = (char)(e - s - 1);
+                } else {
+                    if (s < lo) {
+                        r[2 * n] = (char)s;
+                        r[2 * n++ + 1] = (char)(lo - s - 1);
+                    }
+                    if (e > hi) {
+                        r[2 * n] = (char)hi;
+                        r[2 * n++ + 1] = (char)(e - hi - 1);
+                    }
+                }
+            }
+            return new RunContainer(r, n).shrinkIfNeeded();
+        }
+
+        int nextValue(int x) {
+            int i = find(x);
+            if (i >= 0 && x < end(i))
+                return x;
+            return (i + 1 < nruns) ? start(i + 1) : -1;
+        }
+
+        int previousValue(int x) {
+            int i = find(x);
+            return (i >= 0) ? Math.min(x, end(i) - 1) : -1;
+        }
+
+        int nextAbsent(int x) {
+            int i = find(x);
+            return (i >= 0 && x < end(i)) ? end(i) : x;
+        }
+
+        int rank(int x) {
+            int n = 0;
+            for (int i = 0; i < nruns && start(i) < x; i++)
+                n += Math.min(x, end(i)) - start(i);
+            return n;
+        }
+
+        int select(int j) {
+            for (int i = 0; ; i++) {
+                int len = runs[2 * i + 1] + 1;
+                if (j < len)
+                    return start(i) + j;
+                j -= len;
+            }
+        }
+
+        int first() { return start(0); }
+        int last() { return end(nruns - 1) - 1; }
+
+        Cursor cursor() {
+            return new Cursor() {
+                int i, v = (nruns > 0) ? start(0) : 0;
+                public boolean hasNext() { return i < nruns; }
+                public int next() {
+                    int x = v++;
+                    if (v == end(i) && ++i < nruns)
+                        v = start(i);
+                    return x;
+                }
+            };
+        }
+
+        Container copy() {
+            return new RunContainer(Arrays.copyOf(runs, 2 * nruns), nruns);
+        }
+
+        BitmapContainer toBitmap() {
+            BitmapContainer b = new BitmapContainer();
+            applyTo(b.words, 0, OR);
+            b.card = card;
+            return b;
+        }
+
+        void applyTo(long[] words, int base, int op) {
+            for (int i = 0; i < nruns; i++)
+                applyRange(words, base, start(i), end(i), op);
+        }
+
+        /** Clears the bits of the given bitmap between the runs. */
+        void clearGaps(long[] words) {
+            int prev = 0;
+            for (int i = 0; i < nruns; i++) {
+                applyRange(words, 0, prev, start(i), ANDNOT);
+                prev = end(i);
+            }
+            applyRange(words, 0, prev, CHUNK_BITS, ANDNOT);
+        }
+
+        Container runOptimize() {
+            return shrinkIfNeeded();
+        }
+
+        int serializedSize() { return sizeOf(nruns); }
+
+        void writeTo(DataOutput out) throws IOException {
+            out.writeShort(Character.reverseBytes((char)nruns));
+            for (int i = 0; i < 2 * nruns; i++)
+                out.writeShort(Character.reverseBytes(runs[i]));
+        }
+
+        static Container and(RunContainer a, RunContainer b) {
+            char[] r = new char[2 * (a.nruns + b.nruns)];
+            int i = 0, j = 0, n = 0;
+            while (i < a.nruns && j < b.nruns) {
+                int s = Math.max(a.start(i), b.start(j));
+                int ea = a.end(i), eb = b.end(j);
+                int e = Math.min(ea, eb);
+                if (s < e) {
+                    r[2 * n] = (char)s;
+                    r[2 * n++ + 1] = (char)(e - s - 1);
+                }
+                if (ea <= eb)
+                    i++;
+                else
+                    j++;
+            }
+            return new RunContainer(r, n).shrinkIfNeeded();
+        }
+
+        static Container or(RunContainer a, RunContainer b) {
+            char[] r = new char[2 * (a.nruns + b.nruns)];
+            int i = 0, j = 0, n = 0;
+            while (i < a.nruns || j < b.nruns) {
+                int s, e;
+                if (j >= b.nruns || (i < a.nruns && a.start(i) <= b.start(j))) {
+                    s = a.start(i);
+                    e = a.end(i++);
+                } else {
+                    s = b.start(j);
+                    e = b.end(j++);
+                }
+                if (n > 0 && s <= r[2 * n - 2] + r[2 * n - 1] + 1) {
+                    int ps = r[2 * n - 2];
+                    int pe = Math.max(e, ps + r[2 * n - 1] + 1);
+                    r[2 * n - 1] = (char)(pe - ps - 1);
+                } else {
+                    r[2 * n] = (char)s;
+                    r[2 * n++ + 1] = (char)(e - s - 1);
+                }
+            }
+            return new RunContainer(r, n).shrinkIfNeeded();
+        }
+    }
+}
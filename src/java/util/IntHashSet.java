@@ -0,0 +1,581 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util;
+
+/**
+ * A hash set of {@code int} values.  Unlike a
+ * {@link HashSet}{@code <Integer>}, which is backed by a {@link HashMap}
+ * holding an entry object and a boxed {@link Integer} for each element, an
+ * {@code IntHashSet} keeps its elements in an {@code int[]}, resolving
+ * collisions by linear probing, so that at the default load factor an
+ * element costs about 8 bytes.  Removal shifts later elements of the
+ * probe sequence back rather than leaving deleted markers.
+ *
+ * <p>The operations follow those of {@link Set}, with {@code int}
+ * elements.  The {@link #equals equals} and {@link #hashCode hashCode}
+ * methods are consistent with those of a {@code Set<Integer>} holding the
+ * same elements, and {@link #iterator iterator} returns a
+ * {@link PrimitiveIterator.OfInt} whose
+ * {@link PrimitiveIterator.OfInt#nextInt nextInt} method does not box.
+ *
+ * <p><strong>Note that this implementation is not synchronized.</strong>
+ * If multiple threads access an {@code IntHashSet} concurrently, and at
+ * least one of the threads modifies the set, it <i>must</i> be
+ * synchronized externally.  The iterators returned by this class are
+ * <i>fail-fast</i> in the same sense as those of {@link HashSet}.
+ *
+ * @see HashSet
+ * @see IntHashMap
+ * @since 1.8
+ */
+public class IntHashSet implements Cloneable, java.io.Serializable {
+    private static final long serialVersionUID = 3418693279537208764L;
+
+    /**
+     * The default initial capacity.
+     */
+    static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+    /**
+     * The maximum number of slots in the table.
+     */
+    static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /**
+     * The load factor used when none specified in constructor.
+     */
+    static final float DEFAULT_LOAD_FACTOR = 0.5f;
+
+    /**
+     * The elements.  A value of 0 marks a free slot; the element 0 is
+     * instead recorded by containsZero.  The length is a power of two.
+     */
+    transient int[] keys;
+
+    /**
+     * Whether the set contains 0.
+     */
+    transient boolean containsZero;
+
+    /**
+     * One less than the number of slots.
+     */
+    transient int mask;
+
+    /**
+     * The number of elements.
+     */
+    transient int size;
+
+    /**
+     * The number of nonzero elements at which the table is doubled.
+     */
+    transient int threshold;
+
+    /**
+     * The number of times this set has been modified.
+     */
+    transient int modCount;
+
+    /**
+     * The load factor of the table.
+     *
+     * @serial
+     */
+    final float loadFactor;
+
+    /**
+     * Constructs an empty set able to hold the specified number of
+     * elements without resizing, using the specified load factor.
+     *
+     * @param  initialCapacity the expected number of elements
+     * @param  loadFactor      the load factor
+     * @throws IllegalArgumentException if the initial capacity is negative
+     *         or the load factor is not between 0 and 1, exclusive
+     */
+    public IntHashSet(int initialCapacity, float loadFactor) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " +
+                                               initialCapacity);
+        if (!(loadFactor > 0.0f && loadFactor < 1.0f))
+            throw new IllegalArgumentException("Illegal load factor: " +
+                                               loadFactor);
+        this.loadFactor = loadFactor;
+        allocate(tableSizeFor(initialCapacity, loadFactor));
+    }
+
+    /**
+     * Constructs an empty set able to hold the specified number of
+     * elements without resizing, using the default load factor (0.5).
+     *
+     * @param  initialCapacity the expected number of elements
+     * @throws IllegalArgumentException if the initial capacity is negative
+     */
+    public IntHashSet(int initialCapacity) {
+        this(initialCapacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs an empty set with the default initial capacity (16) and
+     * load factor (0.5).
+     */
+    public IntHashSet() {
+        this(DEFAULT_INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs a set containing the values of the specified array,
+     * using the default load factor (0.5).
+     *
+     * @param a the values to be placed into this set
+     * @throws NullPointerException if the specified array is null
+     */
+    public IntHashSet(int[] a) {
+        this(Math.max(a.length, DEFAULT_INITIAL_CAPACITY), DEFAULT_LOAD_FACTOR);
+        addAll(a);
+    }
+
+    /**
+     * Scrambles the bits of a value, as in IntHashMap.
+     */
+    static int hash(int k) {
+        int h = k * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableSizeFor(int expected, float loadFactor) {
+        long n = Math.max(2L, (long)Math.ceil(expected / (double)loadFactor));
+        if (n >= MAXIMUM_CAPACITY)
+            return MAXIMUM_CAPACITY;
+        return Integer.highestOneBit((int)n - 1) << 1;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        mask = capacity - 1;
+        threshold = Math.min(capacity - 1, (int)(capacity * loadFactor));
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        allocate(capacity);
+        int[] ks = keys;
+        int m = mask;
+        for (int j = oldKeys.length - 1; j >= 0; j--) {
+            int k = oldKeys[j];
+            if (k != 0) {
+                int i = hash(k) & m;
+                while (ks[i] != 0)
+                    i = (i + 1) & m;
+                ks[i] = k;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of elements in this set.
+     *
+     * @return the number of elements in this set
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns {@code true} if this set contains no elements.
+     *
+     * @return {@code true} if this set contains no elements
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns {@code true} if this set contains the specified value.
+     *
+     * @param v the value whose presence in this set is to be tested
+     * @return {@code true} if this set contains the specified value
+     */
+    public boolean contains(int v) {
+        if (v == 0)
+            return containsZero;
+        int[] ks = keys;
+        int m = mask;
+        for (int i = hash(v) & m, k; (k = ks[i]) != 0; i = (i + 1) & m)
+            if (k == v)
+                return true;
+        return false;
+    }
+
+    /**
+     * Adds the specified value to this set if it is not already present.
+     *
+     * @param v value to be added to this set
+     * @return {@code true} if this set did not already contain the value
+     * @throws IllegalStateException if the table has reached its maximum
+     *         capacity
+     */
+    public boolean add(int v) {
+        if (v == 0) {
+            if (containsZero)
+                return false;
+            containsZero = true;
+        } else {
+            int[] ks = keys;
+            int m = mask;
+            int i = hash(v) & m;
+            for (int k; (k = ks[i]) != 0; i = (i + 1) & m)
+                if (k == v)
+                    return false;
+            if (size - (containsZero ? 1 : 0) >= threshold) {
+                if (mask + 1 == MAXIMUM_CAPACITY)
+                    throw new IllegalStateException("Capacity exceeded");
+                rehash((mask + 1) << 1);
+                ks = keys;
+                m = mask;
+                i = hash(v) & m;
+                while (ks[i] != 0)
+                    i = (i + 1) & m;
+            }
+            ks[i] = v;
+        }
+        modCount++;
+        size++;
+        return true;
+    }
+
+    /**
+     * Adds all of the values in the specified array to this set.
+     *
+     * @param a array containing values to be added to this set
+     * @return {@code true} if this set changed as a result of the call
+     * @throws NullPointerException if the specified array is null
+     */
+    public boolean addAll(int[] a) {
+        int capacity = tableSizeFor(size + a.length, loadFactor);
+        if (capacity > mask + 1)
+            rehash(capacity);
+        boolean modified = false;
+        for (int v : a)
+            if (add(v))
+                modified = true;
+        return modified;
+    }
+
+    /**
+     * Adds all of the elements of the specified set to this set.
+     *
+     * @param s set containing elements to be added to this set
+     * @return {@code true} if this set changed as a result of the call
+     * @throws NullPointerException if the specified set is null
+     */
+    public boolean addAll(IntHashSet s) {
+        int capacity = tableSizeFor(size + s.size, loadFactor);
+        if (capacity > mask + 1)
+            rehash(capacity);
+        boolean modified = s.containsZero && add(0);
+        int[] ks = s.keys;
+        for (int i = ks.length - 1; i >= 0; i--)
+            if (ks[i] != 0 && add(ks[i]))
+                modified = true;
+        return modified;
+    }
+
+    /**
+     * Removes the specified value from this set if it is present.
+     *
+     * @param v value to be removed from this set, if present
+     * @return {@code true} if this set contained the specified value
+     */
+    public boolean remove(int v) {
+        if (v == 0) {
+            if (!containsZero)
+                return false;
+            containsZero = false;
+        } else {
+            int[] ks = keys;
+            int m = mask;
+            int i = hash(v) & m;
+            for (int k; (k = ks[i]) != v; i = (i + 1) & m)
+                if (k == 0)
+                    return false;
+            shiftKeys(i, null);
+        }
+        modCount++;
+        size--;
+        return true;
+    }
+
+    /**
+     * Empties the given slot and refills the slots of its probe
+     * sequence, as in IntHashMap.
+     */
+    final void shiftKeys(int i, IntArrayList wrapped) {
+        int[] ks = keys;
+        int m = mask;
+        for (;;) {
+            int last = i;
+            int k;
+            for (;;) {
+                i = (i + 1) & m;
+                if ((k = ks[i]) == 0) {
+                    ks[last] = 0;
+                    return;
+                }
+                int h = hash(k) & m;
+                // k may move back unless its home h is cyclically
+                // within (last, i]
+                if (last <= i ? (last >= h || h > i) : (last >= h && h > i))
+                    break;
+            }
+            if (wrapped != null && i < last)
+                wrapped.add(k);
+            ks[last] = k;
+        }
+    }
+
+    /**
+     * Removes all of the elements from this set.  The capacity of the
+     * table is retained.
+     */
+    public void clear() {
+        if (size > 0) {
+            modCount++;
+            Arrays.fill(keys, 0);
+            containsZero = false;
+            size = 0;
+        }
+    }
+
+    /**
+     * Returns an array containing all of the elements in this set, in no
+     * particular order.
+     *
+     * @return a new array containing the elements of this set
+     */
+    public int[] toArray() {
+        int[] a = new int[size];
+        int j = 0;
+        if (containsZero)
+            j++;                            // a[0] is already 0
+        int[] ks = keys;
+        for (int i = mask; i >= 0; i--)
+            if (ks[i] != 0)
+                a[j++] = ks[i];
+        return a;
+    }
+
+    /**
+     * Returns an iterator over the elements in this set, in no particular
+     * order.
+     *
+     * @return an iterator over the elements in this set
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new Itr();
+    }
+
+    /**
+     * Compares the specified object with this set for equality.  Returns
+     * {@code true} if the given object is also an {@code IntHashSet} and
+     * the two sets contain the same elements.
+     *
+     * @param o object to be compared for equality with this set
+     * @return {@code true} if the specified object is equal to this set
+     */
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (!(o instanceof IntHashSet))
+            return false;
+        IntHashSet s = (IntHashSet) o;
+        if (s.size != size || s.containsZero != containsZero)
+            return false;
+        int[] ks = keys;
+        for (int i = mask; i >= 0; i--)
+            if (ks[i] != 0 && !s.contains(ks[i]))
+                return false;
+        return true;
+    }
+
+    /**
+     * Returns the hash code value for this set, which is the sum of its
+     * elements, as for a {@code Set<Integer>}.
+     *
+     * @return the hash code value for this set
+     */
+    public int hashCode() {
+        int h = 0;
+        int[] ks = keys;
+        for (int i = mask; i >= 0; i--)
+            h += ks[i];
+        return h;
+    }
+
+    /**
+     * Returns a string representation of this set, in the format of
+     * {@link AbstractCollection#toString}.
+     *
+     * @return a string representation of this set
+     */
+    public String toString() {
+        PrimitiveIterator.OfInt it = iterator();
+        if (!it.hasNext())
+            return "[]";
+        StringBuilder sb = new StringBuilder();
+        sb.append('[');
+        for (;;) {
+            sb.append(it.nextInt());
+            if (!it.hasNext())
+                return sb.append(']').toString();
+            sb.append(", ");
+        }
+    }
+
+    /**
+     * Returns a copy of this set.
+     *
+     * @return a copy of this set
+     */
+    public Object clone() {
+        try {
+            IntHashSet result = (IntHashSet) super.clone();
+            result.keys = keys.clone();
+            result.modCount = 0;
+            return result;
+        } catch (CloneNotSupportedException e) {
+            // this shouldn't happen, since we are Cloneable
+            throw new InternalError();
+        }
+    }
+
+    /**
+     * Save the state of the set to a stream (that is, serialize it).
+     *
+     * @serialData The number of elements (int) is emitted, followed by
+     *             each element (int), in no particular order.
+     */
+    private void writeObject(java.io.ObjectOutputStream s)
+        throws java.io.IOException {
+        s.defaultWriteObject();
+        s.writeInt(size);
+        if (containsZero)
+            s.writeInt(0);
+        int[] ks = keys;
+        for (int i = mask; i >= 0; i--)
+            if (ks[i] != 0)
+                s.writeInt(ks[i]);
+    }
+
+    /**
+     * Reconstitute the set from a stream (that is, deserialize it).
+     */
+    private void readObject(java.io.ObjectInputStream s)
+        throws java.io.IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        if (!(loadFactor > 0.0f && loadFactor < 1.0f))
+            throw new java.io.InvalidObjectException("Illegal load factor: " +
+                                                     loadFactor);
+        int n = s.readInt();
+        if (n < 0)
+            throw new java.io.InvalidObjectException("Illegal size: " + n);
+        allocate(tableSizeFor(n, loadFactor));
+        for (int i = 0; i < n; i++)
+            add(s.readInt());
+    }
+
+    /**
+     * Traverses the slots in descending order, starting with 0 if
+     * present, as do the iterators of IntHashMap.
+     */
+    private class Itr implements PrimitiveIterator.OfInt {
+        int pos = mask + 1;     // next slot to examine, going down
+        int lastSlot = -1;      // slot of the last element; -1 if none
+        boolean lastZero;       // whether the last element was 0
+        int remaining = size;   // number of elements not yet returned
+        boolean mustReturnZero = containsZero;
+        IntArrayList wrapped;   // elements moved behind the traversal
+        int expectedModCount = modCount;
+
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        public int nextInt() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (remaining <= 0)
+                throw new NoSuchElementException();
+            remaining--;
+            if (mustReturnZero) {
+                mustReturnZero = false;
+                lastZero = true;
+                return 0;
+            }
+            lastZero = false;
+            int[] ks = keys;
+            for (;;) {
+                if (--pos < 0) {
+                    int k = wrapped.get(-pos - 1);
+                    int i = hash(k) & mask;
+                    while (ks[i] != k)
+                        i = (i + 1) & mask;
+                    lastSlot = i;
+                    return k;
+                }
+                if (ks[pos] != 0) {
+                    lastSlot = pos;
+                    return ks[pos];
+                }
+            }
+        }
+
+        public Integer next() {
+            return nextInt();
+        }
+
+        public void remove() {
+            if (lastSlot < 0 && !lastZero)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (lastZero) {
+                containsZero = false;
+                lastZero = false;
+            } else if (pos < 0) {
+                shiftKeys(lastSlot, null);
+            } else {
+                if (wrapped == null)
+                    wrapped = new IntArrayList(2);
+                shiftKeys(lastSlot, wrapped);
+            }
+            lastSlot = -1;
+            modCount++;
+            size--;
+            expectedModCount = modCount;
+        }
+    }
+}
@@ -0,0 +1,858 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util;
+
+/**
+ * A hash table mapping {@code long} keys to object values.  Unlike a
+ * {@link HashMap}{@code <Long,V>}, which allocates an entry object and a
+ * boxed {@link Long} for each mapping, a {@code LongHashMap} keeps its keys
+ * in a {@code long[]} and its values in a parallel {@code Object[]},
+ * resolving collisions by linear probing, so that at the default load
+ * factor a mapping costs about 24 bytes besides the value itself, and
+ * lookups usually touch one or two cache lines.  Removal shifts later
+ * entries of the probe sequence back rather than leaving deleted
+ * markers, so tables do not degrade under repeated insertion and
+ * removal.
+ *
+ * <p>The operations follow those of {@link Map}, with {@code long} keys.
+ * This class permits {@code null} values; as with {@link HashMap}, a
+ * return value of {@code null} from {@link #get get} may mean either that
+ * the key is absent or that it maps to {@code null}, and
+ * {@link #containsKey containsKey} distinguishes the two.  The
+ * {@link #equals equals} and {@link #hashCode hashCode} methods are
+ * consistent with each other, though not with those of {@link Map}.
+ * Mappings may be traversed without boxing by a {@link Cursor}, or by the
+ * {@link #keyIterator keyIterator}, whose
+ * {@link PrimitiveIterator.OfLong#nextLong nextLong} method does not box.
+ *
+ * <p>The load factor, by default 0.5, bounds the fraction of the table
+ * occupied before it is doubled.  Since each probe past the home slot of
+ * a key costs little more than a comparison, higher load factors trade
+ * lookup time for space more gently than they do for {@link HashMap}, up
+ * to about 0.75.
+ *
+ * <p><strong>Note that this implementation is not synchronized.</strong>
+ * If multiple threads access a {@code LongHashMap} concurrently, and at
+ * least one of the threads modifies the map structurally, it <i>must</i>
+ * be synchronized externally.  The cursors and iterators returned by
+ * this class are <i>fail-fast</i> in the same sense as those of
+ * {@link HashMap}.
+ *
+ * @param <V> the type of mapped values
+ * @see HashMap
+ * @since 1.8
+ */
+public class LongHashMap<V> implements Cloneable, java.io.Serializable {
+    private static final long serialVersionUID = -7374447378829623369L;
+
+    /**
+     * A cursor over the mappings of a {@code LongHashMap}.  A cursor is
+     * positioned before the first mapping when created, and
+     * {@link #advance advance} moves it to the next mapping, after which
+     * the key and value of that mapping may be read, the value replaced,
+     * or the mapping removed.
+     *
+     * @param <V> the type of mapped values
+     * @since 1.8
+     */
+    public static interface Cursor<V> {
+        /**
+         * Moves this cursor to the next mapping.
+         *
+         * @return {@code true} if there was a next mapping, or
+         *         {@code false} if the cursor has passed the last mapping
+         * @throws ConcurrentModificationException if the map was modified
+         *         other than through this cursor
+         */
+        boolean advance();
+
+        /**
+         * Returns the key of the current mapping.
+         *
+         * @return the key of the current mapping
+         * @throws IllegalStateException if the cursor is not positioned
+         *         at a mapping
+         */
+        long key();
+
+        /**
+         * Returns the value of the current mapping.
+         *
+         * @return the value of the current mapping
+         * @throws IllegalStateException if the cursor is not positioned
+         *         at a mapping
+         */
+        V value();
+
+        /**
+         * Replaces the value of the current mapping.
+         *
+         * @param value the new value
+         * @return the previous value
+         * @throws IllegalStateException if the cursor is not positioned
+         *         at a mapping
+         */
+        V setValue(V value);
+
+        /**
+         * Removes the current mapping.  The cursor is then positioned
+         * between mappings, and must be advanced before it is used again.
+         *
+         * @throws IllegalStateException if the cursor is not positioned
+         *         at a mapping
+         */
+        void remove();
+    }
+
+    /**
+     * The default initial capacity.
+     */
+    static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+    /**
+     * The maximum number of slots in the table, excluding the slot
+     * reserved for the key 0.
+     */
+    static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /**
+     * The load factor used when none specified in constructor.
+     */
+    static final float DEFAULT_LOAD_FACTOR = 0.5f;
+
+    /**
+     * The keys.  A key of 0 marks a free slot, except in the last slot,
+     * at index mask + 1, which is reserved for the key 0 itself and is
+     * in use only if containsZeroKey is set.  The length, excluding
+     * that slot, is a power of two.
+     */
+    transient long[] keys;
+
+    /**
+     * The values, at the same indices as their keys.
+     */
+    transient Object[] vals;
+
+    /**
+     * Whether the map contains the key 0.
+     */
+    transient boolean containsZeroKey;
+
+    /**
+     * One less than the number of probed slots.
+     */
+    transient int mask;
+
+    /**
+     * The number of mappings.
+     */
+    transient int size;
+
+    /**
+     * The number of mappings with nonzero keys at which the table is
+     * doubled.
+     */
+    transient int threshold;
+
+    /**
+     * The number of times this map has been structurally modified.
+     */
+    transient int modCount;
+
+    /**
+     * The load factor of the table.
+     *
+     * @serial
+     */
+    final float loadFactor;
+
+    /**
+     * Constructs an empty map able to hold the specified number of
+     * mappings without resizing, using the specified load factor.
+     *
+     * @param  initialCapacity the expected number of mappings
+     * @param  loadFactor      the load factor
+     * @throws IllegalArgumentException if the initial capacity is negative
+     *         or the load factor is not between 0 and 1, exclusive
+     */
+    public LongHashMap(int initialCapacity, float loadFactor) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " +
+                                               initialCapacity);
+        if (!(loadFactor > 0.0f && loadFactor < 1.0f))
+            throw new IllegalArgumentException("Illegal load factor: " +
+                                               loadFactor);
+        this.loadFactor = loadFactor;
+        allocate(tableSizeFor(initialCapacity, loadFactor));
+    }
+
+    /**
+     * Constructs an empty map able to hold the specified number of
+     * mappings without resizing, using the default load factor (0.5).
+     *
+     * @param  initialCapacity the expected number of mappings
+     * @throws IllegalArgumentException if the initial capacity is negative
+     */
+    public LongHashMap(int initialCapacity) {
+        this(initialCapacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs an empty map with the default initial capacity (16)
+     * and load factor (0.5).
+     */
+    public LongHashMap() {
+        this(DEFAULT_INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs a map with the same mappings as the specified map, using
+     * the default load factor (0.5).
+     *
+     * @param m the map whose mappings are to be placed in this map
+     * @throws NullPointerException if the specified map is null
+     */
+    public LongHashMap(LongHashMap<? extends V> m) {
+        this(Math.max(m.size, DEFAULT_INITIAL_CAPACITY), DEFAULT_LOAD_FACTOR);
+        putAll(m);
+    }
+
+    /**
+     * Scrambles the bits of a key, so that keys differing only in their
+     * high bits, or forming arithmetic sequences, spread over the table.
+     */
+    static int hash(long k) {
+        long h = k * 0x9e3779b97f4a7c15L;
+        int x = (int)(h ^ (h >>> 32));
+        return x ^ (x >>> 16);
+    }
+
+    /**
+     * Returns the number of probed slots for a table holding the given
+     * number of nonzero keys at the given load factor.
+     */
+    private static int tableSizeFor(int expected, float loadFactor) {
+        long n = Math.max(2L, (long)Math.ceil(expected / (double)loadFactor));
+        if (n >= MAXIMUM_CAPACITY)
+            return MAXIMUM_CAPACITY;
+        return Integer.highestOneBit((int)n - 1) << 1;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity + 1];
+        vals = new Object[capacity + 1];
+        mask = capacity - 1;
+        threshold = Math.min(capacity - 1, (int)(capacity * loadFactor));
+    }
+
+    /**
+     * Moves all mappings to a table with the given number of slots.
+     */
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldVals = vals;
+        int oldCapacity = mask + 1;
+        allocate(capacity);
+        long[] ks = keys;
+        Object[] vs = vals;
+        int m = mask;
+        for (int j = 0; j < oldCapacity; j++) {
+            long k = oldKeys[j];
+            if (k != 0) {
+                int i = hash(k) & m;
+                while (ks[i] != 0)
+                    i = (i + 1) & m;
+                ks[i] = k;
+                vs[i] = oldVals[j];
+            }
+        }
+        ks[m + 1] = 0;
+        vs[m + 1] = oldVals[oldCapacity];
+    }
+
+    /**
+     * Returns the slot holding the given key, or -1 if none.
+     */
+    final int indexOf(long key) {
+        if (key == 0)
+            return containsZeroKey ? mask + 1 : -1;
+        long[] ks = keys;
+        int m = mask;
+        int i = hash(key) & m;
+        for (long k; (k = ks[i]) != 0; i = (i + 1) & m)
+            if (k == key)
+                return i;
+        return -1;
+    }
+
+    /**
+     * Returns the number of key-value mappings in this map.
+     *
+     * @return the number of key-value mappings in this map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns {@code true} if this map contains no key-value mappings.
+     *
+     * @return {@code true} if this map contains no key-value mappings
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or
+     * {@code null} if this map contains no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value to which the specified key is mapped, or
+     *         {@code null} if this map contains no mapping for the key
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int i = indexOf(key);
+        return (i < 0) ? null : (V)vals[i];
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or
+     * {@code defaultValue} if this map contains no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @param defaultValue the value to return if the key is absent
+     * @return the value to which the specified key is mapped, or
+     *         {@code defaultValue} if this map contains no mapping for the
+     *         key
+     */
+    @SuppressWarnings("unchecked")
+    public V getOrDefault(long key, V defaultValue) {
+        int i = indexOf(key);
+        return (i < 0) ? defaultValue : (V)vals[i];
+    }
+
+    /**
+     * Returns {@code true} if this map contains a mapping for the
+     * specified key.
+     *
+     * @param key the key whose presence in this map is to be tested
+     * @return {@code true} if this map contains a mapping for the key
+     */
+    public boolean containsKey(long key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Returns {@code true} if this map maps one or more keys to the
+     * specified value.  This operation takes time linear in the capacity
+     * of the table.
+     *
+     * @param value value whose presence in this map is to be tested
+     * @return {@code true} if this map maps one or more keys to the
+     *         specified value
+     */
+    public boolean containsValue(Object value) {
+        long[] ks = keys;
+        Object[] vs = vals;
+        if (containsZeroKey && Objects.equals(vs[mask + 1], value))
+            return true;
+        for (int i = mask; i >= 0; i--)
+            if (ks[i] != 0 && Objects.equals(vs[i], value))
+                return true;
+        return false;
+    }
+
+    /**
+     * Associates the specified value with the specified key in this map.
+     * If the map previously contained a mapping for the key, the old
+     * value is replaced.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with {@code key}, or
+     *         {@code null} if there was no mapping for {@code key}
+     * @throws IllegalStateException if the table has reached its maximum
+     *         capacity
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        Object[] vs = vals;
+        if (key == 0) {
+            int z = mask + 1;
+            Object oldValue = vs[z];
+            vs[z] = value;
+            if (!containsZeroKey) {
+                containsZeroKey = true;
+                modCount++;
+                size++;
+            }
+            return (V)oldValue;
+        }
+        long[] ks = keys;
+        int m = mask;
+        int i = hash(key) & m;
+        for (long k; (k = ks[i]) != 0; i = (i + 1) & m) {
+            if (k == key) {
+                Object oldValue = vs[i];
+                vs[i] = value;
+                return (V)oldValue;
+            }
+        }
+        if (size - (containsZeroKey ? 1 : 0) >= threshold) {
+            if (mask + 1 == MAXIMUM_CAPACITY)
+                throw new IllegalStateException("Capacity exceeded");
+            rehash((mask + 1) << 1);
+            ks = keys;
+            vs = vals;
+            m = mask;
+            i = hash(key) & m;
+            while (ks[i] != 0)
+                i = (i + 1) & m;
+        }
+        ks[i] = key;
+        vs[i] = value;
+        modCount++;
+        size++;
+        return null;
+    }
+
+    /**
+     * Copies all of the mappings from the specified map to this map,
+     * replacing any mappings this map had for the same keys.
+     *
+     * @param m mappings to be stored in this map
+     * @throws NullPointerException if the specified map is null
+     */
+    public void putAll(LongHashMap<? extends V> m) {
+        int n = m.size;
+        if (n == 0)
+            return;
+        int capacity = tableSizeFor(size + n, loadFactor);
+        if (capacity > mask + 1)
+            rehash(capacity);
+        long[] ks = m.keys;
+        Object[] vs = m.vals;
+        for (int i = ks.length - 1; i >= 0; i--) {
+            if (ks[i] != 0)
+                putValue(ks[i], vs[i]);
+        }
+        if (m.containsZeroKey)
+            putValue(0, vs[m.mask + 1]);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void putValue(long key, Object value) {
+        put(key, (V)value);
+    }
+
+    /**
+     * Removes the mapping for the specified key from this map if present.
+     *
+     * @param  key key whose mapping is to be removed from the map
+     * @return the previous value associated with {@code key}, or
+     *         {@code null} if there was no mapping for {@code key}
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int i = indexOf(key);
+        if (i < 0)
+            return null;
+        Object oldValue = vals[i];
+        removeSlot(i);
+        return (V)oldValue;
+    }
+
+    /**
+     * Removes the mapping in the given slot.
+     */
+    final void removeSlot(int i) {
+        if (i == mask + 1) {
+            containsZeroKey = false;
+            vals[i] = null;
+        } else
+            shiftKeys(i, null);
+        modCount++;
+        size--;
+    }
+
+    /**
+     * Empties the given slot, then refills it, and each slot emptied
+     * in turn, with the next key of the probe sequence that may occupy
+     * it, until reaching a free slot.  If a list is given, it receives
+     * the keys that are moved from the start of the table to its end,
+     * which a traversal in descending order of slots would miss.
+     */
+    final void shiftKeys(int i, LongArrayList wrapped) {
+        long[] ks = keys;
+        Object[] vs = vals;
+        int m = mask;
+        for (;;) {
+            int last = i;
+            long k;
+            for (;;) {
+                i = (i + 1) & m;
+                if ((k = ks[i]) == 0) {
+                    ks[last] = 0;
+                    vs[last] = null;
+                    return;
+                }
+                int h = hash(k) & m;
+                // k may move back unless its home h is cyclically
+                // within (last, i]
+                if (last <= i ? (last >= h || h > i) : (last >= h && h > i))
+                    break;
+            }
+            if (wrapped != null && i < last)
+                wrapped.add(k);
+            ks[last] = k;
+            vs[last] = vs[i];
+        }
+    }
+
+    /**
+     * Removes all of the mappings from this map.  The capacity of the
+     * table is retained.
+     */
+    public void clear() {
+        if (size > 0) {
+            modCount++;
+            Arrays.fill(keys, 0L);
+            Arrays.fill(vals, null);
+            containsZeroKey = false;
+            size = 0;
+        }
+    }
+
+    /**
+     * Returns the keys contained in this map, in no particular order.
+     *
+     * @return a new array containing the keys of this map
+     */
+    public long[] keys() {
+        long[] a = new long[size];
+        int j = 0;
+        if (containsZeroKey)
+            j++;                            // a[0] is already 0
+        long[] ks = keys;
+        for (int i = mask; i >= 0; i--)
+            if (ks[i] != 0)
+                a[j++] = ks[i];
+        return a;
+    }
+
+    /**
+     * Returns an iterator over the keys of this map, in no particular
+     * order.  Its {@code remove} method removes the mapping of the key last
+     * returned.
+     *
+     * @return an iterator over the keys of this map
+     */
+    public PrimitiveIterator.OfLong keyIterator() {
+        return new KeyIterator();
+    }
+
+    /**
+     * Returns a {@link Collection} view of the values contained in this
+     * map.  The collection is backed by the map, and supports removal,
+     * which removes the corresponding mapping from the map, but not
+     * addition.
+     *
+     * @return a view of the values contained in this map
+     */
+    public Collection<V> values() {
+        Collection<V> vs = values;
+        return (vs != null) ? vs : (values = new Values());
+    }
+
+    private transient Collection<V> values;
+
+    /**
+     * Returns a cursor over the mappings of this map, in no particular
+     * order.
+     *
+     * @return a cursor over the mappings of this map
+     */
+    public Cursor<V> cursor() {
+        return new EntryCursor();
+    }
+
+    /**
+     * Compares the specified object with this map for equality.  Returns
+     * {@code true} if the given object is also a {@code LongHashMap} and the
+     * two maps represent the same mappings.
+     *
+     * @param o object to be compared for equality with this map
+     * @return {@code true} if the specified object is equal to this map
+     */
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (!(o instanceof LongHashMap))
+            return false;
+        LongHashMap<?> m = (LongHashMap<?>) o;
+        if (m.size != size)
+            return false;
+        Cursor<V> c = cursor();
+        while (c.advance()) {
+            int i = m.indexOf(c.key());
+            if (i < 0 || !Objects.equals(c.value(), m.vals[i]))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the hash code value for this map, which is the sum of
+     * {@code (int)(key ^ (key >>> 32)) ^ Objects.hashCode(value)} over
+     * its mappings, as for the entries of a {@code Map<Long,V>}.
+     *
+     * @return the hash code value for this map
+     */
+    public int hashCode() {
+        int h = 0;
+        Cursor<V> c = cursor();
+        while (c.advance()) {
+            long k = c.key();
+            h += (int)(k ^ (k >>> 32)) ^ Objects.hashCode(c.value());
+        }
+        return h;
+    }
+
+    /**
+     * Returns a string representation of this map, in the format of
+     * {@link AbstractMap#toString}.
+     *
+     * @return a string representation of this map
+     */
+    public String toString() {
+        Cursor<V> c = cursor();
+        if (!c.advance())
+            return "{}";
+        StringBuilder sb = new StringBuilder();
+        sb.append('{');
+        for (;;) {
+            V value = c.value();
+            sb.append(c.key());
+            sb.append('=');
+            sb.append(value == this ? "(this Map)" : value);
+            if (!c.advance())
+                return sb.append('}').toString();
+            sb.append(", ");
+        }
+    }
+
+    /**
+     * Returns a shallow copy of this map: the keys and values themselves
+     * are not cloned.
+     *
+     * @return a shallow copy of this map
+     */
+    @SuppressWarnings("unchecked")
+    public Object clone() {
+        try {
+            LongHashMap<V> result = (LongHashMap<V>) super.clone();
+            result.keys = keys.clone();
+            result.vals = vals.clone();
+            result.values = null;
+            result.modCount = 0;
+            return result;
+        } catch (CloneNotSupportedException e) {
+            // this shouldn't happen, since we are Cloneable
+            throw new InternalError();
+        }
+    }
+
+    /**
+     * Save the state of the map to a stream (that is, serialize it).
+     *
+     * @serialData The number of mappings (int) is emitted, followed by
+     *             the key (long) and value (Object) of each mapping, in no
+     *             particular order.
+     */
+    private void writeObject(java.io.ObjectOutputStream s)
+        throws java.io.IOException {
+        s.defaultWriteObject();
+        s.writeInt(size);
+        Cursor<V> c = cursor();
+        while (c.advance()) {
+            s.writeLong(c.key());
+            s.writeObject(c.value());
+        }
+    }
+
+    /**
+     * Reconstitute the map from a stream (that is, deserialize it).
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(java.io.ObjectInputStream s)
+        throws java.io.IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        if (!(loadFactor > 0.0f && loadFactor < 1.0f))
+            throw new java.io.InvalidObjectException("Illegal load factor: " +
+                                                     loadFactor);
+        int n = s.readInt();
+        if (n < 0)
+            throw new java.io.InvalidObjectException("Illegal size: " + n);
+        allocate(tableSizeFor(n, loadFactor));
+        for (int i = 0; i < n; i++) {
+            long key = s.readLong();
+            put(key, (V) s.readObject());
+        }
+    }
+
+    /**
+     * Base of the traversals, which visit the slots in descending
+     * order, starting with the slot reserved for key 0, so that a
+     * removal shifting keys back only moves them to slots already
+     * visited.  The keys that a removal moves from the start of the
+     * table to its end are collected and visited last.
+     */
+    abstract class HashIterator {
+        int pos = mask + 1;     // next slot to examine, going down
+        int last = -1;          // slot of the current mapping; -1 if none
+        int remaining = size;   // number of mappings not yet returned
+        boolean mustReturnZero = containsZeroKey;
+        LongArrayList wrapped;    // keys moved behind the traversal
+        int expectedModCount = modCount;
+
+        public final boolean hasNext() {
+            return remaining > 0;
+        }
+
+        final int nextSlot() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (remaining <= 0)
+                throw new NoSuchElementException();
+            remaining--;
+            if (mustReturnZero) {
+                mustReturnZero = false;
+                return last = mask + 1;
+            }
+            long[] ks = keys;
+            for (;;) {
+                if (--pos < 0) {
+                    long k = wrapped.get(-pos - 1);
+                    int i = hash(k) & mask;
+                    while (ks[i] != k)
+                        i = (i + 1) & mask;
+                    return last = i;
+                }
+                if (ks[pos] != 0)
+                    return last = pos;
+            }
+        }
+
+        final int currentSlot() {
+            if (last < 0)
+                throw new IllegalStateException();
+            return last;
+        }
+
+        public final void remove() {
+            if (last < 0)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (last == mask + 1 || pos < 0) {
+                removeSlot(last);
+            } else {
+                if (wrapped == null)
+                    wrapped = new LongArrayList(2);
+                shiftKeys(last, wrapped);
+                modCount++;
+                size--;
+            }
+            last = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+    final class KeyIterator extends HashIterator
+        implements PrimitiveIterator.OfLong {
+        public long nextLong() {
+            return keys[nextSlot()];
+        }
+
+        public Long next() {
+            return nextLong();
+        }
+    }
+
+    final class ValueIterator extends HashIterator implements Iterator<V> {
+        @SuppressWarnings("unchecked")
+        public V next() {
+            return (V)vals[nextSlot()];
+        }
+    }
+
+    final class EntryCursor extends HashIterator implements Cursor<V> {
+        public boolean advance() {
+            if (!hasNext()) {
+                if (modCount != expectedModCount)
+                    throw new ConcurrentModificationException();
+                last = -1;
+                return false;
+            }
+            nextSlot();
+            return true;
+        }
+
+        public long key() {
+            return keys[currentSlot()];
+        }
+
+        @SuppressWarnings("unchecked")
+        public V value() {
+            return (V)vals[currentSlot()];
+        }
+
+        @SuppressWarnings("unchecked")
+        public V setValue(V value) {
+            int i = currentSlot();
+            Object oldValue = vals[i];
+            vals[i] = value;
+            return (V)oldValue;
+        }
+    }
+
+    final class Values extends AbstractCollection<V> {
+        public Iterator<V> iterator() {
+            return new ValueIterator();
+        }
+        public int size() {
+            return size;
+        }
+        public boolean contains(Object o) {
+            return containsValue(o);
+        }
+        public void clear() {
+            LongHashMap.this.clear();
+        }
+    }
+}
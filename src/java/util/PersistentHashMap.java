@@ -0,0 +1,761 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util;
+
+/**
+ * An immutable map whose modified versions share most of their structure
+ * with it.  A {@code PersistentHashMap} is a hash array mapped trie: a
+ * tree whose nodes each hold up to 32 mappings or subtrees, selected by
+ * five bits of the hash codes of keys and stored compactly in an array
+ * of the occupied positions together with a bitmap of them.  Lookups,
+ * and the methods returning a modified version of the map,
+ * {@link #plus plus} and {@link #minus minus}, take time proportional to
+ * log<sub>32</sub> of its size, and a new version shares all of the
+ * nodes of the old one except those on the path to the changed mapping.
+ * The old version remains valid and unchanged.
+ *
+ * <p>Versions may therefore be published freely to other threads, and
+ * kept for as long as they are needed, at a cost per update that does
+ * not grow with the size of the map, unlike a copy made with
+ * {@link Collections#unmodifiableMap}.  Many updates in a row are
+ * cheaper still through a {@link Builder}, which updates in place the
+ * nodes it has already copied.
+ *
+ * <p>A {@code PersistentHashMap} implements the read operations of
+ * {@link Map}; its mutative methods, and those of its collection views,
+ * throw {@code UnsupportedOperationException}.  Like {@link HashMap}, it
+ * permits {@code null} keys and values, and makes no guarantees as to
+ * the order of its mappings.  It is safe for use by multiple threads.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ * @see PersistentVector
+ * @since 1.8
+ */
+public final class PersistentHashMap<K,V> extends AbstractMap<K,V>
+    implements java.io.Serializable {
+
+    /*
+     * The trie is made of BitmapNodes, whose arrays hold, for each set
+     * bit of their bitmaps, either a Leaf, which is the entry of one
+     * mapping, or a child Node at the next level; and of CollisionNodes,
+     * holding the leaves of keys whose hash codes are all equal.  A
+     * subtree is collapsed to its leaf when it comes to hold a single
+     * mapping, so that removals leave no chains of nodes.  The layout
+     * follows Bagwell's "Ideal Hash Trees" and the hash maps of Clojure.
+     *
+     * Nodes created by a Builder carry its edit token, and the builder
+     * updates such nodes in place.  Tokens are never reused, so the
+     * nodes of a built map are never updated again.
+     */
+
+    private static final long serialVersionUID = -5765430128384211903L;
+
+    static final int BITS = 5;
+    static final int MASK = (1 << BITS) - 1;
+
+    private static final PersistentHashMap<Object,Object> EMPTY =
+        new PersistentHashMap<>(0, null);
+
+    /** The number of mappings */
+    final int count;
+
+    /** The root of the trie, or null if empty */
+    final Node root;
+
+    private transient Set<Map.Entry<K,V>> entrySet;
+
+    PersistentHashMap(int count, Node root) {
+        this.count = count;
+        this.root = root;
+    }
+
+    /**
+     * Returns the empty map.
+     *
+     * @param <K> the type of keys
+     * @param <V> the type of values
+     * @return the empty map
+     */
+    @SuppressWarnings("unchecked")
+    public static <K,V> PersistentHashMap<K,V> empty() {
+        return (PersistentHashMap<K,V>) EMPTY;
+    }
+
+    /**
+     * Returns a map with the mappings of the given map.
+     *
+     * @param <K> the type of keys
+     * @param <V> the type of values
+     * @param m the map
+     * @return a map with the mappings of {@code m}
+     * @throws NullPointerException if {@code m} is null
+     */
+    @SuppressWarnings("unchecked")
+    public static <K,V> PersistentHashMap<K,V> from(
+            Map<? extends K, ? extends V> m) {
+        if (m instanceof PersistentHashMap)
+            return (PersistentHashMap<K,V>) m;
+        Builder<K,V> b = builder();
+        b.putAll(m);
+        return b.build();
+    }
+
+    /**
+     * Returns a new builder, holding no mappings.
+     *
+     * @param <K> the type of keys
+     * @param <V> the type of values
+     * @return a new builder
+     */
+    public static <K,V> Builder<K,V> builder() {
+        return PersistentHashMap.<K,V>empty().toBuilder();
+    }
+
+    /**
+     * Returns a new builder holding the mappings of this map.  This map
+     * is not affected by updates of the builder.
+     *
+     * @return a new builder
+     */
+    public Builder<K,V> toBuilder() {
+        return new Builder<>(this);
+    }
+
+    /**
+     * Spreads the bits of hash codes, as in {@link HashMap}, since the
+     * lowest bits select the position in the root.
+     */
+    static int hash(Object key) {
+        if (key == null)
+            return 0;
+        int h = key.hashCode();
+        h ^= (h >>> 20) ^ (h >>> 12);
+        return h ^ (h >>> 7) ^ (h >>> 4);
+    }
+
+    static boolean eq(Object a, Object b) {
+        return (a == null) ? b == null : a.equals(b);
+    }
+
+    /**
+     * Returns the number of key-value mappings in this map.
+     *
+     * @return the number of key-value mappings in this map
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or
+     * {@code null} if this map contains no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value to which the specified key is mapped, or
+     *         {@code null} if this map contains no mapping for the key
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        Leaf<?,?> l = (root == null) ? null : root.find(0, hash(key), key);
+        return (l == null) ? null : (V) l.getValue();
+    }
+
+    /**
+     * Returns {@code true} if this map contains a mapping for the
+     * specified key.
+     *
+     * @param key key whose presence in this map is to be tested
+     * @return {@code true} if this map contains a mapping for the
+     *         specified key
+     */
+    public boolean containsKey(Object key) {
+        return root != null && root.find(0, hash(key), key) != null;
+    }
+
+    /**
+     * Returns a map with the mappings of this map, except that the
+     * specified key is mapped to the specified value.  Returns this map
+     * if the key is already mapped to the identical value.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the new map
+     */
+    public PersistentHashMap<K,V> plus(K key, V value) {
+        boolean[] added = new boolean[1];
+        Leaf<K,V> leaf = new Leaf<>(hash(key), key, value);
+        Node newRoot = (root == null) ? leaf.asNode(null)
+            : root.assoc(null, 0, leaf, added);
+        if (root == null)
+            added[0] = true;
+        if (newRoot == root)
+            return this;
+        return new PersistentHashMap<>(added[0] ? count + 1 : count, newRoot);
+    }
+
+    /**
+     * Returns a map with the mappings of this map except that of the
+     * specified key.  Returns this map if the key is absent.
+     *
+     * @param key key whose mapping is to be removed
+     * @return the new map
+     */
+    public PersistentHashMap<K,V> minus(Object key) {
+        if (root == null)
+            return this;
+        Node newRoot = root.without(null, 0, hash(key), key, new boolean[1]);
+        if (newRoot == root)
+            return this;
+        if (newRoot == null)
+            return empty();
+        return new PersistentHashMap<>(count - 1, newRoot);
+    }
+
+    /**
+     * Returns a {@link Set} view of the mappings contained in this map.
+     * The set, its iterator and its entries do not support modification.
+     *
+     * @return a set view of the mappings contained in this map
+     */
+    public Set<Map.Entry<K,V>> entrySet() {
+        Set<Map.Entry<K,V>> es = entrySet;
+        return (es != null) ? es : (entrySet = new EntrySet());
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<K,V>> {
+        public Iterator<Map.Entry<K,V>> iterator() {
+            return new EntryIterator<>(root);
+        }
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry) || root == null)
+                return false;
+            Map.Entry<?,?> e = (Map.Entry<?,?>) o;
+            Object k = e.getKey();
+            Leaf<?,?> l = root.find(0, hash(k), k);
+            return l != null && eq(l.getValue(), e.getValue());
+        }
+        public int size() {
+            return count;
+        }
+    }
+
+    /**
+     * Iterates over the leaves of a trie, depth first, keeping the
+     * nodes being traversed and the positions reached in them.
+     */
+    static final class EntryIterator<K,V> implements Iterator<Map.Entry<K,V>> {
+        // Depth is at most 7 levels of bitmap nodes plus a collision node
+        private final Object[][] arrays = new Object[8][];
+        private final int[] positions = new int[8];
+        private int depth = -1;
+        private Leaf<K,V> next;
+
+        EntryIterator(Node root) {
+            if (root != null) {
+                push(root);
+                advance();
+            }
+        }
+
+        private void push(Node node) {
+            arrays[++depth] = node.children();
+            positions[depth] = 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                Object[] a = arrays[depth];
+                if (positions[depth] == a.length) {
+                    arrays[depth--] = null;
+                    continue;
+                }
+                Object o = a[positions[depth]++];
+                if (o instanceof Leaf) {
+                    next = (Leaf<K,V>) o;
+                    return;
+                }
+                push((Node) o);
+            }
+        }
+
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        public Map.Entry<K,V> next() {
+            Leaf<K,V> l = next;
+            if (l == null)
+                throw new NoSuchElementException();
+            advance();
+            return l;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * A mapping, and the entry reporting it.
+     */
+    static final class Leaf<K,V> extends AbstractMap.SimpleImmutableEntry<K,V> {
+        private static final long serialVersionUID = 3203584137286340519L;
+
+        final int hash;
+
+        Leaf(int hash, K key, V value) {
+            super(key, value);
+            this.hash = hash;
+        }
+
+        /** Returns a root node holding only this leaf. */
+        Node asNode(Object edit) {
+            return new BitmapNode(edit, 1 << (hash & MASK),
+                                  new Object[] { this });
+        }
+    }
+
+    /**
+     * A node of the trie.  The mutative methods return this node if
+     * they change nothing, this node itself, updated, if it carries the
+     * given non-null edit token, and a new node otherwise.
+     */
+    abstract static class Node {
+        final Object edit;
+
+        Node(Object edit) {
+            this.edit = edit;
+        }
+
+        boolean editable(Object edit) {
+            return edit != null && this.edit == edit;
+        }
+
+        /** Returns the leaf of the key, or null. */
+        abstract Leaf<?,?> find(int shift, int hash, Object key);
+
+        /**
+         * Returns the node with the given leaf added, or replacing the
+         * leaf of its key; sets added[0] if the key was absent.
+         */
+        abstract Node assoc(Object edit, int shift, Leaf<?,?> leaf,
+                            boolean[] added);
+
+        /**
+         * Returns the node without the key, or null if it is empty; sets
+         * removed[0] if the key was present.
+         */
+        abstract Node without(Object edit, int shift, int hash, Object key,
+                              boolean[] removed);
+
+        /** Returns the leaves and subtrees of this node. */
+        abstract Object[] children();
+
+        /** Returns the only leaf of this node, or null if it has more. */
+        abstract Leaf<?,?> singleLeaf();
+    }
+
+    /**
+     * Returns a node holding two leaves of distinct keys.
+     */
+    static Node pair(Object edit, int shift, Leaf<?,?> a, Leaf<?,?> b) {
+        if (a.hash == b.hash)
+            return new CollisionNode(edit, a.hash, new Leaf<?,?>[] { a, b });
+        int ia = (a.hash >>> shift) & MASK, ib = (b.hash >>> shift) & MASK;
+        if (ia == ib)
+            return new BitmapNode(edit, 1 << ia, new Object[] {
+                    pair(edit, shift + BITS, a, b) });
+        return new BitmapNode(edit, (1 << ia) | (1 << ib),
+                              (ia < ib) ? new Object[] { a, b }
+                                        : new Object[] { b, a });
+    }
+
+    static final class BitmapNode extends Node {
+        int bitmap;
+        Object[] array;
+
+        BitmapNode(Object edit, int bitmap, Object[] array) {
+            super(edit);
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        Leaf<?,?> find(int shift, int hash, Object key) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0)
+                return null;
+            Object o = array[Integer.bitCount(bitmap & (bit - 1))];
+            if (o instanceof Leaf) {
+                Leaf<?,?> l = (Leaf<?,?>) o;
+                return (l.hash == hash && eq(l.getKey(), key)) ? l : null;
+            }
+            return ((Node) o).find(shift + BITS, hash, key);
+        }
+
+        private BitmapNode set(Object edit, int i, Object o) {
+            if (editable(edit)) {
+                array[i] = o;
+                return this;
+            }
+            Object[] a = array.clone();
+            a[i] = o;
+            return new BitmapNode(edit, bitmap, a);
+        }
+
+        Node assoc(Object edit, int shift, Leaf<?,?> leaf, boolean[] added) {
+            int bit = 1 << ((leaf.hash >>> shift) & MASK);
+            int i = Integer.bitCount(bitmap & (bit - 1));
+            if ((bitmap & bit) == 0) {
+                added[0] = true;
+                int n = array.length;
+                Object[] a = new Object[n + 1];
+                System.arraycopy(array, 0, a, 0, i);
+                a[i] = leaf;
+                System.arraycopy(array, i, a, i + 1, n - i);
+                if (editable(edit)) {
+                    bitmap |= bit;
+                    array = a;
+                    return this;
+                }
+                return new BitmapNode(edit, bitmap | bit, a);
+            }
+            Object o = array[i];
+            if (o instanceof Node) {
+                Node n = ((Node) o).assoc(edit, shift + BITS, leaf, added);
+                return (n == o) ? this : set(edit, i, n);
+            }
+            Leaf<?,?> l = (Leaf<?,?>) o;
+            if (l.hash == leaf.hash && eq(l.getKey(), leaf.getKey())) {
+                if (l.getValue() == leaf.getValue())
+                    return this;
+                return set(edit, i, leaf);
+            }
+            added[0] = true;
+            return set(edit, i, pair(edit, shift + BITS, l, leaf));
+        }
+
+        Node without(Object edit, int shift, int hash, Object key,
+                     boolean[] removed) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0)
+                return this;
+            int i = Integer.bitCount(bitmap & (bit - 1));
+            Object o = array[i];
+            if (o instanceof Node) {
+                Node n = ((Node) o).without(edit, shift + BITS, hash, key,
+                                            removed);
+                if (!removed[0])
+                    return this;
+                if (n != null) {
+                    // The child may have been updated in place
+                    Leaf<?,?> single = n.singleLeaf();
+                    if (single != null)
+                        return set(edit, i, single);
+                    return (n == o) ? this : set(edit, i, n);
+                }
+            } else {
+                Leaf<?,?> l = (Leaf<?,?>) o;
+                if (l.hash != hash || !eq(l.getKey(), key))
+                    return this;
+                removed[0] = true;
+            }
+            if (bitmap == bit)
+                return null;
+            int n = array.length;
+            Object[] a = new Object[n - 1];
+            System.arraycopy(array, 0, a, 0, i);
+            System.arraycopy(array, i + 1, a, i, n - i - 1);
+            if (editable(edit)) {
+                bitmap ^= bit;
+                array = a;
+                return this;
+            }
+            return new BitmapNode(edit, bitmap ^ bit, a);
+        }
+
+        Object[] children() {
+            return array;
+        }
+
+        Leaf<?,?> singleLeaf() {
+            return (array.length == 1 && array[0] instanceof Leaf)
+                ? (Leaf<?,?>) array[0] : null;
+        }
+    }
+
+    static final class CollisionNode extends Node {
+        final int hash;
+        Leaf<?,?>[] leaves;
+
+        CollisionNode(Object edit, int hash, Leaf<?,?>[] leaves) {
+            super(edit);
+            this.hash = hash;
+            this.leaves = leaves;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < leaves.length; i++)
+                if (eq(leaves[i].getKey(), key))
+                    return i;
+            return -1;
+        }
+
+        Leaf<?,?> find(int shift, int hash, Object key) {
+            if (hash != this.hash)
+                return null;
+            int i = indexOf(key);
+            return (i < 0) ? null : leaves[i];
+        }
+
+        private Node withLeaves(Object edit, Leaf<?,?>[] a) {
+            if (editable(edit)) {
+                leaves = a;
+                return this;
+            }
+            return new CollisionNode(edit, hash, a);
+        }
+
+        Node assoc(Object edit, int shift, Leaf<?,?> leaf, boolean[] added) {
+            if (leaf.hash != hash) {
+                // Nest this node below a bitmap node, beside the new leaf
+                Node n = new BitmapNode(edit, 1 << ((hash >>> shift) & MASK),
+                                        new Object[] { this });
+                return n.assoc(edit, shift, leaf, added);
+            }
+            int i = indexOf(leaf.getKey());
+            Leaf<?,?>[] a;
+            if (i >= 0) {
+                if (leaves[i].getValue() == leaf.getValue())
+                    return this;
+                a = leaves.clone();
+                a[i] = leaf;
+            } else {
+                added[0] = true;
+                a = Arrays.copyOf(leaves, leaves.length + 1);
+                a[leaves.length] = leaf;
+            }
+            return withLeaves(edit, a);
+        }
+
+        Node without(Object edit, int shift, int hash, Object key,
+                     boolean[] removed) {
+            int i = (hash == this.hash) ? indexOf(key) : -1;
+            if (i < 0)
+                return this;
+            removed[0] = true;
+            int n = leaves.length;
+            if (n == 1)
+                return null;
+            Leaf<?,?>[] a = new Leaf<?,?>[n - 1];
+            System.arraycopy(leaves, 0, a, 0, i);
+            System.arraycopy(leaves, i + 1, a, i, n - i - 1);
+            return withLeaves(edit, a);
+        }
+
+        Object[] children() {
+            return leaves;
+        }
+
+        Leaf<?,?> singleLeaf() {
+            return (leaves.length == 1) ? leaves[0] : null;
+        }
+    }
+
+    /**
+     * A builder of maps.  A builder holds a set of mappings, which it
+     * updates in place, copying the nodes it shares with maps only when
+     * it first updates them, and produces a map of its mappings in
+     * constant time.  A builder may not be used after {@link #build
+     * build} has been called.
+     *
+     * <p>Builders are not safe for use by multiple threads without
+     * external synchronization.
+     *
+     * @param <K> the type of keys
+     * @param <V> the type of values
+     * @since 1.8
+     */
+    public static final class Builder<K,V> {
+        /** The edit token of the nodes of this builder; null once built */
+        private Object edit;
+        private int count;
+        private Node root;
+
+        Builder(PersistentHashMap<K,V> m) {
+            edit = new Object();
+            count = m.count;
+            root = m.root;
+        }
+
+        private void ensureEditable() {
+            if (edit == null)
+                throw new IllegalStateException("Builder has been built");
+        }
+
+        /**
+         * Returns the number of mappings in this builder.
+         *
+         * @return the number of mappings
+         * @throws IllegalStateException if this builder has been built
+         */
+        public int size() {
+            ensureEditable();
+            return count;
+        }
+
+        /**
+         * Returns the value to which the specified key is mapped, or
+         * {@code null} if this builder contains no mapping for the key.
+         *
+         * @param key the key whose associated value is to be returned
+         * @return the value of the key, or {@code null}
+         * @throws IllegalStateException if this builder has been built
+         */
+        @SuppressWarnings("unchecked")
+        public V get(Object key) {
+            ensureEditable();
+            Leaf<?,?> l = (root == null) ? null
+                : root.find(0, hash(key), key);
+            return (l == null) ? null : (V) l.getValue();
+        }
+
+        /**
+         * Maps the specified key to the specified value.
+         *
+         * @param key key with which the specified value is to be
+         *        associated
+         * @param value value to be associated with the specified key
+         * @return this builder
+         * @throws IllegalStateException if this builder has been built
+         */
+        public Builder<K,V> put(K key, V value) {
+            ensureEditable();
+            Leaf<K,V> leaf = new Leaf<>(hash(key), key, value);
+            if (root == null) {
+                root = leaf.asNode(edit);
+                count = 1;
+            } else {
+                boolean[] added = new boolean[1];
+                root = root.assoc(edit, 0, leaf, added);
+                if (added[0])
+                    count++;
+            }
+            return this;
+        }
+
+        /**
+         * Copies all of the mappings of the specified map to this
+         * builder.
+         *
+         * @param m mappings to be stored in this builder
+         * @return this builder
+         * @throws IllegalStateException if this builder has been built
+         * @throws NullPointerException if {@code m} is null
+         */
+        public Builder<K,V> putAll(Map<? extends K, ? extends V> m) {
+            for (Map.Entry<? extends K, ? extends V> e : m.entrySet())
+                put(e.getKey(), e.getValue());
+            return this;
+        }
+
+        /**
+         * Removes the mapping for a key from this builder if it is
+         * present.
+         *
+         * @param key key whose mapping is to be removed
+         * @return this builder
+         * @throws IllegalStateException if this builder has been built
+         */
+        public Builder<K,V> remove(Object key) {
+            ensureEditable();
+            if (root != null) {
+                boolean[] removed = new boolean[1];
+                root = root.without(edit, 0, hash(key), key, removed);
+                if (removed[0])
+                    count--;
+            }
+            return this;
+        }
+
+        /**
+         * Returns a map of the mappings of this builder, and invalidates
+         * the builder.
+         *
+         * @return a map of the mappings of this builder
+         * @throws IllegalStateException if this builder has been built
+         */
+        public PersistentHashMap<K,V> build() {
+            ensureEditable();
+            edit = null;
+            return (root == null) ? PersistentHashMap.<K,V>empty()
+                : new PersistentHashMap<K,V>(count, root);
+        }
+    }
+
+    /**
+     * Serializes maps by their mappings.
+     *
+     * @serial include
+     */
+    private static class SerializationProxy implements java.io.Serializable {
+        private static final long serialVersionUID = 1520637340524871409L;
+
+        /**
+         * The keys and values of the map, alternately.
+         *
+         * @serial
+         */
+        private final Object[] keysAndValues;
+
+        SerializationProxy(PersistentHashMap<?,?> m) {
+            keysAndValues = new Object[2 * m.count];
+            int i = 0;
+            for (Map.Entry<?,?> e : m.entrySet()) {
+                keysAndValues[i++] = e.getKey();
+                keysAndValues[i++] = e.getValue();
+            }
+        }
+
+        private Object readResolve() {
+            Builder<Object,Object> b = builder();
+            for (int i = 0; i < keysAndValues.length; i += 2)
+                b.put(keysAndValues[i], keysAndValues[i + 1]);
+            return b.build();
+        }
+    }
+
+    private Object writeReplace() {
+        return new SerializationProxy(this);
+    }
+
+    private void readObject(java.io.ObjectInputStream stream)
+        throws java.io.InvalidObjectException {
+        throw new java.io.InvalidObjectException("Proxy required");
+    }
+}
@@ -0,0 +1,574 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util;
+
+/**
+ * An immutable list whose modified versions share most of their
+ * structure with it.  A {@code PersistentVector} is a tree of arrays of
+ * 32 elements, so that {@link #get get}, and the methods returning a
+ * modified version of the vector, {@link #plus plus}, {@link #with with}
+ * and {@link #pop pop}, take time proportional to log<sub>32</sub> of
+ * its size: at most seven array accesses or copies of arrays of 32
+ * elements, whatever the size.  A new version shares all of the arrays
+ * of the old one except those on the path to the changed element, and
+ * the old version remains valid and unchanged.  The last, incomplete,
+ * array of elements is held outside the tree, so that appending
+ * usually copies only that array.
+ *
+ * <p>Versions may therefore be published freely to other threads, and
+ * kept for as long as they are needed, at a cost per update that does
+ * not grow with the size of the vector, unlike a copy made with
+ * {@link Collections#unmodifiableList} or
+ * {@link java.util.concurrent.CopyOnWriteArrayList}.  Many updates in a
+ * row are cheaper still through a {@link Builder}, which updates in
+ * place the arrays it has already copied.
+ *
+ * <p>A {@code PersistentVector} implements the read operations of
+ * {@link List}; its mutative methods throw
+ * {@code UnsupportedOperationException}.  It permits all elements,
+ * including {@code null}, and is safe for use by multiple threads.
+ *
+ * @param <E> the type of elements in this vector
+ * @see PersistentHashMap
+ * @since 1.8
+ */
+public final class PersistentVector<E> extends AbstractList<E>
+    implements RandomAccess, java.io.Serializable {
+
+    /*
+     * The elements are held in a tree of Nodes, each an array of 32
+     * children, whose leaves are arrays of 32 elements, except for the
+     * last up to 32 elements, which are held in the tail array.  The
+     * index of an element below the tail selects a child at each level
+     * by five of its bits, highest first; shift is the number of bits
+     * below those of the root.  The layout is that of the vectors of
+     * Clojure, after Bagwell's "Ideal Hash Trees".
+     *
+     * Nodes created by a Builder carry its edit token, and the builder
+     * updates such nodes in place.  Tokens are never reused, so the
+     * nodes of a built vector are never updated again.
+     */
+
+    private static final long serialVersionUID = 6357213918402542175L;
+
+    static final int BITS = 5;
+    static final int WIDTH = 1 << BITS;
+    static final int MASK = WIDTH - 1;
+
+    static final class Node {
+        final Object edit;
+        final Object[] array;
+
+        Node(Object edit, Object[] array) {
+            this.edit = edit;
+            this.array = array;
+        }
+
+        Node(Object edit) {
+            this(edit, new Object[WIDTH]);
+        }
+    }
+
+    static final Node EMPTY_NODE = new Node(null);
+
+    private static final PersistentVector<Object> EMPTY =
+        new PersistentVector<>(0, BITS, EMPTY_NODE, new Object[0]);
+
+    /** The number of elements */
+    final int count;
+
+    /** The number of index bits below those selecting a child of root */
+    final int shift;
+
+    final Node root;
+
+    /** The last (count - tailOffset()) elements */
+    final Object[] tail;
+
+    PersistentVector(int count, int shift, Node root, Object[] tail) {
+        this.count = count;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    /**
+     * Returns the empty vector.
+     *
+     * @param <E> the type of elements
+     * @return the empty vector
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentVector<E> empty() {
+        return (PersistentVector<E>) EMPTY;
+    }
+
+    /**
+     * Returns a vector containing the given elements, in order.
+     *
+     * @param <E> the type of elements
+     * @param elements the elements
+     * @return a vector of the elements
+     */
+    @SafeVarargs
+    public static <E> PersistentVector<E> of(E... elements) {
+        Builder<E> b = builder();
+        for (E e : elements)
+            b.add(e);
+        return b.build();
+    }
+
+    /**
+     * Returns a vector containing the elements of the given collection,
+     * in the order they are returned by its iterator.
+     *
+     * @param <E> the type of elements
+     * @param c the collection
+     * @return a vector of the elements of {@code c}
+     * @throws NullPointerException if {@code c} is null
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentVector<E> from(Collection<? extends E> c) {
+        if (c instanceof PersistentVector)
+            return (PersistentVector<E>) c;
+        Builder<E> b = builder();
+        b.addAll(c);
+        return b.build();
+    }
+
+    /**
+     * Returns a new builder, holding no elements.
+     *
+     * @param <E> the type of elements
+     * @return a new builder
+     */
+    public static <E> Builder<E> builder() {
+        return PersistentVector.<E>empty().toBuilder();
+    }
+
+    /**
+     * Returns a new builder holding the elements of this vector.  This
+     * vector is not affected by updates of the builder.
+     *
+     * @return a new builder
+     */
+    public Builder<E> toBuilder() {
+        return new Builder<>(this);
+    }
+
+    /** Returns the index of the first element of the tail. */
+    private static int tailOffset(int count) {
+        return (count < WIDTH) ? 0 : ((count - 1) >>> BITS) << BITS;
+    }
+
+    /**
+     * Returns the array holding the element of the given index.
+     */
+    private Object[] arrayFor(int index) {
+        if (index >= tailOffset(count))
+            return tail;
+        Node node = root;
+        for (int level = shift; level > 0; level -= BITS)
+            node = (Node) node.array[(index >>> level) & MASK];
+        return node.array;
+    }
+
+    private void rangeCheck(int index) {
+        if (index < 0 || index >= count)
+            throw new IndexOutOfBoundsException("Index: " + index +
+                                                ", Size: " + count);
+    }
+
+    /**
+     * Returns the element at the specified position in this vector.
+     *
+     * @param index index of the element to return
+     * @return the element at the specified position in this vector
+     * @throws IndexOutOfBoundsException {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        rangeCheck(index);
+        return (E) arrayFor(index)[index & MASK];
+    }
+
+    /**
+     * Returns the number of elements in this vector.
+     *
+     * @return the number of elements in this vector
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns a vector with the elements of this vector followed by the
+     * given element.
+     *
+     * @param e the element to append
+     * @return the new vector
+     */
+    public PersistentVector<E> plus(E e) {
+        if (count - tailOffset(count) < WIDTH) {
+            Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+            newTail[tail.length] = e;
+            return new PersistentVector<>(count + 1, shift, root, newTail);
+        }
+        Node tailNode = new Node(null, tail);
+        Node newRoot;
+        int newShift = shift;
+        if ((count >>> BITS) > (1 << shift)) {     // root is full
+            newRoot = new Node(null);
+            newRoot.array[0] = root;
+            newRoot.array[1] = newPath(null, shift, tailNode);
+            newShift += BITS;
+        } else
+            newRoot = pushTail(null, count, shift, root, tailNode);
+        return new PersistentVector<>(count + 1, newShift, newRoot,
+                                      new Object[] { e });
+    }
+
+    /**
+     * Returns a vector with the elements of this vector, except that the
+     * element at the specified position is replaced by the given one.
+     *
+     * @param index index of the element to replace
+     * @param e element to be stored at the specified position
+     * @return the new vector
+     * @throws IndexOutOfBoundsException if the index is out of range
+     *         ({@code index < 0 || index >= size()})
+     */
+    public PersistentVector<E> with(int index, E e) {
+        rangeCheck(index);
+        if (index >= tailOffset(count)) {
+            Object[] newTail = tail.clone();
+            newTail[index & MASK] = e;
+            return new PersistentVector<>(count, shift, root, newTail);
+        }
+        return new PersistentVector<>(count, shift,
+                                      assoc(null, shift, root, index, e),
+                                      tail);
+    }
+
+    /**
+     * Returns a vector with the elements of this vector except the last.
+     *
+     * @return the new vector
+     * @throws NoSuchElementException if this vector is empty
+     */
+    public PersistentVector<E> pop() {
+        if (count == 0)
+            throw new NoSuchElementException();
+        if (count == 1)
+            return empty();
+        if (count - tailOffset(count) > 1)
+            return new PersistentVector<>(count - 1, shift, root,
+                                          Arrays.copyOf(tail,
+                                                        tail.length - 1));
+        Object[] newTail = arrayFor(count - 2);
+        Node newRoot = popTail(count, shift, root);
+        int newShift = shift;
+        if (newRoot == null)
+            newRoot = EMPTY_NODE;
+        if (shift > BITS && newRoot.array[1] == null) {
+            newRoot = (Node) newRoot.array[0];
+            newShift -= BITS;
+        }
+        return new PersistentVector<>(count - 1, newShift, newRoot, newTail);
+    }
+
+    /**
+     * Returns a path of new nodes of the given height leading to node.
+     */
+    static Node newPath(Object edit, int level, Node node) {
+        for (; level > 0; level -= BITS) {
+            Node parent = new Node(edit);
+            parent.array[0] = node;
+            node = parent;
+        }
+        return node;
+    }
+
+    /**
+     * Returns parent, or a copy of it unless it carries the given edit
+     * token, with tailNode appended as the leaf following the first
+     * count - 1 elements.
+     */
+    static Node pushTail(Object edit, int count, int level, Node parent,
+                         Node tailNode) {
+        Node ret = editable(edit, parent);
+        int i = ((count - 1) >>> level) & MASK;
+        Node child;
+        if (level == BITS)
+            child = tailNode;
+        else {
+            Node c = (Node) ret.array[i];
+            child = (c != null)
+                ? pushTail(edit, count, level - BITS, c, tailNode)
+                : newPath(edit, level - BITS, tailNode);
+        }
+        ret.array[i] = child;
+        return ret;
+    }
+
+    /**
+     * Returns node, or a copy of it unless it carries the given edit
+     * token, with the element of the given index replaced.
+     */
+    static Node assoc(Object edit, int level, Node node, int index,
+                      Object e) {
+        Node ret = editable(edit, node);
+        if (level == 0)
+            ret.array[index & MASK] = e;
+        else {
+            int i = (index >>> level) & MASK;
+            ret.array[i] = assoc(edit, level - BITS, (Node) node.array[i],
+                                 index, e);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns a copy of node without the leaf of the last element of
+     * a vector of count elements, or null if that leaves it empty.
+     */
+    private static Node popTail(int count, int level, Node node) {
+        int i = ((count - 2) >>> level) & MASK;
+        if (level > BITS) {
+            Node child = popTail(count, level - BITS, (Node) node.array[i]);
+            if (child == null && i == 0)
+                return null;
+            Node ret = new Node(null, node.array.clone());
+            ret.array[i] = child;
+            return ret;
+        } else if (i == 0)
+            return null;
+        Node ret = new Node(null, node.array.clone());
+        ret.array[i] = null;
+        return ret;
+    }
+
+    private static Node editable(Object edit, Node node) {
+        return (edit != null && node.edit == edit)
+            ? node : new Node(edit, node.array.clone());
+    }
+
+    /**
+     * Returns an iterator over the elements in this vector in proper
+     * sequence, which reads each array of elements once.
+     *
+     * @return an iterator over the elements in this vector
+     */
+    public Iterator<E> iterator() {
+        return new Itr();
+    }
+
+    private final class Itr implements Iterator<E> {
+        int index;
+        int base = -WIDTH;
+        Object[] array;
+
+        public boolean hasNext() {
+            return index < count;
+        }
+
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (index >= count)
+                throw new NoSuchElementException();
+            if (index - base == WIDTH) {
+                array = arrayFor(index);
+                base = index;
+            }
+            return (E) array[index++ & MASK];
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * A builder of vectors.  A builder holds a sequence of elements,
+     * which it updates in place, copying the arrays it shares with
+     * vectors only when it first updates them, and produces a vector of
+     * its elements in constant time.  A builder may not be used after
+     * {@link #build build} has been called.
+     *
+     * <p>Builders are not safe for use by multiple threads without
+     * external synchronization.
+     *
+     * @param <E> the type of elements
+     * @since 1.8
+     */
+    public static final class Builder<E> {
+        /** The edit token of the nodes of this builder; null once built */
+        private Object edit;
+        private int count;
+        private int shift;
+        private Node root;
+        private Object[] tail;
+
+        Builder(PersistentVector<E> v) {
+            edit = new Object();
+            count = v.count;
+            shift = v.shift;
+            root = new Node(edit, v.root.array.clone());
+            tail = Arrays.copyOf(v.tail, WIDTH);
+        }
+
+        private void ensureEditable() {
+            if (edit == null)
+                throw new IllegalStateException("Builder has been built");
+        }
+
+        /**
+         * Returns the number of elements in this builder.
+         *
+         * @return the number of elements
+         */
+        public int size() {
+            ensureEditable();
+            return count;
+        }
+
+        /**
+         * Appends the specified element.
+         *
+         * @param e the element to append
+         * @return this builder
+         * @throws IllegalStateException if this builder has been built
+         */
+        public Builder<E> add(E e) {
+            ensureEditable();
+            if (count - tailOffset(count) < WIDTH) {
+                tail[count & MASK] = e;
+                count++;
+                return this;
+            }
+            Node tailNode = new Node(edit, tail);
+            tail = new Object[WIDTH];
+            tail[0] = e;
+            if ((count >>> BITS) > (1 << shift)) {
+                Node newRoot = new Node(edit);
+                newRoot.array[0] = root;
+                newRoot.array[1] = newPath(edit, shift, tailNode);
+                root = newRoot;
+                shift += BITS;
+            } else
+                root = pushTail(edit, count, shift, root, tailNode);
+            count++;
+            return this;
+        }
+
+        /**
+         * Appends all of the elements in the specified collection, in
+         * the order that they are returned by its iterator.
+         *
+         * @param c collection containing elements to be appended
+         * @return this builder
+         * @throws IllegalStateException if this builder has been built
+         * @throws NullPointerException if {@code c} is null
+         */
+        public Builder<E> addAll(Collection<? extends E> c) {
+            for (E e : c)
+                add(e);
+            return this;
+        }
+
+        /**
+         * Replaces the element at the specified position.
+         *
+         * @param index index of the element to replace
+         * @param e element to be stored at the specified position
+         * @return this builder
+         * @throws IndexOutOfBoundsException if the index is out of range
+         *         ({@code index < 0 || index >= size()})
+         * @throws IllegalStateException if this builder has been built
+         */
+        public Builder<E> set(int index, E e) {
+            ensureEditable();
+            if (index < 0 || index >= count)
+                throw new IndexOutOfBoundsException("Index: " + index +
+                                                    ", Size: " + count);
+            if (index >= tailOffset(count))
+                tail[index & MASK] = e;
+            else
+                root = assoc(edit, shift, root, index, e);
+            return this;
+        }
+
+        /**
+         * Returns a vector of the elements of this builder, and
+         * invalidates the builder.
+         *
+         * @return a vector of the elements of this builder
+         * @throws IllegalStateException if this builder has been built
+         */
+        public PersistentVector<E> build() {
+            ensureEditable();
+            edit = null;
+            if (count == 0)
+                return empty();
+            return new PersistentVector<>(
+                count, shift, root,
+                Arrays.copyOf(tail, count - tailOffset(count)));
+        }
+    }
+
+    /**
+     * Serializes vectors by their elements.
+     *
+     * @serial include
+     */
+    private static class SerializationProxy implements java.io.Serializable {
+        private static final long serialVersionUID = -2290614583546329473L;
+
+        /**
+         * The elements of the vector.
+         *
+         * @serial
+         */
+        private final Object[] elements;
+
+        SerializationProxy(PersistentVector<?> v) {
+            elements = v.toArray();
+        }
+
+        private Object readResolve() {
+            return PersistentVector.of(elements);
+        }
+    }
+
+    private Object writeReplace() {
+        return new SerializationProxy(this);
+    }
+
+    private void readObject(java.io.ObjectInputStream stream)
+        throws java.io.InvalidObjectException {
+        throw new java.io.InvalidObjectException("Proxy required");
+    }
+}
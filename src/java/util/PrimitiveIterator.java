@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util;
+
+/**
+ * An {@link Iterator} specialized for a primitive element type, whose
+ * elements may be retrieved without being boxed.  The specialized
+ * subtypes {@link OfInt}, {@link OfLong} and {@link OfDouble} are
+ * returned by the primitive collections of this package, such as
+ * {@link IntArrayList} and {@link IntHashSet}.
+ *
+ * <p>The {@link Iterator#next next} method of a primitive iterator
+ * returns the same elements as the specialized method, boxed.
+ *
+ * @param <T> the boxed type of the elements
+ * @since 1.8
+ */
+public interface PrimitiveIterator<T> extends Iterator<T> {
+
+    /**
+     * An iterator specialized for {@code int} values.
+     *
+     * @since 1.8
+     */
+    public static interface OfInt extends PrimitiveIterator<Integer> {
+        /**
+         * Returns the next {@code int} element in the iteration.
+         *
+         * @return the next {@code int} element in the iteration
+         * @throws NoSuchElementException if the iteration has no more
+         *         elements
+         */
+        int nextInt();
+    }
+
+    /**
+     * An iterator specialized for {@code long} values.
+     *
+     * @since 1.8
+     */
+    public static interface OfLong extends PrimitiveIterator<Long> {
+        /**
+         * Returns the next {@code long} element in the iteration.
+         *
+         * @return the next {@code long} element in the iteration
+         * @throws NoSuchElementException if the iteration has no more
+         *         elements
+         */
+        long nextLong();
+    }
+
+    /**
+     * An iterator specialized for {@code double} values.
+     *
+     * @since 1.8
+     */
+    public static interface OfDouble extends PrimitiveIterator<Double> {
+        /**
+         * Returns the next {@code double} element in the iteration.
+         *
+         * @return the next {@code double} element in the iteration
+         * @throws NoSuchElementException if the iteration has no more
+         *         elements
+         */
+        double nextDouble();
+    }
+}
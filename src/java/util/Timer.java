@@ -25,7 +25,9 @@
 
 package java.util;
 import java.util.Date;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * A facility for threads to schedule tasks for future execution in a
@@ -73,10 +75,25 @@ import java.util.concurrent.atomic.AtomicInteger;
  * ScheduledThreadPoolExecutor} with one thread makes it equivalent to
  * {@code Timer}.
  *
+ * <p>A timer may instead be {@linkplain #Timer(String, boolean, Executor)
+ * created} with an {@link Executor}.  Such a timer still has a single
+ * background thread, but that thread only waits for tasks to become due
+ * and hands them to the executor, so that a slow task does not delay the
+ * others.  Executions of the same repeating task never overlap: the next
+ * execution is not dispatched until the previous one has completed.
+ * Fixed-rate and fixed-delay scheduling otherwise behave as described
+ * below.  If a task throws an exception, or the executor rejects a task,
+ * the timer is cancelled, as if its thread had terminated.
+ *
  * <p>Implementation note: This class scales to large numbers of concurrently
  * scheduled tasks (thousands should present no problem).  Internally,
  * it uses a binary heap to represent its task queue, so the cost to schedule
  * a task is O(log n), where n is the number of concurrently scheduled tasks.
+ * Cancelled tasks are removed from the heap once they make up half of it,
+ * so that {@link #purge} need not be called to reclaim them.  A timer
+ * created with an executor instead keeps its tasks in a concurrent skip
+ * list, from which they are removed as soon as they are cancelled; such a
+ * timer does not serialize scheduling and cancellation on a single lock.
  *
  * <p>Implementation note: All constructors start a timer thread.
  *
@@ -93,12 +110,18 @@ public class Timer {
      * and the timer thread consumes, executing timer tasks as appropriate,
      * and removing them from the queue when they're obsolete.
      */
-    private final TaskQueue queue = new TaskQueue();
+    private final TaskQueue queue;
 
     /**
      * The timer thread.
      */
-    private final TimerThread thread = new TimerThread(queue);
+    private final TimerThread thread;
+
+    /**
+     * The dispatching thread of a timer created with an executor, in
+     * which case queue and thread are null; otherwise null.
+     */
+    private final TimerDispatcher dispatcher;
 
     /**
      * This object causes the timer's task execution thread to exit
@@ -109,6 +132,11 @@ public class Timer {
      */
     private final Object threadReaper = new Object() {
         protected void finalize() throws Throwable {
+            if (dispatcher != null) {
+                dispatcher.newTasksMayBeScheduled = false;
+                LockSupport.unpark(dispatcher);
+                return;
+            }
             synchronized(queue) {
                 thread.newTasksMayBeScheduled = false;
                 queue.notify(); // In case queue is empty.
@@ -156,6 +184,9 @@ public class Timer {
      * @since 1.5
      */
     public Timer(String name) {
+        queue = new TaskQueue();
+        thread = new TimerThread(queue);
+        dispatcher = null;
         thread.setName(name);
         thread.start();
     }
@@ -171,11 +202,54 @@ public class Timer {
      * @since 1.5
      */
     public Timer(String name, boolean isDaemon) {
+        queue = new TaskQueue();
+        thread = new TimerThread(queue);
+        dispatcher = null;
         thread.setName(name);
         thread.setDaemon(isDaemon);
         thread.start();
     }
 
+    /**
+     * Creates a new timer whose tasks are run by the given executor.
+     * The associated thread, which only dispatches tasks to the
+     * executor, does <i>not</i> {@linkplain Thread#setDaemon run as a
+     * daemon}.  The timer does not shut the executor down when it is
+     * cancelled.
+     *
+     * @param executor the executor that runs the tasks of this timer
+     * @throws NullPointerException if {@code executor} is null
+     * @since 1.8
+     */
+    public Timer(Executor executor) {
+        this("Timer-" + serialNumber(), false, executor);
+    }
+
+    /**
+     * Creates a new timer whose tasks are run by the given executor,
+     * and whose associated thread has the specified name and may be
+     * specified to {@linkplain Thread#setDaemon run as a daemon}.  The
+     * associated thread only dispatches tasks to the executor.  The
+     * timer does not shut the executor down when it is cancelled.
+     *
+     * @param name the name of the associated thread
+     * @param isDaemon true if the associated thread should run as a daemon
+     * @param executor the executor that runs the tasks of this timer
+     * @throws NullPointerException if {@code name} or {@code executor}
+     *         is null
+     * @since 1.8
+     */
+    public Timer(String name, boolean isDaemon, Executor executor) {
+        if (executor == null)
+            throw new NullPointerException();
+        queue = null;
+        thread = null;
+        dispatcher = new TimerDispatcher(executor);
+        dispatcher.setName(name);
+        dispatcher.setDaemon(isDaemon);
+        dispatcher.start();
+    }
+
     /**
      * Schedules the specified task for execution after the specified delay.
      *
@@ -392,6 +466,11 @@ public class Timer {
         if (Math.abs(period) > (Long.MAX_VALUE >> 1))
             period >>= 1;
 
+        if (dispatcher != null) {
+            dispatcher.sched(task, time, period);
+            return;
+        }
+
         synchronized(queue) {
             if (!thread.newTasksMayBeScheduled)
                 throw new IllegalStateException("Timer already cancelled.");
@@ -403,8 +482,11 @@ public class Timer {
                 task.nextExecutionTime = time;
                 task.period = period;
                 task.state = TimerTask.SCHEDULED;
+                task.queue = queue;
             }
 
+            if (queue.hasManyCancelled())
+                queue.purge();
             queue.add(task);
             if (queue.getMin() == task)
                 queue.notify();
@@ -426,6 +508,10 @@ public class Timer {
      * calls have no effect.
      */
     public void cancel() {
+        if (dispatcher != null) {
+            dispatcher.cancel();
+            return;
+        }
         synchronized(queue) {
             thread.newTasksMayBeScheduled = false;
             queue.clear();
@@ -450,25 +536,21 @@ public class Timer {
      * <p>Note that it is permissible to call this method from within a
      * a task scheduled on this timer.
      *
+     * <p>Since cancelled tasks are also removed automatically once they
+     * make up a large part of the queue, and immediately if this timer
+     * was created with an executor, this method often finds nothing to
+     * remove.
+     *
      * @return the number of tasks removed from the queue.
      * @since 1.5
      */
      public int purge() {
-         int result = 0;
+         if (dispatcher != null)
+             return 0;
 
          synchronized(queue) {
-             for (int i = queue.size(); i > 0; i--) {
-                 if (queue.get(i).state == TimerTask.CANCELLED) {
-                     queue.quickRemove(i);
-                     result++;
-                 }
-             }
-
-             if (result != 0)
-                 queue.heapify();
+             return queue.purge();
          }
-
-         return result;
      }
 }
 
@@ -533,6 +615,7 @@ class TimerThread extends Thread {
                     synchronized(task.lock) {
                         if (task.state == TimerTask.CANCELLED) {
                             queue.removeMin();
+                            queue.cancelledCount.decrementAndGet();
                             continue;  // No action required, poll queue again
                         }
                         currentTime = System.currentTimeMillis();
@@ -541,6 +624,7 @@ class TimerThread extends Thread {
                             if (task.period == 0) { // Non-repeating, remove
                                 queue.removeMin();
                                 task.state = TimerTask.EXECUTED;
+                                task.queue = null;
                             } else { // Repeating task, reschedule
                                 queue.rescheduleMin(
                                   task.period<0 ? currentTime   - task.period
@@ -553,168 +637,13 @@ class TimerThread extends Thread {
                 }
                 if (taskFired)  // Task fired; run it, holding no locks
                     task.run();
+                if (queue.hasManyCancelled()) {
+                    synchronized(queue) {
+                        queue.purge();
+                    }
+                }
             } catch(InterruptedException e) {
             }
         }
     }
 }
-
-/**
- * This class represents a timer task queue: a priority queue of TimerTasks,
- * ordered on nextExecutionTime.  Each Timer object has one of these, which it
- * shares with its TimerThread.  Internally this class uses a heap, which
- * offers log(n) performance for the add, removeMin and rescheduleMin
- * operations, and constant time performance for the getMin operation.
- */
-class TaskQueue {
-    /**
-     * Priority queue represented as a balanced binary heap: the two children
-     * of queue[n] are queue[2*n] and queue[2*n+1].  The priority queue is
-     * ordered on the nextExecutionTime field: The TimerTask with the lowest
-     * nextExecutionTime is in queue[1] (assuming the queue is nonempty).  For
-     * each node n in the heap, and each descendant of n, d,
-     * n.nextExecutionTime <= d.nextExecutionTime.
-     */
-    private TimerTask[] queue = new TimerTask[128];
-
-    /**
-     * The number of tasks in the priority queue.  (The tasks are stored in
-     * queue[1] up to queue[size]).
-     */
-    private int size = 0;
-
-    /**
-     * Returns the number of tasks currently on the queue.
-     */
-    int size() {
-        return size;
-    }
-
-    /**
-     * Adds a new task to the priority queue.
-     */
-    void add(TimerTask task) {
-        // Grow backing store if necessary
-        if (size + 1 == queue.length)
-            queue = Arrays.copyOf(queue, 2*queue.length);
-
-        queue[++size] = task;
-        fixUp(size);
-    }
-
-    /**
-     * Return the "head task" of the priority queue.  (The head task is an
-     * task with the lowest nextExecutionTime.)
-     */
-    TimerTask getMin() {
-        return queue[1];
-    }
-
-    /**
-     * Return the ith task in the priority queue, where i ranges from 1 (the
-     * head task, which is returned by getMin) to the number of tasks on the
-     * queue, inclusive.
-     */
-    TimerTask get(int i) {
-        return queue[i];
-    }
-
-    /**
-     * Remove the head task from the priority queue.
-     */
-    void removeMin() {
-        queue[1] = queue[size];
-        queue[size--] = null;  // Drop extra reference to prevent memory leak
-        fixDown(1);
-    }
-
-    /**
-     * Removes the ith element from queue without regard for maintaining
-     * the heap invariant.  Recall that queue is one-based, so
-     * 1 <= i <= size.
-     */
-    void quickRemove(int i) {
-        assert i <= size;
-
-        queue[i] = queue[size];
-        queue[size--] = null;  // Drop extra ref to prevent memory leak
-    }
-
-    /**
-     * Sets the nextExecutionTime associated with the head task to the
-     * specified value, and adjusts priority queue accordingly.
-     */
-    void rescheduleMin(long newTime) {
-        queue[1].nextExecutionTime = newTime;
-        fixDown(1);
-    }
-
-    /**
-     * Returns true if the priority queue contains no elements.
-     */
-    boolean isEmpty() {
-        return size==0;
-    }
-
-    /**
-     * Removes all elements from the priority queue.
-     */
-    void clear() {
-        // Null out task references to prevent memory leak
-        for (int i=1; i<=size; i++)
-            queue[i] = null;
-
-        size = 0;
-    }
-
-    /**
-     * Establishes the heap invariant (described above) assuming the heap
-     * satisfies the invariant except possibly for the leaf-node indexed by k
-     * (which may have a nextExecutionTime less than its parent's).
-     *
-     * This method functions by "promoting" queue[k] up the hierarchy
-     * (by swapping it with its parent) repeatedly until queue[k]'s
-     * nextExecutionTime is greater than or equal to that of its parent.
-     */
-    private void fixUp(int k) {
-        while (k > 1) {
-            int j = k >> 1;
-            if (queue[j].nextExecutionTime <= queue[k].nextExecutionTime)
-                break;
-            TimerTask tmp = queue[j];  queue[j] = queue[k]; queue[k] = tmp;
-            k = j;
-        }
-    }
-
-    /**
-     * Establishes the heap invariant (described above) in the subtree
-     * rooted at k, which is assumed to satisfy the heap invariant except
-     * possibly for node k itself (which may have a nextExecutionTime greater
-     * than its children's).
-     *
-     * This method functions by "demoting" queue[k] down the hierarchy
-     * (by swapping it with its smaller child) repeatedly until queue[k]'s
-     * nextExecutionTime is less than or equal to those of its children.
-     */
-    private void fixDown(int k) {
-        int j;
-        while ((j = k << 1) <= size && j > 0) {
-            if (j < size &&
-                queue[j].nextExecutionTime > queue[j+1].nextExecutionTime)
-                j++; // j indexes smallest kid
-            if (queue[k].nextExecutionTime <= queue[j].nextExecutionTime)
-                break;
-            TimerTask tmp = queue[j];  queue[j] = queue[k]; queue[k] = tmp;
-            k = j;
-        }
-    }
-
-    /**
-     * Establishes the heap invariant (described above) in the entire tree,
-     * assuming nothing about the order of the elements prior to the call.
-     */
-    void heapify() {
-        for (int i = size/2; i >= 1; i--)
-            fixDown(i);
-    }
-}
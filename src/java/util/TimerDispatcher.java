@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This "helper class" implements the dispatching thread of a timer created
+ * with an executor.  Scheduled tasks are kept in a concurrent skip list
+ * ordered on nextExecutionTime and then on a sequence number, so that
+ * scheduling and cancellation proceed in parallel with each other and
+ * with dispatching.  The thread waits for the first task to become due,
+ * removes it and hands it to the executor.  A repeating task is put back
+ * into the list, with its next execution time already computed, only
+ * after it has run, so that its executions never overlap.  Cancelled tasks
+ * remove themselves from the list.
+ */
+class TimerDispatcher extends Thread {
+    /**
+     * Orders tasks on nextExecutionTime, breaking ties by sequence number.
+     * The ordering fields of a task are not modified while it is in the
+     * list.
+     */
+    private static final Comparator<TimerTask> ORDER =
+        new Comparator<TimerTask>() {
+            public int compare(TimerTask a, TimerTask b) {
+                if (a.nextExecutionTime != b.nextExecutionTime)
+                    return (a.nextExecutionTime < b.nextExecutionTime) ? -1 : 1;
+                return (a.sequenceNumber < b.sequenceNumber) ? -1 :
+                    ((a.sequenceNumber == b.sequenceNumber) ? 0 : 1);
+            }
+        };
+
+    /**
+     * Sequence number to break scheduling ties, and in turn to
+     * guarantee FIFO order among tied entries.
+     */
+    private static final AtomicLong sequencer = new AtomicLong();
+
+    /**
+     * Set to false by the reaper when there are no more live references
+     * to the Timer.  Once false, and there are no tasks scheduled or
+     * running, there is no work left for us to do, so we terminate.
+     */
+    volatile boolean newTasksMayBeScheduled = true;
+
+    /**
+     * Set by Timer.cancel, or when a task fails or is rejected.
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * The scheduled tasks, used as a set.
+     */
+    private final ConcurrentSkipListMap<TimerTask,Boolean> tasks =
+        new ConcurrentSkipListMap<>(ORDER);
+
+    /**
+     * The number of tasks handed to the executor that have not yet
+     * completed.
+     */
+    private final AtomicInteger running = new AtomicInteger();
+
+    private final Executor executor;
+
+    TimerDispatcher(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Schedules a task; see Timer.sched.
+     */
+    void sched(TimerTask task, long time, long period) {
+        if (!newTasksMayBeScheduled)
+            throw new IllegalStateException("Timer already cancelled.");
+
+        synchronized(task.lock) {
+            if (task.state != TimerTask.VIRGIN)
+                throw new IllegalStateException(
+                    "Task already scheduled or cancelled");
+            task.nextExecutionTime = time;
+            task.period = period;
+            task.sequenceNumber = sequencer.getAndIncrement();
+            task.state = TimerTask.SCHEDULED;
+            task.dispatcher = this;
+        }
+        enqueue(task);
+        if (cancelled) // raced with cancel
+            tasks.remove(task);
+    }
+
+    /**
+     * Adds a task to the list, waking the thread if it is the new head.
+     */
+    private void enqueue(TimerTask task) {
+        tasks.put(task, Boolean.TRUE);
+        Map.Entry<TimerTask,Boolean> first = tasks.firstEntry();
+        if (first != null && first.getKey() == task)
+            LockSupport.unpark(this);
+    }
+
+    /**
+     * Removes a cancelled task; called by TimerTask.cancel.
+     */
+    void remove(TimerTask task) {
+        tasks.remove(task);
+    }
+
+    /**
+     * Discards all scheduled tasks and stops the thread.
+     */
+    void cancel() {
+        cancelled = true;
+        newTasksMayBeScheduled = false;
+        clear();
+        LockSupport.unpark(this);
+    }
+
+    /**
+     * Removes all tasks from the list, dropping their references to
+     * this dispatcher.
+     */
+    private void clear() {
+        Map.Entry<TimerTask,Boolean> e;
+        while ((e = tasks.pollFirstEntry()) != null) {
+            TimerTask task = e.getKey();
+            synchronized(task.lock) {
+                if (task.dispatcher == this)
+                    task.dispatcher = null;
+            }
+        }
+    }
+
+    public void run() {
+        try {
+            mainLoop();
+        } finally {
+            // Someone killed this Thread, behave as if Timer cancelled
+            cancelled = true;
+            newTasksMayBeScheduled = false;
+            clear();
+        }
+    }
+
+    /**
+     * The main dispatching loop.  (See class comment.)
+     */
+    private void mainLoop() {
+        while (!cancelled) {
+            Map.Entry<TimerTask,Boolean> first = tasks.firstEntry();
+            if (first == null) {
+                if (!newTasksMayBeScheduled && running.get() == 0)
+                    break; // Nothing scheduled, and nothing will be; die
+                LockSupport.park(this);
+                continue;
+            }
+            TimerTask task = first.getKey();
+            long currentTime = System.currentTimeMillis();
+            long executionTime = task.nextExecutionTime;
+            if (executionTime > currentTime) { // Not yet due; wait
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(
+                                          executionTime - currentTime));
+                continue;
+            }
+            if (tasks.remove(task) == null)
+                continue; // Cancelled meanwhile
+            synchronized(task.lock) {
+                if (task.state == TimerTask.CANCELLED)
+                    continue;
+                if (task.period == 0) { // Non-repeating
+                    task.state = TimerTask.EXECUTED;
+                    task.dispatcher = null;
+                } else { // Repeating; computed now, re-enqueued once run
+                    task.nextExecutionTime =
+                        task.period<0 ? currentTime   - task.period
+                                      : executionTime + task.period;
+                }
+            }
+            running.incrementAndGet();
+            try {
+                executor.execute(new Dispatch(task));
+            } catch (RejectedExecutionException ex) {
+                running.decrementAndGet();
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Runs a task on the executor, re-enqueueing it afterwards if it
+     * repeats.  A failing task cancels the timer, as it would by killing
+     * the thread of an ordinary timer.
+     */
+    private final class Dispatch implements Runnable {
+        private final TimerTask task;
+
+        Dispatch(TimerTask task) {
+            this.task = task;
+        }
+
+        public void run() {
+            boolean completed = false;
+            try {
+                task.run();
+                completed = true;
+            } finally {
+                if (!completed)
+                    cancel();
+                else if (task.period != 0) {
+                    boolean repeat;
+                    synchronized(task.lock) {
+                        repeat = (task.state == TimerTask.SCHEDULED);
+                    }
+                    if (repeat && !cancelled) {
+                        enqueue(task);
+                        if (cancelled) // raced with cancel
+                            tasks.remove(task);
+                    }
+                }
+                if (running.decrementAndGet() == 0 && !newTasksMayBeScheduled)
+                    LockSupport.unpark(TimerDispatcher.this);
+            }
+        }
+    }
+}
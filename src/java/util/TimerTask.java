@@ -80,6 +80,30 @@ public abstract class TimerTask implements Runnable {
      */
     long period = 0;
 
+    /**
+     * Sequence number breaking ties between tasks with equal execution
+     * times, assigned when the task is scheduled on a timer created with
+     * an executor.
+     */
+    long sequenceNumber;
+
+    /**
+     * The queue of the timer on which this task is scheduled, if that
+     * timer runs its tasks on its own thread, for accounting of
+     * cancelled tasks.  Cleared once it is no longer needed, that is
+     * when the task is cancelled, when a one-time task is executed and
+     * when the queue is cleared, so that a task kept by the application
+     * does not keep the timer's queue reachable.
+     */
+    TaskQueue queue;
+
+    /**
+     * The dispatcher of the timer on which this task is scheduled, if
+     * that timer was created with an executor, for removal of the task
+     * when it is cancelled.  Cleared like {@code queue}.
+     */
+    TimerDispatcher dispatcher;
+
     /**
      * Creates a new timer task.
      */
@@ -114,11 +138,21 @@ public abstract class TimerTask implements Runnable {
      *         executions from taking place.)
      */
     public boolean cancel() {
+        TimerDispatcher d;
         synchronized(lock) {
             boolean result = (state == SCHEDULED);
             state = CANCELLED;
-            return result;
+            if (!result)
+                return false;
+            if (queue != null)
+                queue.cancelledCount.incrementAndGet();
+            d = dispatcher;
+            queue = null;
+            dispatcher = null;
         }
+        if (d != null)
+            d.remove(this);
+        return true;
     }
 
     /**
@@ -929,6 +929,114 @@ public class Vector<E>
         return super.retainAll(c);
     }
 
+    /**
+     * Removes all of the elements of this Vector that satisfy the given
+     * predicate.  The predicate is first applied to every element, and
+     * only then are the surviving elements compacted within the backing
+     * array, in a single pass, rather than removed one at a time through
+     * an iterator.  If the predicate throws an exception, or modifies
+     * this Vector, no element is removed.
+     *
+     * @param filter a predicate which returns {@code true} for elements to
+     *        be removed
+     * @return {@code true} if any elements were removed
+     * @throws NullPointerException if the specified filter is null
+     * @throws ConcurrentModificationException if the predicate
+     *         structurally modifies this Vector
+     * @since 1.8
+     */
+    public synchronized boolean removeIf(
+            java.util.function.Predicate<? super E> filter) {
+        if (filter == null)
+            throw new NullPointerException();
+        // Find the elements to remove; any exception thrown by the
+        // predicate leaves the Vector unmodified
+        final int expectedModCount = modCount;
+        final int size = elementCount;
+        final BitSet removeSet = new BitSet(size);
+        int removeCount = 0;
+        for (int i = 0; modCount == expectedModCount && i < size; i++) {
+            @SuppressWarnings("unchecked") E e = (E) elementData[i];
+            if (filter.test(e)) {
+                removeSet.set(i);
+                removeCount++;
+            }
+        }
+        if (modCount != expectedModCount)
+            throw new ConcurrentModificationException();
+
+        // Shift the surviving elements left over the removed ones
+        if (removeCount == 0)
+            return false;
+        final int newSize = size - removeCount;
+        for (int i = 0, j = 0; j < newSize; i++, j++) {
+            i = removeSet.nextClearBit(i);
+            elementData[j] = elementData[i];
+        }
+        // Let gc do its work
+        for (int k = newSize; k < size; k++)
+            elementData[k] = null;
+        elementCount = newSize;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Replaces each element of this Vector with the result of applying
+     * the operator to that element.  Like {@link #set set}, this is not a
+     * structural modification.
+     *
+     * @param operator the operator to apply to each element
+     * @throws NullPointerException if the specified operator is null
+     * @throws ConcurrentModificationException if the operator
+     *         structurally modifies this Vector
+     * @since 1.8
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void replaceAll(
+            java.util.function.UnaryOperator<E> operator) {
+        if (operator == null)
+            throw new NullPointerException();
+        final Object[] elementData = this.elementData;
+        final int expectedModCount = modCount;
+        final int size = elementCount;
+        for (int i = 0; modCount == expectedModCount && i < size; i++)
+            elementData[i] = operator.apply((E) elementData[i]);
+        if (modCount != expectedModCount)
+            throw new ConcurrentModificationException();
+    }
+
+    /**
+     * Sorts this Vector according to the order induced by the specified
+     * comparator, or according to the natural ordering of its elements if
+     * the comparator is {@code null}.  This sort is guaranteed to be
+     * <i>stable</i>.
+     *
+     * <p>The backing array is sorted in place while holding this Vector's
+     * lock, using the same algorithm as
+     * {@link Arrays#sort(Object[], int, int, Comparator)}.
+     * {@link Collections#sort(List, Comparator)} uses this method when
+     * given a {@code Vector}.  Like {@link #set set}, sorting is not a
+     * structural modification.
+     *
+     * @param c the comparator to determine the order of the Vector, or
+     *        {@code null} to use the elements' natural ordering
+     * @throws ClassCastException if the Vector contains elements that are
+     *         not <i>mutually comparable</i> using the specified comparator
+     * @throws IllegalArgumentException (optional) if the comparator is
+     *         found to violate the {@link Comparator} contract
+     * @throws ConcurrentModificationException if the comparator
+     *         structurally modifies this Vector
+     * @since 1.8
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void sort(Comparator<? super E> c) {
+        final int expectedModCount = modCount;
+        Arrays.sort((E[]) elementData, 0, elementCount, c);
+        if (modCount != expectedModCount)
+            throw new ConcurrentModificationException();
+    }
+
     /**
      * Inserts all of the elements in the specified Collection into this
      * Vector at the specified position.  Shifts the element currently at
@@ -700,6 +700,152 @@ public class ArrayBlockingQueue<E> extends AbstractQueue<E>
         }
     }
 
+    /**
+     * Removes at most the given number of available elements from
+     * this queue and adds them to the given collection, waiting up to
+     * the specified wait time if necessary for at least one element
+     * to become available.  Unlike a loop of {@link #poll(long,
+     * TimeUnit) poll} calls, this method acquires the lock only once
+     * for the whole batch.  A failure encountered while attempting to
+     * add elements to collection {@code c} may result in elements
+     * being in neither, either or both collections when the
+     * associated exception is thrown.
+     *
+     * @param c the collection to transfer elements into
+     * @param maxElements the maximum number of elements to transfer
+     * @param timeout how long to wait before giving up, in units of
+     *        {@code unit}
+     * @param unit a {@code TimeUnit} determining how to interpret the
+     *        {@code timeout} parameter
+     * @return the number of elements transferred, which is zero only
+     *         if the waiting time elapsed before an element was
+     *         available (or {@code maxElements} is not positive)
+     * @throws InterruptedException if interrupted while waiting
+     * @throws NullPointerException if the specified collection is null
+     * @throws IllegalArgumentException if the specified collection is
+     *         this queue
+     * @since 1.8
+     */
+    public int drainTo(Collection<? super E> c, int maxElements,
+                       long timeout, TimeUnit unit)
+        throws InterruptedException {
+        checkNotNull(c);
+        if (c == this)
+            throw new IllegalArgumentException();
+        if (maxElements <= 0)
+            return 0;
+        long nanos = unit.toNanos(timeout);
+        final Object[] items = this.items;
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                if (nanos <= 0)
+                    return 0;
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            int i = takeIndex;
+            int n = 0;
+            int max = (maxElements < count) ? maxElements : count;
+            try {
+                while (n < max) {
+                    c.add(this.<E>cast(items[i]));
+                    items[i] = null;
+                    i = inc(i);
+                    ++n;
+                }
+                return n;
+            } finally {
+                // Restore invariants even if c.add() threw
+                if (n > 0) {
+                    count -= n;
+                    takeIndex = i;
+                    notFull.signalAll();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inserts elements of the given collection, in the order returned
+     * by its iterator, at the tail of this queue for as long as that
+     * is possible without exceeding the queue's capacity, acquiring
+     * the lock only once.
+     *
+     * @param c the elements to insert
+     * @return the number of elements inserted, which is a prefix of
+     *         the collection's elements
+     * @throws NullPointerException if the specified collection or any
+     *         of its elements are null; in that case no element is
+     *         inserted
+     * @throws IllegalArgumentException if the specified collection is
+     *         this queue
+     * @since 1.8
+     */
+    public int offerAll(Collection<? extends E> c) {
+        Object[] a = toCheckedArray(c);
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            int n = Math.min(a.length, items.length - count);
+            for (int i = 0; i < n; ++i)
+                insert(this.<E>cast(a[i]));
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inserts all elements of the given collection, in the order
+     * returned by its iterator, at the tail of this queue, waiting
+     * for space to become available as necessary.  The lock is
+     * acquired once for the whole batch, and released only while
+     * waiting for space.  If interrupted while waiting, the elements
+     * inserted so far remain in this queue.
+     *
+     * @param c the elements to insert
+     * @throws InterruptedException if interrupted while waiting
+     * @throws NullPointerException if the specified collection or any
+     *         of its elements are null; in that case no element is
+     *         inserted
+     * @throws IllegalArgumentException if the specified collection is
+     *         this queue
+     * @since 1.8
+     */
+    public void putAll(Collection<? extends E> c) throws InterruptedException {
+        Object[] a = toCheckedArray(c);
+        final Object[] items = this.items;
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            for (int i = 0; i < a.length; ) {
+                while (count == items.length)
+                    notFull.await();
+                do {
+                    insert(this.<E>cast(a[i++]));
+                } while (i < a.length && count < items.length);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the elements of the given collection as an array,
+     * checking that none of them is null.
+     */
+    private Object[] toCheckedArray(Collection<? extends E> c) {
+        if (c == this)
+            throw new IllegalArgumentException();
+        Object[] a = c.toArray();
+        for (Object e : a)
+            checkNotNull(e);
+        return a;
+    }
+
     /**
      * Returns an iterator over the elements in this queue in proper sequence.
      * The elements will be returned in order from first (head) to last (tail).
@@ -0,0 +1,484 @@
+/*
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+/*
+ *
+ *
+ *
+ *
+ *
+ * Written by Doug Lea with assistance from members of JCP JSR-166
+ * Expert Group and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+package java.util.concurrent;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A bounded {@linkplain BlockingQueue blocking queue} backed by an
+ * array, whose non-blocking operations are lock-free. This queue
+ * orders elements FIFO (first-in-first-out) and may be used by any
+ * number of producer and consumer threads.
+ *
+ * <p>An {@link ArrayBlockingQueue} guards both ends with one lock, so
+ * that producers and consumers serialize on it. This class instead
+ * gives every slot of the array a sequence number recording whether
+ * it is ready to be filled or emptied in the current pass over the
+ * array, and producers and consumers claim slots by atomically
+ * advancing separate tail and head indices. Threads that must wait
+ * in {@code put} or {@code take} spin briefly and then block.
+ *
+ * <p>Because a slot is claimed before its element is written (or
+ * cleared), a slow producer can briefly make the queue appear empty
+ * to consumers even though later producers have completed, and a
+ * slow consumer can briefly make it appear full. Blocking operations
+ * wait out such intervals; {@code offer} and {@code poll} report them
+ * as full and empty respectively.
+ *
+ * <p>The {@code size}, {@code peek} and {@code toArray} methods
+ * return approximate results while the queue is being modified. The
+ * iterator is "weakly consistent": it traverses a snapshot taken by
+ * {@link #toArray()}.  {@link #remove(Object)} and the iterator's
+ * {@code remove} method cancel the slot holding the element, which
+ * consumers then skip; a cancelled slot still counts towards {@code
+ * size} and against the capacity until a consumer passes it.
+ *
+ * <p>For a queue with exactly one producer thread and one consumer
+ * thread, {@link SpscArrayBlockingQueue} is cheaper still.
+ *
+ * @since 1.8
+ * @param <E> the type of elements held in this collection
+ */
+public class ConcurrentArrayBlockingQueue<E> extends SpinningBlockingQueue<E> {
+
+    /*
+     * This is a variant of D. Vyukov's bounded MPMC queue. Slot i
+     * holds sequence number seq[i]. Initially seq[i] == i. A producer
+     * whose claimed position is p may fill slot p % capacity when its
+     * sequence equals p, and then sets it to p + 1; a consumer at
+     * position p may empty the slot when its sequence equals p + 1,
+     * and then sets it to p + capacity, making it available to the
+     * producer at position p + capacity. Positions only increase, so
+     * there is no ABA problem (2^63 operations would take centuries).
+     *
+     * The sequence stores are ordered (release) writes; the elements
+     * are plain writes published by them. The CASes on tail and head
+     * provide the full fences that SpinningBlockingQueue relies on
+     * before reading the waiter counts.
+     *
+     * remove(Object) may be called by any thread, so it cannot claim
+     * the head. Instead it CASes the element of a filled slot to the
+     * REMOVED marker. A consumer that has claimed a slot takes its
+     * element with a CAS as well, so that exactly one of the two gets
+     * it, and a consumer that gets REMOVED releases the slot and moves
+     * on to the next position. The CAS in remove can only succeed
+     * while the slot holds the element it read: once taken, the slot
+     * is null until a producer refills it, and an element that is
+     * still in the slot is still in the queue.
+     *
+     * tail and head are each surrounded by padding so that producers
+     * and consumers do not contend for the same cache line.
+     */
+
+    /** Marker for the element of a cancelled slot */
+    private static final Object REMOVED = new Object();
+
+    /** The queued items */
+    private final Object[] items;
+
+    /** Per-slot sequence numbers, see above */
+    private final long[] sequences;
+
+    /** The capacity */
+    private final int capacity;
+
+    /** capacity - 1 if capacity is a power of two, else -1 */
+    private final int mask;
+
+    volatile long p00, p01, p02, p03, p04, p05, p06;
+
+    /** Next position to be claimed by a producer */
+    private volatile long tail;
+
+    volatile long p10, p11, p12, p13, p14, p15, p16;
+
+    /** Next position to be claimed by a consumer */
+    private volatile long head;
+
+    volatile long p20, p21, p22, p23, p24, p25, p26;
+
+    /**
+     * Creates a {@code ConcurrentArrayBlockingQueue} with the given
+     * (fixed) capacity. Capacities that are powers of two are
+     * slightly cheaper to index.
+     *
+     * @param capacity the capacity of this queue
+     * @throws IllegalArgumentException if {@code capacity < 1}
+     */
+    public ConcurrentArrayBlockingQueue(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException();
+        this.capacity = capacity;
+        this.mask = ((capacity & (capacity - 1)) == 0) ? capacity - 1 : -1;
+        this.items = new Object[capacity];
+        long[] seqs = new long[capacity];
+        for (int i = 0; i < capacity; ++i)
+            seqs[i] = i;
+        this.sequences = seqs;
+    }
+
+    /**
+     * Returns the slot index of a position.
+     */
+    private int indexOf(long pos) {
+        int m = mask;
+        return (m >= 0) ? (int)pos & m : (int)(pos % capacity);
+    }
+
+    private Object itemAt(int i) {
+        return UNSAFE.getObjectVolatile(items, ((long)i << ASHIFT) + ABASE);
+    }
+
+    private boolean casItem(int i, Object cmp, Object val) {
+        return UNSAFE.compareAndSwapObject
+            (items, ((long)i << ASHIFT) + ABASE, cmp, val);
+    }
+
+    private long sequenceAt(int i) {
+        return UNSAFE.getLongVolatile(sequences, ((long)i << LSHIFT) + LBASE);
+    }
+
+    private void setSequenceAt(int i, long s) {
+        UNSAFE.putOrderedLong(sequences, ((long)i << LSHIFT) + LBASE, s);
+    }
+
+    private boolean casTail(long cmp, long val) {
+        return UNSAFE.compareAndSwapLong(this, tailOffset, cmp, val);
+    }
+
+    private boolean casHead(long cmp, long val) {
+        return UNSAFE.compareAndSwapLong(this, headOffset, cmp, val);
+    }
+
+    /**
+     * Empties the slot of a position that the caller has claimed by
+     * advancing head, and returns its element, which is REMOVED if
+     * the slot was cancelled.
+     */
+    private Object release(long pos, int i) {
+        Object x;
+        do {
+            x = itemAt(i);
+        } while (!casItem(i, x, null));
+        setSequenceAt(i, pos + capacity);
+        signalNotFull();
+        return x;
+    }
+
+    final boolean claimedEmpty() {
+        return tail == head;
+    }
+
+    final boolean claimedFull() {
+        return tail - head >= capacity;
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue if it is
+     * possible to do so immediately without exceeding the queue's
+     * capacity, returning {@code true} upon success and {@code false}
+     * if this queue is full.
+     *
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean offer(E e) {
+        if (e == null) throw new NullPointerException();
+        long pos = tail;
+        for (;;) {
+            int i = indexOf(pos);
+            long d = sequenceAt(i) - pos;
+            if (d == 0) {
+                if (casTail(pos, pos + 1)) {
+                    items[i] = e;
+                    setSequenceAt(i, pos + 1);
+                    signalNotEmpty();
+                    return true;
+                }
+            }
+            else if (d < 0)
+                return false;           // slot not yet emptied: full
+            pos = tail;
+        }
+    }
+
+    public E poll() {
+        long pos = head;
+        for (;;) {
+            int i = indexOf(pos);
+            long d = sequenceAt(i) - (pos + 1);
+            if (d == 0) {
+                if (casHead(pos, pos + 1)) {
+                    Object x = release(pos, i);
+                    if (x != REMOVED) {
+                        @SuppressWarnings("unchecked") E e = (E) x;
+                        return e;
+                    }
+                }
+            }
+            else if (d < 0)
+                return null;            // slot not yet filled: empty
+            pos = head;
+        }
+    }
+
+    public E peek() {
+        for (;;) {
+            long pos = head;
+            int i = indexOf(pos);
+            long d = sequenceAt(i) - (pos + 1);
+            Object x = itemAt(i);
+            if (d < 0)
+                return null;
+            if (d == 0 && x != null && sequenceAt(i) == pos + 1) {
+                if (x != REMOVED) {
+                    @SuppressWarnings("unchecked") E e = (E) x;
+                    return e;
+                }
+                if (casHead(pos, pos + 1))  // discard cancelled slot
+                    release(pos, i);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of elements in this queue, counting
+     * insertions and removals that have been claimed but are still in
+     * progress as complete.
+     *
+     * @return the number of elements in this queue
+     */
+    public int size() {
+        for (;;) {
+            long h = head;
+            long t = tail;
+            if (h == head) {
+                long n = t - h;
+                return (n <= 0) ? 0 : (n >= capacity) ? capacity : (int)n;
+            }
+        }
+    }
+
+    /**
+     * Returns {@code true} if this queue contains no elements. Claimed
+     * insertions that are still in progress count as elements, and
+     * cancelled slots do not.
+     *
+     * @return {@code true} if this queue contains no elements
+     */
+    public boolean isEmpty() {
+        long h = head, t = tail;
+        for (long pos = h; pos < t && pos - h < capacity; ++pos) {
+            int i = indexOf(pos);
+            Object x = itemAt(i);
+            if (x != REMOVED || sequenceAt(i) != pos + 1)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of additional elements that this queue can
+     * ideally (in the absence of memory or resource constraints)
+     * accept without blocking. This is always equal to the initial
+     * capacity of this queue less the current {@code size} of this
+     * queue.
+     */
+    public int remainingCapacity() {
+        return capacity - size();
+    }
+
+    /**
+     * Removes a single instance of the specified element from this queue,
+     * if it is present.  More formally, removes an element {@code e} such
+     * that {@code o.equals(e)}, if this queue contains one or more such
+     * elements.  Returns {@code true} if and only if this queue contained
+     * the specified element (or equivalently, if this queue changed as a
+     * result of the call).
+     *
+     * <p>The slot that held the element is only cancelled: it goes on
+     * counting towards {@link #size} until a consumer skips it.
+     *
+     * @param o element to be removed from this queue, if present
+     * @return {@code true} if this queue changed as a result of the call
+     */
+    public boolean remove(Object o) {
+        return remove(o, false);
+    }
+
+    /**
+     * Removes an element equal to, or if identity is true the same
+     * as, the given object.
+     */
+    private boolean remove(Object o, boolean identity) {
+        if (o == null)
+            return false;
+        long h = head, t = tail;
+        for (long pos = h; pos < t && pos - h < capacity; ++pos) {
+            int i = indexOf(pos);
+            Object x = itemAt(i);
+            if (x != null && x != REMOVED &&
+                (identity ? x == o : o.equals(x)) &&
+                casItem(i, x, REMOVED))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns an array containing the elements present in this queue
+     * at some point during the call, in proper sequence.
+     *
+     * @return an array containing the elements in this queue
+     */
+    public Object[] toArray() {
+        ArrayList<Object> all = new ArrayList<Object>();
+        long h = head, t = tail;
+        for (long pos = h; pos < t && pos - h < capacity; ++pos) {
+            int i = indexOf(pos);
+            Object x = itemAt(i);
+            if (sequenceAt(i) == pos + 1 && x != null && x != REMOVED)
+                all.add(x);
+        }
+        return all.toArray();
+    }
+
+    /**
+     * Returns an array containing the elements present in this queue
+     * at some point during the call, in proper sequence; the runtime
+     * type of the returned array is that of the specified array.
+     *
+     * @param a the array into which the elements of the queue are to
+     *          be stored, if it is big enough; otherwise, a new array of the
+     *          same runtime type is allocated for this purpose
+     * @return an array containing the elements in this queue
+     * @throws ArrayStoreException if the runtime type of the specified array
+     *         is not a supertype of the runtime type of every element in
+     *         this queue
+     * @throws NullPointerException if the specified array is null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a) {
+        Object[] all = toArray();
+        int n = all.length;
+        if (a.length < n)
+            a = (T[])java.lang.reflect.Array.newInstance
+                (a.getClass().getComponentType(), n);
+        System.arraycopy(all, 0, a, 0, n);
+        if (a.length > n)
+            a[n] = null;
+        return a;
+    }
+
+    /**
+     * Returns an iterator over the elements in this queue in proper
+     * sequence.
+     *
+     * <p>The returned iterator is a "weakly consistent" iterator that
+     * will never throw {@link java.util.ConcurrentModificationException
+     * ConcurrentModificationException}; it traverses the elements
+     * present at some point during construction of the iterator.
+     *
+     * @return an iterator over the elements in this queue in proper sequence
+     */
+    public Iterator<E> iterator() {
+        return new Itr(toArray());
+    }
+
+    /**
+     * Snapshot iterator that works off copy of the elements.
+     */
+    final class Itr implements Iterator<E> {
+        final Object[] array; // Array of all elements
+        int cursor;           // index of next element to return
+        int lastRet;          // index of last element, or -1 if no such
+
+        Itr(Object[] array) {
+            lastRet = -1;
+            this.array = array;
+        }
+
+        public boolean hasNext() {
+            return cursor < array.length;
+        }
+
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (cursor >= array.length)
+                throw new NoSuchElementException();
+            lastRet = cursor;
+            return (E)array[cursor++];
+        }
+
+        public void remove() {
+            if (lastRet < 0)
+                throw new IllegalStateException();
+            ConcurrentArrayBlockingQueue.this.remove(array[lastRet], true);
+            lastRet = -1;
+        }
+    }
+
+    // Unsafe mechanics
+
+    private static final sun.misc.Unsafe UNSAFE;
+    private static final long headOffset;
+    private static final long tailOffset;
+    private static final long ABASE;
+    private static final int ASHIFT;
+    private static final long LBASE;
+    private static final int LSHIFT;
+    static {
+        try {
+            UNSAFE = sun.misc.Unsafe.getUnsafe();
+            Class<?> k = ConcurrentArrayBlockingQueue.class;
+            headOffset = UNSAFE.objectFieldOffset
+                (k.getDeclaredField("head"));
+            tailOffset = UNSAFE.objectFieldOffset
+                (k.getDeclaredField("tail"));
+            ABASE = UNSAFE.arrayBaseOffset(Object[].class);
+            int s = UNSAFE.arrayIndexScale(Object[].class);
+            LBASE = UNSAFE.arrayBaseOffset(long[].class);
+            int ls = UNSAFE.arrayIndexScale(long[].class);
+            if ((s & (s-1)) != 0 || (ls & (ls-1)) != 0)
+                throw new Error("data type scale not a power of two");
+            ASHIFT = 31 - Integer.numberOfLeadingZeros(s);
+            LSHIFT = 31 - Integer.numberOfLeadingZeros(ls);
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
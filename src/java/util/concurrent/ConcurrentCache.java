@@ -0,0 +1,1574 @@
+/*
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+/*
+ *
+ *
+ *
+ *
+ *
+ * Written by Doug Lea with assistance from members of JCP JSR-166
+ * Expert Group and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+package java.util.concurrent;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A concurrent map whose mappings may be evicted when it grows beyond
+ * a maximum size or weight, or expire a fixed time after they were
+ * written or last read, and that can load absent values on demand.
+ * Instances are created with a {@link Builder}:
+ *
+ * <pre> {@code
+ * ConcurrentCache<String, Graph> graphs =
+ *     new ConcurrentCache.Builder<String, Graph>()
+ *         .maximumSize(10000)
+ *         .expireAfterWrite(10, TimeUnit.MINUTES)
+ *         .loader(new ConcurrentCache.Loader<String, Graph>() {
+ *             public Graph load(String key) throws IOException {
+ *               return readGraph(key);
+ *             }})
+ *         .recordStats()
+ *         .build();
+ * Graph g = graphs.getOrLoad("routes");}</pre>
+ *
+ * <p>Mappings are held in a {@link ConcurrentHashMap}, so that reads
+ * and writes proceed concurrently as they do there.  The eviction and
+ * expiration policy, which needs exclusive access to its ordering
+ * structures, is not updated as part of each operation.  Instead, reads
+ * are recorded in small striped buffers that drop records when full,
+ * and writes in a queue; these are applied in batches by whichever
+ * thread first acquires the policy lock without waiting, when a read
+ * buffer fills or after a write.  Reads therefore never block, and a
+ * cache may briefly hold more than its maximum until its pending writes
+ * are applied.  {@link #cleanUp} applies them immediately.
+ *
+ * <p>A bounded cache evicts by one of two {@linkplain EvictionPolicy
+ * policies}.  {@link EvictionPolicy#LRU LRU} evicts the least recently
+ * used mapping.  {@link EvictionPolicy#TINY_LFU TINY_LFU}, the default,
+ * admits new mappings to a small LRU window, and moves those leaving the
+ * window into the main space only if they have been used more often,
+ * according to a compact frequency sketch, than the mapping they would
+ * displace.  This retains frequently used mappings through scans and
+ * bursts of one-time keys that would flush an LRU cache.
+ *
+ * <p>{@link #get(Object, Loader) get(key, loader)} and, using the loader of
+ * the cache, {@link #getOrLoad getOrLoad}, load a value at most once for
+ * any number of threads requesting an absent key at the same time:
+ * the others wait for the value loaded by the first.  A loader must not
+ * itself request a key of the same cache that is being loaded.
+ *
+ * <p>When statistics are enabled with {@link Builder#recordStats}, the
+ * numbers of hits, misses, loads, evictions and expirations are
+ * counted, and may be obtained by {@link #stats}.
+ *
+ * <p>Like {@link ConcurrentHashMap}, this class does <em>not</em> allow
+ * {@code null} to be used as a key or value.  Its iterators are weakly
+ * consistent, and do not return mappings being loaded or expired.  The
+ * {@link #size} of a cache may include expired mappings that have not
+ * yet been removed.
+ *
+ * @param <K> the type of keys maintained by this cache
+ * @param <V> the type of mapped values
+ * @since 1.8
+ */
+public class ConcurrentCache<K,V> extends AbstractMap<K,V>
+        implements ConcurrentMap<K,V> {
+
+    /*
+     * Overview:
+     *
+     * Each mapping is a Node in the ConcurrentHashMap "data".  The
+     * value of a node, and whether it is still in the map, change only
+     * while holding the node's monitor, so that writes to one key are
+     * serialized without blocking others.  A node removed from the map
+     * is "retired"; once the policy has unlinked it, it is "dead".
+     *
+     * The policy, guarded by evictionLock, keeps nodes in doubly linked
+     * deques: in access order (the main space, and for TINY_LFU the
+     * admission window), and, when entries expire after write, in
+     * write order.  Each node records the weight the policy accounts
+     * for it, which may lag behind its current weight until a pending
+     * update is applied.
+     *
+     * Reads are recorded by offering the node to one of the stripes of
+     * a lossy ring buffer, chosen by thread.  Writes enqueue a Write
+     * task on an unbounded queue.  Either may then call tryDrain,
+     * which applies the buffers if it can take the lock without
+     * waiting.  A writer that fails to take the lock relies on the
+     * current holder, which re-checks the write queue after releasing
+     * it, so no write is ever left unapplied.
+     *
+     * TINY_LFU follows "TinyLFU: A Highly Efficient Cache Admission
+     * Policy" by G. Einziger, R. Friedman and B. Manes (ACM TOS 2017),
+     * with a window of 1% of the maximum, a single LRU main space, and
+     * a 4-bit count-min sketch that is halved periodically to age
+     * its counts.
+     *
+     * Caches with neither a maximum nor expiration keep no policy,
+     * and their operations are those of the underlying map plus
+     * statistics.
+     */
+
+    /**
+     * A loader of values for a cache.
+     *
+     * @param <K> the type of keys
+     * @param <V> the type of values
+     * @since 1.8
+     */
+    public static interface Loader<K,V> {
+        /**
+         * Loads the value for the given key.
+         *
+         * @param key the key
+         * @return the value, or {@code null} if the key has none, in
+         *         which case no mapping is created
+         * @throws Exception if the value cannot be loaded
+         */
+        V load(K key) throws Exception;
+    }
+
+    /**
+     * A function computing the weight of a mapping, used to bound a
+     * cache by the total weight of its mappings rather than their
+     * number.
+     *
+     * @param <K> the type of keys
+     * @param <V> the type of values
+     * @since 1.8
+     */
+    public static interface Weigher<K,V> {
+        /**
+         * Returns the weight of a mapping.  The weight of a mapping is
+         * computed when it is written, and does not change until it is
+         * written again.
+         *
+         * @param key the key
+         * @param value the value
+         * @return the nonnegative weight of the mapping
+         */
+        int weigh(K key, V value);
+    }
+
+    /**
+     * The policies by which a bounded cache selects mappings to evict.
+     *
+     * @since 1.8
+     */
+    public static enum EvictionPolicy {
+        /**
+         * Evicts the least recently used mapping.
+         */
+        LRU,
+        /**
+         * Evicts the least recently used mapping among those recently
+         * added, or the least recently used of the others, whichever has
+         * been used less often.
+         */
+        TINY_LFU
+    }
+
+    /**
+     * A builder of {@link ConcurrentCache} instances.  Each setter
+     * returns the builder itself, so that calls may be chained.  A
+     * builder on which no setter has been called builds an unbounded
+     * cache without expiration.
+     *
+     * @param <K> the type of keys
+     * @param <V> the type of values
+     * @since 1.8
+     */
+    public static final class Builder<K,V> {
+        int initialCapacity = 16;
+        long maximum = -1L;
+        Weigher<? super K, ? super V> weigher;
+        long expireAfterWriteNanos = -1L;
+        long expireAfterAccessNanos = -1L;
+        EvictionPolicy policy = EvictionPolicy.TINY_LFU;
+        Loader<? super K, ? extends V> loader;
+        boolean recordStats;
+
+        /**
+         * Creates a builder with the default settings.
+         */
+        public Builder() {}
+
+        /**
+         * Sets the number of mappings for which space is allocated
+         * initially.
+         *
+         * @param initialCapacity the initial capacity
+         * @return this builder
+         * @throws IllegalArgumentException if {@code initialCapacity} is
+         *         negative
+         */
+        public Builder<K,V> initialCapacity(int initialCapacity) {
+            if (initialCapacity < 0)
+                throw new IllegalArgumentException();
+            this.initialCapacity = initialCapacity;
+            return this;
+        }
+
+        /**
+         * Bounds the number of mappings of the cache.
+         *
+         * @param maximumSize the maximum number of mappings
+         * @return this builder
+         * @throws IllegalArgumentException if {@code maximumSize} is
+         *         negative
+         * @throws IllegalStateException if a maximum has already been set
+         */
+        public Builder<K,V> maximumSize(long maximumSize) {
+            if (maximumSize < 0)
+                throw new IllegalArgumentException();
+            if (maximum >= 0)
+                throw new IllegalStateException("maximum already set");
+            this.maximum = maximumSize;
+            return this;
+        }
+
+        /**
+         * Bounds the total weight of the mappings of the cache, as
+         * computed by the given weigher.
+         *
+         * @param maximumWeight the maximum total weight
+         * @param weigher the weigher
+         * @return this builder
+         * @throws IllegalArgumentException if {@code maximumWeight} is
+         *         negative
+         * @throws NullPointerException if {@code weigher} is null
+         * @throws IllegalStateException if a maximum has already been set
+         */
+        public Builder<K,V> maximumWeight(
+            long maximumWeight, Weigher<? super K, ? super V> weigher) {
+            if (maximumWeight < 0)
+                throw new IllegalArgumentException();
+            if (weigher == null)
+                throw new NullPointerException();
+            if (maximum >= 0)
+                throw new IllegalStateException("maximum already set");
+            this.maximum = maximumWeight;
+            this.weigher = weigher;
+            return this;
+        }
+
+        /**
+         * Makes each mapping expire once the given time has elapsed
+         * since its value was last written.
+         *
+         * @param duration the time to retain a mapping after a write
+         * @param unit the time unit of the duration
+         * @return this builder
+         * @throws IllegalArgumentException if {@code duration} is
+         *         negative
+         * @throws NullPointerException if {@code unit} is null
+         */
+        public Builder<K,V> expireAfterWrite(long duration, TimeUnit unit) {
+            if (duration < 0)
+                throw new IllegalArgumentException();
+            this.expireAfterWriteNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Makes each mapping expire once the given time has elapsed
+         * since it was last read or written.
+         *
+         * @param duration the time to retain a mapping after an access
+         * @param unit the time unit of the duration
+         * @return this builder
+         * @throws IllegalArgumentException if {@code duration} is
+         *         negative
+         * @throws NullPointerException if {@code unit} is null
+         */
+        public Builder<K,V> expireAfterAccess(long duration, TimeUnit unit) {
+            if (duration < 0)
+                throw new IllegalArgumentException();
+            this.expireAfterAccessNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Sets the policy by which a bounded cache selects mappings to
+         * evict.  The default is {@link EvictionPolicy#TINY_LFU}.
+         *
+         * @param policy the eviction policy
+         * @return this builder
+         * @throws NullPointerException if {@code policy} is null
+         */
+        public Builder<K,V> evictionPolicy(EvictionPolicy policy) {
+            if (policy == null)
+                throw new NullPointerException();
+            this.policy = policy;
+            return this;
+        }
+
+        /**
+         * Sets the loader used by {@link ConcurrentCache#getOrLoad}.
+         *
+         * @param loader the loader
+         * @return this builder
+         * @throws NullPointerException if {@code loader} is null
+         */
+        public Builder<K,V> loader(Loader<? super K, ? extends V> loader) {
+            if (loader == null)
+                throw new NullPointerException();
+            this.loader = loader;
+            return this;
+        }
+
+        /**
+         * Enables the recording of statistics.
+         *
+         * @return this builder
+         */
+        public Builder<K,V> recordStats() {
+            this.recordStats = true;
+            return this;
+        }
+
+        /**
+         * Creates a cache with the settings of this builder.
+         *
+         * @return a new cache
+         */
+        public ConcurrentCache<K,V> build() {
+            return new ConcurrentCache<K,V>(this);
+        }
+    }
+
+    /**
+     * A snapshot of the statistics of a cache.
+     *
+     * @since 1.8
+     */
+    public static final class Stats {
+        private final long hitCount;
+        private final long missCount;
+        private final long loadSuccessCount;
+        private final long loadFailureCount;
+        private final long totalLoadTime;
+        private final long evictionCount;
+        private final long expirationCount;
+
+        Stats(long hitCount, long missCount, long loadSuccessCount,
+              long loadFailureCount, long totalLoadTime,
+              long evictionCount, long expirationCount) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.loadSuccessCount = loadSuccessCount;
+            this.loadFailureCount = loadFailureCount;
+            this.totalLoadTime = totalLoadTime;
+            this.evictionCount = evictionCount;
+            this.expirationCount = expirationCount;
+        }
+
+        /**
+         * Returns the number of lookups that found a value.
+         *
+         * @return the hit count
+         */
+        public long getHitCount() { return hitCount; }
+
+        /**
+         * Returns the number of lookups that found no value, or an
+         * expired one.
+         *
+         * @return the miss count
+         */
+        public long getMissCount() { return missCount; }
+
+        /**
+         * Returns the ratio of hits to lookups, or 1.0 if there have been
+         * no lookups.
+         *
+         * @return the hit rate
+         */
+        public double getHitRate() {
+            long requests = hitCount + missCount;
+            return (requests == 0) ? 1.0 : (double)hitCount / requests;
+        }
+
+        /**
+         * Returns the number of loads that produced a value or
+         * {@code null}.
+         *
+         * @return the load success count
+         */
+        public long getLoadSuccessCount() { return loadSuccessCount; }
+
+        /**
+         * Returns the number of loads that threw an exception.
+         *
+         * @return the load failure count
+         */
+        public long getLoadFailureCount() { return loadFailureCount; }
+
+        /**
+         * Returns the total time spent loading, in nanoseconds.
+         *
+         * @return the total load time
+         */
+        public long getTotalLoadTime() { return totalLoadTime; }
+
+        /**
+         * Returns the number of mappings evicted because the cache was
+         * over its maximum.
+         *
+         * @return the eviction count
+         */
+        public long getEvictionCount() { return evictionCount; }
+
+        /**
+         * Returns the number of expired mappings removed.
+         *
+         * @return the expiration count
+         */
+        public long getExpirationCount() { return expirationCount; }
+
+        /**
+         * Returns a string representation of these statistics.
+         *
+         * @return a string representation of these statistics
+         */
+        public String toString() {
+            return "Stats[hits=" + hitCount + ", misses=" + missCount +
+                ", loadSuccesses=" + loadSuccessCount +
+                ", loadFailures=" + loadFailureCount +
+                ", totalLoadTime=" + totalLoadTime +
+                ", evictions=" + evictionCount +
+                ", expirations=" + expirationCount + "]";
+        }
+    }
+
+    /* ---------------- Nodes and tasks -------------- */
+
+    /** Node states */
+    static final int ALIVE = 0, RETIRED = 1, DEAD = 2;
+
+    /**
+     * A mapping.  The value is a Loading future while the value is
+     * being loaded.
+     */
+    static final class Node<K,V> {
+        final K key;
+        volatile Object value;   // V or Loading; written under monitor
+        volatile int weight;     // current weight; written under monitor
+        volatile int state;      // written under monitor
+        volatile long writeTime;
+        volatile long accessTime;
+
+        // Policy fields, guarded by evictionLock
+        Node<K,V> prev, next;           // access order
+        Node<K,V> writePrev, writeNext; // write order
+        int policyWeight;               // weight accounted by policy
+        boolean inPolicy;
+        boolean inWindow;
+
+        Node(K key, Object value, int weight, long now) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.writeTime = now;
+            this.accessTime = now;
+        }
+    }
+
+    /**
+     * A future for a value being loaded, on which other threads
+     * requesting the same key wait.
+     */
+    static final class Loading<V> extends FutureTask<V> {
+        Loading() { super(NO_OP, null); }
+        void complete(V value) { set(value); }
+        void fail(Throwable ex) { setException(ex); }
+    }
+
+    static final Runnable NO_OP = new Runnable() { public void run() {} };
+
+    /** Kinds of writes applied to the policy */
+    static final int ADD = 0, UPDATE = 1, REMOVE = 2;
+
+    /** A write to be applied to the policy */
+    static final class Write<K,V> {
+        final Node<K,V> node;
+        final int kind;
+        Write(Node<K,V> node, int kind) {
+            this.node = node;
+            this.kind = kind;
+        }
+    }
+
+    /**
+     * A doubly linked deque of nodes, linked through either their
+     * access order or their write order fields.
+     */
+    static final class NodeDeque<K,V> {
+        final boolean writeOrder;
+        Node<K,V> first, last;
+
+        NodeDeque(boolean writeOrder) {
+            this.writeOrder = writeOrder;
+        }
+
+        Node<K,V> next(Node<K,V> n) {
+            return writeOrder ? n.writeNext : n.next;
+        }
+
+        void linkLast(Node<K,V> n) {
+            Node<K,V> l = last;
+            if (writeOrder) {
+                n.writePrev = l;
+                n.writeNext = null;
+            } else {
+                n.prev = l;
+                n.next = null;
+            }
+            last = n;
+            if (l == null)
+                first = n;
+            else if (writeOrder)
+                l.writeNext = n;
+            else
+                l.next = n;
+        }
+
+        void unlink(Node<K,V> n) {
+            Node<K,V> p, s;
+            if (writeOrder) {
+                p = n.writePrev;
+                s = n.writeNext;
+                n.writePrev = n.writeNext = null;
+            } else {
+                p = n.prev;
+                s = n.next;
+                n.prev = n.next = null;
+            }
+            if (p == null)
+                first = s;
+            else if (writeOrder)
+                p.writeNext = s;
+            else
+                p.next = s;
+            if (s == null)
+                last = p;
+            else if (writeOrder)
+                s.writePrev = p;
+            else
+                s.prev = p;
+        }
+
+        void moveToBack(Node<K,V> n) {
+            if (n != last) {
+                unlink(n);
+                linkLast(n);
+            }
+        }
+    }
+
+    /* ---------------- Read buffer -------------- */
+
+    /** Number of entries of each stripe of the read buffer */
+    static final int READ_BUFFER_SIZE = 16;
+
+    /** Number of read buffer stripes, a power of two */
+    static final int READ_BUFFER_STRIPES;
+    static {
+        int n = Math.min(Runtime.getRuntime().availableProcessors(), 64);
+        int s = 1;
+        while (s < n)
+            s <<= 1;
+        READ_BUFFER_STRIPES = s;
+    }
+
+    /**
+     * A stripe of the read buffer: a ring of READ_BUFFER_SIZE slots
+     * filled by any number of readers, which claim slots by CAS of the
+     * write count inherited from AtomicLong, and emptied under the
+     * eviction lock.  Padded against false sharing between stripes.
+     */
+    static final class ReadStripe extends AtomicLong {
+        private static final long serialVersionUID = 5461432818478541513L;
+        long p0, p1, p2, p3, p4, p5, p6;
+        final AtomicReferenceArray<Node<?,?>> slots =
+            new AtomicReferenceArray<Node<?,?>>(READ_BUFFER_SIZE);
+        volatile long readCount;
+        long q0, q1, q2, q3, q4, q5, q6;
+
+        /**
+         * Records a read, unless the stripe is full or contended.
+         *
+         * @return true if the stripe is now full
+         */
+        boolean offer(Node<?,?> n) {
+            long tail = get();
+            long size = tail - readCount;
+            if (size >= READ_BUFFER_SIZE)
+                return true;
+            if (compareAndSet(tail, tail + 1)) {
+                slots.lazySet((int)tail & (READ_BUFFER_SIZE - 1), n);
+                return size + 1 >= READ_BUFFER_SIZE;
+            }
+            return false;
+        }
+    }
+
+    /* ---------------- Frequency sketch -------------- */
+
+    /**
+     * A count-min sketch of the access frequency of keys, holding four
+     * 4-bit counters per key, one in each 16-counter group of a long.
+     * Counts saturate at 15, and are all halved once the number of
+     * increments reaches ten times the number of longs, so that the
+     * sketch reflects recent history.
+     */
+    static final class FrequencySketch {
+        static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L,
+            0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+        };
+        static final long RESET_MASK = 0x7777777777777777L;
+
+        final long[] table;
+        final int sampleSize;
+        int additions;
+
+        FrequencySketch(long maximum) {
+            int n = (int)Math.min(Math.max(maximum, 16L), 1L << 20);
+            int c = 1;
+            while (c < n)
+                c <<= 1;
+            table = new long[c];
+            sampleSize = 10 * c;
+        }
+
+        static int spread(int h) {
+            h *= 0x9e3779b9;
+            return h ^ (h >>> 16);
+        }
+
+        int indexOf(int h, int i) {
+            long hash = (h + SEEDS[i]) * SEEDS[i];
+            hash += hash >>> 32;
+            return (int)hash & (table.length - 1);
+        }
+
+        int frequency(Object key) {
+            int h = spread(key.hashCode());
+            int start = (h & 3) << 2;
+            int f = 15;
+            for (int i = 0; i < 4; i++) {
+                int shift = (start + i) << 2;
+                int count = (int)(table[indexOf(h, i)] >>> shift) & 0xf;
+                if (count < f)
+                    f = count;
+            }
+            return f;
+        }
+
+        void increment(Object key) {
+            int h = spread(key.hashCode());
+            int start = (h & 3) << 2;
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                int index = indexOf(h, i);
+                int shift = (start + i) << 2;
+                long mask = 0xfL << shift;
+                if ((table[index] & mask) != mask) {
+                    table[index] += 1L << shift;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                for (int i = 0; i < table.length; i++)
+                    table[i] = (table[i] >>> 1) & RESET_MASK;
+                additions >>>= 1;
+            }
+        }
+    }
+
+    /* ---------------- Statistics -------------- */
+
+    /** Number of stripes of the hit and miss counters */
+    private static final int STAT_STRIPES = READ_BUFFER_STRIPES;
+
+    /** Distance between the counters of two stripes, in longs */
+    private static final int STAT_STRIDE = 8;
+
+    /* ---------------- Fields -------------- */
+
+    final ConcurrentHashMap<K,Node<K,V>> data;
+    final long maximum;                 // Long.MAX_VALUE if unbounded
+    final Weigher<? super K, ? super V> weigher;
+    final long expireAfterWriteNanos;   // -1 if none
+    final long expireAfterAccessNanos;  // -1 if none
+    final boolean tracked;              // whether the policy is kept
+    final boolean tinyLfu;
+    final Loader<? super K, ? extends V> loader;
+
+    final ReentrantLock evictionLock = new ReentrantLock();
+    final ReadStripe[] readBuffer;
+    final ConcurrentLinkedQueue<Write<K,V>> writeBuffer =
+        new ConcurrentLinkedQueue<Write<K,V>>();
+
+    // Policy state, guarded by evictionLock
+    final NodeDeque<K,V> window = new NodeDeque<K,V>(false);
+    final NodeDeque<K,V> main = new NodeDeque<K,V>(false);
+    final NodeDeque<K,V> writeOrder = new NodeDeque<K,V>(true);
+    final FrequencySketch sketch;
+    final long windowMaximum;
+    long windowWeight;
+    long weightedSize;
+
+    // Statistics, or null if not recorded
+    final AtomicLongArray lookups;      // hits and misses, striped
+    final AtomicLong loadSuccesses, loadFailures, loadTime;
+    final AtomicLong evictions, expirations;
+
+    ConcurrentCache(Builder<K,V> b) {
+        data = new ConcurrentHashMap<K,Node<K,V>>(b.initialCapacity);
+        maximum = (b.maximum >= 0) ? b.maximum : Long.MAX_VALUE;
+        weigher = b.weigher;
+        expireAfterWriteNanos = b.expireAfterWriteNanos;
+        expireAfterAccessNanos = b.expireAfterAccessNanos;
+        tracked = b.maximum >= 0 || b.expireAfterWriteNanos >= 0 ||
+            b.expireAfterAccessNanos >= 0;
+        tinyLfu = b.maximum >= 0 && b.policy == EvictionPolicy.TINY_LFU;
+        loader = b.loader;
+        if (tracked) {
+            readBuffer = new ReadStripe[READ_BUFFER_STRIPES];
+            for (int i = 0; i < readBuffer.length; i++)
+                readBuffer[i] = new ReadStripe();
+        } else
+            readBuffer = null;
+        sketch = tinyLfu ? new FrequencySketch(maximum) : null;
+        windowMaximum = tinyLfu ? Math.max(1L, maximum / 100) : 0L;
+        if (b.recordStats) {
+            lookups = new AtomicLongArray(STAT_STRIPES * STAT_STRIDE);
+            loadSuccesses = new AtomicLong();
+            loadFailures = new AtomicLong();
+            loadTime = new AtomicLong();
+            evictions = new AtomicLong();
+            expirations = new AtomicLong();
+        } else {
+            lookups = null;
+            loadSuccesses = loadFailures = loadTime = null;
+            evictions = expirations = null;
+        }
+    }
+
+    /* ---------------- Internal utilities -------------- */
+
+    static int threadIndex() {
+        long id = Thread.currentThread().getId();
+        int h = (int)(id ^ (id >>> 32)) * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    boolean expires() {
+        return expireAfterWriteNanos >= 0 || expireAfterAccessNanos >= 0;
+    }
+
+    long now() {
+        return expires() ? System.nanoTime() : 0L;
+    }
+
+    boolean isExpired(Node<K,V> n, long now) {
+        return (expireAfterWriteNanos >= 0 &&
+                now - n.writeTime >= expireAfterWriteNanos) ||
+            (expireAfterAccessNanos >= 0 &&
+             now - n.accessTime >= expireAfterAccessNanos);
+    }
+
+    int weigh(K key, V value) {
+        if (weigher == null)
+            return 1;
+        int w = weigher.weigh(key, value);
+        if (w < 0)
+            throw new IllegalArgumentException("negative weight: " + w);
+        return w;
+    }
+
+    void recordLookup(boolean hit) {
+        if (lookups != null) {
+            int i = (threadIndex() & (STAT_STRIPES - 1)) * STAT_STRIDE;
+            lookups.getAndIncrement(hit ? i : i + 1);
+        }
+    }
+
+    /**
+     * Returns the value of a node, or null if it is being loaded or
+     * has expired.
+     */
+    @SuppressWarnings("unchecked")
+    V liveValue(Node<K,V> n, long now) {
+        Object v = n.value;
+        if (v instanceof Loading || isExpired(n, now))
+            return null;
+        return (V)v;
+    }
+
+    void afterRead(Node<K,V> n, long now) {
+        if (!tracked)
+            return;
+        if (expireAfterAccessNanos >= 0)
+            n.accessTime = now;
+        if (readBuffer[threadIndex() & (READ_BUFFER_STRIPES - 1)].offer(n))
+            tryDrain();
+    }
+
+    void afterWrite(Node<K,V> n, int kind) {
+        if (!tracked)
+            return;
+        writeBuffer.offer(new Write<K,V>(n, kind));
+        tryDrain();
+    }
+
+    /**
+     * Applies pending reads and writes and evicts and expires entries,
+     * if the policy lock is available.
+     */
+    void tryDrain() {
+        do {
+            if (!evictionLock.tryLock())
+                return;
+            try {
+                maintenance();
+            } finally {
+                evictionLock.unlock();
+            }
+        } while (!writeBuffer.isEmpty());
+    }
+
+    /* ---------------- Policy, under evictionLock -------------- */
+
+    void maintenance() {
+        drainReadBuffer();
+        Write<K,V> w;
+        while ((w = writeBuffer.poll()) != null)
+            applyWrite(w);
+        if (expires())
+            expireEntries(System.nanoTime());
+        evictEntries();
+    }
+
+    @SuppressWarnings("unchecked")
+    void drainReadBuffer() {
+        for (ReadStripe s : readBuffer) {
+            long head = s.readCount;
+            long tail = s.get();
+            for (; head < tail; head++) {
+                int i = (int)head & (READ_BUFFER_SIZE - 1);
+                Node<K,V> n = (Node<K,V>)s.slots.get(i);
+                if (n == null)
+                    break;              // not yet published
+                s.slots.lazySet(i, null);
+                onAccess(n);
+            }
+            s.readCount = head;
+        }
+    }
+
+    void onAccess(Node<K,V> n) {
+        if (!n.inPolicy)
+            return;
+        if (tinyLfu)
+            sketch.increment(n.key);
+        (n.inWindow ? window : main).moveToBack(n);
+    }
+
+    void applyWrite(Write<K,V> w) {
+        Node<K,V> n = w.node;
+        switch (w.kind) {
+        case ADD:
+            link(n);
+            break;
+        case UPDATE:
+            if (!n.inPolicy) {  // ADD still pending, or set aside by evict
+                link(n);
+                break;
+            }
+            int delta = n.weight - n.policyWeight;
+            n.policyWeight += delta;
+            weightedSize += delta;
+            if (n.inWindow)
+                windowWeight += delta;
+            onAccess(n);
+            if (expireAfterWriteNanos >= 0)
+                writeOrder.moveToBack(n);
+            break;
+        default:
+            if (n.inPolicy)
+                unlink(n);
+            n.state = DEAD;
+        }
+    }
+
+    /**
+     * Adds a live node to the policy, if not already there.
+     */
+    void link(Node<K,V> n) {
+        if (n.inPolicy || n.state != ALIVE)
+            return;
+        n.inPolicy = true;
+        n.policyWeight = n.weight;
+        weightedSize += n.policyWeight;
+        if (tinyLfu) {
+            sketch.increment(n.key);
+            n.inWindow = true;
+            windowWeight += n.policyWeight;
+            window.linkLast(n);
+        } else
+            main.linkLast(n);
+        if (expireAfterWriteNanos >= 0)
+            writeOrder.linkLast(n);
+    }
+
+    /**
+     * Removes a node from the policy.
+     */
+    void unlink(Node<K,V> n) {
+        if (n.inWindow) {
+            window.unlink(n);
+            windowWeight -= n.policyWeight;
+            n.inWindow = false;
+        } else
+            main.unlink(n);
+        if (expireAfterWriteNanos >= 0)
+            writeOrder.unlink(n);
+        weightedSize -= n.policyWeight;
+        n.inPolicy = false;
+    }
+
+    /**
+     * Removes a node from the map, if still there, and the policy.  A
+     * node being loaded is instead only set aside from the policy, so
+     * that threads requesting its key keep waiting for the load in
+     * progress rather than start another; the write installing the
+     * loaded value adds it back.
+     *
+     * @param expired true if expired rather than evicted
+     */
+    void evict(Node<K,V> n, boolean expired) {
+        boolean removed = false;
+        synchronized (n) {
+            if (n.value instanceof Loading) {
+                unlink(n);
+                return;
+            }
+            if (n.state == ALIVE && data.remove(n.key, n)) {
+                n.state = RETIRED;
+                removed = true;
+            }
+        }
+        unlink(n);
+        n.state = DEAD;
+        if (removed && evictions != null)
+            (expired ? expirations : evictions).getAndIncrement();
+    }
+
+    void expireEntries(long now) {
+        if (expireAfterAccessNanos >= 0) {
+            expireFrom(window, now);
+            expireFrom(main, now);
+        }
+        if (expireAfterWriteNanos >= 0)
+            expireFrom(writeOrder, now);
+    }
+
+    /**
+     * Expires the nodes at the front of the given deque.  Since reads
+     * may be dropped, access order is approximate, and expired nodes
+     * further back are left for a later pass; lookups ignore them.
+     */
+    void expireFrom(NodeDeque<K,V> q, long now) {
+        Node<K,V> n;
+        while ((n = q.first) != null && isExpired(n, now))
+            evict(n, true);
+    }
+
+    void evictEntries() {
+        if (weightedSize <= maximum && windowWeight <= windowMaximum)
+            return;
+        Node<K,V> candidate = null;
+        if (tinyLfu) {
+            // Move the overflow of the window to the main space, where
+            // each is admitted only if used more often than a victim
+            Node<K,V> n;
+            while (windowWeight > windowMaximum &&
+                   (n = window.first) != null) {
+                window.unlink(n);
+                n.inWindow = false;
+                windowWeight -= n.policyWeight;
+                main.linkLast(n);
+                if (candidate == null)
+                    candidate = n;
+            }
+        }
+        while (weightedSize > maximum) {
+            Node<K,V> victim = main.first;
+            if (victim == null) {
+                if ((victim = window.first) == null)
+                    break;
+                evict(victim, false);
+            } else if (candidate == null || victim == candidate) {
+                if (victim == candidate)
+                    candidate = main.next(candidate);
+                evict(victim, false);
+            } else if (sketch.frequency(candidate.key) >
+                       sketch.frequency(victim.key)) {
+                evict(victim, false);
+            } else {
+                Node<K,V> next = main.next(candidate);
+                evict(candidate, false);
+                candidate = next;
+            }
+        }
+    }
+
+    /* ---------------- Map operations -------------- */
+
+    /**
+     * Returns the value to which the specified key is mapped, or
+     * {@code null} if this cache contains no unexpired mapping for the
+     * key.  This records a hit or a miss.
+     *
+     * @throws NullPointerException if the specified key is null
+     */
+    public V get(Object key) {
+        Node<K,V> n = data.get(key);
+        if (n != null) {
+            long now = now();
+            V v = liveValue(n, now);
+            if (v != null) {
+                recordLookup(true);
+                afterRead(n, now);
+                return v;
+            }
+            if (tracked && !(n.value instanceof Loading))
+                tryDrain();             // expired
+        }
+        recordLookup(false);
+        return null;
+    }
+
+    /**
+     * Returns {@code true} if this cache contains an unexpired mapping
+     * for the specified key.  This does not record a hit or a miss, nor
+     * count as an access for eviction or expiration.
+     *
+     * @throws NullPointerException if the specified key is null
+     */
+    public boolean containsKey(Object key) {
+        Node<K,V> n = data.get(key);
+        return n != null && liveValue(n, now()) != null;
+    }
+
+    /**
+     * Returns the value for the given key, loading it with the loader
+     * of this cache if it is absent.
+     *
+     * @param key the key
+     * @return the current or loaded value, or {@code null} if the loader
+     *         returned {@code null}
+     * @throws NullPointerException if the specified key is null
+     * @throws IllegalStateException if the cache has no loader
+     * @throws ExecutionException if the loader threw an exception
+     */
+    public V getOrLoad(K key) throws ExecutionException {
+        if (loader == null)
+            throw new IllegalStateException("no loader");
+        return get(key, loader);
+    }
+
+    /**
+     * Returns the value for the given key, loading it with the given
+     * loader if it is absent.  If other threads request the same key
+     * while it is being loaded, they wait for the result of this load
+     * instead of loading it themselves.  If the load fails, no mapping
+     * is created, and each of the waiting threads throws the same
+     * exception.
+     *
+     * @param key the key
+     * @param loader the loader
+     * @return the current or loaded value, or {@code null} if the loader
+     *         returned {@code null}
+     * @throws NullPointerException if the specified key or loader is null
+     * @throws ExecutionException if the loader threw an exception
+     */
+    public V get(K key, Loader<? super K, ? extends V> loader)
+        throws ExecutionException {
+        if (loader == null)
+            throw new NullPointerException();
+        long now = now();
+        for (;;) {
+            Node<K,V> n = data.get(key);
+            if (n == null) {
+                Loading<V> f = new Loading<V>();
+                Node<K,V> node = new Node<K,V>(key, f, 0, now);
+                if (data.putIfAbsent(key, node) != null)
+                    continue;
+                recordLookup(false);
+                afterWrite(node, ADD);
+                return load(node, f, loader);
+            }
+            Object v = n.value;
+            if (v instanceof Loading) {
+                recordLookup(false);
+                @SuppressWarnings("unchecked") Loading<V> f = (Loading<V>)v;
+                return await(f);
+            }
+            if (!isExpired(n, now)) {
+                recordLookup(true);
+                afterRead(n, now);
+                @SuppressWarnings("unchecked") V value = (V)v;
+                return value;
+            }
+            Loading<V> f = null;
+            synchronized (n) {
+                if (n.state == ALIVE && n.value == v) {
+                    n.value = f = new Loading<V>();
+                    n.writeTime = n.accessTime = now;
+                }
+            }
+            if (f != null) {
+                recordLookup(false);
+                afterWrite(n, UPDATE);
+                return load(n, f, loader);
+            }
+        }
+    }
+
+    /**
+     * Waits uninterruptibly for a value being loaded by another thread.
+     */
+    static <V> V await(Loading<V> f) throws ExecutionException {
+        boolean interrupted = false;
+        try {
+            for (;;) {
+                try {
+                    return f.get();
+                } catch (InterruptedException ie) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Loads the value of a node holding the given future, and
+     * installs it unless the node has been written or removed.
+     */
+    V load(Node<K,V> n, Loading<V> f, Loader<? super K, ? extends V> loader)
+        throws ExecutionException {
+        long start = System.nanoTime();
+        V value;
+        try {
+            value = loader.load(n.key);
+        } catch (Throwable ex) {
+            if (loadFailures != null) {
+                loadFailures.getAndIncrement();
+                loadTime.getAndAdd(System.nanoTime() - start);
+            }
+            removeLoading(n, f);
+            f.fail(ex);
+            if (ex instanceof Error)
+                throw (Error)ex;
+            throw new ExecutionException(ex);
+        }
+        long end = System.nanoTime();
+        if (loadSuccesses != null) {
+            loadSuccesses.getAndIncrement();
+            loadTime.getAndAdd(end - start);
+        }
+        if (value == null) {
+            removeLoading(n, f);
+        } else {
+            int w = weigh(n.key, value);
+            boolean installed = false;
+            synchronized (n) {
+                if (n.state == ALIVE && n.value == f) {
+                    n.value = value;
+                    n.weight = w;
+                    n.writeTime = n.accessTime = expires() ? end : 0L;
+                    installed = true;
+                }
+            }
+            if (installed)
+                afterWrite(n, UPDATE);
+        }
+        f.complete(value);
+        return value;
+    }
+
+    /**
+     * Removes a node whose load failed or found no value.
+     */
+    void removeLoading(Node<K,V> n, Loading<V> f) {
+        boolean removed = false;
+        synchronized (n) {
+            if (n.state == ALIVE && n.value == f && data.remove(n.key, n)) {
+                n.state = RETIRED;
+                removed = true;
+            }
+        }
+        if (removed)
+            afterWrite(n, REMOVE);
+    }
+
+    /**
+     * Maps the specified key to the specified value in this cache.
+     *
+     * @return the previous value associated with {@code key}, or
+     *         {@code null} if there was no unexpired mapping for
+     *         {@code key}
+     * @throws NullPointerException if the specified key or value is null
+     */
+    public V put(K key, V value) {
+        return put(key, value, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the previous value associated with the specified key,
+     *         or {@code null} if there was no unexpired mapping for the
+     *         key
+     * @throws NullPointerException if the specified key or value is null
+     */
+    public V putIfAbsent(K key, V value) {
+        return put(key, value, true);
+    }
+
+    V put(K key, V value, boolean onlyIfAbsent) {
+        if (value == null)
+            throw new NullPointerException();
+        int w = weigh(key, value);
+        long now = now();
+        Node<K,V> node = null;
+        for (;;) {
+            Node<K,V> n = data.get(key);
+            if (n == null) {
+                if (node == null)
+                    node = new Node<K,V>(key, value, w, now);
+                if (data.putIfAbsent(key, node) != null)
+                    continue;
+                afterWrite(node, ADD);
+                return null;
+            }
+            V oldValue;
+            boolean written = false;
+            synchronized (n) {
+                if (n.state != ALIVE)
+                    continue;           // removed; retry
+                oldValue = liveValue(n, now);
+                if (!onlyIfAbsent || oldValue == null) {
+                    n.value = value;
+                    n.weight = w;
+                    n.writeTime = n.accessTime = now;
+                    written = true;
+                }
+            }
+            if (written)
+                afterWrite(n, UPDATE);
+            else
+                afterRead(n, now);
+            return oldValue;
+        }
+    }
+
+    /**
+     * Removes the mapping for a key from this cache if it is present.
+     *
+     * @return the previous value associated with {@code key}, or
+     *         {@code null} if there was no unexpired mapping for
+     *         {@code key}
+     * @throws NullPointerException if the specified key is null
+     */
+    public V remove(Object key) {
+        Node<K,V> n = data.get(key);
+        if (n == null)
+            return null;
+        V oldValue;
+        synchronized (n) {
+            if (n.state != ALIVE || !data.remove(n.key, n))
+                return null;
+            n.state = RETIRED;
+            oldValue = liveValue(n, now());
+        }
+        afterWrite(n, REMOVE);
+        return oldValue;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws NullPointerException if the specified key is null
+     */
+    public boolean remove(Object key, Object value) {
+        Node<K,V> n = data.get(key);
+        if (n == null || value == null)
+            return false;
+        synchronized (n) {
+            V v = liveValue(n, now());
+            if (n.state != ALIVE || v == null || !v.equals(value) ||
+                !data.remove(n.key, n))
+                return false;
+            n.state = RETIRED;
+        }
+        afterWrite(n, REMOVE);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the previous value associated with the specified key,
+     *         or {@code null} if there was no unexpired mapping for the
+     *         key
+     * @throws NullPointerException if the specified key or value is null
+     */
+    public V replace(K key, V value) {
+        if (value == null)
+            throw new NullPointerException();
+        int w = weigh(key, value);
+        Node<K,V> n = data.get(key);
+        if (n == null)
+            return null;
+        long now = now();
+        V oldValue;
+        synchronized (n) {
+            oldValue = liveValue(n, now);
+            if (n.state != ALIVE || oldValue == null)
+                return null;
+            n.value = value;
+            n.weight = w;
+            n.writeTime = n.accessTime = now;
+        }
+        afterWrite(n, UPDATE);
+        return oldValue;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws NullPointerException if any of the arguments are null
+     */
+    public boolean replace(K key, V oldValue, V newValue) {
+        if (oldValue == null || newValue == null)
+            throw new NullPointerException();
+        int w = weigh(key, newValue);
+        Node<K,V> n = data.get(key);
+        if (n == null)
+            return false;
+        long now = now();
+        synchronized (n) {
+            V v = liveValue(n, now);
+            if (n.state != ALIVE || v == null || !v.equals(oldValue))
+                return false;
+            n.value = newValue;
+            n.weight = w;
+            n.writeTime = n.accessTime = now;
+        }
+        afterWrite(n, UPDATE);
+        return true;
+    }
+
+    /**
+     * Returns the number of mappings in this cache, including mappings
+     * being loaded and expired mappings not yet removed.
+     *
+     * @return the number of mappings in this cache
+     */
+    public int size() {
+        return data.size();
+    }
+
+    /**
+     * Returns {@code true} if this cache contains no mappings.
+     *
+     * @return {@code true} if this cache contains no mappings
+     */
+    public boolean isEmpty() {
+        return data.isEmpty();
+    }
+
+    /**
+     * Removes all of the mappings from this cache.
+     */
+    public void clear() {
+        for (K key : data.keySet())
+            remove(key);
+    }
+
+    /**
+     * Applies pending reads and writes to the eviction and expiration
+     * policy, waiting if another thread is doing so, and then evicts and
+     * expires mappings as needed.
+     */
+    public void cleanUp() {
+        if (!tracked)
+            return;
+        evictionLock.lock();
+        try {
+            maintenance();
+        } finally {
+            evictionLock.unlock();
+        }
+        if (!writeBuffer.isEmpty())
+            tryDrain();
+    }
+
+    /**
+     * Returns a snapshot of the statistics of this cache.  If statistics
+     * are not recorded, all counts are zero.
+     *
+     * @return the statistics of this cache
+     */
+    public Stats stats() {
+        if (lookups == null)
+            return new Stats(0L, 0L, 0L, 0L, 0L, 0L, 0L);
+        long hits = 0L, misses = 0L;
+        for (int i = 0; i < STAT_STRIPES * STAT_STRIDE; i += STAT_STRIDE) {
+            hits += lookups.get(i);
+            misses += lookups.get(i + 1);
+        }
+        return new Stats(hits, misses, loadSuccesses.get(),
+                         loadFailures.get(), loadTime.get(),
+                         evictions.get(), expirations.get());
+    }
+
+    /**
+     * Returns a {@link Set} view of the mappings contained in this
+     * cache, excluding those being loaded or expired.  The set is backed
+     * by the cache.  It supports removal, and the {@code setValue}
+     * method of its entries writes through to the cache, but it does not
+     * support addition.  Its iterators are weakly consistent.  Reading
+     * an entry does not record a hit, nor count as an access.
+     *
+     * @return a set view of the mappings contained in this cache
+     */
+    public Set<Map.Entry<K,V>> entrySet() {
+        Set<Map.Entry<K,V>> es = entrySet;
+        return (es != null) ? es : (entrySet = new EntrySet());
+    }
+
+    private transient Set<Map.Entry<K,V>> entrySet;
+
+    final class EntrySet extends AbstractSet<Map.Entry<K,V>> {
+        public Iterator<Map.Entry<K,V>> iterator() {
+            return new EntryIterator();
+        }
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?,?> e = (Map.Entry<?,?>)o;
+            Node<K,V> n = data.get(e.getKey());
+            V v = (n == null) ? null : liveValue(n, now());
+            return v != null && v.equals(e.getValue());
+        }
+        public boolean remove(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?,?> e = (Map.Entry<?,?>)o;
+            return ConcurrentCache.this.remove(e.getKey(), e.getValue());
+        }
+        public int size() {
+            return ConcurrentCache.this.size();
+        }
+        public boolean isEmpty() {
+            return ConcurrentCache.this.isEmpty();
+        }
+        public void clear() {
+            ConcurrentCache.this.clear();
+        }
+    }
+
+    final class EntryIterator implements Iterator<Map.Entry<K,V>> {
+        final Iterator<Node<K,V>> it = data.values().iterator();
+        Map.Entry<K,V> next;
+        K lastKey;
+
+        public boolean hasNext() {
+            while (next == null && it.hasNext()) {
+                Node<K,V> n = it.next();
+                V v = liveValue(n, now());
+                if (v != null)
+                    next = new WriteThroughEntry(n.key, v);
+            }
+            return next != null;
+        }
+
+        public Map.Entry<K,V> next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Map.Entry<K,V> e = next;
+            next = null;
+            lastKey = e.getKey();
+            return e;
+        }
+
+        public void remove() {
+            if (lastKey == null)
+                throw new IllegalStateException();
+            ConcurrentCache.this.remove(lastKey);
+            lastKey = null;
+        }
+    }
+
+    /**
+     * An entry whose setValue writes through to the cache.
+     */
+    final class WriteThroughEntry extends AbstractMap.SimpleEntry<K,V> {
+        private static final long serialVersionUID = -2436651453585218736L;
+
+        WriteThroughEntry(K key, V value) {
+            super(key, value);
+        }
+
+        public V setValue(V value) {
+            if (value == null)
+                throw new NullPointerException();
+            V v = super.setValue(value);
+            ConcurrentCache.this.put(getKey(), value);
+            return v;
+        }
+    }
+}
@@ -0,0 +1,686 @@
+/*
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+/*
+ *
+ *
+ *
+ *
+ *
+ * Written by Doug Lea with assistance from members of JCP JSR-166
+ * Expert Group and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+package java.util.concurrent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * An unbounded {@linkplain BlockingQueue blocking queue} that orders
+ * its elements like {@link PriorityBlockingQueue}, but that supports
+ * concurrent insertions and removals without a central lock.
+ *
+ * <p>A queue is created in one of two modes:
+ *
+ * <ul>
+ *
+ * <li><em>Strict</em> (the default): elements are kept in a
+ * concurrent skip list, as in {@link ConcurrentSkipListMap}, and
+ * {@code poll}, {@code take} and {@code peek} always return an element
+ * that is least according to the queue's ordering at some point
+ * during the call. Insertions and removals are lock-free. Elements
+ * that are equal according to the ordering are retrieved in
+ * first-in-first-out order.
+ *
+ * <li><em>Relaxed</em>: elements are spread over a number of
+ * independently locked heaps (a "multi-queue"). Insertions go to a
+ * randomly chosen heap; removals look at the least elements of two
+ * randomly chosen heaps and take the lesser. Threads thus rarely
+ * contend with each other, at the price that an element returned by
+ * {@code poll} or {@code take} is only approximately least: it is
+ * expected to be among the first few (on the order of the number
+ * of heaps) elements in queue order. This suits schedulers that
+ * need high throughput and only a rough ordering of jobs.
+ *
+ * </ul>
+ *
+ * <p>In both modes, a thread that must wait in {@code take} spins
+ * briefly and then blocks. Since the queue is unbounded, {@code put}
+ * never blocks and {@link #remainingCapacity} always returns {@code
+ * Integer.MAX_VALUE}.
+ *
+ * <p>This class does not permit {@code null} elements.  A queue
+ * relying on natural ordering also does not permit insertion of
+ * non-comparable objects (doing so results in {@code
+ * ClassCastException}).
+ *
+ * <p>The {@code size} method takes constant time in either mode, but
+ * is approximate while the queue is being modified. The iterator is
+ * "weakly consistent": it traverses a snapshot of the elements, in no
+ * particular order, taken by {@link #toArray()}.
+ *
+ * @since 1.8
+ * @param <E> the type of elements held in this collection
+ */
+public class ConcurrentPriorityBlockingQueue<E>
+        extends SpinningBlockingQueue<E> {
+
+    /*
+     * Strict mode keys a ConcurrentSkipListMap by nodes carrying the
+     * element and a sequence number, which breaks ties in FIFO order
+     * and lets equal elements coexist. Insertion CASes the skip list,
+     * which provides the fence SpinningBlockingQueue needs before
+     * reading the waiter counts.
+     *
+     * Relaxed mode follows the MultiQueue design of Rihani, Sanders
+     * and Dementiev: c * p sequential heaps (here PriorityQueues),
+     * each guarded by its own lock, with a volatile copy of its least
+     * element and of its size so that removers can pick a heap
+     * without locking. Both inserters and removers use tryLock and
+     * simply move on to other random heaps when a lock is busy,
+     * falling back to blocking acquisition only after several
+     * failures. The volatile size written under the lock is the
+     * fence before reading the waiter counts.
+     */
+
+    /** Number of heaps per unit of parallelism in relaxed mode */
+    private static final int HEAPS_PER_THREAD = 2;
+
+    /** Number of tryLock attempts before blocking on a heap's lock */
+    private static final int MAX_TRIES = 8;
+
+    /** Comparator, or null if natural ordering */
+    private final Comparator<? super E> comparator;
+
+    /** The skip list of strict mode, or null if relaxed */
+    private final ConcurrentSkipListMap<Node<E>,Boolean> map;
+
+    /** Sequence numbers for strict mode */
+    private final AtomicLong sequencer;
+
+    /** The heaps of relaxed mode, or null if strict */
+    private final Heap<E>[] heaps;
+
+    /**
+     * An element with the sequence number that orders it among equal
+     * elements, in strict mode.
+     */
+    static final class Node<E> {
+        final E item;
+        final long seq;
+        Node(E item, long seq) {
+            this.item = item;
+            this.seq = seq;
+        }
+    }
+
+    /**
+     * A heap of relaxed mode.
+     */
+    static final class Heap<E> extends ReentrantLock {
+        private static final long serialVersionUID = 5157312376545436382L;
+
+        final PriorityQueue<E> queue;
+
+        /** Least element, updated under lock, read without */
+        volatile E top;
+
+        /** Number of elements, updated under lock, read without */
+        volatile int count;
+
+        Heap(Comparator<? super E> comparator) {
+            queue = new PriorityQueue<E>(16, comparator);
+        }
+
+        /** Refreshes top and count; call with lock held */
+        void update() {
+            top = queue.peek();
+            count = queue.size();
+        }
+    }
+
+    /**
+     * Creates a strict {@code ConcurrentPriorityBlockingQueue} that
+     * orders its elements according to their {@linkplain Comparable
+     * natural ordering}.
+     */
+    public ConcurrentPriorityBlockingQueue() {
+        this(null, true, 1);
+    }
+
+    /**
+     * Creates a strict {@code ConcurrentPriorityBlockingQueue} that
+     * orders its elements according to the specified comparator.
+     *
+     * @param comparator the comparator that will be used to order this
+     *        priority queue.  If {@code null}, the {@linkplain Comparable
+     *        natural ordering} of the elements will be used.
+     */
+    public ConcurrentPriorityBlockingQueue(Comparator<? super E> comparator) {
+        this(comparator, true, 1);
+    }
+
+    /**
+     * Creates a {@code ConcurrentPriorityBlockingQueue} that orders
+     * its elements according to the specified comparator, in the
+     * given mode.
+     *
+     * @param comparator the comparator that will be used to order this
+     *        priority queue.  If {@code null}, the {@linkplain Comparable
+     *        natural ordering} of the elements will be used.
+     * @param strict {@code true} if removals must always return a least
+     *        element, {@code false} if an approximately least element
+     *        suffices
+     * @param parallelism the expected number of threads concurrently
+     *        using the queue, which determines the number of heaps in
+     *        relaxed mode; ignored in strict mode
+     * @throws IllegalArgumentException if {@code parallelism} is not
+     *         positive
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentPriorityBlockingQueue(Comparator<? super E> comparator,
+                                          boolean strict,
+                                          int parallelism) {
+        if (parallelism <= 0)
+            throw new IllegalArgumentException();
+        this.comparator = comparator;
+        if (strict) {
+            this.map = new ConcurrentSkipListMap<Node<E>,Boolean>
+                (new Comparator<Node<E>>() {
+                    public int compare(Node<E> a, Node<E> b) {
+                        int c = ConcurrentPriorityBlockingQueue.this
+                            .compare(a.item, b.item);
+                        if (c != 0)
+                            return c;
+                        return (a.seq < b.seq) ? -1 : (a.seq > b.seq) ? 1 : 0;
+                    }
+                });
+            this.sequencer = new AtomicLong();
+            this.heaps = null;
+        } else {
+            int n = (parallelism > (1 << 16) / HEAPS_PER_THREAD) ?
+                (1 << 16) : parallelism * HEAPS_PER_THREAD;
+            Heap<E>[] hs = (Heap<E>[]) new Heap<?>[n];
+            for (int i = 0; i < n; ++i)
+                hs[i] = new Heap<E>(comparator);
+            this.heaps = hs;
+            this.map = null;
+            this.sequencer = null;
+        }
+    }
+
+    /**
+     * Returns {@code true} if this queue always removes a least
+     * element, {@code false} if it only removes an approximately least
+     * element.
+     *
+     * @return {@code true} if this queue is strict
+     */
+    public boolean isStrict() {
+        return map != null;
+    }
+
+    /**
+     * Returns the comparator used to order the elements in this queue,
+     * or {@code null} if this queue uses the {@linkplain Comparable
+     * natural ordering} of its elements.
+     *
+     * @return the comparator used to order the elements in this queue,
+     *         or {@code null} if this queue uses the natural
+     *         ordering of its elements
+     */
+    public Comparator<? super E> comparator() {
+        return comparator;
+    }
+
+    @SuppressWarnings("unchecked")
+    final int compare(E a, E b) {
+        Comparator<? super E> cmp = comparator;
+        return (cmp != null) ? cmp.compare(a, b) :
+            ((Comparable<? super E>)a).compareTo(b);
+    }
+
+    final boolean claimedEmpty() {
+        return isEmpty();
+    }
+
+    final boolean claimedFull() {
+        return false;
+    }
+
+    /**
+     * Inserts the specified element into this priority queue.
+     * As the queue is unbounded, this method will never return
+     * {@code false}.
+     *
+     * @param e the element to add
+     * @return {@code true} (as specified by {@link Queue#offer})
+     * @throws ClassCastException if the specified element cannot be compared
+     *         with elements currently in the priority queue according to the
+     *         priority queue's ordering
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean offer(E e) {
+        if (e == null)
+            throw new NullPointerException();
+        if (map != null)
+            map.put(new Node<E>(e, sequencer.getAndIncrement()), Boolean.TRUE);
+        else {
+            Heap<E> h = lockHeap(ThreadLocalRandom.current());
+            try {
+                h.queue.offer(e);
+                h.update();
+            } finally {
+                h.unlock();
+            }
+        }
+        signalNotEmpty();
+        return true;
+    }
+
+    /**
+     * Returns a locked, randomly chosen heap.
+     */
+    private Heap<E> lockHeap(ThreadLocalRandom rnd) {
+        final Heap<E>[] hs = heaps;
+        for (int tries = 0; ; ++tries) {
+            Heap<E> h = hs[rnd.nextInt(hs.length)];
+            if (tries >= MAX_TRIES)
+                h.lock();
+            else if (!h.tryLock())
+                continue;
+            return h;
+        }
+    }
+
+    /**
+     * Inserts the specified element into this priority queue.
+     * As the queue is unbounded, this method will never block.
+     *
+     * @param e the element to add
+     * @throws ClassCastException if the specified element cannot be compared
+     *         with elements currently in the priority queue according to the
+     *         priority queue's ordering
+     * @throws NullPointerException if the specified element is null
+     */
+    public void put(E e) {
+        offer(e); // never need to block
+    }
+
+    /**
+     * Inserts the specified element into this priority queue.
+     * As the queue is unbounded, this method will never block or
+     * return {@code false}.
+     *
+     * @param e the element to add
+     * @param timeout This parameter is ignored as the method never blocks
+     * @param unit This parameter is ignored as the method never blocks
+     * @return {@code true} (as specified by
+     *  {@link BlockingQueue#offer(Object,long,TimeUnit) BlockingQueue.offer})
+     * @throws ClassCastException if the specified element cannot be compared
+     *         with elements currently in the priority queue according to the
+     *         priority queue's ordering
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean offer(E e, long timeout, TimeUnit unit) {
+        return offer(e); // never need to block
+    }
+
+    /**
+     * Retrieves and removes the head of this queue, or returns {@code
+     * null} if this queue is empty. In relaxed mode, the head is only
+     * approximately least.
+     *
+     * @return the head of this queue, or {@code null} if this queue
+     *         is empty
+     */
+    public E poll() {
+        if (map != null) {
+            java.util.Map.Entry<Node<E>,Boolean> e = map.pollFirstEntry();
+            return (e == null) ? null : e.getKey().item;
+        }
+        final Heap<E>[] hs = heaps;
+        final int n = hs.length;
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        for (int tries = 0; tries < MAX_TRIES; ++tries) {
+            Heap<E> a = hs[rnd.nextInt(n)], b = hs[rnd.nextInt(n)];
+            E ta = a.top, tb = b.top;
+            Heap<E> h;
+            if (ta == null)
+                h = (tb == null) ? null : b;
+            else
+                h = (tb == null || compare(ta, tb) <= 0) ? a : b;
+            if (h == null) {
+                if (isEmpty())
+                    return null;
+                continue;
+            }
+            if (h.tryLock()) {
+                try {
+                    E x = h.queue.poll();
+                    if (x != null) {
+                        h.update();
+                        return x;
+                    }
+                } finally {
+                    h.unlock();
+                }
+            }
+        }
+        return pollAnyHeap(rnd.nextInt(n));
+    }
+
+    /**
+     * Fallback for poll when random choices keep failing: locks each
+     * heap in turn, starting at the given index, and removes the
+     * least element of the first non-empty one.
+     */
+    private E pollAnyHeap(int start) {
+        final Heap<E>[] hs = heaps;
+        final int n = hs.length;
+        for (int i = 0; i < n; ++i) {
+            Heap<E> h = hs[(start + i) % n];
+            if (h.count == 0)
+                continue;
+            h.lock();
+            try {
+                E x = h.queue.poll();
+                if (x != null) {
+                    h.update();
+                    return x;
+                }
+            } finally {
+                h.unlock();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves, but does not remove, the head of this queue, or
+     * returns {@code null} if this queue is empty. In relaxed mode,
+     * this is a least element of all heaps at some point during the
+     * call, which need not be the element that the next {@code poll}
+     * returns.
+     *
+     * @return the head of this queue, or {@code null} if this queue
+     *         is empty
+     */
+    public E peek() {
+        if (map != null) {
+            java.util.Map.Entry<Node<E>,Boolean> e = map.firstEntry();
+            return (e == null) ? null : e.getKey().item;
+        }
+        E least = null;
+        for (Heap<E> h : heaps) {
+            E t = h.top;
+            if (t != null && (least == null || compare(t, least) < 0))
+                least = t;
+        }
+        return least;
+    }
+
+    /**
+     * Returns the number of elements in this queue.  The result may
+     * be inaccurate if the queue is concurrently modified.
+     *
+     * @return the number of elements in this queue
+     */
+    public int size() {
+        if (map != null)
+            return map.size();
+        long n = 0;
+        for (Heap<E> h : heaps)
+            n += h.count;
+        return (n < Integer.MAX_VALUE) ? (int)n : Integer.MAX_VALUE;
+    }
+
+    public boolean isEmpty() {
+        if (map != null)
+            return map.isEmpty();
+        for (Heap<E> h : heaps)
+            if (h.count != 0)
+                return false;
+        return true;
+    }
+
+    /**
+     * Always returns {@code Integer.MAX_VALUE} because
+     * a {@code ConcurrentPriorityBlockingQueue} is not capacity constrained.
+     * @return {@code Integer.MAX_VALUE} always
+     */
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Removes a single instance of the specified element from this queue,
+     * if it is present.  More formally, removes an element {@code e} such
+     * that {@code o.equals(e)}, if this queue contains one or more such
+     * elements.  Returns {@code true} if and only if this queue contained
+     * the specified element (or equivalently, if this queue changed as a
+     * result of the call).
+     *
+     * @param o element to be removed from this queue, if present
+     * @return {@code true} if this queue changed as a result of the call
+     */
+    public boolean remove(Object o) {
+        return remove(o, false);
+    }
+
+    /**
+     * Removes an element equal to, or if identity is true the same
+     * as, the given object.
+     */
+    private boolean remove(Object o, boolean identity) {
+        if (o == null)
+            return false;
+        if (map != null) {
+            for (Node<E> p : map.keySet()) {
+                Object x = p.item;
+                if ((identity ? x == o : o.equals(x)) &&
+                    map.remove(p) != null)
+                    return true;
+            }
+            return false;
+        }
+        for (Heap<E> h : heaps) {
+            if (h.count == 0)
+                continue;
+            h.lock();
+            try {
+                for (Iterator<E> it = h.queue.iterator(); it.hasNext(); ) {
+                    Object x = it.next();
+                    if (identity ? x == o : o.equals(x)) {
+                        it.remove();
+                        h.update();
+                        return true;
+                    }
+                }
+            } finally {
+                h.unlock();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns {@code true} if this queue contains the specified element.
+     * More formally, returns {@code true} if and only if this queue contains
+     * at least one element {@code e} such that {@code o.equals(e)}.
+     *
+     * @param o object to be checked for containment in this queue
+     * @return {@code true} if this queue contains the specified element
+     */
+    public boolean contains(Object o) {
+        if (o == null)
+            return false;
+        if (map != null) {
+            for (Node<E> p : map.keySet())
+                if (o.equals(p.item))
+                    return true;
+            return false;
+        }
+        for (Heap<E> h : heaps) {
+            h.lock();
+            try {
+                if (h.queue.contains(o))
+                    return true;
+            } finally {
+                h.unlock();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes all of the elements from this queue.
+     */
+    public void clear() {
+        if (map != null)
+            map.clear();
+        else {
+            for (Heap<E> h : heaps) {
+                h.lock();
+                try {
+                    h.queue.clear();
+                    h.update();
+                } finally {
+                    h.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns an array containing all of the elements in this queue.
+     * In strict mode the elements are in queue order; in relaxed mode
+     * they are in no particular order.
+     *
+     * @return an array containing all of the elements in this queue
+     */
+    public Object[] toArray() {
+        ArrayList<Object> all = new ArrayList<Object>();
+        if (map != null) {
+            for (Node<E> p : map.keySet())
+                all.add(p.item);
+        } else {
+            for (Heap<E> h : heaps) {
+                h.lock();
+                try {
+                    all.addAll(h.queue);
+                } finally {
+                    h.unlock();
+                }
+            }
+        }
+        return all.toArray();
+    }
+
+    /**
+     * Returns an array containing all of the elements in this queue;
+     * the runtime type of the returned array is that of the specified
+     * array.  In strict mode the elements are in queue order; in
+     * relaxed mode they are in no particular order.
+     *
+     * @param a the array into which the elements of the queue are to
+     *          be stored, if it is big enough; otherwise, a new array of the
+     *          same runtime type is allocated for this purpose
+     * @return an array containing all of the elements in this queue
+     * @throws ArrayStoreException if the runtime type of the specified array
+     *         is not a supertype of the runtime type of every element in
+     *         this queue
+     * @throws NullPointerException if the specified array is null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a) {
+        Object[] all = toArray();
+        int n = all.length;
+        if (a.length < n)
+            a = (T[])java.lang.reflect.Array.newInstance
+                (a.getClass().getComponentType(), n);
+        System.arraycopy(all, 0, a, 0, n);
+        if (a.length > n)
+            a[n] = null;
+        return a;
+    }
+
+    /**
+     * Returns an iterator over the elements in this queue. The
+     * iterator returns the elements in queue order in strict mode,
+     * and in no particular order in relaxed mode.
+     *
+     * <p>The returned iterator is a "weakly consistent" iterator that
+     * will never throw {@link java.util.ConcurrentModificationException
+     * ConcurrentModificationException}, and guarantees to traverse
+     * elements as they existed upon construction of the iterator, and
+     * may (but is not guaranteed to) reflect any modifications
+     * subsequent to construction.
+     *
+     * @return an iterator over the elements in this queue
+     */
+    public Iterator<E> iterator() {
+        return new Itr(toArray());
+    }
+
+    /**
+     * Snapshot iterator that works off copy of the elements.
+     */
+    final class Itr implements Iterator<E> {
+        final Object[] array; // Array of all elements
+        int cursor;           // index of next element to return
+        int lastRet;          // index of last element, or -1 if no such
+
+        Itr(Object[] array) {
+            lastRet = -1;
+            this.array = array;
+        }
+
+        public boolean hasNext() {
+            return cursor < array.length;
+        }
+
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (cursor >= array.length)
+                throw new NoSuchElementException();
+            lastRet = cursor;
+            return (E)array[cursor++];
+        }
+
+        public void remove() {
+            if (lastRet < 0)
+                throw new IllegalStateException();
+            ConcurrentPriorityBlockingQueue.this.remove(array[lastRet], true);
+            lastRet = -1;
+        }
+    }
+}
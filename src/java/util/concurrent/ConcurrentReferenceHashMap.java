@@ -0,0 +1,1004 @@
+/*
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+/*
+ *
+ *
+ *
+ *
+ *
+ * Written by Doug Lea with assistance from members of JCP JSR-166
+ * Expert Group and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+package java.util.concurrent;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A hash table supporting full concurrency of retrievals and adjustable
+ * expected concurrency for updates, that may hold its keys through
+ * weak references, compare them by identity, or both.  It is the
+ * concurrent counterpart of {@link java.util.WeakHashMap}, of
+ * {@link java.util.IdentityHashMap}, and of their combination, for
+ * tables that would otherwise be wrapped in a synchronized map or
+ * guarded by one lock, such as caches of metadata keyed by classes or
+ * other objects that must not be kept reachable by the cache.
+ *
+ * <p>The behavior of a map is selected by the {@link Option}s given
+ * to its constructor:
+ *
+ * <ul>
+ * <li>{@link Option#WEAK_KEYS WEAK_KEYS}: keys are held through weak
+ *     references, and a mapping is removed once its key has been
+ *     reclaimed by the garbage collector, as in {@code WeakHashMap}.
+ * <li>{@link Option#IDENTITY_COMPARISONS IDENTITY_COMPARISONS}: keys
+ *     are compared with {@code ==} and hashed with
+ *     {@link System#identityHashCode}, as in {@code IdentityHashMap},
+ *     rather than with {@code equals} and {@code hashCode}.
+ * </ul>
+ *
+ * <p>Like {@link ConcurrentHashMap}, the table is divided into
+ * segments, each locked for updates only, so that retrievals never
+ * block and updates of different segments proceed in parallel.  Each
+ * segment has its own reference queue, and removes the mappings of
+ * reclaimed keys in small batches during updates, and from time to
+ * time during retrievals when its lock is free, so that no operation
+ * pays for a collection of many keys at once.  Mappings whose keys
+ * have been reclaimed are never returned, but may be counted by
+ * {@link #size} until they are removed.
+ *
+ * <p>Iterators and enumerations return elements reflecting the state
+ * of the table at some point at or since the creation of the
+ * iterator.  They do <em>not</em> throw {@link
+ * java.util.ConcurrentModificationException}.  Like {@code ConcurrentHashMap},
+ * this class does <em>not</em> allow {@code null} to be used as a key
+ * or value.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ * @since 1.8
+ */
+public class ConcurrentReferenceHashMap<K,V> extends AbstractMap<K,V>
+        implements ConcurrentMap<K,V> {
+
+    /*
+     * The table is organized as the segments of ConcurrentHashMap in
+     * its original form: each segment holds a table of singly linked
+     * lists of entries whose keys, hashes and links are final, so that
+     * readers traverse them without locking.  Updates, under the lock
+     * of the segment, insert entries at the head of a list, and remove
+     * one by copying the entries that precede it.  Readers first read
+     * the volatile count of the segment, which writers write last, to
+     * see the entries of completed updates.
+     *
+     * With WEAK_KEYS, the key of an entry is a WeakKey, which records
+     * the hash of its referent, and is registered with the queue of
+     * its segment.  A reclaimed WeakKey is expunged by finding the
+     * entry holding that same WeakKey in the list for its hash.  A
+     * rehash drops the entries of reclaimed keys, and copied entries
+     * share the WeakKey of the original, so a WeakKey may no longer be
+     * in the table when it is polled, in which case it is ignored.
+     */
+
+    /**
+     * Options controlling how the keys of a map are held and compared.
+     *
+     * @since 1.8
+     */
+    public static enum Option {
+        /**
+         * Holds keys through weak references, so that a mapping is
+         * removed once its key is no longer otherwise reachable.
+         */
+        WEAK_KEYS,
+        /**
+         * Compares keys by reference equality and hashes them with
+         * {@link System#identityHashCode}.
+         */
+        IDENTITY_COMPARISONS
+    }
+
+    /* ---------------- Constants -------------- */
+
+    static final int DEFAULT_INITIAL_CAPACITY = 16;
+    static final float DEFAULT_LOAD_FACTOR = 0.75f;
+    static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+    static final int MAXIMUM_CAPACITY = 1 << 30;
+    static final int MIN_SEGMENT_TABLE_CAPACITY = 2;
+    static final int MAX_SEGMENTS = 1 << 16;
+
+    /**
+     * The maximum number of reclaimed keys expunged by one operation,
+     * except by those that must account for all of them, such as size.
+     */
+    static final int EXPUNGE_BATCH = 16;
+
+    /**
+     * The number of retrievals from a segment, as a mask, between
+     * attempts to expunge reclaimed keys from it.
+     */
+    static final int READS_PER_EXPUNGE_MASK = 63;
+
+    /* ---------------- Fields -------------- */
+
+    final int segmentMask;
+    final int segmentShift;
+    final Segment<K,V>[] segments;
+    final boolean weakKeys;
+    final boolean identity;
+
+    transient Set<K> keySet;
+    transient Set<Map.Entry<K,V>> entrySet;
+    transient Collection<V> values;
+
+    /**
+     * A weak reference to a key, recording the hash of the key.
+     */
+    static final class WeakKey extends WeakReference<Object> {
+        final int hash;
+
+        WeakKey(Object key, int hash, ReferenceQueue<Object> queue) {
+            super(key, queue);
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * An entry of a segment table.  The key is the key itself, or a
+     * WeakKey if keys are weak.
+     */
+    static final class HashEntry<V> {
+        final Object key;
+        final int hash;
+        volatile V value;
+        final HashEntry<V> next;
+
+        HashEntry(Object key, int hash, HashEntry<V> next, V value) {
+            this.key = key;
+            this.hash = hash;
+            this.next = next;
+            this.value = value;
+        }
+
+        /** Returns the key, or null if it has been reclaimed. */
+        Object key() {
+            Object k = key;
+            return (k instanceof WeakKey) ? ((WeakKey) k).get() : k;
+        }
+    }
+
+    /**
+     * Applies a supplemental hash function to a given hashCode, which
+     * defends against poor quality hash functions, as in
+     * ConcurrentHashMap.
+     */
+    final int hash(Object k) {
+        if (k == null)
+            throw new NullPointerException();
+        int h = identity ? System.identityHashCode(k) : k.hashCode();
+        h += (h <<  15) ^ 0xffffcd7d;
+        h ^= (h >>> 10);
+        h += (h <<   3);
+        h ^= (h >>>  6);
+        h += (h <<   2) + (h << 14);
+        return h ^ (h >>> 16);
+    }
+
+    final Segment<K,V> segmentFor(int hash) {
+        return segments[(hash >>> segmentShift) & segmentMask];
+    }
+
+    /**
+     * Segments are specialized versions of hash tables, each of which
+     * also acts as a lock for its updates.
+     */
+    static final class Segment<K,V> extends ReentrantLock {
+        private static final long serialVersionUID = 5207829234977119743L;
+
+        final ConcurrentReferenceHashMap<K,V> map;
+
+        /** The number of entries, written last by every update. */
+        transient volatile int count;
+
+        /** The table is rehashed when its count exceeds this. */
+        transient int threshold;
+
+        transient volatile HashEntry<V>[] table;
+
+        final float loadFactor;
+
+        /** The queue of reclaimed keys, or null if keys are strong. */
+        final ReferenceQueue<Object> queue;
+
+        /** Racy count of retrievals, to schedule expunging. */
+        transient int reads;
+
+        Segment(ConcurrentReferenceHashMap<K,V> map, int initialCapacity,
+                float lf) {
+            this.map = map;
+            this.loadFactor = lf;
+            this.queue = map.weakKeys ? new ReferenceQueue<>() : null;
+            setTable(Segment.<V>newTable(initialCapacity));
+        }
+
+        @SuppressWarnings("unchecked")
+        static <V> HashEntry<V>[] newTable(int n) {
+            return (HashEntry<V>[]) new HashEntry<?>[n];
+        }
+
+        void setTable(HashEntry<V>[] newTable) {
+            threshold = (int)(newTable.length * loadFactor);
+            table = newTable;
+        }
+
+        boolean matches(HashEntry<V> e, Object key, int hash) {
+            if (e.hash != hash)
+                return false;
+            Object k = e.key();
+            return k == key || (!map.identity && k != null && key.equals(k));
+        }
+
+        Object newKey(Object key, int hash) {
+            return (queue == null) ? key : new WeakKey(key, hash, queue);
+        }
+
+        /**
+         * Reads value field of an entry under lock.  Called if value
+         * field ever appears to be null.  This is possible only if a
+         * compiler happens to reorder a HashEntry initialization with
+         * its table assignment, which is legal under memory model but
+         * is not known to ever occur.
+         */
+        V readValueUnderLock(HashEntry<V> e) {
+            lock();
+            try {
+                return e.value;
+            } finally {
+                unlock();
+            }
+        }
+
+        /* Specialized implementations of map methods */
+
+        HashEntry<V> getEntry(Object key, int hash) {
+            if (queue != null && (++reads & READS_PER_EXPUNGE_MASK) == 0)
+                tryExpunge();
+            if (count != 0) { // read-volatile
+                HashEntry<V>[] tab = table;
+                HashEntry<V> e = tab[hash & (tab.length - 1)];
+                while (e != null) {
+                    if (matches(e, key, hash))
+                        return e;
+                    e = e.next;
+                }
+            }
+            return null;
+        }
+
+        V get(Object key, int hash) {
+            HashEntry<V> e = getEntry(key, hash);
+            if (e == null)
+                return null;
+            V v = e.value;
+            return (v != null) ? v : readValueUnderLock(e); // recheck
+        }
+
+        boolean containsValue(Object value) {
+            if (count != 0) { // read-volatile
+                HashEntry<V>[] tab = table;
+                for (HashEntry<V> e : tab) {
+                    for (; e != null; e = e.next) {
+                        V v = e.value;
+                        if (v == null) // recheck
+                            v = readValueUnderLock(e);
+                        if (value.equals(v) && e.key() != null)
+                            return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Expunges reclaimed keys if the lock is free.
+         */
+        void tryExpunge() {
+            if (tryLock()) {
+                try {
+                    expungeStaleEntries(EXPUNGE_BATCH);
+                } finally {
+                    unlock();
+                }
+            }
+        }
+
+        /**
+         * Removes the entries of at most max reclaimed keys.  Must be
+         * called with the lock held.
+         */
+        void expungeStaleEntries(int max) {
+            ReferenceQueue<Object> q = queue;
+            if (q == null)
+                return;
+            int c = count;
+            boolean removed = false;
+            for (int i = 0; i < max; i++) {
+                WeakKey ref = (WeakKey) q.poll();
+                if (ref == null)
+                    break;
+                HashEntry<V>[] tab = table;
+                int index = ref.hash & (tab.length - 1);
+                HashEntry<V> first = tab[index];
+                HashEntry<V> e = first;
+                while (e != null && e.key != ref)
+                    e = e.next;
+                if (e != null) {
+                    tab[index] = unlink(first, e);
+                    c--;
+                    removed = true;
+                }
+            }
+            if (removed)
+                count = c; // write-volatile
+        }
+
+        /**
+         * Returns the list first without e, copying the entries that
+         * precede e.
+         */
+        static <V> HashEntry<V> unlink(HashEntry<V> first, HashEntry<V> e) {
+            HashEntry<V> newFirst = e.next;
+            for (HashEntry<V> p = first; p != e; p = p.next)
+                newFirst = new HashEntry<V>(p.key, p.hash, newFirst, p.value);
+            return newFirst;
+        }
+
+        V put(K key, int hash, V value, boolean onlyIfAbsent) {
+            lock();
+            try {
+                expungeStaleEntries(EXPUNGE_BATCH);
+                int c = count;
+                if (c++ > threshold) { // ensure capacity
+                    rehash();
+                    c = count + 1;
+                }
+                HashEntry<V>[] tab = table;
+                int index = hash & (tab.length - 1);
+                HashEntry<V> first = tab[index];
+                HashEntry<V> e = first;
+                while (e != null && !matches(e, key, hash))
+                    e = e.next;
+
+                V oldValue;
+                if (e != null) {
+                    oldValue = e.value;
+                    if (!onlyIfAbsent)
+                        e.value = value;
+                } else {
+                    oldValue = null;
+                    tab[index] = new HashEntry<V>(newKey(key, hash), hash,
+                                                  first, value);
+                    count = c; // write-volatile
+                }
+                return oldValue;
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * Doubles the table, dropping the entries of reclaimed keys
+         * and discounting them from count.
+         */
+        void rehash() {
+            HashEntry<V>[] oldTable = table;
+            int oldCapacity = oldTable.length;
+            if (oldCapacity >= MAXIMUM_CAPACITY)
+                return;
+            HashEntry<V>[] newTable = newTable(oldCapacity << 1);
+            int sizeMask = newTable.length - 1;
+            int dropped = 0;
+            for (HashEntry<V> e : oldTable) {
+                for (; e != null; e = e.next) {
+                    if (e.key() == null) {
+                        dropped++;
+                        continue;
+                    }
+                    int k = e.hash & sizeMask;
+                    newTable[k] = new HashEntry<V>(e.key, e.hash,
+                                                   newTable[k], e.value);
+                }
+            }
+            setTable(newTable);
+            if (dropped != 0)
+                count -= dropped; // write-volatile
+        }
+
+        V replace(K key, int hash, V newValue) {
+            lock();
+            try {
+                expungeStaleEntries(EXPUNGE_BATCH);
+                HashEntry<V> e = getEntry(key, hash);
+                V oldValue = null;
+                if (e != null) {
+                    oldValue = e.value;
+                    e.value = newValue;
+                }
+                return oldValue;
+            } finally {
+                unlock();
+            }
+        }
+
+        boolean replace(K key, int hash, V oldValue, V newValue) {
+            lock();
+            try {
+                expungeStaleEntries(EXPUNGE_BATCH);
+                HashEntry<V> e = getEntry(key, hash);
+                if (e != null && oldValue.equals(e.value)) {
+                    e.value = newValue;
+                    return true;
+                }
+                return false;
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * Remove; match on key only if value null, else match both.
+         */
+        V remove(Object key, int hash, Object value) {
+            lock();
+            try {
+                expungeStaleEntries(EXPUNGE_BATCH);
+                int c = count - 1;
+                HashEntry<V>[] tab = table;
+                int index = hash & (tab.length - 1);
+                HashEntry<V> first = tab[index];
+                HashEntry<V> e = first;
+                while (e != null && !matches(e, key, hash))
+                    e = e.next;
+
+                V oldValue = null;
+                if (e != null) {
+                    V v = e.value;
+                    if (value == null || value.equals(v)) {
+                        oldValue = v;
+                        tab[index] = unlink(first, e);
+                        count = c; // write-volatile
+                    }
+                }
+                return oldValue;
+            } finally {
+                unlock();
+            }
+        }
+
+        void clear() {
+            lock();
+            try {
+                if (queue != null) {
+                    while (queue.poll() != null)
+                        ;
+                }
+                HashEntry<V>[] tab = table;
+                for (int i = 0; i < tab.length; i++)
+                    tab[i] = null;
+                count = 0; // write-volatile
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * Expunges all reclaimed keys and returns the count.
+         */
+        int expungeAndCount() {
+            if (queue == null)
+                return count;
+            lock();
+            try {
+                expungeStaleEntries(Integer.MAX_VALUE);
+                return count;
+            } finally {
+                unlock();
+            }
+        }
+    }
+
+    /* ---------------- Public operations -------------- */
+
+    /**
+     * Creates a new, empty map with the specified initial capacity,
+     * load factor, concurrency level and options.
+     *
+     * @param initialCapacity the initial capacity. The implementation
+     *        performs internal sizing to accommodate this many elements.
+     * @param loadFactor  the load factor threshold, used to control
+     *        resizing.  Resizing may be performed when the average
+     *        number of elements per bin exceeds this threshold.
+     * @param concurrencyLevel the estimated number of concurrently
+     *        updating threads. The implementation performs internal
+     *        sizing to try to accommodate this many threads.
+     * @param options the options selecting how keys are held and
+     *        compared
+     * @throws IllegalArgumentException if the initial capacity is
+     *         negative or the load factor or concurrencyLevel are
+     *         nonpositive
+     * @throws NullPointerException if any option is null
+     */
+    public ConcurrentReferenceHashMap(int initialCapacity, float loadFactor,
+                                      int concurrencyLevel,
+                                      Option... options) {
+        if (!(loadFactor > 0) || initialCapacity < 0 || concurrencyLevel <= 0)
+            throw new IllegalArgumentException();
+        EnumSet<Option> opts = EnumSet.noneOf(Option.class);
+        for (Option o : options)
+            opts.add(o);
+        this.weakKeys = opts.contains(Option.WEAK_KEYS);
+        this.identity = opts.contains(Option.IDENTITY_COMPARISONS);
+        if (concurrencyLevel > MAX_SEGMENTS)
+            concurrencyLevel = MAX_SEGMENTS;
+        int sshift = 0;
+        int ssize = 1;
+        while (ssize < concurrencyLevel) {
+            ++sshift;
+            ssize <<= 1;
+        }
+        this.segmentShift = 32 - sshift;
+        this.segmentMask = ssize - 1;
+        if (initialCapacity > MAXIMUM_CAPACITY)
+            initialCapacity = MAXIMUM_CAPACITY;
+        int c = initialCapacity / ssize;
+        if (c * ssize < initialCapacity)
+            ++c;
+        int cap = MIN_SEGMENT_TABLE_CAPACITY;
+        while (cap < c)
+            cap <<= 1;
+        @SuppressWarnings("unchecked")
+        Segment<K,V>[] ss = (Segment<K,V>[]) new Segment<?,?>[ssize];
+        for (int i = 0; i < ssize; i++)
+            ss[i] = new Segment<K,V>(this, cap, loadFactor);
+        this.segments = ss;
+    }
+
+    /**
+     * Creates a new, empty map with the specified options, and a default
+     * initial capacity (16), load factor (0.75) and concurrencyLevel (16).
+     *
+     * @param options the options selecting how keys are held and
+     *        compared
+     * @throws NullPointerException if any option is null
+     */
+    public ConcurrentReferenceHashMap(Option... options) {
+        this(DEFAULT_INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR,
+             DEFAULT_CONCURRENCY_LEVEL, options);
+    }
+
+    /**
+     * Returns {@code true} if this map contains no key-value mappings.
+     *
+     * @return {@code true} if this map contains no key-value mappings
+     */
+    public boolean isEmpty() {
+        for (Segment<K,V> s : segments) {
+            if (s.count != 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of key-value mappings in this map.  If the map
+     * contains more than {@code Integer.MAX_VALUE} elements, returns
+     * {@code Integer.MAX_VALUE}.  The mappings of reclaimed keys are
+     * removed before they are counted.
+     *
+     * @return the number of key-value mappings in this map
+     */
+    public int size() {
+        long sum = 0;
+        for (Segment<K,V> s : segments)
+            sum += s.expungeAndCount();
+        return (sum > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) sum;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped,
+     * or {@code null} if this map contains no mapping for the key.
+     *
+     * @throws NullPointerException if the specified key is null
+     */
+    public V get(Object key) {
+        int hash = hash(key);
+        return segmentFor(hash).get(key, hash);
+    }
+
+    /**
+     * Tests if the specified object is a key in this table.
+     *
+     * @param  key   possible key
+     * @return {@code true} if and only if the specified object
+     *         is a key in this table
+     * @throws NullPointerException if the specified key is null
+     */
+    public boolean containsKey(Object key) {
+        int hash = hash(key);
+        return segmentFor(hash).getEntry(key, hash) != null;
+    }
+
+    /**
+     * Returns {@code true} if this map maps one or more keys to the
+     * specified value.  Note: This method requires a full internal
+     * traversal of the table, and so is much slower than method
+     * {@code containsKey}.
+     *
+     * @param value value whose presence in this map is to be tested
+     * @return {@code true} if this map maps one or more keys to the
+     *         specified value
+     * @throws NullPointerException if the specified value is null
+     */
+    public boolean containsValue(Object value) {
+        if (value == null)
+            throw new NullPointerException();
+        for (Segment<K,V> s : segments) {
+            if (s.containsValue(value))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Maps the specified key to the specified value in this table.
+     * Neither the key nor the value can be null.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with {@code key}, or
+     *         {@code null} if there was no mapping for {@code key}
+     * @throws NullPointerException if the specified key or value is null
+     */
+    public V put(K key, V value) {
+        if (value == null)
+            throw new NullPointerException();
+        int hash = hash(key);
+        return segmentFor(hash).put(key, hash, value, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the previous value associated with the specified key,
+     *         or {@code null} if there was no mapping for the key
+     * @throws NullPointerException if the specified key or value is null
+     */
+    public V putIfAbsent(K key, V value) {
+        if (value == null)
+            throw new NullPointerException();
+        int hash = hash(key);
+        return segmentFor(hash).put(key, hash, value, true);
+    }
+
+    /**
+     * Copies all of the mappings from the specified map to this one.
+     * These mappings replace any mappings that this map had for any of the
+     * keys currently in the specified map.
+     *
+     * @param m mappings to be stored in this map
+     */
+    public void putAll(Map<? extends K, ? extends V> m) {
+        for (Map.Entry<? extends K, ? extends V> e : m.entrySet())
+            put(e.getKey(), e.getValue());
+    }
+
+    /**
+     * Removes the key (and its corresponding value) from this map.
+     * This method does nothing if the key is not in the map.
+     *
+     * @param  key the key that needs to be removed
+     * @return the previous value associated with {@code key}, or
+     *         {@code null} if there was no mapping for {@code key}
+     * @throws NullPointerException if the specified key is null
+     */
+    public V remove(Object key) {
+        int hash = hash(key);
+        return segmentFor(hash).remove(key, hash, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws NullPointerException if the specified key is null
+     */
+    public boolean remove(Object key, Object value) {
+        int hash = hash(key);
+        return value != null &&
+            segmentFor(hash).remove(key, hash, value) != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws NullPointerException if any of the arguments are null
+     */
+    public boolean replace(K key, V oldValue, V newValue) {
+        if (oldValue == null || newValue == null)
+            throw new NullPointerException();
+        int hash = hash(key);
+        return segmentFor(hash).replace(key, hash, oldValue, newValue);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the previous value associated with the specified key,
+     *         or {@code null} if there was no mapping for the key
+     * @throws NullPointerException if the specified key or value is null
+     */
+    public V replace(K key, V value) {
+        if (value == null)
+            throw new NullPointerException();
+        int hash = hash(key);
+        return segmentFor(hash).replace(key, hash, value);
+    }
+
+    /**
+     * Removes all of the mappings from this map.
+     */
+    public void clear() {
+        for (Segment<K,V> s : segments)
+            s.clear();
+    }
+
+    /**
+     * Returns a {@link Set} view of the keys contained in this map.
+     * The set is backed by the map, so changes to the map are
+     * reflected in the set, and vice-versa.  The set supports element
+     * removal, but not the {@code add} or {@code addAll} operations.
+     * The view's {@code iterator} is weakly consistent, as described
+     * above.
+     */
+    public Set<K> keySet() {
+        Set<K> ks = keySet;
+        return (ks != null) ? ks : (keySet = new KeySet());
+    }
+
+    /**
+     * Returns a {@link Collection} view of the values contained in this
+     * map, backed by the map as described for {@link #keySet}.
+     */
+    public Collection<V> values() {
+        Collection<V> vs = values;
+        return (vs != null) ? vs : (values = new Values());
+    }
+
+    /**
+     * Returns a {@link Set} view of the mappings contained in this map,
+     * backed by the map as described for {@link #keySet}.
+     */
+    public Set<Map.Entry<K,V>> entrySet() {
+        Set<Map.Entry<K,V>> es = entrySet;
+        return (es != null) ? es : (entrySet = new EntrySet());
+    }
+
+    /* ---------------- Iterator Support -------------- */
+
+    abstract class HashIterator {
+        int nextSegmentIndex;
+        int nextTableIndex;
+        HashEntry<V>[] currentTable;
+        HashEntry<V> nextEntry;
+        K nextKey;      // strongly holds the key of nextEntry
+        K lastKey;
+
+        HashIterator() {
+            nextSegmentIndex = segments.length - 1;
+            nextTableIndex = -1;
+            advance();
+        }
+
+        /**
+         * Sets nextEntry to the next entry whose key has not been
+         * reclaimed, if any.
+         */
+        @SuppressWarnings("unchecked")
+        final void advance() {
+            HashEntry<V> e = nextEntry;
+            for (;;) {
+                if (e != null)
+                    e = e.next;
+                while (e == null) {
+                    if (nextTableIndex >= 0) {
+                        e = currentTable[nextTableIndex--];
+                    } else if (nextSegmentIndex >= 0) {
+                        Segment<K,V> seg = segments[nextSegmentIndex--];
+                        if (seg.count != 0) {
+                            currentTable = seg.table;
+                            nextTableIndex = currentTable.length - 1;
+                        }
+                    } else {
+                        nextEntry = null;
+                        nextKey = null;
+                        return;
+                    }
+                }
+                Object k = e.key();
+                if (k != null) {
+                    nextEntry = e;
+                    nextKey = (K) k;
+                    return;
+                }
+            }
+        }
+
+        public final boolean hasNext() { return nextEntry != null; }
+
+        final HashEntry<V> nextEntry() {
+            HashEntry<V> e = nextEntry;
+            if (e == null)
+                throw new NoSuchElementException();
+            lastKey = nextKey;
+            advance();
+            return e;
+        }
+
+        public final void remove() {
+            if (lastKey == null)
+                throw new IllegalStateException();
+            ConcurrentReferenceHashMap.this.remove(lastKey);
+            lastKey = null;
+        }
+    }
+
+    final class KeyIterator extends HashIterator implements Iterator<K> {
+        public K next() {
+            nextEntry();
+            return lastKey;
+        }
+    }
+
+    final class ValueIterator extends HashIterator implements Iterator<V> {
+        public V next() {
+            return nextEntry().value;
+        }
+    }
+
+    /**
+     * Custom Entry class used by EntryIterator.next(), that relays
+     * setValue changes to the underlying map.
+     */
+    final class WriteThroughEntry extends AbstractMap.SimpleEntry<K,V> {
+        private static final long serialVersionUID = -7041825271209346049L;
+
+        WriteThroughEntry(K k, V v) {
+            super(k,v);
+        }
+
+        /**
+         * Set our entry's value and write through to the map. The
+         * value to return is somewhat arbitrary here. Since a
+         * WriteThroughEntry does not necessarily track asynchronous
+         * changes, the most recent "previous" value could be
+         * different from what we return (or could even have been
+         * removed in which case the put will re-establish). We do not
+         * and cannot guarantee more.
+         */
+        public V setValue(V value) {
+            if (value == null) throw new NullPointerException();
+            V v = super.setValue(value);
+            ConcurrentReferenceHashMap.this.put(getKey(), value);
+            return v;
+        }
+    }
+
+    final class EntryIterator extends HashIterator
+        implements Iterator<Map.Entry<K,V>> {
+        public Map.Entry<K,V> next() {
+            HashEntry<V> e = nextEntry();
+            return new WriteThroughEntry(lastKey, e.value);
+        }
+    }
+
+    final class KeySet extends AbstractSet<K> {
+        public Iterator<K> iterator() {
+            return new KeyIterator();
+        }
+        public int size() {
+            return ConcurrentReferenceHashMap.this.size();
+        }
+        public boolean isEmpty() {
+            return ConcurrentReferenceHashMap.this.isEmpty();
+        }
+        public boolean contains(Object o) {
+            return ConcurrentReferenceHashMap.this.containsKey(o);
+        }
+        public boolean remove(Object o) {
+            return ConcurrentReferenceHashMap.this.remove(o) != null;
+        }
+        public void clear() {
+            ConcurrentReferenceHashMap.this.clear();
+        }
+    }
+
+    final class Values extends AbstractCollection<V> {
+        public Iterator<V> iterator() {
+            return new ValueIterator();
+        }
+        public int size() {
+            return ConcurrentReferenceHashMap.this.size();
+        }
+        public boolean isEmpty() {
+            return ConcurrentReferenceHashMap.this.isEmpty();
+        }
+        public boolean contains(Object o) {
+            return ConcurrentReferenceHashMap.this.containsValue(o);
+        }
+        public void clear() {
+            ConcurrentReferenceHashMap.this.clear();
+        }
+    }
+
+    final class EntrySet extends AbstractSet<Map.Entry<K,V>> {
+        public Iterator<Map.Entry<K,V>> iterator() {
+            return new EntryIterator();
+        }
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?,?> e = (Map.Entry<?,?>)o;
+            V v = ConcurrentReferenceHashMap.this.get(e.getKey());
+            return v != null && v.equals(e.getValue());
+        }
+        public boolean remove(Object o) {
+            if (!(o instanceof Map.Entry))
+                return false;
+            Map.Entry<?,?> e = (Map.Entry<?,?>)o;
+            return ConcurrentReferenceHashMap.this.remove(e.getKey(),
+                                                          e.getValue());
+        }
+        public int size() {
+            return ConcurrentReferenceHashMap.this.size();
+        }
+        public boolean isEmpty() {
+            return ConcurrentReferenceHashMap.this.isEmpty();
+        }
+        public void clear() {
+            ConcurrentReferenceHashMap.this.clear();
+        }
+    }
+}
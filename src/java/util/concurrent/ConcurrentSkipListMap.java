@@ -63,11 +63,13 @@ import java.util.concurrent.atomic.*;
  * associated map using <tt>put</tt>, <tt>putIfAbsent</tt>, or
  * <tt>replace</tt>, depending on exactly which effect you need.)
  *
- * <p>Beware that, unlike in most collections, the <tt>size</tt>
- * method is <em>not</em> a constant-time operation. Because of the
- * asynchronous nature of these maps, determining the current number
- * of elements requires a traversal of the elements, and so may report
- * inaccurate results if this collection is modified during traversal.
+ * <p>The <tt>size</tt> method is a constant-time operation, but
+ * because of the asynchronous nature of these maps, it may report
+ * inaccurate results if this map is concurrently modified: it
+ * reflects the insertions and removals completed at some point during
+ * its execution, and no others.  The <tt>size</tt> methods of the
+ * views of key ranges returned by <tt>subMap</tt>, <tt>headMap</tt>
+ * and <tt>tailMap</tt> still traverse the mappings of their range.
  * Additionally, the bulk operations <tt>putAll</tt>, <tt>equals</tt>,
  * <tt>toArray</tt>, <tt>containsValue</tt>, and <tt>clear</tt> are
  * <em>not</em> guaranteed to be performed atomically. For example, an
@@ -309,6 +311,23 @@ public class ConcurrentSkipListMap<K,V> extends AbstractMap<K,V>
      * links of index nodes (as opposed to mutable "left" fields in
      * true trees) makes this tractable using only CAS operations.
      *
+     * The number of mappings is kept in a striped counter, so that
+     * size need not traverse the list.  It is incremented by doPut
+     * after linking in a new node, and decremented by whichever
+     * thread nulls out the value of a node, so it may briefly lag or
+     * lead the list (and is clamped to be nonnegative when read).
+     * This also makes clear a traversal that deletes each node in
+     * turn, rather than a replacement of the head.
+     *
+     * The spacing of index levels may be set by a constructor to a
+     * larger power of two than 2, in which case randomLevel indexes
+     * proportionally fewer nodes, trading slower searches for less
+     * space and fewer index insertions.  Bulk builds (from a sorted
+     * map, from a stream, or by putAll into an empty map) link nodes
+     * privately, lay out index nodes regularly at the same spacing
+     * rather than at random, and then publish the whole list with a
+     * single CAS of the next field of the base-level header.
+     *
      * Notation guide for local variables
      * Node:         b, n, f    for  predecessor, node, successor
      * Index:        q, r, d    for index node, right, down.
@@ -345,6 +364,14 @@ public class ConcurrentSkipListMap<K,V> extends AbstractMap<K,V>
      */
     private final Comparator<? super K> comparator;
 
+    /**
+     * The base-2 logarithm of the spacing of index levels: one node in
+     * 2^levelBits is indexed at each level above the lowest index
+     * level, and one in 2^(2*levelBits) at the lowest.
+     * @serial
+     */
+    private int levelBits = 1;
+
     /**
      * Seed for simple random number generator.  Not volatile since it
      * doesn't matter too much if different threads don't see updates.
@@ -360,9 +387,46 @@ public class ConcurrentSkipListMap<K,V> extends AbstractMap<K,V>
     /** Lazily initialized descending key set */
     private transient ConcurrentNavigableMap<K,V> descendingMap;
 
+    /**
+     * The number of mappings is the sum of baseCount and the values of
+     * any counterCells. Updates CAS baseCount until that fails, showing
+     * contention; counterCells is then created, with two cells, and
+     * updates go to the cell selected by a per-thread hash. A thread
+     * whose CAS of an existing cell fails rehashes, and after failing
+     * twice in a row doubles the table, up to the number of CPUs, under
+     * the cellsBusy spinlock. This is the scheme of jsr166e's
+     * Striped64, so an uncontended map uses no more space than a plain
+     * counter.
+     */
+    private transient volatile long baseCount;
+
+    /** Table of counter cells, created on contention; a power of two */
+    private transient volatile CounterCell[] counterCells;
+
+    /** Spinlock, locked via CAS, for creating or resizing counterCells */
+    private transient volatile int cellsBusy;
+
+    /** The largest index spacing accepted by the constructor, as log2 */
+    private static final int MAX_LEVEL_BITS = 4;
+
+    /** The number of CPUs, bounding the number of counter cells */
+    private static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Per-thread hash codes selecting counter cells, rehashed when a
+     * thread collides with another in its cell.
+     */
+    private static final ThreadLocal<int[]> countHash =
+        new ThreadLocal<int[]>() {
+            protected int[] initialValue() {
+                int h = seedGenerator.nextInt();
+                return new int[] { (h == 0) ? 1 : h }; // ensure nonzero
+            }
+        };
+
     /**
      * Initializes or resets state. Needed by constructors, clone,
-     * clear, readObject. and ConcurrentSkipListSet.clone.
+     * readObject, and ConcurrentSkipListSet.clone.
      * (Note that comparator must be separately initialized.)
      */
     final void initialize() {
@@ -371,10 +435,154 @@ public class ConcurrentSkipListMap<K,V> extends AbstractMap<K,V>
         values = null;
         descendingMap = null;
         randomSeed = seedGenerator.nextInt() | 0x0100; // ensure nonzero
+        baseCount = 0L;
+        counterCells = null;
+        cellsBusy = 0;
         head = new HeadIndex<K,V>(new Node<K,V>(null, BASE_HEADER, null),
                                   null, null, 1);
     }
 
+    /**
+     * A cell of the mapping counter, padded so that cells allocated
+     * together do not share a cache line.
+     */
+    static final class CounterCell {
+        long p0, p1, p2, p3, p4, p5, p6;
+        volatile long value;
+        long q0, q1, q2, q3, q4, q5, q6;
+
+        CounterCell(long x) { value = x; }
+
+        boolean cas(long cmp, long val) {
+            return UNSAFE.compareAndSwapLong(this, valueOffset, cmp, val);
+        }
+
+        // Unsafe mechanics
+        private static final sun.misc.Unsafe UNSAFE;
+        private static final long valueOffset;
+        static {
+            try {
+                UNSAFE = sun.misc.Unsafe.getUnsafe();
+                Class k = CounterCell.class;
+                valueOffset = UNSAFE.objectFieldOffset
+                    (k.getDeclaredField("value"));
+            } catch (Exception e) {
+                throw new Error(e);
+            }
+        }
+    }
+
+    /**
+     * Adds x to the mapping count, to baseCount unless it is
+     * contended or counter cells are in use.
+     */
+    final void addCount(long x) {
+        CounterCell[] as; long b, v; int n; CounterCell a;
+        if ((as = counterCells) != null ||
+            !UNSAFE.compareAndSwapLong(this, baseCountOffset,
+                                       b = baseCount, b + x)) {
+            int[] hc = countHash.get();
+            boolean uncontended = true;
+            if (as == null || (n = as.length) == 0 ||
+                (a = as[(n - 1) & hc[0]]) == null ||
+                !(uncontended = a.cas(v = a.value, v + x)))
+                fullAddCount(x, hc, uncontended);
+        }
+    }
+
+    /**
+     * Handles the cases of addCount that create, grow or add cells,
+     * or rehash after contention, as in LongAdder.
+     *
+     * @param x the value to add
+     * @param hc the hash code holder of the current thread
+     * @param wasUncontended false if the caller's CAS of a cell failed
+     */
+    private void fullAddCount(long x, int[] hc, boolean wasUncontended) {
+        int h = hc[0];
+        boolean collide = false;            // true if last cell CAS failed
+        for (;;) {
+            CounterCell[] as; CounterCell a; int n; long v;
+            if ((as = counterCells) != null && (n = as.length) > 0) {
+                if ((a = as[(n - 1) & h]) == null) {
+                    if (cellsBusy == 0) {   // try to attach new cell
+                        CounterCell r = new CounterCell(x);
+                        if (cellsBusy == 0 && casCellsBusy()) {
+                            boolean created = false;
+                            try {           // recheck under lock
+                                CounterCell[] rs; int m, j;
+                                if ((rs = counterCells) != null &&
+                                    (m = rs.length) > 0 &&
+                                    rs[j = (m - 1) & h] == null) {
+                                    rs[j] = r;
+                                    created = true;
+                                }
+                            } finally {
+                                cellsBusy = 0;
+                            }
+                            if (created)
+                                return;
+                            continue;       // slot is now non-empty
+                        }
+                    }
+                    collide = false;
+                }
+                else if (!wasUncontended)   // CAS already known to fail
+                    wasUncontended = true;  // continue after rehash
+                else if (a.cas(v = a.value, v + x))
+                    return;
+                else if (counterCells != as || n >= NCPU)
+                    collide = false;        // at max size or stale
+                else if (!collide)
+                    collide = true;
+                else if (cellsBusy == 0 && casCellsBusy()) {
+                    try {
+                        if (counterCells == as) { // expand unless stale
+                            CounterCell[] rs = new CounterCell[n << 1];
+                            for (int i = 0; i < n; ++i)
+                                rs[i] = as[i];
+                            counterCells = rs;
+                        }
+                    } finally {
+                        cellsBusy = 0;
+                    }
+                    collide = false;
+                    continue;               // retry with expanded table
+                }
+                h ^= h << 13;               // rehash
+                h ^= h >>> 17;
+                h ^= h << 5;
+                hc[0] = h;
+            }
+            else if (cellsBusy == 0 && counterCells == as &&
+                     casCellsBusy()) {
+                boolean init = false;
+                try {                       // initialize table
+                    if (counterCells == as) {
+                        CounterCell[] rs = new CounterCell[2];
+                        rs[h & 1] = new CounterCell(x);
+                        counterCells = rs;
+                        init = true;
+                    }
+                } finally {
+                    cellsBusy = 0;
+                }
+                if (init)
+                    return;
+            }
+            else if (UNSAFE.compareAndSwapLong(this, baseCountOffset,
+                                               v = baseCount, v + x))
+                return;                     // fall back on using base
+        }
+    }
+
+    /**
+     * compareAndSet cellsBusy from 0 to 1
+     */
+    private boolean casCellsBusy() {
+        return UNSAFE.compareAndSwapInt(this, cellsBusyOffset, 0, 1);
+    }
+
     /**
      * compareAndSet head node
      */
@@ -879,6 +1087,7 @@ public class ConcurrentSkipListMap<K,V> extends AbstractMap<K,V>
                 Node<K,V> z = new Node<K,V>(kkey, value, n);
                 if (!b.casNext(n, z))
                     break;         // restart if lost race to append to b
+                addCount(1L);
                 int level = randomLevel();
                 if (level > 0)
                     insertIndex(z, level);
@@ -889,8 +1098,11 @@ public class ConcurrentSkipListMap<K,V> extends AbstractMap<K,V>
 
     /**
      * Returns a random level for inserting a new node.
-     * Hardwired to k=1, p=0.5, max 31 (see above and
-     * Pugh's "Skip List Cookbook", sec 3.4).
+     * Hardwired to k=1, with p=1/2^levelBits, which is 0.5 unless
+     * set otherwise by the constructor (see above and Pugh's "Skip
+     * List Cookbook", sec 3.4).  A node is indexed when the highest
+     * bit and the lowest 2*levelBits-1 bits are all clear, and gains
+     * a level for each following group of levelBits set bits.
      *
      * This uses the simplest of the generators described in George
      * Marsaglia's "Xorshift RNGs" paper.  This is not a high-quality
@@ -901,10 +1113,14 @@ public class ConcurrentSkipListMap<K,V> extends AbstractMap<K,V>
         x ^= x << 13;
         x ^= x >>> 17;
         randomSeed = x ^= x << 5;
-        if ((x & 0x80000001) != 0) // test highest and lowest bits
+        int bits = levelBits;
+        int skip = 2 * bits - 1;
+        if ((x & (0x80000000 | ((1 << skip) - 1))) != 0)
             return 0;
+        int mask = (1 << bits) - 1;
         int level = 1;
-        while (((x >>>= 1) & 1) != 0) ++level;
+        for (x >>>= skip; (x & mask) == mask; x >>>= bits)
+            ++level;
         return level;
     }
 
@@ -1073,6 +1289,7 @@ public class ConcurrentSkipListMap<K,V> extends AbstractMap<K,V>
                     return null;
                 if (!n.casValue(v, null))
                     break;
+                addCount(-1L);
                 if (!n.appendMarker(f) || !b.casNext(n, f))
                     findNode(key);                  // Retry via findNode
                 else {
@@ -1158,6 +1375,7 @@ public class ConcurrentSkipListMap<K,V> extends AbstractMap<K,V>
             }
             if (!n.casValue(v, null))
                 continue;
+            addCount(-1L);
             if (!n.appendMarker(f) || !b.casNext(n, f))
                 findFirst(); // retry
             clearIndexToFirst();
@@ -1297,6 +1515,7 @@ public class ConcurrentSkipListMap<K,V> extends AbstractMap<K,V>
                 }
                 if (!n.casValue(v, null))
                     break;
+                addCount(-1L);
                 K key = n.key;
                 Comparable<? super K> ck = comparable(key);
                 if (!n.appendMarker(f) || !b.casNext(n, f))
@@ -1397,6 +1616,34 @@ public class ConcurrentSkipListMap<K,V> extends AbstractMap<K,V>
         initialize();
     }
 
+    /**
+     * Constructs a new, empty map, sorted according to the specified
+     * comparator, with the given spacing of index levels.  A skip
+     * list indexes one in every <tt>indexSpacing</tt> nodes of each
+     * level at the level above it.  Larger spacings use fewer index
+     * nodes (about 1/2 per mapping for a spacing of 2, the default,
+     * 1/12 for 4, 1/56 for 8 and 1/240 for 16), and so less space and
+     * less work per insertion, at the cost of more comparisons per
+     * search.
+     *
+     * @param comparator the comparator that will be used to order this map.
+     *        If <tt>null</tt>, the {@linkplain Comparable natural
+     *        ordering} of the keys will be used.
+     * @param indexSpacing the spacing of index levels: 2, 4, 8 or 16
+     * @throws IllegalArgumentException if <tt>indexSpacing</tt> is not
+     *         2, 4, 8 or 16
+     * @since 1.8
+     */
+    public ConcurrentSkipListMap(Comparator<? super K> comparator,
+                                 int indexSpacing) {
+        if (indexSpacing < 2 || indexSpacing > (1 << MAX_LEVEL_BITS) ||
+            (indexSpacing & (indexSpacing - 1)) != 0)
+            throw new IllegalArgumentException();
+        this.comparator = comparator;
+        this.levelBits = Integer.numberOfTrailingZeros(indexSpacing);
+        initialize();
+    }
+
     /**
      * Constructs a new map containing the same mappings as the given map,
      * sorted according to the {@linkplain Comparable natural ordering} of
@@ -1450,58 +1697,97 @@ public class ConcurrentSkipListMap<K,V> extends AbstractMap<K,V>
 
     /**
      * Streamlined bulk insertion to initialize from elements of
-     * given sorted map.  Call only from constructor or clone
-     * method.
+     * given sorted map, which must be ordered as this map is.  Call
+     * only from constructor, clone, or putAll.
+     *
+     * @return false if this map was found not to be empty, in which
+     * case it is unchanged
      */
-    private void buildFromSorted(SortedMap<K, ? extends V> map) {
+    private boolean buildFromSorted(SortedMap<K, ? extends V> map) {
         if (map == null)
             throw new NullPointerException();
-
-        HeadIndex<K,V> h = head;
-        Node<K,V> basepred = h.node;
-
-        // Track the current rightmost node at each level. Uses an
-        // ArrayList to avoid committing to initial or maximum level.
-        ArrayList<Index<K,V>> preds = new ArrayList<Index<K,V>>();
-
-        // initialize
-        for (int i = 0; i <= h.level; ++i)
-            preds.add(null);
-        Index<K,V> q = h;
-        for (int i = h.level; i > 0; --i) {
-            preds.set(i, q);
-            q = q.down;
-        }
-
-        Iterator<? extends Map.Entry<? extends K, ? extends V>> it =
-            map.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry<? extends K, ? extends V> e = it.next();
-            int j = randomLevel();
-            if (j > h.level) j = h.level + 1;
-            K k = e.getKey();
-            V v = e.getValue();
-            if (k == null || v == null)
+        SortedBuilder b = new SortedBuilder();
+        for (Map.Entry<? extends K, ? extends V> e : map.entrySet())
+            b.add(e.getKey(), e.getValue());
+        return b.publish();
+    }
+
+    /**
+     * Privately links a list of nodes appended in ascending order,
+     * together with their index nodes, for bulk insertion into an
+     * empty map.  Levels are assigned regularly rather than at
+     * random: counting nodes from 1, node i is indexed if i is a
+     * multiple of 2^(2*levelBits), with one more level for each
+     * further factor of 2^levelBits, which gives the expected
+     * proportions of randomLevel while keeping index nodes evenly
+     * spaced.
+     */
+    final class SortedBuilder {
+        final Node<K,V> header = head.node;
+        Node<K,V> first, last;
+        long count;
+
+        // The leftmost and rightmost index nodes of each level,
+        // starting at level 1.  Uses ArrayLists to avoid committing
+        // to a maximum level.
+        final ArrayList<Index<K,V>> firsts = new ArrayList<Index<K,V>>();
+        final ArrayList<Index<K,V>> lasts = new ArrayList<Index<K,V>>();
+
+        /** Appends a mapping with a key greater than all previous ones */
+        void add(K key, V value) {
+            if (key == null || value == null)
                 throw new NullPointerException();
-            Node<K,V> z = new Node<K,V>(k, v, null);
-            basepred.next = z;
-            basepred = z;
-            if (j > 0) {
+            Node<K,V> z = new Node<K,V>(key, value, null);
+            if (last == null)
+                first = z;
+            else
+                last.next = z;
+            last = z;
+            int bits = levelBits;
+            int zeros = Long.numberOfTrailingZeros(++count);
+            if (zeros >= 2 * bits) {
+                int level = 1 + (zeros - 2 * bits) / bits;
                 Index<K,V> idx = null;
-                for (int i = 1; i <= j; ++i) {
+                for (int i = 0; i < level; ++i) {
                     idx = new Index<K,V>(z, idx, null);
-                    if (i > h.level)
-                        h = new HeadIndex<K,V>(h.node, h, idx, i);
-
-                    if (i < preds.size()) {
-                        preds.get(i).right = idx;
-                        preds.set(i, idx);
-                    } else
-                        preds.add(idx);
+                    if (i < lasts.size()) {
+                        lasts.get(i).right = idx;
+                        lasts.set(i, idx);
+                    } else {
+                        firsts.add(idx);
+                        lasts.add(idx);
+                    }
                 }
             }
         }
-        head = h;
+
+        /**
+         * Links the list after the base-level header if the map is
+         * still empty, and then replaces the index levels of the map
+         * by those built.  Index nodes added by concurrent insertions
+         * after the list are dropped along with the old levels, which
+         * only slows searches for their nodes.
+         *
+         * @return false if the map was not empty, in which case it is
+         * unchanged
+         */
+        boolean publish() {
+            if (first == null)
+                return true;
+            if (!header.casNext(null, first))
+                return false;
+            HeadIndex<K,V> h = new HeadIndex<K,V>
+                (header, null, firsts.isEmpty() ? null : firsts.get(0), 1);
+            for (int i = 1; i < firsts.size(); ++i)
+                h = new HeadIndex<K,V>(header, h, firsts.get(i), i + 1);
+            for (;;) {
+                HeadIndex<K,V> oldh = head;
+                if (casHead(oldh, h))
+                    break;
+            }
+            addCount(count);
+            return true;
+        }
     }
 
     /* ---------------- Serialization -------------- */
@@ -1538,28 +1824,12 @@ public class ConcurrentSkipListMap<K,V> extends AbstractMap<K,V>
         throws java.io.IOException, ClassNotFoundException {
         // Read in the Comparator and any hidden stuff
         s.defaultReadObject();
+        if (levelBits < 1 || levelBits > MAX_LEVEL_BITS)
+            levelBits = 1;     // absent from older serial forms
         // Reset transients
         initialize();
 
-        /*
-         * This is nearly identical to buildFromSorted, but is
-         * distinct because readObject calls can't be nicely adapted
-         * as the kind of iterator needed by buildFromSorted. (They
-         * can be, but doing so requires type cheats and/or creation
-         * of adaptor classes.) It is simpler to just adapt the code.
-         */
-
-        HeadIndex<K,V> h = head;
-        Node<K,V> basepred = h.node;
-        ArrayList<Index<K,V>> preds = new ArrayList<Index<K,V>>();
-        for (int i = 0; i <= h.level; ++i)
-            preds.add(null);
-        Index<K,V> q = h;
-        for (int i = h.level; i > 0; --i) {
-            preds.set(i, q);
-            q = q.down;
-        }
-
+        SortedBuilder b = new SortedBuilder();
         for (;;) {
             Object k = s.readObject();
             if (k == null)
@@ -1567,29 +1837,11 @@ public class ConcurrentSkipListMap<K,V> extends AbstractMap<K,V>
             Object v = s.readObject();
             if (v == null)
                 throw new NullPointerException();
-            K key = (K) k;
-            V val = (V) v;
-            int j = randomLevel();
-            if (j > h.level) j = h.level + 1;
-            Node<K,V> z = new Node<K,V>(key, val, null);
-            basepred.next = z;
-            basepred = z;
-            if (j > 0) {
-                Index<K,V> idx = null;
-                for (int i = 1; i <= j; ++i) {
-                    idx = new Index<K,V>(z, idx, null);
-                    if (i > h.level)
-                        h = new HeadIndex<K,V>(h.node, h, idx, i);
-
-                    if (i < preds.size()) {
-                        preds.get(i).right = idx;
-                        preds.set(i, idx);
-                    } else
-                        preds.add(idx);
-                }
-            }
+            @SuppressWarnings("unchecked") K key = (K) k;
+            @SuppressWarnings("unchecked") V val = (V) v;
+            b.add(key, val);
         }
-        head = h;
+        b.publish();
     }
 
     /* ------ Map API methods ------ */
@@ -1687,24 +1939,26 @@ public class ConcurrentSkipListMap<K,V> extends AbstractMap<K,V>
      * contains more than <tt>Integer.MAX_VALUE</tt> elements, it
      * returns <tt>Integer.MAX_VALUE</tt>.
      *
-     * <p>Beware that, unlike in most collections, this method is
-     * <em>NOT</em> a constant-time operation. Because of the
-     * asynchronous nature of these maps, determining the current
-     * number of elements requires traversing them all to count them.
-     * Additionally, it is possible for the size to change during
-     * execution of this method, in which case the returned result
-     * will be inaccurate. Thus, this method is typically not very
-     * useful in concurrent applications.
+     * <p>This method sums counters maintained by insertions and
+     * removals, so takes constant time, but it is possible for the
+     * size to change during execution of this method, in which case
+     * the returned result will be inaccurate. Thus, this method is
+     * typically not very useful in concurrent applications.
      *
      * @return the number of elements in this map
      */
     public int size() {
-        long count = 0;
-        for (Node<K,V> n = findFirst(); n != null; n = n.next) {
-            if (n.getValidValue() != null)
-                ++count;
+        CounterCell[] as = counterCells;
+        long count = baseCount;
+        if (as != null) {
+            for (int i = 0; i < as.length; ++i) {
+                CounterCell a = as[i];
+                if (a != null)
+                    count += a.value;
+            }
         }
-        return (count >= Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) count;
+        return (count <= 0) ? 0 :
+            (count >= Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) count;
     }
 
     /**
@@ -1715,11 +1969,119 @@ public class ConcurrentSkipListMap<K,V> extends AbstractMap<K,V>
         return findFirst() == null;
     }
 
+    /**
+     * Copies all of the mappings from the specified map to this map.
+     * If this map is empty and the specified map is a sorted map with
+     * the same ordering, its mappings are linked in together, with
+     * their index levels, in time linear in their number, unless a
+     * concurrent insertion into this map occurs first; otherwise each
+     * mapping is put in turn, as if by {@link #put put}.
+     *
+     * @param m mappings to be stored in this map
+     * @throws ClassCastException if a key in the specified map cannot
+     *         be compared with the keys currently in this map
+     * @throws NullPointerException if the specified map or any of its
+     *         keys or values are null
+     */
+    public void putAll(Map<? extends K, ? extends V> m) {
+        if (m instanceof SortedMap && head.node.next == null) {
+            @SuppressWarnings("unchecked")
+            SortedMap<K, ? extends V> sm = (SortedMap<K, ? extends V>) m;
+            Comparator<?> c = sm.comparator();
+            if ((c == comparator || (c != null && c.equals(comparator))) &&
+                buildFromSorted(sm))
+                return;
+        }
+        for (Map.Entry<? extends K, ? extends V> e : m.entrySet())
+            put(e.getKey(), e.getValue());
+    }
+
     /**
      * Removes all of the mappings from this map.
      */
     public void clear() {
-        initialize();
+        K lastKey = null;
+        for (;;) {
+            Node<K,V> b, n;
+            HeadIndex<K,V> h = head, d = (HeadIndex<K,V>) h.down;
+            if (d != null)
+                casHead(h, d);            // remove levels
+            else if ((n = (b = h.node).next) != null) {
+                Node<K,V> f = n.next;     // remove values
+                if (n == b.next) {
+                    Object v = n.value;
+                    if (v == null)
+                        n.helpDelete(b, f);
+                    else if (n.casValue(v, null)) {
+                        addCount(-1L);
+                        lastKey = n.key;
+                        if (n.appendMarker(f))
+                            b.casNext(n, f);
+                    }
+                }
+            }
+            else
+                break;
+        }
+        if (lastKey != null)
+            findPredecessor(comparable(lastKey));   // Clean index
+    }
+
+    /**
+     * Removes all mappings with keys within the given range, as
+     * bounded in SubMap, in a single traversal of the base level
+     * starting from the predecessor of the low bound, rather than a
+     * search per key, followed by one search for the last key removed
+     * to unlink the index nodes of the range.
+     */
+    final void clearRange(K lo, boolean loInclusive,
+                          K hi, boolean hiInclusive) {
+        Comparable<? super K> clo = (lo == null) ? null : comparable(lo);
+        Comparable<? super K> chi = (hi == null) ? null : comparable(hi);
+        K lastKey = null;
+        outer: for (;;) {
+            Node<K,V> b = (clo == null) ? head.node : findPredecessor(clo);
+            Node<K,V> n = b.next;
+            for (;;) {
+                if (n == null)
+                    break outer;
+                Node<K,V> f = n.next;
+                if (n != b.next)                    // inconsistent read
+                    continue outer;
+                Object v = n.value;
+                if (v == null) {                    // n is deleted
+                    n.helpDelete(b, f);
+                    n = b.next;
+                    continue;
+                }
+                if (v == n || b.value == null)      // b is deleted
+                    continue outer;
+                int c;
+                if (clo != null &&
+                    ((c = clo.compareTo(n.key)) > 0 ||
+                     (c == 0 && !loInclusive))) {
+                    b = n;                          // below range
+                    n = f;
+                    continue;
+                }
+                if (chi != null &&
+                    ((c = chi.compareTo(n.key)) < 0 ||
+                     (c == 0 && !hiInclusive)))
+                    break outer;                    // above range
+                if (n.casValue(v, null)) {
+                    addCount(-1L);
+                    lastKey = n.key;
+                    if (n.appendMarker(f))
+                        b.casNext(n, f);
+                }
+                n = b.next;
+            }
+        }
+        if (lastKey != null) {
+            findPredecessor(comparable(lastKey));   // Clean index
+            if (head.right == null)
+                tryReduceLevel();
+        }
     }
 
     /* ---------------- View methods -------------- */
@@ -2776,12 +3138,7 @@ public class ConcurrentSkipListMap<K,V> extends AbstractMap<K,V>
         }
 
         public void clear() {
-            for (ConcurrentSkipListMap.Node<K,V> n = loNode();
-                 isBeforeEnd(n);
-                 n = n.next) {
-                if (n.getValidValue() != null)
-                    m.remove(n.key);
-            }
+            m.clearRange(lo, loInclusive, hi, hiInclusive);
         }
 
         /* ----------------  ConcurrentMap API methods -------------- */
@@ -3106,12 +3463,18 @@ public class ConcurrentSkipListMap<K,V> extends AbstractMap<K,V>
     // Unsafe mechanics
     private static final sun.misc.Unsafe UNSAFE;
     private static final long headOffset;
+    private static final long baseCountOffset;
+    private static final long cellsBusyOffset;
     static {
         try {
             UNSAFE = sun.misc.Unsafe.getUnsafe();
             Class k = ConcurrentSkipListMap.class;
             headOffset = UNSAFE.objectFieldOffset
                 (k.getDeclaredField("head"));
+            baseCountOffset = UNSAFE.objectFieldOffset
+                (k.getDeclaredField("baseCount"));
+            cellsBusyOffset = UNSAFE.objectFieldOffset
+                (k.getDeclaredField("cellsBusy"));
         } catch (Exception e) {
             throw new Error(e);
         }
@@ -707,6 +707,108 @@ public class CopyOnWriteArrayList<E>
         }
     }
 
+    /**
+     * Removes all of the elements of this list that satisfy the given
+     * predicate.  The surviving elements are copied into a single new
+     * array, rather than removed one at a time with a copy of the array
+     * for each.  If the predicate throws an exception, the list is left
+     * unchanged.
+     *
+     * @param filter a predicate which returns {@code true} for elements to
+     *        be removed
+     * @return {@code true} if any elements were removed
+     * @throws NullPointerException if the specified filter is null
+     * @since 1.8
+     */
+    @SuppressWarnings("unchecked")
+    public boolean removeIf(java.util.function.Predicate<? super E> filter) {
+        if (filter == null) throw new NullPointerException();
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Object[] elements = getArray();
+            int len = elements.length;
+            if (len != 0) {
+                // temp array holds those elements we know we want to keep
+                int newlen = 0;
+                Object[] temp = new Object[len];
+                for (int i = 0; i < len; ++i) {
+                    Object element = elements[i];
+                    if (!filter.test((E) element))
+                        temp[newlen++] = element;
+                }
+                if (newlen != len) {
+                    setArray(Arrays.copyOf(temp, newlen));
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replaces each element of this list with the result of applying the
+     * operator to that element.  The results are stored in a single new
+     * array, which is published once all of them have been computed.
+     *
+     * @param operator the operator to apply to each element
+     * @throws NullPointerException if the specified operator is null
+     * @since 1.8
+     */
+    @SuppressWarnings("unchecked")
+    public void replaceAll(java.util.function.UnaryOperator<E> operator) {
+        if (operator == null) throw new NullPointerException();
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Object[] elements = getArray();
+            int len = elements.length;
+            Object[] newElements = new Object[len];
+            for (int i = 0; i < len; ++i)
+                newElements[i] = operator.apply((E) elements[i]);
+            setArray(newElements);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sorts this list according to the order induced by the specified
+     * comparator, or according to the natural ordering of its elements if
+     * the comparator is {@code null}.  This sort is guaranteed to be
+     * <i>stable</i>.
+     *
+     * <p>The list is sorted by copying its array once, sorting the copy
+     * in place, and publishing it, so that concurrent readers see either
+     * the unsorted or the sorted list.
+     * {@link Collections#sort(List, Comparator)} uses this method when
+     * given a {@code CopyOnWriteArrayList}, instead of replacing the
+     * elements one at a time with a copy of the array for each.
+     *
+     * @param c the comparator to determine the order of the list, or
+     *        {@code null} to use the elements' natural ordering
+     * @throws ClassCastException if the list contains elements that are
+     *         not <i>mutually comparable</i> using the specified comparator
+     * @throws IllegalArgumentException (optional) if the comparator is
+     *         found to violate the {@link Comparator} contract
+     * @since 1.8
+     */
+    @SuppressWarnings("unchecked")
+    public void sort(Comparator<? super E> c) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Object[] elements = getArray();
+            E[] newElements = (E[]) Arrays.copyOf(elements, elements.length);
+            Arrays.sort(newElements, c);
+            setArray(newElements);
+        } finally {
+            lock.unlock();
+        }
+    }
+
     /**
      * Appends all of the elements in the specified collection that
      * are not already contained in this list, to the end of
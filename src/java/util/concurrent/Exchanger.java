@@ -180,10 +180,9 @@ public class Exchanger<V> {
      * tradeoffs of all hash tables.  Here, we use a one-step FNV-1a
      * hash code based on the current thread's Thread.getId(), along
      * with a cheap approximation to a mod operation to select an
-     * index.  The downside of optimizing index selection in this way
-     * is that the code is hardwired to use a maximum table size of
-     * 32.  But this value more than suffices for known platforms and
-     * applications.
+     * index.  The table holds at least 32 slots, and more on
+     * machines with enough CPUs that more than 32 pairs of threads
+     * can be exchanging at once.
      *
      * Probing: On sensed contention of a selected slot, we probe
      * sequentially through the table, analogously to linear probing
@@ -219,11 +218,11 @@ public class Exchanger<V> {
      * the extra space provides some machine-level address padding
      * to minimize interference with heavily CAS'ed Slot locations.
      * And on very large machines, performance eventually becomes
-     * bounded by memory bandwidth, not numbers of threads/CPUs.
-     * This constant cannot be changed without also modifying
-     * indexing and hashing algorithms.
+     * bounded by memory bandwidth, not numbers of threads/CPUs,
+     * but a table smaller than half the number of CPUs would keep
+     * pairs of running threads from ever being spread apart.
      */
-    private static final int CAPACITY = 32;
+    private static final int CAPACITY = Math.max(32, NCPU >>> 1);
 
     /**
      * The value of "max" that will hold all threads without
@@ -387,14 +386,13 @@ public class Exchanger<V> {
      * approximation to a mod operation, that also corrects for bias
      * due to non-power-of-2 remaindering (see {@link
      * java.util.Random#nextInt}).  Bits of the hashcode are masked
-     * with "nbits", the ceiling power of two of table size (looked up
-     * in a table packed into three ints).  If too large, this is
-     * retried after rotating the hash by nbits bits, while forcing new
-     * top bit to 0, which guarantees eventual termination (although
-     * with a non-random-bias).  This requires an average of less than
-     * 2 tries for all table sizes, and has a maximum 2% difference
-     * from perfectly uniform slot probabilities when applied to all
-     * possible hash codes for sizes less than 32.
+     * with "nbits", the ceiling power of two of table size.  If too
+     * large, this is retried after rotating the hash by nbits bits,
+     * while forcing new top bit to 0, which guarantees eventual
+     * termination (although with a non-random-bias).  This requires
+     * an average of less than 2 tries for all table sizes, and has a
+     * maximum 2% difference from perfectly uniform slot probabilities
+     * when applied to all possible hash codes for sizes less than 32.
      *
      * @return a per-thread-random index, 0 <= index < max
      */
@@ -403,9 +401,7 @@ public class Exchanger<V> {
         int hash = (((int)(id ^ (id >>> 32))) ^ 0x811c9dc5) * 0x01000193;
 
         int m = max.get();
-        int nbits = (((0xfffffc00  >> m) & 4) | // Compute ceil(log2(m+1))
-                     ((0x000001f8 >>> m) & 2) | // The constants hold
-                     ((0xffff00f2 >>> m) & 1)); // a lookup table
+        int nbits = 32 - Integer.numberOfLeadingZeros(m); // ceil(log2(m+1))
         int index;
         while ((index = hash & ((1 << nbits) - 1)) > m)       // May retry on
             hash = (hash >>> nbits) | (hash << (33 - nbits)); // non-power-2 m
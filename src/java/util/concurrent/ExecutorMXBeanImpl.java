@@ -0,0 +1,131 @@
+/*
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+/*
+ *
+ *
+ *
+ *
+ *
+ * Written by Doug Lea with assistance from members of JCP JSR-166
+ * Expert Group and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+package java.util.concurrent;
+
+import java.lang.management.ExecutorMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+/**
+ * The {@link ExecutorMXBean} view of an {@link ExecutorStatistics}.
+ * Instances are only created when the platform MXBeans are requested
+ * from {@link java.lang.management.ManagementFactory}, so that
+ * executors recording statistics do not load the management API.
+ */
+final class ExecutorMXBeanImpl implements ExecutorMXBean {
+    private final ExecutorStatistics stats;
+
+    ExecutorMXBeanImpl(ExecutorStatistics stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Returns a view of each of the given statistics.
+     */
+    static List<ExecutorMXBean> of(List<ExecutorStatistics> all) {
+        List<ExecutorMXBean> list = new ArrayList<ExecutorMXBean>(all.size());
+        for (ExecutorStatistics s : all)
+            list.add(new ExecutorMXBeanImpl(s));
+        return list;
+    }
+
+    public String getName() {
+        return stats.getName();
+    }
+
+    public String getType() {
+        return stats.getType();
+    }
+
+    public int getPoolSize() {
+        return stats.getPoolSize();
+    }
+
+    public int getActiveCount() {
+        return stats.getActiveCount();
+    }
+
+    public long getQueuedTaskCount() {
+        return stats.getQueuedTaskCount();
+    }
+
+    public long getCompletedTaskCount() {
+        return stats.getCompletedTaskCount();
+    }
+
+    public long getRejectedTaskCount() {
+        return stats.getRejectedTaskCount();
+    }
+
+    public long getStealCount() {
+        return stats.getStealCount();
+    }
+
+    public long[] getQueueWaitTimeHistogram() {
+        return stats.getQueueWaitTimeHistogram();
+    }
+
+    public long[] getRunTimeHistogram() {
+        return stats.getRunTimeHistogram();
+    }
+
+    public long getMeanQueueWaitTime() {
+        return stats.getMeanQueueWaitTime();
+    }
+
+    public long getMeanRunTime() {
+        return stats.getMeanRunTime();
+    }
+
+    public void reset() {
+        stats.reset();
+    }
+
+    public ObjectName getObjectName() {
+        try {
+            return ObjectName.getInstance(
+                "java.util.concurrent:type=Executor,name=" + stats.getName());
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    public String toString() {
+        return super.toString() + "[" + stats.getName() + "]";
+    }
+}
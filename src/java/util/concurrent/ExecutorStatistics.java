@@ -0,0 +1,413 @@
+/*
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+/*
+ *
+ *
+ *
+ *
+ *
+ * Written by Doug Lea with assistance from members of JCP JSR-166
+ * Expert Group and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+package java.util.concurrent;
+
+import java.lang.management.ExecutorMXBean;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Execution statistics of a {@link ThreadPoolExecutor} or
+ * {@link ForkJoinPool}. An instance is created when statistics are
+ * enabled on an executor, using for example
+ * {@link ThreadPoolExecutor#setStatisticsEnabled}, and is then
+ * obtained with {@link ThreadPoolExecutor#getStatistics}. They are
+ * also available through an {@link ExecutorMXBean}, from
+ * {@link java.lang.management.ManagementFactory#getPlatformMXBeans(Class)
+ * ManagementFactory.getPlatformMXBeans(ExecutorMXBean.class)}; the
+ * management classes are only loaded once such a bean is requested.
+ *
+ * <p>The following are recorded:
+ * <ul>
+ * <li>the <em>queue wait time</em> of each task whose submission time
+ * is known to the executor, that is, the time from its submission (for
+ * tasks created by {@link AbstractExecutorService#submit submit} and
+ * similar methods, and tasks queued by
+ * {@link ThreadPoolExecutor#execute ThreadPoolExecutor.execute}) or from
+ * the time it became due (for tasks of a
+ * {@link ScheduledThreadPoolExecutor} or
+ * {@link TimingWheelScheduledExecutor}) until it starts to run. Tasks
+ * that a {@code ThreadPoolExecutor} hands directly to a new thread, and
+ * all tasks of a {@code ForkJoinPool}, are not sampled;
+ * <li>the <em>run time</em> of each task;
+ * <li>the number of tasks rejected by the executor.
+ * </ul>
+ * Times are kept in histograms with power-of-two nanosecond buckets,
+ * striped across threads so that recording does not serialize the
+ * workers of an executor. Pool size, active count, queue length and
+ * steal count are read from the executor when requested.
+ *
+ * <p>When statistics are disabled, which is the default, executors
+ * perform no timing at all. The system property {@code
+ * java.util.concurrent.executorStatistics} may be set to {@code true}
+ * to enable them on every executor when it is constructed.
+ *
+ * @since 1.8
+ */
+public final class ExecutorStatistics {
+
+    /**
+     * Number of histogram buckets. The last one collects everything
+     * from 2^(BUCKETS-1) ns, about nine minutes, upwards.
+     */
+    static final int BUCKETS = 40;
+
+    /**
+     * Distance between the histograms of two stripes. Each stripe
+     * holds BUCKETS counts followed by the sum of the samples, padded
+     * to a multiple of 64 bytes so stripes do not share cache lines.
+     */
+    private static final int STRIDE = (BUCKETS + 1 + 7) & ~7;
+
+    /** Index of the sample sum within a stripe */
+    private static final int SUM = BUCKETS;
+
+    /** Number of stripes, a power of two */
+    private static final int STRIPES;
+    static {
+        int n = Math.min(Runtime.getRuntime().availableProcessors(), 16);
+        int s = 1;
+        while (s < n)
+            s <<= 1;
+        STRIPES = s;
+    }
+
+    /** Sequence for default executor names */
+    private static final AtomicInteger nameSequence = new AtomicInteger();
+
+    /** Statistics of all executors on which they are enabled */
+    private static final ConcurrentHashMap<ExecutorStatistics, Boolean>
+        registry = new ConcurrentHashMap<ExecutorStatistics, Boolean>();
+
+    private final String name;
+    private final String type;
+    private final WeakReference<ExecutorService> executor;
+    private final AtomicLongArray waitTimes =
+        new AtomicLongArray(STRIPES * STRIDE);
+    private final AtomicLongArray runTimes =
+        new AtomicLongArray(STRIPES * STRIDE);
+    private final AtomicLong rejected = new AtomicLong();
+
+    ExecutorStatistics(ExecutorService executor) {
+        Class<?> c = executor.getClass();
+        String simpleName = c.getSimpleName();
+        if (simpleName.isEmpty())
+            simpleName = c.getName();
+        this.name = simpleName + "-" + nameSequence.incrementAndGet();
+        this.type = c.getName();
+        this.executor = new WeakReference<ExecutorService>(executor);
+    }
+
+    /**
+     * Returns a management view of the statistics of each live
+     * executor on which they are enabled. This method is used by
+     * {@link java.lang.management.ManagementFactory} to find the
+     * platform {@code ExecutorMXBean}s.
+     *
+     * @return the list of management views
+     */
+    public static List<ExecutorMXBean> getMXBeans() {
+        List<ExecutorStatistics> list = new ArrayList<ExecutorStatistics>();
+        for (ExecutorStatistics s : registry.keySet()) {
+            if (s.executor.get() == null)
+                registry.remove(s);
+            else
+                list.add(s);
+        }
+        return ExecutorMXBeanImpl.of(list);
+    }
+
+    void register() {
+        registry.put(this, Boolean.TRUE);
+    }
+
+    void unregister() {
+        registry.remove(this);
+    }
+
+    /**
+     * Returns the bucket for the given time.
+     */
+    static int bucketFor(long nanos) {
+        if (nanos <= 0L)
+            return 0;
+        int b = 63 - Long.numberOfLeadingZeros(nanos);
+        return (b < BUCKETS) ? b : BUCKETS - 1;
+    }
+
+    private static void record(AtomicLongArray a, long nanos) {
+        int base = ((int)Thread.currentThread().getId() & (STRIPES - 1)) *
+            STRIDE;
+        a.getAndIncrement(base + bucketFor(nanos));
+        if (nanos > 0L)
+            a.getAndAdd(base + SUM, nanos);
+    }
+
+    /**
+     * Records that a task waited the given time before starting.
+     */
+    void recordQueueWait(long nanos) {
+        record(waitTimes, nanos);
+    }
+
+    /**
+     * Records that a task ran for the given time.
+     */
+    void recordRunTime(long nanos) {
+        record(runTimes, nanos);
+    }
+
+    /**
+     * Records the start of the given task, returning the time to pass
+     * to {@link #taskEnded}.
+     */
+    long taskStarted(Runnable task) {
+        long now = System.nanoTime();
+        if (task instanceof ExecutorStatisticsSupport.Timestamped) {
+            long readyTime =
+                ((ExecutorStatisticsSupport.Timestamped)task).readyTime();
+            recordQueueWait(now - readyTime);
+        }
+        return now;
+    }
+
+    /**
+     * Records the end of a task started at the given time.
+     */
+    void taskEnded(long startTime) {
+        recordRunTime(System.nanoTime() - startTime);
+    }
+
+    /**
+     * Records a rejected task.
+     */
+    void recordRejection() {
+        rejected.getAndIncrement();
+    }
+
+    private static long[] histogram(AtomicLongArray a) {
+        long[] h = new long[BUCKETS];
+        for (int s = 0; s < STRIPES; ++s) {
+            int base = s * STRIDE;
+            for (int i = 0; i < BUCKETS; ++i)
+                h[i] += a.get(base + i);
+        }
+        return h;
+    }
+
+    private static long count(AtomicLongArray a) {
+        long n = 0L;
+        for (int s = 0; s < STRIPES; ++s) {
+            int base = s * STRIDE;
+            for (int i = 0; i < BUCKETS; ++i)
+                n += a.get(base + i);
+        }
+        return n;
+    }
+
+    private static long mean(AtomicLongArray a) {
+        long n = 0L, sum = 0L;
+        for (int s = 0; s < STRIPES; ++s) {
+            int base = s * STRIDE;
+            for (int i = 0; i < BUCKETS; ++i)
+                n += a.get(base + i);
+            sum += a.get(base + SUM);
+        }
+        return (n == 0L) ? 0L : sum / n;
+    }
+
+    /**
+     * Returns the name of this executor's statistics, which is unique
+     * among the executors of this virtual machine.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the fully qualified class name of the executor.
+     *
+     * @return the class name of the executor
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Returns the current number of threads in the executor.
+     *
+     * @return the number of threads
+     */
+    public int getPoolSize() {
+        ExecutorService e = executor.get();
+        if (e instanceof ThreadPoolExecutor)
+            return ((ThreadPoolExecutor)e).getPoolSize();
+        if (e instanceof ForkJoinPool)
+            return ((ForkJoinPool)e).getPoolSize();
+        return 0;
+    }
+
+    /**
+     * Returns the approximate number of threads that are running tasks.
+     *
+     * @return the number of active threads
+     */
+    public int getActiveCount() {
+        ExecutorService e = executor.get();
+        if (e instanceof ThreadPoolExecutor)
+            return ((ThreadPoolExecutor)e).getActiveCount();
+        if (e instanceof ForkJoinPool)
+            return ((ForkJoinPool)e).getActiveThreadCount();
+        return 0;
+    }
+
+    /**
+     * Returns the approximate number of tasks waiting to run.
+     *
+     * @return the number of queued tasks
+     */
+    public long getQueuedTaskCount() {
+        ExecutorService e = executor.get();
+        if (e instanceof ThreadPoolExecutor)
+            return ((ThreadPoolExecutor)e).getQueue().size();
+        if (e instanceof ForkJoinPool) {
+            ForkJoinPool p = (ForkJoinPool)e;
+            return p.getQueuedTaskCount() + p.getQueuedSubmissionCount();
+        }
+        return 0L;
+    }
+
+    /**
+     * Returns the number of tasks that have completed since statistics
+     * were enabled or last reset.
+     *
+     * @return the number of completed tasks
+     */
+    public long getCompletedTaskCount() {
+        return count(runTimes);
+    }
+
+    /**
+     * Returns the number of tasks rejected since statistics were
+     * enabled or last reset.
+     *
+     * @return the number of rejected tasks
+     */
+    public long getRejectedTaskCount() {
+        return rejected.get();
+    }
+
+    /**
+     * Returns an estimate of the number of tasks taken by one thread
+     * from another thread's queue, or zero if the executor does not
+     * steal work.
+     *
+     * @return the number of steals
+     */
+    public long getStealCount() {
+        ExecutorService e = executor.get();
+        if (e instanceof ThreadPoolExecutor) {
+            BlockingQueue<Runnable> q = ((ThreadPoolExecutor)e).getQueue();
+            if (q instanceof WorkStealingBlockingQueue)
+                return ((WorkStealingBlockingQueue<?>)q).getStealCount();
+        }
+        if (e instanceof ForkJoinPool)
+            return ((ForkJoinPool)e).getStealCount();
+        return 0L;
+    }
+
+    /**
+     * Returns the histogram of queue wait times. Element <i>i</i>
+     * counts the samples of at least 2<sup><i>i</i></sup> and less than
+     * 2<sup><i>i</i>+1</sup> nanoseconds, except that element 0 also
+     * counts zero and the last element all larger samples.
+     *
+     * @return the queue wait time histogram
+     */
+    public long[] getQueueWaitTimeHistogram() {
+        return histogram(waitTimes);
+    }
+
+    /**
+     * Returns the histogram of run times, with the same buckets as
+     * {@link #getQueueWaitTimeHistogram}.
+     *
+     * @return the run time histogram
+     */
+    public long[] getRunTimeHistogram() {
+        return histogram(runTimes);
+    }
+
+    /**
+     * Returns the mean queue wait time in nanoseconds.
+     *
+     * @return the mean queue wait time, or zero if there are no samples
+     */
+    public long getMeanQueueWaitTime() {
+        return mean(waitTimes);
+    }
+
+    /**
+     * Returns the mean run time in nanoseconds.
+     *
+     * @return the mean run time, or zero if there are no samples
+     */
+    public long getMeanRunTime() {
+        return mean(runTimes);
+    }
+
+    /**
+     * Clears the histograms and the completed and rejected task
+     * counts. Samples recorded concurrently may be lost.
+     */
+    public void reset() {
+        for (int i = 0, n = waitTimes.length(); i < n; ++i) {
+            waitTimes.set(i, 0L);
+            runTimes.set(i, 0L);
+        }
+        rejected.set(0L);
+    }
+
+    public String toString() {
+        return super.toString() + "[" + name + "]";
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+/*
+ *
+ *
+ *
+ *
+ *
+ * Written by Doug Lea with assistance from members of JCP JSR-166
+ * Expert Group and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+package java.util.concurrent;
+
+/**
+ * Parts of {@link ExecutorStatistics} that executors use whether or
+ * not statistics are enabled: the default policy and the task types
+ * that carry the time at which a task became eligible to run. Kept
+ * apart from {@code ExecutorStatistics} so that constructing an
+ * executor loads neither the statistics nor, through them, the
+ * management API.
+ */
+final class ExecutorStatisticsSupport {
+    private ExecutorStatisticsSupport() {}
+
+    /**
+     * Whether statistics are enabled by default on new executors.
+     */
+    static final boolean ENABLED_BY_DEFAULT =
+        java.security.AccessController.doPrivileged(
+            new sun.security.action.GetBooleanAction(
+                "java.util.concurrent.executorStatistics")).booleanValue();
+
+    /**
+     * Implemented by tasks that know the time at which they became
+     * eligible to run, so that their queue wait time can be recorded.
+     */
+    interface Timestamped {
+        /**
+         * Returns the {@link System#nanoTime} value at which this task
+         * was submitted or became due.
+         */
+        long readyTime();
+    }
+
+    /**
+     * A FutureTask stamped with its creation time, used by
+     * ThreadPoolExecutor.newTaskFor when statistics are enabled.
+     */
+    static final class TimestampedFutureTask<V> extends FutureTask<V>
+        implements Timestamped {
+        private final long readyTime = System.nanoTime();
+
+        TimestampedFutureTask(Callable<V> callable) {
+            super(callable);
+        }
+
+        TimestampedFutureTask(Runnable runnable, V result) {
+            super(runnable, result);
+        }
+
+        public long readyTime() {
+            return readyTime;
+        }
+    }
+
+    /**
+     * A plain Runnable stamped with the time it was queued, used by
+     * ThreadPoolExecutor.execute when statistics are enabled. The
+     * executor unwraps it before running the task, so that hooks,
+     * remove and shutdownNow only ever see the original task.
+     */
+    static final class TimestampedRunnable implements Runnable, Timestamped {
+        final Runnable task;
+        private final long readyTime = System.nanoTime();
+
+        TimestampedRunnable(Runnable task) {
+            this.task = task;
+        }
+
+        public void run() {
+            task.run();
+        }
+
+        public long readyTime() {
+            return readyTime;
+        }
+    }
+
+    /**
+     * Returns the task wrapped by the given TimestampedRunnable, or
+     * the given task itself if it is not one.
+     */
+    static Runnable unwrap(Runnable r) {
+        return (r instanceof TimestampedRunnable) ?
+            ((TimestampedRunnable)r).task : r;
+    }
+}
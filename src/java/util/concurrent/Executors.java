@@ -117,6 +117,52 @@ public class Executors {
                                       threadFactory);
     }
 
+    /**
+     * Creates a thread pool that reuses a fixed number of threads
+     * operating off an unbounded {@link WorkStealingBlockingQueue},
+     * in which each thread has its own lane of tasks and takes tasks
+     * from the lanes of other threads when its own is empty.  Such a
+     * pool behaves like one created by {@link #newFixedThreadPool(int)},
+     * except that tasks are not necessarily started in the order in
+     * which they were submitted, and that submissions and task
+     * retrievals from different threads rarely contend with each
+     * other.  It is best suited to high rates of short-lived tasks.
+     *
+     * @param nThreads the number of threads in the pool
+     * @return the newly created thread pool
+     * @throws IllegalArgumentException if {@code nThreads <= 0}
+     * @since 1.8
+     */
+    public static ExecutorService newWorkStealingThreadPool(int nThreads) {
+        return new ThreadPoolExecutor(nThreads, nThreads,
+                                      0L, TimeUnit.MILLISECONDS,
+                                      new WorkStealingBlockingQueue<Runnable>(nThreads));
+    }
+
+    /**
+     * Creates a thread pool that reuses a fixed number of threads
+     * operating off an unbounded {@link WorkStealingBlockingQueue},
+     * using the provided ThreadFactory to create new threads when
+     * needed.  Such a pool behaves like one created by {@link
+     * #newFixedThreadPool(int, ThreadFactory)}, except that tasks are
+     * not necessarily started in the order in which they were
+     * submitted, and that submissions and task retrievals from
+     * different threads rarely contend with each other.
+     *
+     * @param nThreads the number of threads in the pool
+     * @param threadFactory the factory to use when creating new threads
+     * @return the newly created thread pool
+     * @throws NullPointerException if threadFactory is null
+     * @throws IllegalArgumentException if {@code nThreads <= 0}
+     * @since 1.8
+     */
+    public static ExecutorService newWorkStealingThreadPool(int nThreads, ThreadFactory threadFactory) {
+        return new ThreadPoolExecutor(nThreads, nThreads,
+                                      0L, TimeUnit.MILLISECONDS,
+                                      new WorkStealingBlockingQueue<Runnable>(nThreads),
+                                      threadFactory);
+    }
+
     /**
      * Creates an Executor that uses a single worker thread operating
      * off an unbounded queue. (Note however that if this single
@@ -581,6 +581,12 @@ public class ForkJoinPool extends AbstractExecutorService {
      */
     final boolean locallyFifo;
 
+    /**
+     * Execution statistics, or null if not enabled.
+     * Read by ForkJoinWorkerThreads
+     */
+    volatile ExecutorStatistics statistics;
+
     /**
      * The number of threads in ForkJoinWorkerThreads.helpQuiescePool.
      * When non-zero, suppresses automatic shutdown when active
@@ -944,7 +950,7 @@ public class ForkJoinPool extends AbstractExecutorService {
         ForkJoinTask<?>[] oldQ = submissionQueue;
         int size = oldQ != null ? oldQ.length << 1 : INITIAL_QUEUE_CAPACITY;
         if (size > MAXIMUM_QUEUE_CAPACITY)
-            throw new RejectedExecutionException("Queue capacity exceeded");
+            throw rejection("Queue capacity exceeded");
         if (size < INITIAL_QUEUE_CAPACITY)
             size = INITIAL_QUEUE_CAPACITY;
         ForkJoinTask<?>[] q = submissionQueue = new ForkJoinTask<?>[size];
@@ -1271,6 +1277,9 @@ public class ForkJoinPool extends AbstractExecutorService {
             final ReentrantLock lock = this.submissionLock;
             lock.lock();
             try {
+                ExecutorStatistics stats = statistics;
+                if (stats != null)
+                    stats.unregister();
                 termination.signalAll();
             } finally {
                 lock.unlock();
@@ -1487,6 +1496,19 @@ public class ForkJoinPool extends AbstractExecutorService {
         sb.append(poolNumberGenerator.incrementAndGet());
         sb.append("-worker-");
         this.workerNamePrefix = sb.toString();
+        if (ExecutorStatisticsSupport.ENABLED_BY_DEFAULT)
+            enableStatistics();
+    }
+
+    /**
+     * Records a rejection if statistics are enabled, and returns the
+     * exception to throw.
+     */
+    private RejectedExecutionException rejection(String message) {
+        ExecutorStatistics stats = statistics;
+        if (stats != null)
+            stats.recordRejection();
+        return new RejectedExecutionException(message);
     }
 
     // Execution methods
@@ -1512,7 +1534,7 @@ public class ForkJoinPool extends AbstractExecutorService {
         if (task == null)
             throw new NullPointerException();
         if (shutdown)
-            throw new RejectedExecutionException();
+            throw rejection(null);
         if ((t instanceof ForkJoinWorkerThread) &&
             ((ForkJoinWorkerThread)t).pool == this)
             return task.invoke();  // bypass submit if in same pool
@@ -1530,7 +1552,7 @@ public class ForkJoinPool extends AbstractExecutorService {
         ForkJoinWorkerThread w;
         Thread t = Thread.currentThread();
         if (shutdown)
-            throw new RejectedExecutionException();
+            throw rejection(null);
         if ((t instanceof ForkJoinWorkerThread) &&
             (w = (ForkJoinWorkerThread)t).pool == this)
             w.pushTask(task);
@@ -1705,6 +1727,77 @@ public class ForkJoinPool extends AbstractExecutorService {
         return locallyFifo;
     }
 
+    /**
+     * Enables statistics, creating and registering them if not
+     * already present. Call with submissionLock held, or from
+     * constructor.
+     */
+    private void enableStatistics() {
+        if (statistics == null && !isTerminated()) {
+            ExecutorStatistics stats = new ExecutorStatistics(this);
+            stats.register();
+            statistics = stats;
+        }
+    }
+
+    /**
+     * Sets the policy governing whether this pool records
+     * {@linkplain ExecutorStatistics execution statistics}. When
+     * enabled, the run times of the tasks that worker threads take
+     * from queues, together with the subtasks they then pop from
+     * their own queue, and the number of rejected submissions are
+     * recorded, and the statistics are made available as an {@link
+     * java.lang.management.ExecutorMXBean}. Tasks executed directly
+     * while joining other tasks are not sampled individually, and
+     * queue wait times are not recorded. When disabled, which is the
+     * default unless the system property {@code
+     * java.util.concurrent.executorStatistics} is {@code true}, no
+     * timing is performed. Disabling discards the statistics
+     * gathered so far.
+     *
+     * @param value {@code true} to record statistics, else {@code false}
+     * @since 1.8
+     */
+    public void setStatisticsEnabled(boolean value) {
+        final ReentrantLock lock = this.submissionLock;
+        lock.lock();
+        try {
+            if (value)
+                enableStatistics();
+            else {
+                ExecutorStatistics stats = statistics;
+                if (stats != null) {
+                    statistics = null;
+                    stats.unregister();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns {@code true} if this pool records execution statistics.
+     *
+     * @return {@code true} if statistics are enabled
+     * @see #setStatisticsEnabled
+     * @since 1.8
+     */
+    public boolean isStatisticsEnabled() {
+        return statistics != null;
+    }
+
+    /**
+     * Returns the execution statistics of this pool.
+     *
+     * @return the statistics, or {@code null} if not enabled
+     * @see #setStatisticsEnabled
+     * @since 1.8
+     */
+    public ExecutorStatistics getStatistics() {
+        return statistics;
+    }
+
     /**
      * Returns an estimate of the number of worker threads that are
      * not blocked waiting to join tasks or for other managed
@@ -598,10 +598,18 @@ public class ForkJoinWorkerThread extends Thread {
      * Runs the given task, plus any local tasks until queue is empty
      */
     final void execTask(ForkJoinTask<?> t) {
+        ExecutorStatistics stats = pool.statistics;
         currentSteal = t;
         for (;;) {
-            if (t != null)
-                t.doExec();
+            if (t != null) {
+                if (stats == null)
+                    t.doExec();
+                else {
+                    long startTime = System.nanoTime();
+                    t.doExec();
+                    stats.recordRunTime(System.nanoTime() - startTime);
+                }
+            }
             if (queueTop == queueBase)
                 break;
             t = locallyFifo ? locallyDeqTask() : popTask();
@@ -756,6 +756,142 @@ public class LinkedBlockingDeque<E>
         }
     }
 
+    /**
+     * Removes at most the given number of available elements from
+     * the head of this deque and adds them to the given collection,
+     * waiting up to the specified wait time if necessary for at least
+     * one element to become available.  Unlike a loop of {@link
+     * #poll(long, TimeUnit) poll} calls, this method acquires the
+     * lock only once for the whole batch.  A failure encountered
+     * while attempting to add elements to collection {@code c} may
+     * result in elements being in neither, either or both collections
+     * when the associated exception is thrown.
+     *
+     * @param c the collection to transfer elements into
+     * @param maxElements the maximum number of elements to transfer
+     * @param timeout how long to wait before giving up, in units of
+     *        {@code unit}
+     * @param unit a {@code TimeUnit} determining how to interpret the
+     *        {@code timeout} parameter
+     * @return the number of elements transferred, which is zero only
+     *         if the waiting time elapsed before an element was
+     *         available (or {@code maxElements} is not positive)
+     * @throws InterruptedException if interrupted while waiting
+     * @throws NullPointerException if the specified collection is null
+     * @throws IllegalArgumentException if the specified collection is
+     *         this deque
+     * @since 1.8
+     */
+    public int drainTo(Collection<? super E> c, int maxElements,
+                       long timeout, TimeUnit unit)
+        throws InterruptedException {
+        if (c == null)
+            throw new NullPointerException();
+        if (c == this)
+            throw new IllegalArgumentException();
+        if (maxElements <= 0)
+            return 0;
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                if (nanos <= 0)
+                    return 0;
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            int n = Math.min(maxElements, count);
+            for (int i = 0; i < n; i++) {
+                c.add(first.item);   // In this order, in case add() throws.
+                unlinkFirst();
+            }
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inserts elements of the given collection, in the order returned
+     * by its iterator, at the end of this deque for as long as that
+     * is possible without exceeding the deque's capacity, acquiring
+     * the lock only once.
+     *
+     * @param c the elements to insert
+     * @return the number of elements inserted, which is a prefix of
+     *         the collection's elements
+     * @throws NullPointerException if the specified collection or any
+     *         of its elements are null; in that case no element is
+     *         inserted
+     * @throws IllegalArgumentException if the specified collection is
+     *         this deque
+     * @since 1.8
+     */
+    public int offerAll(Collection<? extends E> c) {
+        Object[] a = toCheckedArray(c);
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            int n = 0;
+            while (n < a.length && linkLast(new Node<E>(this.<E>cast(a[n]))))
+                ++n;
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inserts all elements of the given collection, in the order
+     * returned by its iterator, at the end of this deque, waiting for
+     * space to become available as necessary.  The lock is acquired
+     * once for the whole batch, and released only while waiting for
+     * space.  If interrupted while waiting, the elements inserted so
+     * far remain in this deque.
+     *
+     * @param c the elements to insert
+     * @throws InterruptedException if interrupted while waiting
+     * @throws NullPointerException if the specified collection or any
+     *         of its elements are null; in that case no element is
+     *         inserted
+     * @throws IllegalArgumentException if the specified collection is
+     *         this deque
+     * @since 1.8
+     */
+    public void putAll(Collection<? extends E> c) throws InterruptedException {
+        Object[] a = toCheckedArray(c);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            for (int i = 0; i < a.length; ++i) {
+                Node<E> node = new Node<E>(this.<E>cast(a[i]));
+                while (!linkLast(node))
+                    notFull.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the elements of the given collection as an array,
+     * checking that none of them is null.
+     */
+    private Object[] toCheckedArray(Collection<? extends E> c) {
+        if (c == this)
+            throw new IllegalArgumentException();
+        Object[] a = c.toArray();
+        for (Object e : a)
+            if (e == null)
+                throw new NullPointerException();
+        return a;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T cast(Object item) {
+        return (T) item;
+    }
+
     // Stack methods
 
     /**
@@ -761,6 +761,187 @@ public class LinkedBlockingQueue<E> extends AbstractQueue<E>
         }
     }
 
+    /**
+     * Removes at most the given number of available elements from
+     * this queue and adds them to the given collection, waiting up to
+     * the specified wait time if necessary for at least one element
+     * to become available.  Unlike a loop of {@link #poll(long,
+     * TimeUnit) poll} calls, this method acquires the take lock only
+     * once for the whole batch.  A failure encountered while
+     * attempting to add elements to collection {@code c} may result
+     * in elements being in neither, either or both collections when
+     * the associated exception is thrown.
+     *
+     * @param c the collection to transfer elements into
+     * @param maxElements the maximum number of elements to transfer
+     * @param timeout how long to wait before giving up, in units of
+     *        {@code unit}
+     * @param unit a {@code TimeUnit} determining how to interpret the
+     *        {@code timeout} parameter
+     * @return the number of elements transferred, which is zero only
+     *         if the waiting time elapsed before an element was
+     *         available (or {@code maxElements} is not positive)
+     * @throws InterruptedException if interrupted while waiting
+     * @throws NullPointerException if the specified collection is null
+     * @throws IllegalArgumentException if the specified collection is
+     *         this queue
+     * @since 1.8
+     */
+    public int drainTo(Collection<? super E> c, int maxElements,
+                       long timeout, TimeUnit unit)
+        throws InterruptedException {
+        if (c == null)
+            throw new NullPointerException();
+        if (c == this)
+            throw new IllegalArgumentException();
+        if (maxElements <= 0)
+            return 0;
+        long nanos = unit.toNanos(timeout);
+        boolean signalNotFull = false;
+        final AtomicInteger count = this.count;
+        final ReentrantLock takeLock = this.takeLock;
+        takeLock.lockInterruptibly();
+        try {
+            while (count.get() == 0) {
+                if (nanos <= 0)
+                    return 0;
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            int n = Math.min(maxElements, count.get());
+            // count.get provides visibility to first n Nodes
+            Node<E> h = head;
+            int i = 0;
+            try {
+                while (i < n) {
+                    Node<E> p = h.next;
+                    c.add(p.item);
+                    p.item = null;
+                    h.next = h;
+                    h = p;
+                    ++i;
+                }
+                return n;
+            } finally {
+                // Restore invariants even if c.add() threw
+                if (i > 0) {
+                    // assert h.item == null;
+                    head = h;
+                    int k = count.getAndAdd(-i);
+                    if (k > i)
+                        notEmpty.signal();
+                    signalNotFull = (k == capacity);
+                }
+            }
+        } finally {
+            takeLock.unlock();
+            if (signalNotFull)
+                signalNotFull();
+        }
+    }
+
+    /**
+     * Inserts elements of the given collection, in the order returned
+     * by its iterator, at the tail of this queue for as long as that
+     * is possible without exceeding the queue's capacity, acquiring
+     * the put lock only once.
+     *
+     * @param c the elements to insert
+     * @return the number of elements inserted, which is a prefix of
+     *         the collection's elements
+     * @throws NullPointerException if the specified collection or any
+     *         of its elements are null; in that case no element is
+     *         inserted
+     * @throws IllegalArgumentException if the specified collection is
+     *         this queue
+     * @since 1.8
+     */
+    public int offerAll(Collection<? extends E> c) {
+        Object[] a = toCheckedArray(c);
+        final AtomicInteger count = this.count;
+        if (a.length == 0 || count.get() == capacity)
+            return 0;
+        int k = -1;
+        int n = 0;
+        final ReentrantLock putLock = this.putLock;
+        putLock.lock();
+        try {
+            n = Math.min(a.length, capacity - count.get());
+            if (n > 0) {
+                for (int i = 0; i < n; ++i)
+                    enqueue(new Node<E>(this.<E>cast(a[i])));
+                k = count.getAndAdd(n);
+                if (k + n < capacity)
+                    notFull.signal();
+            }
+        } finally {
+            putLock.unlock();
+        }
+        if (k == 0)
+            signalNotEmpty();
+        return n;
+    }
+
+    /**
+     * Inserts all elements of the given collection, in the order
+     * returned by its iterator, at the tail of this queue, waiting
+     * for space to become available as necessary.  The put lock is
+     * acquired once for the whole batch, and released only while
+     * waiting for space.  If interrupted while waiting, the elements
+     * inserted so far remain in this queue.
+     *
+     * @param c the elements to insert
+     * @throws InterruptedException if interrupted while waiting
+     * @throws NullPointerException if the specified collection or any
+     *         of its elements are null; in that case no element is
+     *         inserted
+     * @throws IllegalArgumentException if the specified collection is
+     *         this queue
+     * @since 1.8
+     */
+    public void putAll(Collection<? extends E> c) throws InterruptedException {
+        Object[] a = toCheckedArray(c);
+        final AtomicInteger count = this.count;
+        final ReentrantLock putLock = this.putLock;
+        putLock.lockInterruptibly();
+        try {
+            for (int i = 0; i < a.length; ) {
+                while (count.get() == capacity)
+                    notFull.await();
+                int n = Math.min(a.length - i, capacity - count.get());
+                for (int j = 0; j < n; ++j)
+                    enqueue(new Node<E>(this.<E>cast(a[i++])));
+                // Consumers must be woken before we wait for space;
+                // lock order putLock -> takeLock is as in fullyLock.
+                int k = count.getAndAdd(n);
+                if (k == 0)
+                    signalNotEmpty();
+                if (i == a.length && k + n < capacity)
+                    notFull.signal();
+            }
+        } finally {
+            putLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the elements of the given collection as an array,
+     * checking that none of them is null.
+     */
+    private Object[] toCheckedArray(Collection<? extends E> c) {
+        if (c == this)
+            throw new IllegalArgumentException();
+        Object[] a = c.toArray();
+        for (Object e : a)
+            if (e == null)
+                throw new NullPointerException();
+        return a;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T cast(Object item) {
+        return (T) item;
+    }
+
     /**
      * Returns an iterator over the elements in this queue in proper sequence.
      * The elements will be returned in order from first (head) to last (tail).
@@ -0,0 +1,907 @@
+/*
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+/*
+ *
+ *
+ *
+ *
+ *
+ * Written by Doug Lea with assistance from members of JCP JSR-166
+ * Expert Group and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+package java.util.concurrent;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A concurrent hash table mapping {@code long} keys to {@code long}
+ * values, whose entries are stored outside the Java heap.  Where a
+ * {@link ConcurrentHashMap}{@code <Long,Long>} allocates an entry object
+ * and two boxed values for each mapping, and so costs the garbage
+ * collector a traversal of each of them, an {@code OffHeapLongHashMap}
+ * stores each mapping as sixteen bytes in an open-addressing table held
+ * in direct {@link ByteBuffer}s, so that a table of hundreds of millions
+ * of mappings occupies a few gigabytes and adds only a few dozen objects
+ * to the heap.  A map may instead be {@linkplain #map mapped} from a
+ * file, in which case its contents persist in that file.
+ *
+ * <p>The table is divided into segments, each an array of slots probed
+ * linearly and guarded by its own lock, so that updates of different
+ * segments proceed in parallel.  Retrievals do not lock: they read the
+ * slots of a segment optimistically and retry, eventually under the
+ * lock, only if a concurrent removal or resize of the same segment may
+ * have moved the entries they read.  Retrievals therefore reflect the
+ * results of the most recently completed updates holding upon their
+ * onset.  Insertions and replacements of values do not disturb
+ * concurrent retrievals at all.
+ *
+ * <p>Segments of a map allocated in memory double in size when they
+ * are three-quarters full.  The memory of a replaced segment is released
+ * when its buffer is garbage collected, since retrievals in progress may
+ * still be reading it; the memory of the current segments may be
+ * released at once by {@link #free}, which waits for retrievals in
+ * progress to finish, after which operations on the map throw
+ * {@code IllegalStateException}.  Segments of a mapped map cannot
+ * grow, and an insertion into a full segment throws
+ * {@code IllegalStateException}, so such a map should be created with
+ * an expected size generously above the number of mappings it will
+ * hold.
+ *
+ * <p>The {@link #size} of a map is a sum over its segments and is not
+ * atomic with respect to concurrent updates.  {@link Cursor}s are weakly
+ * consistent: a cursor reports each mapping present throughout its
+ * traversal once, but may or may not report mappings inserted or
+ * removed during the traversal, and may report a mapping twice or miss
+ * it if a concurrent removal moves it.
+ *
+ * <p>Mapped files hold the table in the native byte order, and cannot be
+ * opened on a platform of the other byte order.
+ *
+ * @since 1.8
+ */
+public class OffHeapLongHashMap {
+
+    /**
+     * A cursor over the mappings of a map.  A cursor is positioned
+     * before the first mapping until {@link #advance} is called.
+     */
+    public static interface Cursor {
+        /**
+         * Moves to the next mapping.
+         *
+         * @return {@code true} if there is one, {@code false} if the
+         *         traversal is complete
+         * @throws IllegalStateException if the map has been freed
+         */
+        boolean advance();
+
+        /**
+         * Returns the key of the current mapping.
+         *
+         * @return the key
+         * @throws IllegalStateException if the cursor is not positioned
+         *         at a mapping
+         */
+        long key();
+
+        /**
+         * Returns the value of the current mapping, as of the time the
+         * cursor moved to it.
+         *
+         * @return the value
+         * @throws IllegalStateException if the cursor is not positioned
+         *         at a mapping
+         */
+        long value();
+    }
+
+    /*
+     * Layout.  Each segment is a buffer starting with a header of
+     * SEGMENT_HEADER bytes, holding the number of mappings in the
+     * segment, whether key zero is mapped, and its value, followed by a
+     * power-of-two number of slots of SLOT_SIZE bytes, each a key and a
+     * value.  A slot is empty when its key is zero; key zero itself is
+     * held in the header of the segment it hashes to.  Collisions are
+     * resolved by linear probing, and removals shift later entries of
+     * the probe sequence back, so there are no deletion markers.  A
+     * mapped file starts with a FILE_HEADER identifying the layout,
+     * followed by the segments.
+     *
+     * Concurrency.  Updates lock their segment.  Retrievals read the
+     * slots with volatile reads, and validate what they read against a
+     * sequence number of the segment, which removals, resizes and
+     * clearing make odd while they move or erase entries, and advance
+     * to the next even number when done: if the number is even and
+     * unchanged across the read, the read saw a consistent state.
+     * Insertions write the value of a new slot before its key, and
+     * replacements write a single value, so neither needs to change the
+     * sequence number.  A resize publishes a new Table; readers holding
+     * the old one read stale but intact memory, since the old buffer is
+     * not released until it is unreachable, and then fail validation.
+     * Readers outside the lock register in the readers count of the
+     * segment before reading its table field.  Freeing nulls out the
+     * table under the lock and then waits for the count to drop to
+     * zero before releasing the memory, so a registered reader either
+     * sees the null table and throws, or reads memory that stays
+     * allocated until it deregisters.  A reader must deregister before
+     * blocking on the lock.
+     */
+
+    /** Default number of segments, and so of concurrent writers */
+    static final int DEFAULT_CONCURRENCY_LEVEL = 64;
+
+    /** Largest number of segments */
+    static final int MAX_SEGMENTS = 1 << 20;
+
+    /** Smallest number of slots in a segment */
+    static final int MIN_SLOTS = 16;
+
+    /** Largest number of slots in a segment, keeping buffers below 2GB */
+    static final long MAX_SLOTS = 1L << 26;
+
+    static final int SLOT_SIZE = 16;
+    static final int SEGMENT_HEADER = 64;
+    static final int SIZE_OFFSET = 0;
+    static final int HAS_ZERO_OFFSET = 8;
+    static final int ZERO_VALUE_OFFSET = 16;
+
+    static final int FILE_HEADER = 64;
+    static final long FILE_MAGIC = 0x4f48_4c4d_4150_3031L;  // "OHLMAP01"
+
+    /** Optimistic reads attempted before locking */
+    static final int MAX_OPTIMISTIC_READS = 64;
+
+    /**
+     * An immutable view of the memory of a segment.
+     */
+    static final class Table {
+        final ByteBuffer buffer;    // keeps the memory reachable
+        final long address;         // of the segment header
+        final long mask;            // number of slots - 1
+        final long threshold;       // size at which to grow
+
+        Table(ByteBuffer buffer, long slots) {
+            this.buffer = buffer;
+            this.address = ((sun.nio.ch.DirectBuffer) buffer).address();
+            this.mask = slots - 1;
+            this.threshold = slots - (slots >>> 2);
+        }
+
+        static long bytesFor(long slots) {
+            return SEGMENT_HEADER + slots * SLOT_SIZE;
+        }
+
+        long slot(long i) {
+            return address + SEGMENT_HEADER + i * SLOT_SIZE;
+        }
+
+        long size() {
+            return UNSAFE.getLongVolatile(null, address + SIZE_OFFSET);
+        }
+
+        void setSize(long n) {
+            UNSAFE.putLongVolatile(null, address + SIZE_OFFSET, n);
+        }
+
+        /**
+         * Returns the address of the value of the given key, or 0 if
+         * the key is absent.
+         */
+        long locate(long key, long h) {
+            if (key == 0L)
+                return (UNSAFE.getLongVolatile(null, address + HAS_ZERO_OFFSET)
+                        != 0L) ? address + ZERO_VALUE_OFFSET : 0L;
+            long i = h & mask;
+            for (long n = 0L; n <= mask; n++) {
+                long s = slot(i);
+                long k = UNSAFE.getLongVolatile(null, s);
+                if (k == key)
+                    return s + 8;
+                if (k == 0L)
+                    break;
+                i = (i + 1) & mask;
+            }
+            return 0L;
+        }
+
+        /**
+         * Stores a key known to be absent and nonzero in the first empty
+         * slot of its probe sequence, writing the value first.
+         */
+        void insert(long key, long h, long value) {
+            long i = h & mask;
+            long s;
+            while (UNSAFE.getLongVolatile(null, s = slot(i)) != 0L)
+                i = (i + 1) & mask;
+            UNSAFE.putLongVolatile(null, s + 8, value);
+            UNSAFE.putLongVolatile(null, s, key);
+        }
+
+        /**
+         * Empties the slot of the given index, shifting back later
+         * entries of the probe sequence that would otherwise become
+         * unreachable.
+         */
+        void removeSlot(long i) {
+            long j = i;
+            for (;;) {
+                j = (j + 1) & mask;
+                long s = slot(j);
+                long k = UNSAFE.getLongVolatile(null, s);
+                if (k == 0L)
+                    break;
+                long home = hash(k) & mask;
+                // Move the entry unless its home lies cyclically in (i, j]
+                if ((j > i) ? (home <= i || home > j)
+                            : (home <= i && home > j)) {
+                    long d = slot(i);
+                    UNSAFE.putLongVolatile(null, d + 8,
+                                           UNSAFE.getLongVolatile(null, s + 8));
+                    UNSAFE.putLongVolatile(null, d, k);
+                    i = j;
+                }
+            }
+            long d = slot(i);
+            UNSAFE.putLongVolatile(null, d, 0L);
+            UNSAFE.putLongVolatile(null, d + 8, 0L);
+        }
+
+        void release() {
+            sun.misc.Cleaner cleaner =
+                ((sun.nio.ch.DirectBuffer) buffer).cleaner();
+            if (cleaner != null)
+                cleaner.clean();
+        }
+    }
+
+    /**
+     * A segment: a lock, the sequence number validating optimistic
+     * reads, the count of readers outside the lock, and the current
+     * table.
+     */
+    static final class Segment extends ReentrantLock {
+        private static final long serialVersionUID = 4851285702916419327L;
+
+        /** Odd while entries are being moved or erased */
+        volatile int seq;
+
+        /** The current table, or null once the map is freed */
+        volatile Table table;
+
+        /** Number of threads reading the table without the lock */
+        final AtomicInteger readers = new AtomicInteger();
+
+        Segment(Table table) {
+            this.table = table;
+        }
+
+        Table table() {
+            Table t = table;
+            if (t == null)
+                throw new IllegalStateException("Map has been freed");
+            return t;
+        }
+
+        /**
+         * Registers a reader of the table outside the lock, returning
+         * the current table.  The memory of the table, and of any
+         * table read while registered, remains allocated until the
+         * matching call to endRead.
+         */
+        Table beginRead() {
+            readers.getAndIncrement();
+            Table t = table;
+            if (t == null) {
+                readers.getAndDecrement();
+                throw new IllegalStateException("Map has been freed");
+            }
+            return t;
+        }
+
+        void endRead() {
+            readers.getAndDecrement();
+        }
+
+        /**
+         * Returns the value of the key, or defaultValue if absent; if
+         * present is non-null, sets present[0] to whether the key is
+         * present.
+         */
+        long get(long key, long h, long defaultValue, boolean[] present) {
+            beginRead();
+            try {
+                for (int tries = 0; tries < MAX_OPTIMISTIC_READS; tries++) {
+                    int v = seq;
+                    Table t = table();
+                    if ((v & 1) == 0) {
+                        long a = t.locate(key, h);
+                        long r = (a == 0L) ? defaultValue
+                            : UNSAFE.getLongVolatile(null, a);
+                        if (seq == v) {
+                            if (present != null)
+                                present[0] = a != 0L;
+                            return r;
+                        }
+                    }
+                }
+            } finally {
+                endRead();
+            }
+            lock();
+            try {
+                long a = table().locate(key, h);
+                if (present != null)
+                    present[0] = a != 0L;
+                return (a == 0L) ? defaultValue
+                    : UNSAFE.getLongVolatile(null, a);
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * Maps the key to the value, unless onlyIfAbsent and the key is
+         * present.  Returns whether the key was absent.
+         */
+        boolean put(long key, long h, long value, boolean onlyIfAbsent,
+                    boolean mapped) {
+            lock();
+            try {
+                Table t = table();
+                long a = t.locate(key, h);
+                if (a != 0L) {
+                    if (!onlyIfAbsent)
+                        UNSAFE.putLongVolatile(null, a, value);
+                    return false;
+                }
+                long n = t.size();
+                if (key == 0L) {
+                    UNSAFE.putLongVolatile(null, t.address + ZERO_VALUE_OFFSET,
+                                           value);
+                    UNSAFE.putLongVolatile(null, t.address + HAS_ZERO_OFFSET,
+                                           1L);
+                } else {
+                    if (n >= t.threshold)
+                        t = grow(t, mapped);
+                    t.insert(key, h, value);
+                }
+                t.setSize(n + 1);
+                return true;
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * Removes the key.  Returns whether it was present.
+         */
+        boolean remove(long key, long h) {
+            lock();
+            try {
+                Table t = table();
+                long a = t.locate(key, h);
+                if (a == 0L)
+                    return false;
+                seq++;
+                try {
+                    if (key == 0L) {
+                        long h0 = t.address + HAS_ZERO_OFFSET;
+                        long v0 = t.address + ZERO_VALUE_OFFSET;
+                        UNSAFE.putLongVolatile(null, h0, 0L);
+                        UNSAFE.putLongVolatile(null, v0, 0L);
+                    } else
+                        t.removeSlot((a - 8 - t.slot(0L)) / SLOT_SIZE);
+                    t.setSize(t.size() - 1);
+                } finally {
+                    seq++;
+                }
+                return true;
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * Replaces the table by one twice its size.  Called with the
+         * lock held.
+         */
+        private Table grow(Table t, boolean mapped) {
+            long slots = t.mask + 1;
+            if (mapped || slots >= MAX_SLOTS)
+                throw new IllegalStateException("Segment is full");
+            Table nt = new Table(allocate(slots << 1), slots << 1);
+            for (long i = 0L; i < slots; i++) {
+                long s = t.slot(i);
+                long k = UNSAFE.getLong(s);
+                if (k != 0L)
+                    nt.insert(k, hash(k), UNSAFE.getLong(s + 8));
+            }
+            UNSAFE.copyMemory(t.address, nt.address, SEGMENT_HEADER);
+            seq++;
+            table = nt;
+            seq++;
+            return nt;
+        }
+
+        void clear() {
+            lock();
+            try {
+                Table t = table();
+                seq++;
+                try {
+                    UNSAFE.setMemory(t.address, Table.bytesFor(t.mask + 1),
+                                     (byte) 0);
+                } finally {
+                    seq++;
+                }
+            } finally {
+                unlock();
+            }
+        }
+    }
+
+    /** The segments, indexed by the high bits of the hash */
+    final Segment[] segments;
+
+    /** Mask for selecting a segment */
+    final int segmentMask;
+
+    /** Whether the segments are mapped from a file */
+    final boolean mapped;
+
+    private OffHeapLongHashMap(Segment[] segments, boolean mapped) {
+        this.segments = segments;
+        this.segmentMask = segments.length - 1;
+        this.mapped = mapped;
+    }
+
+    /**
+     * Creates a new, empty map allocated in memory, with room for the
+     * given number of mappings before any segment grows, and the
+     * default concurrency level of 64 segments.
+     *
+     * @param expectedSize the expected number of mappings
+     * @throws IllegalArgumentException if {@code expectedSize} is
+     *         negative or too large
+     * @throws OutOfMemoryError if direct buffer memory is exhausted
+     */
+    public OffHeapLongHashMap(long expectedSize) {
+        this(expectedSize, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Creates a new, empty map allocated in memory, with room for the
+     * given number of mappings before any segment grows, and at least
+     * the given number of segments.
+     *
+     * @param expectedSize the expected number of mappings
+     * @param concurrencyLevel the estimated number of concurrently
+     *        updating threads
+     * @throws IllegalArgumentException if {@code expectedSize} is
+     *         negative or too large, or {@code concurrencyLevel} is not
+     *         positive
+     * @throws OutOfMemoryError if direct buffer memory is exhausted
+     */
+    public OffHeapLongHashMap(long expectedSize, int concurrencyLevel) {
+        this(newSegments(expectedSize, concurrencyLevel), false);
+    }
+
+    private static Segment[] newSegments(long expectedSize,
+                                         int concurrencyLevel) {
+        long[] geometry = geometry(expectedSize, concurrencyLevel);
+        Segment[] segments = new Segment[(int) geometry[0]];
+        long slots = geometry[1];
+        for (int i = 0; i < segments.length; i++)
+            segments[i] = new Segment(new Table(allocate(slots), slots));
+        return segments;
+    }
+
+    /**
+     * Returns the number of segments and slots per segment for a map of
+     * the expected size: a load of at most one half if the keys spread
+     * evenly.
+     */
+    private static long[] geometry(long expectedSize, int concurrencyLevel) {
+        if (expectedSize < 0L || concurrencyLevel <= 0 ||
+            expectedSize > MAX_SEGMENTS * (MAX_SLOTS >>> 1))
+            throw new IllegalArgumentException();
+        int nsegments = 1;
+        while (nsegments < concurrencyLevel && nsegments < MAX_SEGMENTS)
+            nsegments <<= 1;
+        while ((expectedSize << 1) / nsegments > MAX_SLOTS)
+            nsegments <<= 1;
+        long perSegment = ((expectedSize << 1) + nsegments - 1) / nsegments;
+        long slots = MIN_SLOTS;
+        while (slots < perSegment)
+            slots <<= 1;
+        return new long[] { nsegments, slots };
+    }
+
+    private static ByteBuffer allocate(long slots) {
+        return ByteBuffer.allocateDirect((int) Table.bytesFor(slots));
+    }
+
+    /**
+     * Returns a map stored in the given file, creating the file with room
+     * for the given number of mappings if it does not exist.  Updates of
+     * the map are written to the file by the operating system in due
+     * course, or at once by {@link #force}.  The number of mappings the
+     * map can hold is fixed when the file is created; insertions may fail
+     * once it holds more than about one and a half times the expected
+     * size.
+     *
+     * @param file the file
+     * @param expectedSize the expected number of mappings, if the file is
+     *        created
+     * @return the map
+     * @throws IllegalArgumentException if {@code expectedSize} is
+     *         negative or too large
+     * @throws IOException if an I/O error occurs, or the file exists and
+     *         does not hold a map of the expected layout
+     */
+    public static OffHeapLongHashMap map(Path file, long expectedSize)
+        throws IOException {
+        try (FileChannel ch = FileChannel.open(file,
+                                               StandardOpenOption.CREATE,
+                                               StandardOpenOption.READ,
+                                               StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER)
+                .order(ByteOrder.nativeOrder());
+            long nsegments, slots;
+            if (ch.size() == 0L) {
+                long[] geometry = geometry(expectedSize,
+                                           DEFAULT_CONCURRENCY_LEVEL);
+                nsegments = geometry[0];
+                slots = geometry[1];
+                header.putLong(0, FILE_MAGIC);
+                header.putLong(8, nsegments);
+                header.putLong(16, slots);
+                ch.write(header, 0L);
+            } else {
+                while (header.hasRemaining())
+                    if (ch.read(header, header.position()) < 0)
+                        break;
+                nsegments = header.getLong(8);
+                slots = header.getLong(16);
+                if (header.getLong(0) != FILE_MAGIC ||
+                    nsegments <= 0L || nsegments > MAX_SEGMENTS ||
+                    Long.bitCount(nsegments) != 1 ||
+                    slots < MIN_SLOTS || slots > MAX_SLOTS ||
+                    Long.bitCount(slots) != 1 ||
+                    ch.size() != FILE_HEADER +
+                                 nsegments * Table.bytesFor(slots))
+                    throw new IOException("Not a map file: " + file);
+            }
+            Segment[] segments = new Segment[(int) nsegments];
+            long bytes = Table.bytesFor(slots);
+            for (int i = 0; i < segments.length; i++) {
+                MappedByteBuffer b = ch.map(FileChannel.MapMode.READ_WRITE,
+                                            FILE_HEADER + i * bytes, bytes);
+                segments[i] = new Segment(new Table(b, slots));
+            }
+            return new OffHeapLongHashMap(segments, true);
+        }
+    }
+
+    /**
+     * Spreads the bits of a key (the finalizer of MurmurHash3).  The
+     * high bits select the segment and the low bits the slot.
+     */
+    static long hash(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    private Segment segmentFor(long h) {
+        return segments[(int) (h >>> 40) & segmentMask];
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or
+     * {@code defaultValue} if this map contains no mapping for the key.
+     *
+     * @param key the key
+     * @param defaultValue the value to return if the key is absent
+     * @return the value of the key, or {@code defaultValue}
+     * @throws IllegalStateException if the map has been freed
+     */
+    public long getOrDefault(long key, long defaultValue) {
+        long h = hash(key);
+        return segmentFor(h).get(key, h, defaultValue, null);
+    }
+
+    /**
+     * Returns {@code true} if this map contains a mapping for the
+     * specified key.
+     *
+     * @param key the key
+     * @return {@code true} if the key is present
+     * @throws IllegalStateException if the map has been freed
+     */
+    public boolean containsKey(long key) {
+        long h = hash(key);
+        boolean[] present = new boolean[1];
+        segmentFor(h).get(key, h, 0L, present);
+        return present[0];
+    }
+
+    /**
+     * Maps the specified key to the specified value.
+     *
+     * @param key the key
+     * @param value the value
+     * @return {@code true} if the key was absent, {@code false} if its
+     *         value was replaced
+     * @throws IllegalStateException if the map has been freed, or the
+     *         segment of the key is full and cannot grow
+     * @throws OutOfMemoryError if direct buffer memory is exhausted
+     */
+    public boolean put(long key, long value) {
+        long h = hash(key);
+        return segmentFor(h).put(key, h, value, false, mapped);
+    }
+
+    /**
+     * Maps the specified key to the specified value, unless it is
+     * already present.
+     *
+     * @param key the key
+     * @param value the value
+     * @return {@code true} if the key was absent and is now mapped to
+     *         {@code value}
+     * @throws IllegalStateException if the map has been freed, or the
+     *         segment of the key is full and cannot grow
+     * @throws OutOfMemoryError if direct buffer memory is exhausted
+     */
+    public boolean putIfAbsent(long key, long value) {
+        long h = hash(key);
+        return segmentFor(h).put(key, h, value, true, mapped);
+    }
+
+    /**
+     * Removes the mapping for the specified key, if present.
+     *
+     * @param key the key
+     * @return {@code true} if the key was present
+     * @throws IllegalStateException if the map has been freed
+     */
+    public boolean remove(long key) {
+        long h = hash(key);
+        return segmentFor(h).remove(key, h);
+    }
+
+    /**
+     * Returns the number of mappings in this map.
+     *
+     * @return the number of mappings
+     * @throws IllegalStateException if the map has been freed
+     */
+    public long size() {
+        long n = 0L;
+        for (Segment s : segments) {
+            Table t = s.beginRead();
+            try {
+                n += t.size();
+            } finally {
+                s.endRead();
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Returns {@code true} if this map contains no mappings.
+     *
+     * @return {@code true} if this map contains no mappings
+     * @throws IllegalStateException if the map has been freed
+     */
+    public boolean isEmpty() {
+        for (Segment s : segments) {
+            Table t = s.beginRead();
+            try {
+                if (t.size() != 0L)
+                    return false;
+            } finally {
+                s.endRead();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes all of the mappings from this map.  Segments keep their
+     * current size.
+     *
+     * @throws IllegalStateException if the map has been freed
+     */
+    public void clear() {
+        for (Segment s : segments)
+            s.clear();
+    }
+
+    /**
+     * Returns the number of bytes of memory, outside the Java heap, held
+     * by the current segments of this map.
+     *
+     * @return the size of the tables of this map in bytes
+     * @throws IllegalStateException if the map has been freed
+     */
+    public long offHeapSize() {
+        long n = 0L;
+        for (Segment s : segments)
+            n += Table.bytesFor(s.table().mask + 1);
+        return n;
+    }
+
+    /**
+     * Returns a cursor over the mappings of this map.
+     *
+     * @return a weakly consistent cursor
+     */
+    public Cursor cursor() {
+        return new SegmentCursor();
+    }
+
+    /**
+     * Writes any updates of a mapped map to its file, as by
+     * {@link MappedByteBuffer#force}.  Does nothing for a map allocated
+     * in memory.
+     *
+     * @throws IllegalStateException if the map has been freed
+     */
+    public void force() {
+        if (!mapped)
+            return;
+        for (Segment s : segments) {
+            Table t = s.beginRead();
+            try {
+                ((MappedByteBuffer) t.buffer).force();
+            } finally {
+                s.endRead();
+            }
+        }
+    }
+
+    /**
+     * Releases the memory of this map at once, rather than when the map
+     * is garbage collected, and unmaps the file of a mapped map.  This
+     * method waits for operations on the map in progress to finish
+     * reading its memory; any later operation, and any concurrent one
+     * that has not yet read it, throws {@code IllegalStateException}.
+     * Calling it more than once has no effect.
+     */
+    public void free() {
+        for (Segment s : segments) {
+            s.lock();
+            try {
+                Table t = s.table;
+                if (t != null) {
+                    s.table = null;
+                    while (s.readers.get() != 0)
+                        Thread.yield();
+                    t.release();
+                }
+            } finally {
+                s.unlock();
+            }
+        }
+    }
+
+    /**
+     * Cursor over the segments, reading each slot optimistically.
+     */
+    final class SegmentCursor implements Cursor {
+        int segment = -1;
+        Table table;
+        long index;           // next slot; -1 for the zero key
+        long key, value;
+        boolean positioned;
+
+        public boolean advance() {
+            positioned = false;
+            for (;;) {
+                if (table == null) {
+                    if (++segment >= segments.length)
+                        return false;
+                    table = segments[segment].table();
+                    index = -1L;
+                }
+                Segment s = segments[segment];
+                while (index <= table.mask) {
+                    long i = index++;
+                    int v = s.seq;
+                    long k, val;
+                    boolean found;
+                    s.beginRead();
+                    try {
+                        if (i < 0L) {
+                            found = UNSAFE.getLongVolatile(
+                                null, table.address + HAS_ZERO_OFFSET) != 0L;
+                            k = 0L;
+                            val = UNSAFE.getLongVolatile(
+                                null, table.address + ZERO_VALUE_OFFSET);
+                        } else {
+                            long a = table.slot(i);
+                            k = UNSAFE.getLongVolatile(null, a);
+                            found = k != 0L;
+                            val = UNSAFE.getLongVolatile(null, a + 8);
+                        }
+                    } finally {
+                        s.endRead();
+                    }
+                    if (!found)
+                        continue;
+                    if ((v & 1) != 0 || s.seq != v) {
+                        // Entries moved meanwhile; take the current value
+                        boolean[] present = new boolean[1];
+                        val = s.get(k, hash(k), 0L, present);
+                        if (!present[0])
+                            continue;
+                    }
+                    key = k;
+                    value = val;
+                    return positioned = true;
+                }
+                table = null;
+            }
+        }
+
+        public long key() {
+            if (!positioned)
+                throw new IllegalStateException();
+            return key;
+        }
+
+        public long value() {
+            if (!positioned)
+                throw new IllegalStateException();
+            return value;
+        }
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe UNSAFE;
+    static {
+        try {
+            UNSAFE = sun.misc.Unsafe.getUnsafe();
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
@@ -779,6 +779,142 @@ public class PriorityBlockingQueue<E> extends AbstractQueue<E>
         }
     }
 
+    /**
+     * Removes at most the given number of available elements from
+     * this queue, in priority order, and adds them to the given
+     * collection, waiting up to the specified wait time if necessary
+     * for at least one element to become available.  Unlike a loop
+     * of {@link #poll(long, TimeUnit) poll} calls, this method
+     * acquires the lock only once for the whole batch.  A failure
+     * encountered while attempting to add elements to collection
+     * {@code c} may result in elements being in neither, either or
+     * both collections when the associated exception is thrown.
+     *
+     * @param c the collection to transfer elements into
+     * @param maxElements the maximum number of elements to transfer
+     * @param timeout how long to wait before giving up, in units of
+     *        {@code unit}
+     * @param unit a {@code TimeUnit} determining how to interpret the
+     *        {@code timeout} parameter
+     * @return the number of elements transferred, which is zero only
+     *         if the waiting time elapsed before an element was
+     *         available (or {@code maxElements} is not positive)
+     * @throws InterruptedException if interrupted while waiting
+     * @throws NullPointerException if the specified collection is null
+     * @throws IllegalArgumentException if the specified collection is
+     *         this queue
+     * @since 1.8
+     */
+    public int drainTo(Collection<? super E> c, int maxElements,
+                       long timeout, TimeUnit unit)
+        throws InterruptedException {
+        if (c == null)
+            throw new NullPointerException();
+        if (c == this)
+            throw new IllegalArgumentException();
+        if (maxElements <= 0)
+            return 0;
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                if (nanos <= 0)
+                    return 0;
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            int n = Math.min(size, maxElements);
+            for (int i = 0; i < n; i++) {
+                @SuppressWarnings("unchecked") E e = (E) queue[0];
+                c.add(e); // In this order, in case add() throws.
+                dequeue();
+            }
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inserts all elements of the given collection into this priority
+     * queue, acquiring the lock only once (apart from brief releases
+     * while the backing array is grown, which happens before any
+     * element is inserted).  As the queue is unbounded, this method
+     * always inserts every element.
+     *
+     * @param c the elements to insert
+     * @return the number of elements inserted, which is the size of
+     *         the collection
+     * @throws ClassCastException if an element cannot be compared
+     *         with elements currently in the priority queue according
+     *         to the priority queue's ordering; elements preceding it
+     *         in iteration order will have been inserted
+     * @throws NullPointerException if the specified collection or any
+     *         of its elements are null; in that case no element is
+     *         inserted
+     * @throws IllegalArgumentException if the specified collection is
+     *         this queue
+     * @since 1.8
+     */
+    public int offerAll(Collection<? extends E> c) {
+        if (c == this)
+            throw new IllegalArgumentException();
+        Object[] a = c.toArray();
+        for (Object e : a)
+            if (e == null)
+                throw new NullPointerException();
+        if (a.length == 0)
+            return 0;
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        int n, cap;
+        Object[] array;
+        while ((n = size) + a.length > (cap = (array = queue).length)) {
+            if (a.length > MAX_ARRAY_SIZE - n) {  // would overflow
+                lock.unlock();
+                throw new OutOfMemoryError();
+            }
+            tryGrow(array, cap);
+        }
+        try {
+            Comparator<? super E> cmp = comparator;
+            for (int i = 0; i < a.length; ++i, ++n) {
+                @SuppressWarnings("unchecked") E e = (E) a[i];
+                if (cmp == null)
+                    siftUpComparable(n, e, array);
+                else
+                    siftUpUsingComparator(n, e, array, cmp);
+                size = n + 1;
+                notEmpty.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return a.length;
+    }
+
+    /**
+     * Inserts all elements of the given collection into this priority
+     * queue, acquiring the lock only once. As the queue is unbounded,
+     * this method never blocks; it is equivalent to {@link
+     * #offerAll}.
+     *
+     * @param c the elements to insert
+     * @throws ClassCastException if an element cannot be compared
+     *         with elements currently in the priority queue according
+     *         to the priority queue's ordering; elements preceding it
+     *         in iteration order will have been inserted
+     * @throws NullPointerException if the specified collection or any
+     *         of its elements are null; in that case no element is
+     *         inserted
+     * @throws IllegalArgumentException if the specified collection is
+     *         this queue
+     * @since 1.8
+     */
+    public void putAll(Collection<? extends E> c) {
+        offerAll(c); // never need to block
+    }
+
     /**
      * Atomically removes all of the elements from this queue.
      * The queue will be empty after this call returns.
@@ -176,7 +176,9 @@ public class ScheduledThreadPoolExecutor
     }
 
     private class ScheduledFutureTask<V>
-            extends FutureTask<V> implements RunnableScheduledFuture<V> {
+            extends FutureTask<V>
+            implements RunnableScheduledFuture<V>,
+                       ExecutorStatisticsSupport.Timestamped {
 
         /** Sequence number to break ties FIFO */
         private final long sequenceNumber;
@@ -234,6 +236,10 @@ public class ScheduledThreadPoolExecutor
             return unit.convert(time - now(), TimeUnit.NANOSECONDS);
         }
 
+        public long readyTime() {
+            return time;
+        }
+
         public int compareTo(Delayed other) {
             if (other == this) // compare zero ONLY if same object
                 return 0;
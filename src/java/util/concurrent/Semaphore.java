@@ -179,6 +179,19 @@ public class Semaphore implements java.io.Serializable {
             return getState();
         }
 
+        /** Whether spinLimit(int) has been called */
+        private transient volatile boolean spinLimitSet;
+
+        final void spinLimit(int limit) {
+            setSpinLimit(limit);
+            spinLimitSet = true;
+        }
+
+        final int spinLimit() {
+            // acquires are all shared, which do not spin by default
+            return spinLimitSet ? getSpinLimit() : 0;
+        }
+
         final int nonfairTryAcquireShared(int acquires) {
             for (;;) {
                 int available = getState();
@@ -659,6 +672,34 @@ public class Semaphore implements java.io.Serializable {
         return sync instanceof FairSync;
     }
 
+    /**
+     * Sets the number of times a thread that is next in line to
+     * acquire this semaphore retries before blocking. Brief spinning
+     * lowers the latency of acquiring a semaphore that is held only for
+     * short periods. A negative value selects adaptive spinning based
+     * on recent hold times; zero, the default, disables spinning.
+     *
+     * @param limit the number of retries, or a negative value for
+     *        adaptive spinning
+     * @since 1.8
+     */
+    public void setSpinLimit(int limit) {
+        sync.spinLimit(limit);
+    }
+
+    /**
+     * Returns the number of times a thread that is next in line to
+     * acquire this semaphore retries before blocking.
+     *
+     * @return the number of retries, or {@code -1} if spinning is
+     *         adaptive
+     * @see #setSpinLimit
+     * @since 1.8
+     */
+    public int getSpinLimit() {
+        return sync.spinLimit();
+    }
+
     /**
      * Queries whether any threads are waiting to acquire. Note that
      * because cancellations may occur at any time, a {@code true}
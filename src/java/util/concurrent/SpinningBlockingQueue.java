@@ -0,0 +1,296 @@
+/*
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+/*
+ *
+ *
+ *
+ *
+ *
+ * Written by Doug Lea with assistance from members of JCP JSR-166
+ * Expert Group and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+package java.util.concurrent;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.AbstractQueue;
+import java.util.Collection;
+
+/**
+ * Blocking operations for queues whose non-blocking operations
+ * ({@code offer}, {@code poll}) never wait for each other. Shared by
+ * {@link ConcurrentArrayBlockingQueue}, {@link SpscArrayBlockingQueue}
+ * and {@link ConcurrentPriorityBlockingQueue}.
+ *
+ * <p>A thread that must wait first spins for a while, retrying the
+ * non-blocking operation, and then blocks on a condition of a lock
+ * that is used only by waiting threads and by threads that may need
+ * to wake them. Subclasses call {@link #signalNotEmpty} after each
+ * successful insertion and {@link #signalNotFull} after each
+ * successful removal; these just read a volatile count unless some
+ * thread is actually blocked.
+ *
+ * <p>To avoid lost wake-ups, a waiter increments the relevant count
+ * and then re-checks {@link #claimedEmpty} or {@link #claimedFull}
+ * before blocking, while an inserting (removing) thread reads the
+ * count only after its update of the claimed tail (head) index is
+ * globally visible, that is, after a CAS or volatile write of that
+ * index. A waiter that finds that an insertion (removal) has been
+ * claimed but not yet completed releases the lock and yields instead
+ * of blocking, so that it does not hold up signalling threads or other
+ * waiters while the claiming thread finishes.
+ *
+ * @param <E> the type of elements held in this collection
+ */
+abstract class SpinningBlockingQueue<E> extends AbstractQueue<E>
+        implements BlockingQueue<E> {
+
+    /** The number of CPUs, for spin control */
+    static final int NCPUS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The number of times to retry a non-blocking operation before
+     * blocking. Spinning is useless on uniprocessors.
+     */
+    static final int maxSpins = (NCPUS < 2) ? 0 : 64;
+
+    /** Lock held by blocked threads */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Condition for waiting takes */
+    private final Condition notEmpty = lock.newCondition();
+
+    /** Condition for waiting puts */
+    private final Condition notFull = lock.newCondition();
+
+    /** Number of consumers blocked or about to block; written under lock */
+    private volatile int waitingConsumers;
+
+    /** Number of producers blocked or about to block; written under lock */
+    private volatile int waitingProducers;
+
+    /**
+     * Returns true if no insertion has been claimed beyond the last
+     * claimed removal, so that a consumer may block.
+     */
+    abstract boolean claimedEmpty();
+
+    /**
+     * Returns true if every slot has been claimed by an insertion
+     * whose element has not been claimed by a removal, so that a
+     * producer may block.
+     */
+    abstract boolean claimedFull();
+
+    /**
+     * Wakes up a blocked consumer, if there is one.
+     */
+    final void signalNotEmpty() {
+        if (waitingConsumers > 0) {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Wakes up a blocked producer, if there is one.
+     */
+    final void signalNotFull() {
+        if (waitingProducers > 0) {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                notFull.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue, waiting
+     * for space to become available if the queue is full.
+     *
+     * @throws InterruptedException {@inheritDoc}
+     * @throws NullPointerException {@inheritDoc}
+     */
+    public void put(E e) throws InterruptedException {
+        if (e == null) throw new NullPointerException();
+        for (int spins = maxSpins; spins >= 0; --spins)
+            if (offer(e))
+                return;
+        final ReentrantLock lock = this.lock;
+        for (;;) {
+            boolean inserted;
+            lock.lockInterruptibly();
+            try {
+                ++waitingProducers;
+                try {
+                    while (!(inserted = offer(e)) && claimedFull())
+                        notFull.await();
+                } finally {
+                    --waitingProducers;
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (inserted)
+                return;
+            Thread.yield();     // a removal is in progress
+        }
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue, waiting
+     * up to the specified wait time for space to become available if
+     * the queue is full.
+     *
+     * @throws InterruptedException {@inheritDoc}
+     * @throws NullPointerException {@inheritDoc}
+     */
+    public boolean offer(E e, long timeout, TimeUnit unit)
+        throws InterruptedException {
+        if (e == null) throw new NullPointerException();
+        for (int spins = maxSpins; spins >= 0; --spins)
+            if (offer(e))
+                return true;
+        long nanos = unit.toNanos(timeout);
+        final long deadline = System.nanoTime() + nanos;
+        final ReentrantLock lock = this.lock;
+        for (;;) {
+            boolean inserted;
+            lock.lockInterruptibly();
+            try {
+                ++waitingProducers;
+                try {
+                    while (!(inserted = offer(e)) && nanos > 0 &&
+                           claimedFull())
+                        nanos = notFull.awaitNanos(nanos);
+                } finally {
+                    --waitingProducers;
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (inserted)
+                return true;
+            if (nanos <= 0)
+                return false;
+            Thread.yield();     // a removal is in progress
+            nanos = deadline - System.nanoTime();
+        }
+    }
+
+    public E take() throws InterruptedException {
+        E x;
+        for (int spins = maxSpins; spins >= 0; --spins)
+            if ((x = poll()) != null)
+                return x;
+        final ReentrantLock lock = this.lock;
+        for (;;) {
+            lock.lockInterruptibly();
+            try {
+                ++waitingConsumers;
+                try {
+                    while ((x = poll()) == null && claimedEmpty())
+                        notEmpty.await();
+                } finally {
+                    --waitingConsumers;
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (x != null)
+                return x;
+            Thread.yield();     // an insertion is in progress
+        }
+    }
+
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        E x;
+        for (int spins = maxSpins; spins >= 0; --spins)
+            if ((x = poll()) != null)
+                return x;
+        long nanos = unit.toNanos(timeout);
+        final long deadline = System.nanoTime() + nanos;
+        final ReentrantLock lock = this.lock;
+        for (;;) {
+            lock.lockInterruptibly();
+            try {
+                ++waitingConsumers;
+                try {
+                    while ((x = poll()) == null && nanos > 0 &&
+                           claimedEmpty())
+                        nanos = notEmpty.awaitNanos(nanos);
+                } finally {
+                    --waitingConsumers;
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (x != null || nanos <= 0)
+                return x;
+            Thread.yield();     // an insertion is in progress
+            nanos = deadline - System.nanoTime();
+        }
+    }
+
+    /**
+     * @throws UnsupportedOperationException {@inheritDoc}
+     * @throws ClassCastException            {@inheritDoc}
+     * @throws NullPointerException          {@inheritDoc}
+     * @throws IllegalArgumentException      {@inheritDoc}
+     */
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @throws UnsupportedOperationException {@inheritDoc}
+     * @throws ClassCastException            {@inheritDoc}
+     * @throws NullPointerException          {@inheritDoc}
+     * @throws IllegalArgumentException      {@inheritDoc}
+     */
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == null)
+            throw new NullPointerException();
+        if (c == this)
+            throw new IllegalArgumentException();
+        int n = 0;
+        E x;
+        while (n < maxElements && (x = poll()) != null) {
+            c.add(x);
+            ++n;
+        }
+        return n;
+    }
+}
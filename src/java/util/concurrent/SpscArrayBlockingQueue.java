@@ -0,0 +1,415 @@
+/*
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+/*
+ *
+ *
+ *
+ *
+ *
+ * Written by Doug Lea with assistance from members of JCP JSR-166
+ * Expert Group and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+package java.util.concurrent;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A bounded {@linkplain BlockingQueue blocking queue} backed by an
+ * array, for use by exactly one producer thread and one consumer
+ * thread. This queue orders elements FIFO (first-in-first-out).
+ *
+ * <p>With a single producer and a single consumer, each index is
+ * written by only one thread, and each side caches the last index it
+ * read from the other side, so that in the common case producer and
+ * consumer do not even read each other's cache lines. Threads that
+ * must wait in {@code put} or {@code take} spin briefly and then
+ * block.
+ *
+ * <p>The insertion methods ({@code add}, {@code offer}, {@code put}
+ * and their variants) may be called by only one thread at a time,
+ * and likewise the removal methods ({@code remove()}, {@code poll},
+ * {@code take}, {@code drainTo} and their variants). If they are
+ * not, the behavior of this queue is undefined. Other methods may be
+ * called by any thread.
+ *
+ * <p>The {@code size}, {@code peek} and {@code toArray} methods
+ * return approximate results while the queue is being modified. The
+ * iterator is "weakly consistent": it traverses a snapshot taken by
+ * {@link #toArray()}.  {@link #remove(Object)} and the iterator's
+ * {@code remove} method cancel the slot holding the element, which
+ * the consumer then skips; a cancelled slot still counts towards
+ * {@code size} and against the capacity until the consumer passes it.
+ *
+ * @since 1.8
+ * @param <E> the type of elements held in this collection
+ * @see ConcurrentArrayBlockingQueue
+ */
+public class SpscArrayBlockingQueue<E> extends SpinningBlockingQueue<E> {
+
+    /*
+     * A Lamport ring buffer. The producer writes an element with a
+     * plain write and publishes it with a volatile write of tail; the
+     * consumer clears the slot and releases it with a volatile write
+     * of head. Those volatile writes are also the fences that
+     * SpinningBlockingQueue relies on before reading waiter counts.
+     *
+     * remove(Object) may be called by any thread. It CASes the
+     * element in the slot to the REMOVED marker, and the consumer
+     * takes each element with a CAS, so that exactly one of the two
+     * gets it. This CAS is the only atomic read-modify-write on the
+     * fast path; it is uncontended unless a removal is in progress.
+     * A non-null slot other than REMOVED always holds an element that
+     * is in the queue (or being inserted), so a removal can never
+     * cancel a slot that the consumer has already emptied.
+     */
+
+    /** Marker for the element of a cancelled slot */
+    private static final Object REMOVED = new Object();
+
+    /** The queued items */
+    private final Object[] items;
+
+    /** The capacity */
+    private final int capacity;
+
+    /** capacity - 1 if capacity is a power of two, else -1 */
+    private final int mask;
+
+    volatile long p00, p01, p02, p03, p04, p05, p06;
+
+    /** Next position to fill; written only by the producer */
+    private volatile long tail;
+
+    /** The producer's last read of head */
+    private long headCache;
+
+    volatile long p10, p11, p12, p13, p14, p15, p16;
+
+    /** Next position to empty; written only by the consumer */
+    private volatile long head;
+
+    /** The consumer's last read of tail */
+    private long tailCache;
+
+    volatile long p20, p21, p22, p23, p24, p25, p26;
+
+    /**
+     * Creates a {@code SpscArrayBlockingQueue} with the given (fixed)
+     * capacity. Capacities that are powers of two are slightly
+     * cheaper to index.
+     *
+     * @param capacity the capacity of this queue
+     * @throws IllegalArgumentException if {@code capacity < 1}
+     */
+    public SpscArrayBlockingQueue(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException();
+        this.capacity = capacity;
+        this.mask = ((capacity & (capacity - 1)) == 0) ? capacity - 1 : -1;
+        this.items = new Object[capacity];
+    }
+
+    /**
+     * Returns the slot index of a position.
+     */
+    private int indexOf(long pos) {
+        int m = mask;
+        return (m >= 0) ? (int)pos & m : (int)(pos % capacity);
+    }
+
+    private Object itemAt(int i) {
+        return UNSAFE.getObjectVolatile(items, ((long)i << ASHIFT) + ABASE);
+    }
+
+    private boolean casItem(int i, Object cmp, Object val) {
+        return UNSAFE.compareAndSwapObject
+            (items, ((long)i << ASHIFT) + ABASE, cmp, val);
+    }
+
+    final boolean claimedEmpty() {
+        return tail == head;
+    }
+
+    final boolean claimedFull() {
+        return tail - head >= capacity;
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue if it is
+     * possible to do so immediately without exceeding the queue's
+     * capacity, returning {@code true} upon success and {@code false}
+     * if this queue is full. Must be called only by the producer.
+     *
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean offer(E e) {
+        if (e == null) throw new NullPointerException();
+        long t = tail;
+        if (t - headCache >= capacity) {
+            long h = headCache = head;
+            if (t - h >= capacity)
+                return false;
+        }
+        items[indexOf(t)] = e;
+        tail = t + 1;
+        signalNotEmpty();
+        return true;
+    }
+
+    /**
+     * Retrieves and removes the head of this queue, or returns {@code
+     * null} if this queue is empty. Must be called only by the
+     * consumer.
+     */
+    public E poll() {
+        for (;;) {
+            long h = head;
+            if (h >= tailCache) {
+                long t = tailCache = tail;
+                if (h >= t)
+                    return null;
+            }
+            int i = indexOf(h);
+            Object x;
+            do {
+                x = itemAt(i);
+            } while (!casItem(i, x, null));
+            head = h + 1;
+            signalNotFull();
+            if (x != REMOVED) {
+                @SuppressWarnings("unchecked") E e = (E) x;
+                return e;
+            }
+        }
+    }
+
+    public E peek() {
+        for (;;) {
+            long h = head;
+            long t = tail;
+            Object x = null;
+            for (long pos = h; pos < t; ++pos)
+                if ((x = itemAt(indexOf(pos))) != REMOVED)
+                    break;
+            if (head == h) {
+                @SuppressWarnings("unchecked") E e =
+                    (x == REMOVED) ? null : (E) x;
+                return e;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of elements in this queue.
+     *
+     * @return the number of elements in this queue
+     */
+    public int size() {
+        for (;;) {
+            long h = head;
+            long t = tail;
+            if (h == head) {
+                long n = t - h;
+                return (n <= 0) ? 0 : (n >= capacity) ? capacity : (int)n;
+            }
+        }
+    }
+
+    /**
+     * Returns {@code true} if this queue contains no elements.
+     * Cancelled slots do not count as elements.
+     *
+     * @return {@code true} if this queue contains no elements
+     */
+    public boolean isEmpty() {
+        long h = head, t = tail;
+        for (long pos = h; pos < t && pos - h < capacity; ++pos)
+            if (itemAt(indexOf(pos)) != REMOVED)
+                return false;
+        return true;
+    }
+
+    /**
+     * Returns the number of additional elements that this queue can
+     * ideally (in the absence of memory or resource constraints)
+     * accept without blocking. This is always equal to the initial
+     * capacity of this queue less the current {@code size} of this
+     * queue.
+     */
+    public int remainingCapacity() {
+        return capacity - size();
+    }
+
+    /**
+     * Removes a single instance of the specified element from this queue,
+     * if it is present.  More formally, removes an element {@code e} such
+     * that {@code o.equals(e)}, if this queue contains one or more such
+     * elements.  Returns {@code true} if and only if this queue contained
+     * the specified element (or equivalently, if this queue changed as a
+     * result of the call).  May be called by any thread.
+     *
+     * <p>The slot that held the element is only cancelled: it goes on
+     * counting towards {@link #size} until the consumer skips it.
+     *
+     * @param o element to be removed from this queue, if present
+     * @return {@code true} if this queue changed as a result of the call
+     */
+    public boolean remove(Object o) {
+        return remove(o, false);
+    }
+
+    /**
+     * Removes an element equal to, or if identity is true the same
+     * as, the given object.
+     */
+    private boolean remove(Object o, boolean identity) {
+        if (o == null)
+            return false;
+        long h = head, t = tail;
+        for (long pos = h; pos < t && pos - h < capacity; ++pos) {
+            int i = indexOf(pos);
+            Object x = itemAt(i);
+            if (x != null && x != REMOVED &&
+                (identity ? x == o : o.equals(x)) &&
+                casItem(i, x, REMOVED))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns an array containing the elements present in this queue
+     * at some point during the call, in proper sequence.
+     *
+     * @return an array containing the elements in this queue
+     */
+    public Object[] toArray() {
+        ArrayList<Object> all = new ArrayList<Object>();
+        long h = head, t = tail;
+        for (long pos = h; pos < t && pos - h < capacity; ++pos) {
+            Object x = itemAt(indexOf(pos));
+            if (x != null && x != REMOVED)
+                all.add(x);
+        }
+        return all.toArray();
+    }
+
+    /**
+     * Returns an array containing the elements present in this queue
+     * at some point during the call, in proper sequence; the runtime
+     * type of the returned array is that of the specified array.
+     *
+     * @param a the array into which the elements of the queue are to
+     *          be stored, if it is big enough; otherwise, a new array of the
+     *          same runtime type is allocated for this purpose
+     * @return an array containing the elements in this queue
+     * @throws ArrayStoreException if the runtime type of the specified array
+     *         is not a supertype of the runtime type of every element in
+     *         this queue
+     * @throws NullPointerException if the specified array is null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a) {
+        Object[] all = toArray();
+        int n = all.length;
+        if (a.length < n)
+            a = (T[])java.lang.reflect.Array.newInstance
+                (a.getClass().getComponentType(), n);
+        System.arraycopy(all, 0, a, 0, n);
+        if (a.length > n)
+            a[n] = null;
+        return a;
+    }
+
+    /**
+     * Returns an iterator over the elements in this queue in proper
+     * sequence.
+     *
+     * <p>The returned iterator is a "weakly consistent" iterator that
+     * will never throw {@link java.util.ConcurrentModificationException
+     * ConcurrentModificationException}; it traverses the elements
+     * present at some point during construction of the iterator.
+     *
+     * @return an iterator over the elements in this queue in proper sequence
+     */
+    public Iterator<E> iterator() {
+        return new Itr(toArray());
+    }
+
+    /**
+     * Snapshot iterator that works off copy of the elements.
+     */
+    final class Itr implements Iterator<E> {
+        final Object[] array; // Array of all elements
+        int cursor;           // index of next element to return
+        int lastRet;          // index of last element, or -1 if no such
+
+        Itr(Object[] array) {
+            lastRet = -1;
+            this.array = array;
+        }
+
+        public boolean hasNext() {
+            return cursor < array.length;
+        }
+
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (cursor >= array.length)
+                throw new NoSuchElementException();
+            lastRet = cursor;
+            return (E)array[cursor++];
+        }
+
+        public void remove() {
+            if (lastRet < 0)
+                throw new IllegalStateException();
+            SpscArrayBlockingQueue.this.remove(array[lastRet], true);
+            lastRet = -1;
+        }
+    }
+
+    // Unsafe mechanics
+
+    private static final sun.misc.Unsafe UNSAFE;
+    private static final long ABASE;
+    private static final int ASHIFT;
+    static {
+        try {
+            UNSAFE = sun.misc.Unsafe.getUnsafe();
+            ABASE = UNSAFE.arrayBaseOffset(Object[].class);
+            int s = UNSAFE.arrayIndexScale(Object[].class);
+            if ((s & (s-1)) != 0)
+                throw new Error("data type scale not a power of two");
+            ASHIFT = 31 - Integer.numberOfLeadingZeros(s);
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
@@ -158,6 +158,27 @@ public class SynchronousQueue<E> extends AbstractQueue<E>
      * old head pointers), but references in Queue nodes must be
      * aggressively forgotten to avoid reachability of everything any
      * node has ever referred to since arrival.
+     *
+     * On multiprocessors, the stack is backed by an elimination
+     * arena, as in "A Scalable Lock-free Stack Algorithm" by D.
+     * Hendler, N. Shavit and L. Yerushalmi (SPAA 2004). A thread
+     * whose CAS of the stack head fails, showing that others are
+     * operating on the stack at the same time, instead visits a
+     * random slot of the arena. If the slot holds a node of
+     * complementary mode, the two operations cancel out without
+     * touching the stack; if it is empty, the thread waits in it
+     * for a few spins before returning to the stack. Since a thread
+     * waiting in the arena is not in the stack, operations that
+     * cannot wait, such as offer and poll without timeout, check every
+     * slot in use for such a thread before giving up. Arena matches
+     * are handled much as in Exchanger: a fulfiller claims a node by
+     * clearing its slot and then matches it, racing with the waiter's
+     * cancellation. The arena is created on first contention, and
+     * only a prefix of it, grown on collisions and shrunk when waits
+     * elapse unmatched, is used, so that its effective size follows
+     * the number of threads actively contending. Slots are padded
+     * so that, wherever the collector places them, no two share a
+     * cache line (or an adjacent-line prefetch pair).
      */
 
     /**
@@ -205,6 +226,31 @@ public class SynchronousQueue<E> extends AbstractQueue<E>
      */
     static final long spinForTimeoutThreshold = 1000L;
 
+    /**
+     * The capacity of the elimination arena. Half the number of CPUs
+     * suffices to hold all possible pairs of threads running at the
+     * same time.
+     */
+    static final int ARENA_CAPACITY = Math.max(1, NCPUS >>> 1);
+
+    /**
+     * The number of times to spin in an arena slot waiting for a
+     * match before returning to the stack. Small, since waiting in
+     * the stack itself also spins before blocking.
+     */
+    static final int ARENA_SPINS = maxTimedSpins * 2;
+
+    /**
+     * A slot of the elimination arena, padded on both sides of the
+     * CAS'ed reference so that slots placed next to each other, or
+     * next to other heavily written objects, do not share the pair of
+     * 64-byte cache lines that many processors fetch together.
+     */
+    static final class ArenaSlot extends AtomicReference<Object> {
+        private static final long serialVersionUID = -4106640839946045390L;
+        long p0, p1, p2, p3, p4, p5, p6, p7, p8, p9, pa, pb, pc, pd, pe;
+    }
+
     /** Dual stack */
     static final class TransferStack extends Transferer {
         /*
@@ -353,8 +399,8 @@ public class SynchronousQueue<E> extends AbstractQueue<E>
                     if (timed && nanos <= 0) {      // can't wait
                         if (h != null && h.isCancelled())
                             casHead(h, h.next);     // pop cancelled node
-                        else
-                            return null;
+                        else                        // try arena waiters
+                            return eliminate(e, mode, false);
                     } else if (casHead(h, s = snode(s, e, h, mode))) {
                         SNode m = awaitFulfill(s, timed, nanos);
                         if (m == s) {               // wait was cancelled
@@ -364,11 +410,19 @@ public class SynchronousQueue<E> extends AbstractQueue<E>
                         if ((h = head) != null && h.next == s)
                             casHead(h, s.next);     // help s's fulfiller
                         return (mode == REQUEST) ? m.item : s.item;
+                    } else {                        // contended; eliminate
+                        Object x = eliminate(e, mode, true);
+                        if (x != null)
+                            return x;
                     }
                 } else if (!isFulfilling(h.mode)) { // try to fulfill
                     if (h.isCancelled())            // already cancelled
                         casHead(h, h.next);         // pop and retry
-                    else if (casHead(h, s=snode(s, e, h, FULFILLING|mode))) {
+                    else if (!casHead(h, s=snode(s, e, h, FULFILLING|mode))) {
+                        Object x = eliminate(e, mode, !timed || nanos > 0);
+                        if (x != null)
+                            return x;
+                    } else {
                         for (;;) { // loop until matched or waiters disappear
                             SNode m = s.next;       // m is s's match
                             if (m == null) {        // all waiters are gone
@@ -399,6 +453,96 @@ public class SynchronousQueue<E> extends AbstractQueue<E>
             }
         }
 
+        /** The elimination arena, created on first contention */
+        volatile ArenaSlot[] arena;
+
+        /** The largest arena index in use */
+        volatile int arenaBound;
+
+        /**
+         * Tries to complete a put or take in the elimination arena,
+         * either by matching a node of complementary mode waiting in a
+         * random slot or, if the slot is empty, by briefly waiting in
+         * it. Operations that cannot wait instead try every slot in
+         * use. Never blocks.
+         *
+         * @param e the item or null for take
+         * @param mode REQUEST or DATA
+         * @param canWait false if called from an untimed offer or poll,
+         *        which may only match operations already waiting
+         * @return the item provided or received, or null if no
+         *         match was made and the caller should retry the stack
+         */
+        Object eliminate(Object e, int mode, boolean canWait) {
+            ArenaSlot[] a = arena;
+            if (a == null) {
+                if (NCPUS < 2 || !canWait)  // no one can be waiting
+                    return null;
+                ArenaSlot[] na = new ArenaSlot[ARENA_CAPACITY];
+                for (int i = 0; i < na.length; ++i)
+                    na[i] = new ArenaSlot();
+                if (!UNSAFE.compareAndSwapObject(this, arenaOffset, null, na))
+                    return null;            // lost race; retry stack first
+                a = na;
+            }
+            int bound = arenaBound;
+            if (!canWait) {
+                for (int i = 0; i <= bound; ++i) {
+                    Object x = matchSlot(a[i], e, mode);
+                    if (x != null)
+                        return x;
+                }
+                return null;
+            }
+            ArenaSlot slot =
+                a[ThreadLocalRandom.current().nextInt(bound + 1)];
+            Object y = slot.get();
+            if (y != null) {
+                if (((SNode)y).mode != mode) // complementary; try to match
+                    return matchSlot(slot, e, mode);
+                if (bound < a.length - 1)   // collision; grow
+                    UNSAFE.compareAndSwapInt(this, arenaBoundOffset,
+                                             bound, bound + 1);
+                return null;
+            }
+            SNode s = snode(null, e, null, mode);
+            if (!slot.compareAndSet(null, s))
+                return null;
+            for (int spins = ARENA_SPINS; spins > 0; --spins) {
+                SNode m = s.match;
+                if (m != null)
+                    return (mode == REQUEST) ? m.item : e;
+            }
+            s.tryCancel();
+            SNode m = s.match;
+            if (m != s)                     // matched before cancel
+                return (mode == REQUEST) ? m.item : e;
+            slot.compareAndSet(s, null);
+            if (bound > 0)                  // elapsed unmatched; shrink
+                UNSAFE.compareAndSwapInt(this, arenaBoundOffset,
+                                         bound, bound - 1);
+            return null;
+        }
+
+        /**
+         * Tries to match the node of complementary mode, if any,
+         * waiting in the given arena slot.
+         *
+         * @return the item provided or received, or null if the slot
+         *         held no such node or it was matched or cancelled first
+         */
+        Object matchSlot(ArenaSlot slot, Object e, int mode) {
+            Object y = slot.get();
+            if (y != null) {
+                SNode you = (SNode)y;
+                if (you.mode != mode &&
+                    slot.compareAndSet(you, null) &&
+                    you.tryMatch(snode(null, e, null, mode)))
+                    return (mode == REQUEST) ? you.item : e;
+            }
+            return null;
+        }
+
         /**
          * Spins/blocks until node s is matched by a fulfill operation.
          *
@@ -510,12 +654,18 @@ public class SynchronousQueue<E> extends AbstractQueue<E>
         // Unsafe mechanics
         private static final sun.misc.Unsafe UNSAFE;
         private static final long headOffset;
+        private static final long arenaOffset;
+        private static final long arenaBoundOffset;
         static {
             try {
                 UNSAFE = sun.misc.Unsafe.getUnsafe();
                 Class k = TransferStack.class;
                 headOffset = UNSAFE.objectFieldOffset
                     (k.getDeclaredField("head"));
+                arenaOffset = UNSAFE.objectFieldOffset
+                    (k.getDeclaredField("arena"));
+                arenaBoundOffset = UNSAFE.objectFieldOffset
+                    (k.getDeclaredField("arenaBound"));
             } catch (Exception e) {
                 throw new Error(e);
             }
@@ -510,6 +510,11 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
      */
     private volatile RejectedExecutionHandler handler;
 
+    /**
+     * Execution statistics, or null if not enabled.
+     */
+    private volatile ExecutorStatistics statistics;
+
     /**
      * Timeout in nanoseconds for idle threads waiting for work.
      * Threads use this timeout when there are more than corePoolSize
@@ -703,6 +708,9 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
                     try {
                         terminated();
                     } finally {
+                        ExecutorStatistics stats = statistics;
+                        if (stats != null)
+                            stats.unregister();
                         ctl.set(ctlOf(TERMINATED, 0));
                         termination.signalAll();
                     }
@@ -818,6 +826,9 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
      * Package-protected for use by ScheduledThreadPoolExecutor.
      */
     final void reject(Runnable command) {
+        ExecutorStatistics stats = statistics;
+        if (stats != null)
+            stats.recordRejection();
         handler.rejectedExecution(command, this);
     }
 
@@ -856,9 +867,41 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
                     taskList.add(r);
             }
         }
+        for (int i = 0, n = taskList.size(); i < n; ++i)
+            taskList.set(i, ExecutorStatisticsSupport.unwrap(taskList.get(i)));
         return taskList;
     }
 
+    /**
+     * Returns the form in which the given task is queued by execute:
+     * when statistics are enabled, a task that is neither a Future
+     * (which purge must recognize) nor already timestamped is wrapped
+     * in a TimestampedRunnable, so that its queue wait can be recorded.
+     */
+    private Runnable timestamped(Runnable command) {
+        if (statistics == null ||
+            command instanceof Future ||
+            command instanceof ExecutorStatisticsSupport.Timestamped)
+            return command;
+        return new ExecutorStatisticsSupport.TimestampedRunnable(command);
+    }
+
+    /**
+     * Removes the TimestampedRunnable wrapping a task equal to the
+     * given one, if it is present.
+     */
+    private boolean removeTimestamped(Runnable task) {
+        if (task == null || task instanceof Future)
+            return false;       // never wrapped
+        BlockingQueue<Runnable> q = workQueue;
+        for (Runnable r : q.toArray(new Runnable[0])) {
+            Runnable t = ExecutorStatisticsSupport.unwrap(r);
+            if (t != r && task.equals(t) && q.remove(r))
+                return true;
+        }
+        return false;
+    }
+
     /*
      * Methods for creating, running and cleaning up after workers
      */
@@ -1128,6 +1171,8 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         boolean completedAbruptly = true;
         try {
             while (task != null || (task = getTask()) != null) {
+                Runnable queued = task;
+                task = ExecutorStatisticsSupport.unwrap(task);
                 w.lock();
                 // If pool is stopping, ensure thread is interrupted;
                 // if not, ensure thread is not interrupted.  This
@@ -1140,6 +1185,9 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
                     wt.interrupt();
                 try {
                     beforeExecute(wt, task);
+                    ExecutorStatistics stats = statistics;
+                    long startTime = (stats == null) ? 0L :
+                        stats.taskStarted(queued);
                     Throwable thrown = null;
                     try {
                         task.run();
@@ -1150,6 +1198,8 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
                     } catch (Throwable x) {
                         thrown = x; throw new Error(x);
                     } finally {
+                        if (stats != null)
+                            stats.taskEnded(startTime);
                         afterExecute(task, thrown);
                     }
                 } finally {
@@ -1316,6 +1366,8 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         this.keepAliveTime = unit.toNanos(keepAliveTime);
         this.threadFactory = threadFactory;
         this.handler = handler;
+        if (ExecutorStatisticsSupport.ENABLED_BY_DEFAULT)
+            enableStatistics();
     }
 
     /**
@@ -1354,6 +1406,10 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
          * 3. If we cannot queue task, then we try to add a new
          * thread.  If it fails, we know we are shut down or saturated
          * and so reject the task.
+         *
+         * When statistics are enabled, a task that carries no
+         * timestamp of its own is queued in a TimestampedRunnable,
+         * which runWorker unwraps.
          */
         int c = ctl.get();
         if (workerCountOf(c) < corePoolSize) {
@@ -1361,9 +1417,10 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
                 return;
             c = ctl.get();
         }
-        if (isRunning(c) && workQueue.offer(command)) {
+        Runnable queued = timestamped(command);
+        if (isRunning(c) && workQueue.offer(queued)) {
             int recheck = ctl.get();
-            if (! isRunning(recheck) && remove(command))
+            if (! isRunning(recheck) && remove(queued))
                 reject(command);
             else if (workerCountOf(recheck) == 0)
                 addWorker(null, false);
@@ -1719,13 +1776,119 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         return unit.convert(keepAliveTime, TimeUnit.NANOSECONDS);
     }
 
+    /**
+     * Enables statistics, creating and registering them if not
+     * already present. Call with mainLock held, or from constructor.
+     */
+    private void enableStatistics() {
+        if (statistics == null && !isTerminated()) {
+            ExecutorStatistics stats = new ExecutorStatistics(this);
+            stats.register();
+            statistics = stats;
+        }
+    }
+
+    /**
+     * Sets the policy governing whether this executor records
+     * {@linkplain ExecutorStatistics execution statistics}. When
+     * enabled, the queue wait and run times of tasks and the number
+     * of rejected tasks are recorded, and the statistics are made
+     * available as an {@link java.lang.management.ExecutorMXBean}.
+     * When disabled, which is the default unless the system property
+     * {@code java.util.concurrent.executorStatistics} is {@code true},
+     * no timing is performed. Disabling discards the statistics
+     * gathered so far.
+     *
+     * @param value {@code true} to record statistics, else {@code false}
+     * @since 1.8
+     */
+    public void setStatisticsEnabled(boolean value) {
+        final ReentrantLock mainLock = this.mainLock;
+        mainLock.lock();
+        try {
+            if (value)
+                enableStatistics();
+            else {
+                ExecutorStatistics stats = statistics;
+                if (stats != null) {
+                    statistics = null;
+                    stats.unregister();
+                }
+            }
+        } finally {
+            mainLock.unlock();
+        }
+    }
+
+    /**
+     * Returns {@code true} if this executor records execution
+     * statistics.
+     *
+     * @return {@code true} if statistics are enabled
+     * @see #setStatisticsEnabled
+     * @since 1.8
+     */
+    public boolean isStatisticsEnabled() {
+        return statistics != null;
+    }
+
+    /**
+     * Returns the execution statistics of this executor.
+     *
+     * @return the statistics, or {@code null} if not enabled
+     * @see #setStatisticsEnabled
+     * @since 1.8
+     */
+    public ExecutorStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Returns a {@code RunnableFuture} for the given runnable and
+     * default value. When statistics are enabled, the returned task
+     * is stamped with its creation time so that its queue wait time
+     * can be recorded.
+     *
+     * @param runnable the runnable task being wrapped
+     * @param value the default value for the returned future
+     * @return a {@code RunnableFuture} for the given runnable
+     * @since 1.8
+     */
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        if (statistics == null)
+            return super.newTaskFor(runnable, value);
+        return new ExecutorStatisticsSupport.TimestampedFutureTask<T>
+            (runnable, value);
+    }
+
+    /**
+     * Returns a {@code RunnableFuture} for the given callable task.
+     * When statistics are enabled, the returned task is stamped with
+     * its creation time so that its queue wait time can be recorded.
+     *
+     * @param callable the callable task being wrapped
+     * @return a {@code RunnableFuture} for the given callable
+     * @since 1.8
+     */
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        if (statistics == null)
+            return super.newTaskFor(callable);
+        return new ExecutorStatisticsSupport.TimestampedFutureTask<T>
+            (callable);
+    }
+
     /* User-level queue utilities */
 
     /**
      * Returns the task queue used by this executor. Access to the
      * task queue is intended primarily for debugging and monitoring.
      * This queue may be in active use.  Retrieving the task queue
-     * does not prevent queued tasks from executing.
+     * does not prevent queued tasks from executing.  While
+     * {@linkplain #setStatisticsEnabled statistics} are enabled, a task
+     * passed to {@link #execute execute} that is not a {@link Future}
+     * may be queued wrapped in another {@code Runnable} that records
+     * the time it was queued; {@link #remove remove} and {@link
+     * #shutdownNow shutdownNow} accept and return the original task.
      *
      * @return the task queue
      */
@@ -1750,7 +1913,7 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
      * @return true if the task was removed
      */
     public boolean remove(Runnable task) {
-        boolean removed = workQueue.remove(task);
+        boolean removed = workQueue.remove(task) || removeTimestamped(task);
         tryTerminate(); // In case SHUTDOWN and now empty
         return removed;
     }
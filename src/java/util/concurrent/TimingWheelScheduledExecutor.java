@@ -0,0 +1,844 @@
+/*
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+/*
+ *
+ *
+ *
+ *
+ *
+ * Written by Doug Lea with assistance from members of JCP JSR-166
+ * Expert Group and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+package java.util.concurrent;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+import java.util.*;
+
+/**
+ * A {@link ThreadPoolExecutor} that can additionally schedule
+ * commands to run after a given delay, or to execute periodically,
+ * keeping pending tasks in a hierarchical timing wheel rather than
+ * in a priority queue.
+ *
+ * <p>A {@link ScheduledThreadPoolExecutor} keeps its delayed tasks in
+ * a binary heap guarded by a single lock, so that scheduling and
+ * cancelling a task each take time logarithmic in the number of
+ * pending tasks, and all such operations contend for the same
+ * lock. This class instead divides time into <em>ticks</em> of a
+ * fixed duration and files each task in one of a fixed number of
+ * buckets according to the tick at which it becomes due.  Each
+ * bucket has its own lock, and scheduling or cancelling a task takes
+ * constant time regardless of how many tasks are pending. This makes
+ * the class well suited to workloads that schedule large numbers of
+ * timeouts, most of which are cancelled before they expire.
+ *
+ * <p>The price is precision: delays are rounded up to a whole number
+ * of ticks. Delayed tasks execute no sooner than they are enabled,
+ * but may be enabled up to one tick duration later than requested,
+ * in addition to the usual lack of real-time guarantees about when,
+ * after they are enabled, they will commence. Tasks due in the same
+ * tick are enabled in no particular order. The tick duration is set
+ * at construction and defaults to one millisecond.
+ *
+ * <p>A single additional thread, created using this executor's
+ * {@link ThreadFactory} when the first delayed task is scheduled,
+ * advances the wheel. It wakes only once per tick, and only while
+ * delayed tasks are pending. When a task becomes due it is placed on
+ * the work queue and run by one of the {@code corePoolSize} pool
+ * threads. Tasks submitted via {@code execute} or {@code submit} go
+ * directly to the work queue, so {@link #getQueue} contains only tasks
+ * that are ready to run.
+ *
+ * <p>Cancelled tasks are always removed from the wheel immediately.
+ * Upon {@link #shutdown}, tasks still pending in the wheel are
+ * cancelled, and periodic tasks are not rescheduled; tasks that have
+ * already been enabled still run.
+ *
+ * <p>Successive executions of a task scheduled via
+ * {@code scheduleAtFixedRate} or
+ * {@code scheduleWithFixedDelay} do not overlap. While different
+ * executions may be performed by different threads, the effects of
+ * prior executions <a
+ * href="package-summary.html#MemoryVisibility"><i>happen-before</i></a>
+ * those of subsequent ones.
+ *
+ * <p>As with {@code ScheduledThreadPoolExecutor}, this class acts as a
+ * fixed-sized pool using {@code corePoolSize} threads and an
+ * unbounded queue, so adjustments to {@code maximumPoolSize} have no
+ * useful effect.
+ *
+ * @since 1.8
+ */
+public class TimingWheelScheduledExecutor
+        extends ThreadPoolExecutor
+        implements ScheduledExecutorService {
+
+    /*
+     * Overview:
+     *
+     * Time is measured in ticks elapsed since the executor was
+     * constructed. The wheel consists of LEVELS rings of WHEEL_SIZE
+     * buckets; a bucket at level l spans WHEEL_SIZE^l ticks. A task
+     * due at tick d, scheduled when the current tick is c < d, is
+     * filed at the lowest level l such that d and c agree in all
+     * digits (base WHEEL_SIZE) above digit l, in the bucket indexed by
+     * digit l of d. Since ticks are longs and LEVELS * SHIFT >= 64,
+     * every task has a level, so there is no overflow list.
+     *
+     * The ticker thread is the only writer of currentTick. On moving
+     * to tick t it first publishes t, then, if the low digit of t is
+     * zero, empties the bucket indexed by digit l of t at each level
+     * l > 0 for which all lower digits are zero (a "cascade"),
+     * refiling its tasks relative to t; they land at lower levels.
+     * Finally it empties the level 0 bucket for t and enables all
+     * its tasks. Each task is thus moved at most LEVELS times over
+     * its lifetime, and schedule and cancel touch one bucket.
+     *
+     * A scheduling thread reads currentTick, files the task relative
+     * to it, and then re-reads currentTick. If the ticker has moved in
+     * between, the bucket chosen may already have been passed over,
+     * so the task is taken back out (if it is still there) and filed
+     * again. Since the ticker publishes a tick before emptying any
+     * bucket, a task filed relative to the tick that is still current
+     * after filing will be seen.
+     *
+     * A task is in the wheel iff its bucket field is non-null, which
+     * is changed only under that bucket's lock. Tasks removed from a
+     * bucket by the ticker are owned by it until refiled or enabled,
+     * and cancel() only needs to unlink tasks that are in a bucket:
+     * whoever holds a cancelled task that is not in a bucket drops
+     * it, and Bucket.add refuses cancelled tasks.
+     *
+     * The pending count includes all tasks in the wheel or in
+     * transit between buckets, and lets the ticker park indefinitely
+     * while nothing is scheduled. On waking from such a park it jumps
+     * straight to the current tick rather than stepping through the
+     * idle interval, and then refiles anything filed relative to the
+     * stale tick in the meantime.
+     */
+
+    /** Number of bits of the tick count covered by each level */
+    private static final int SHIFT = 6;
+
+    /** Number of buckets per level */
+    private static final int WHEEL_SIZE = 1 << SHIFT;
+
+    private static final int MASK = WHEEL_SIZE - 1;
+
+    /** Number of levels; enough to cover any non-negative long tick */
+    private static final int LEVELS = (63 + SHIFT - 1) / SHIFT;
+
+    /** Default tick duration in nanoseconds */
+    private static final long DEFAULT_TICK_NANOS = 1000L * 1000L;
+
+    /**
+     * Sequence number to break scheduling ties in compareTo.
+     */
+    private static final AtomicLong sequencer = new AtomicLong(0);
+
+    /** The tick duration in nanoseconds */
+    private final long tickNanos;
+
+    /** The nanoTime corresponding to tick zero */
+    private final long origin;
+
+    /** The buckets, level by level */
+    private final Bucket[] buckets;
+
+    /** The latest tick the ticker has moved to; written only by the ticker */
+    private volatile long currentTick;
+
+    /** Number of tasks in the wheel or in transit between buckets */
+    private final AtomicLong pending = new AtomicLong();
+
+    /** The ticker thread, created on first use */
+    private volatile Thread ticker;
+
+    /** Lock held while creating the ticker */
+    private final ReentrantLock tickerLock = new ReentrantLock();
+
+    /**
+     * Returns current nanosecond time.
+     */
+    final long now() {
+        return System.nanoTime();
+    }
+
+    /**
+     * A list of tasks filed for the same slot of the wheel. The
+     * list is intrusive and doubly linked through the tasks' prev and
+     * next fields, so that removal takes constant time.
+     */
+    static final class Bucket extends ReentrantLock {
+        private static final long serialVersionUID = 2249069246763182397L;
+
+        WheelTask<?> head;
+
+        /**
+         * Links in the given task unless it has been cancelled.
+         *
+         * @return true if added
+         */
+        boolean add(WheelTask<?> t) {
+            lock();
+            try {
+                if (t.isCancelled())
+                    return false;
+                WheelTask<?> h = head;
+                t.prev = null;
+                t.next = h;
+                if (h != null)
+                    h.prev = t;
+                head = t;
+                t.bucket = this;
+                return true;
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * Unlinks the given task if it is in this bucket.
+         *
+         * @return true if removed
+         */
+        boolean remove(WheelTask<?> t) {
+            lock();
+            try {
+                if (t.bucket != this)
+                    return false;
+                WheelTask<?> p = t.prev, n = t.next;
+                if (p == null)
+                    head = n;
+                else
+                    p.next = n;
+                if (n != null)
+                    n.prev = p;
+                t.prev = t.next = null;
+                t.bucket = null;
+                return true;
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * Empties this bucket, returning its former contents still
+         * linked through their next fields.
+         */
+        WheelTask<?> drain() {
+            lock();
+            try {
+                WheelTask<?> h = head;
+                head = null;
+                for (WheelTask<?> p = h; p != null; p = p.next) {
+                    p.prev = null;
+                    p.bucket = null;
+                }
+                return h;
+            } finally {
+                unlock();
+            }
+        }
+    }
+
+    private class WheelTask<V>
+            extends FutureTask<V>
+            implements RunnableScheduledFuture<V>,
+                       ExecutorStatisticsSupport.Timestamped {
+
+        /** Sequence number to break ties */
+        private final long sequenceNumber;
+
+        /** The time the task is enabled to execute in nanoTime units */
+        private long time;
+
+        /**
+         * Period in nanoseconds for repeating tasks.  A positive
+         * value indicates fixed-rate execution.  A negative value
+         * indicates fixed-delay execution.  A value of 0 indicates a
+         * non-repeating task.
+         */
+        private final long period;
+
+        /** The tick at which the task becomes due */
+        long deadline;
+
+        /** The bucket holding this task, or null if not in the wheel */
+        volatile Bucket bucket;
+
+        /** Links within bucket, guarded by its lock */
+        WheelTask<?> prev, next;
+
+        /**
+         * Creates a one-shot action with given nanoTime-based trigger time.
+         */
+        WheelTask(Runnable r, V result, long ns) {
+            super(r, result);
+            this.time = ns;
+            this.period = 0;
+            this.deadline = tickOf(ns);
+            this.sequenceNumber = sequencer.getAndIncrement();
+        }
+
+        /**
+         * Creates a periodic action with given nano time and period.
+         */
+        WheelTask(Runnable r, V result, long ns, long period) {
+            super(r, result);
+            this.time = ns;
+            this.period = period;
+            this.deadline = tickOf(ns);
+            this.sequenceNumber = sequencer.getAndIncrement();
+        }
+
+        /**
+         * Creates a one-shot action with given nanoTime-based trigger.
+         */
+        WheelTask(Callable<V> callable, long ns) {
+            super(callable);
+            this.time = ns;
+            this.period = 0;
+            this.deadline = tickOf(ns);
+            this.sequenceNumber = sequencer.getAndIncrement();
+        }
+
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(time - now(), TimeUnit.NANOSECONDS);
+        }
+
+        public long readyTime() {
+            return time;
+        }
+
+        public int compareTo(Delayed other) {
+            if (other == this) // compare zero ONLY if same object
+                return 0;
+            if (other instanceof WheelTask) {
+                WheelTask<?> x = (WheelTask<?>)other;
+                long diff = time - x.time;
+                if (diff < 0)
+                    return -1;
+                else if (diff > 0)
+                    return 1;
+                else if (sequenceNumber < x.sequenceNumber)
+                    return -1;
+                else
+                    return 1;
+            }
+            long d = (getDelay(TimeUnit.NANOSECONDS) -
+                      other.getDelay(TimeUnit.NANOSECONDS));
+            return (d == 0) ? 0 : ((d < 0) ? -1 : 1);
+        }
+
+        /**
+         * Returns true if this is a periodic (not a one-shot) action.
+         *
+         * @return true if periodic
+         */
+        public boolean isPeriodic() {
+            return period != 0;
+        }
+
+        /**
+         * Sets the next time to run for a periodic task.
+         */
+        private void setNextRunTime() {
+            long p = period;
+            if (p > 0)
+                time += p;
+            else
+                time = triggerTime(-p);
+            deadline = tickOf(time);
+        }
+
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            Bucket b;
+            if (cancelled && (b = bucket) != null && b.remove(this))
+                pending.decrementAndGet();
+            return cancelled;
+        }
+
+        /**
+         * Overrides FutureTask version so as to reschedule if periodic.
+         */
+        public void run() {
+            boolean periodic = isPeriodic();
+            if (periodic && isShutdown())
+                cancel(false);
+            else if (!periodic)
+                WheelTask.super.run();
+            else if (WheelTask.super.runAndReset()) {
+                setNextRunTime();
+                reExecutePeriodic(this);
+            }
+        }
+    }
+
+    /**
+     * Creates a new {@code TimingWheelScheduledExecutor} with the
+     * given core pool size and a tick duration of one millisecond.
+     *
+     * @param corePoolSize the number of threads to keep in the pool, even
+     *        if they are idle, unless {@code allowCoreThreadTimeOut} is set
+     * @throws IllegalArgumentException if {@code corePoolSize < 0}
+     */
+    public TimingWheelScheduledExecutor(int corePoolSize) {
+        this(corePoolSize, DEFAULT_TICK_NANOS, TimeUnit.NANOSECONDS,
+             Executors.defaultThreadFactory());
+    }
+
+    /**
+     * Creates a new {@code TimingWheelScheduledExecutor} with the
+     * given core pool size and tick duration.
+     *
+     * @param corePoolSize the number of threads to keep in the pool, even
+     *        if they are idle, unless {@code allowCoreThreadTimeOut} is set
+     * @param tickDuration the granularity to which delays are rounded up
+     * @param unit the time unit of the {@code tickDuration} argument
+     * @throws IllegalArgumentException if {@code corePoolSize < 0}, or
+     *         {@code tickDuration} is not positive
+     * @throws NullPointerException if {@code unit} is null
+     */
+    public TimingWheelScheduledExecutor(int corePoolSize,
+                                        long tickDuration,
+                                        TimeUnit unit) {
+        this(corePoolSize, tickDuration, unit,
+             Executors.defaultThreadFactory());
+    }
+
+    /**
+     * Creates a new {@code TimingWheelScheduledExecutor} with the
+     * given initial parameters.
+     *
+     * @param corePoolSize the number of threads to keep in the pool, even
+     *        if they are idle, unless {@code allowCoreThreadTimeOut} is set
+     * @param tickDuration the granularity to which delays are rounded up
+     * @param unit the time unit of the {@code tickDuration} argument
+     * @param threadFactory the factory to use when the executor
+     *        creates a new thread, including the thread that advances
+     *        the wheel
+     * @throws IllegalArgumentException if {@code corePoolSize < 0}, or
+     *         {@code tickDuration} is not positive
+     * @throws NullPointerException if {@code unit} or
+     *         {@code threadFactory} is null
+     */
+    public TimingWheelScheduledExecutor(int corePoolSize,
+                                        long tickDuration,
+                                        TimeUnit unit,
+                                        ThreadFactory threadFactory) {
+        super(corePoolSize, Integer.MAX_VALUE, 0, TimeUnit.NANOSECONDS,
+              new LinkedBlockingQueue<Runnable>(), threadFactory);
+        long tick = unit.toNanos(tickDuration);
+        if (tick <= 0)
+            throw new IllegalArgumentException();
+        this.tickNanos = tick;
+        this.origin = now();
+        Bucket[] bs = new Bucket[LEVELS * WHEEL_SIZE];
+        for (int i = 0; i < bs.length; ++i)
+            bs[i] = new Bucket();
+        this.buckets = bs;
+    }
+
+    /**
+     * Returns the tick duration, the granularity to which delays are
+     * rounded up.
+     *
+     * @param unit the desired time unit
+     * @return the tick duration
+     */
+    public long getTickDuration(TimeUnit unit) {
+        return unit.convert(tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the trigger time of a delayed action.
+     */
+    private long triggerTime(long delay, TimeUnit unit) {
+        return triggerTime(unit.toNanos((delay < 0) ? 0 : delay));
+    }
+
+    /**
+     * Returns the trigger time of a delayed action.
+     */
+    long triggerTime(long delay) {
+        return now() + Math.min(delay, Long.MAX_VALUE >> 1);
+    }
+
+    /**
+     * Returns the first tick at or after the given nanoTime.
+     */
+    final long tickOf(long ns) {
+        long d = ns - origin;
+        if (d <= 0)
+            return 0L;
+        long t = d / tickNanos;
+        return (t * tickNanos == d) ? t : t + 1;
+    }
+
+    /**
+     * Returns the bucket for a task due at tick d, given current tick c < d.
+     */
+    private Bucket bucketFor(long d, long c) {
+        int level = (63 - Long.numberOfLeadingZeros(d ^ c)) / SHIFT;
+        int index = (int)(d >>> (level * SHIFT)) & MASK;
+        return buckets[level * WHEEL_SIZE + index];
+    }
+
+    /**
+     * Main execution method for delayed or periodic tasks.  If the
+     * executor is shut down, rejects the task. Otherwise files the
+     * task in the wheel, starting the ticker if necessary. If the
+     * executor is shut down while the task is being filed, cancels
+     * it.
+     *
+     * @param task the task
+     */
+    private void delayedExecute(WheelTask<?> task) {
+        if (isShutdown())
+            reject(task);
+        else
+            addPending(task);
+    }
+
+    /**
+     * Reschedules a periodic task after it has run, unless the
+     * executor has been shut down in the meantime, in which case the
+     * task is cancelled.
+     *
+     * @param task the task
+     */
+    void reExecutePeriodic(WheelTask<?> task) {
+        if (isShutdown())
+            task.cancel(false);
+        else
+            addPending(task);
+    }
+
+    private void addPending(WheelTask<?> task) {
+        Thread w = ticker;
+        if (w == null)
+            w = startTicker();
+        if (pending.getAndIncrement() == 0)
+            LockSupport.unpark(w);
+        file(task);
+        if (isShutdown())
+            task.cancel(false);
+    }
+
+    /**
+     * Files a pending task in the bucket for its deadline relative to
+     * the current tick, or enables it if it is already due. Must be
+     * called only for tasks that are counted in pending and are not
+     * in any bucket.
+     */
+    private void file(WheelTask<?> task) {
+        for (;;) {
+            long c = currentTick;
+            long d = task.deadline;
+            if (d <= c) {
+                enable(task);
+                return;
+            }
+            Bucket b = bucketFor(d, c);
+            if (!b.add(task)) {             // cancelled
+                pending.decrementAndGet();
+                return;
+            }
+            // If the ticker has moved on, b may have been passed over;
+            // retake the task (unless the ticker or a canceller already
+            // has) and file it again.
+            if (currentTick == c || !b.remove(task))
+                return;
+        }
+    }
+
+    /**
+     * Hands a due task that has left the wheel to the pool, unless it
+     * has been cancelled or the executor has been shut down.
+     */
+    private void enable(WheelTask<?> task) {
+        pending.decrementAndGet();
+        if (task.isCancelled())
+            return;
+        if (isShutdown()) {
+            task.cancel(false);
+            return;
+        }
+        super.getQueue().add(task);
+        if (isShutdown() && remove(task))
+            task.cancel(false);
+        else
+            ensurePrestart();
+    }
+
+    /**
+     * Refiles or enables each task of a list removed from a bucket.
+     */
+    private void process(WheelTask<?> h) {
+        for (WheelTask<?> p = h, n; p != null; p = n) {
+            n = p.next;
+            p.next = null;
+            if (p.isCancelled())
+                pending.decrementAndGet();
+            else if (isShutdown()) {
+                pending.decrementAndGet();
+                p.cancel(false);
+            }
+            else
+                file(p);
+        }
+    }
+
+    /**
+     * Moves the wheel to tick t, which must be one past the current
+     * tick, cascading higher levels as needed and enabling the tasks
+     * due at t.
+     */
+    private void advance(long t) {
+        currentTick = t;
+        if (((int)t & MASK) == 0) {
+            for (int level = 1; level < LEVELS; ++level) {
+                int index = (int)(t >>> (level * SHIFT)) & MASK;
+                process(buckets[level * WHEEL_SIZE + index].drain());
+                if (index != 0)
+                    break;
+            }
+        }
+        process(buckets[(int)t & MASK].drain());
+    }
+
+    /**
+     * Moves the wheel directly to tick t without visiting the
+     * intervening ticks. Used after the wheel has been idle; any task
+     * filed meanwhile relative to the old tick is refiled.
+     */
+    private void skipTo(long t) {
+        if (t <= currentTick)
+            return;
+        currentTick = t;
+        if (pending.get() != 0) {
+            for (Bucket b : buckets)
+                process(b.drain());
+        }
+    }
+
+    /**
+     * Returns the number of whole ticks elapsed at the given nanoTime.
+     */
+    private long elapsedTicks(long ns) {
+        long d = ns - origin;
+        return (d <= 0) ? 0L : d / tickNanos;
+    }
+
+    /**
+     * Main loop of the ticker thread.
+     */
+    final void runTicker() {
+        while (!isShutdown()) {
+            long now = now();
+            long c = currentTick;
+            if (c < elapsedTicks(now))
+                advance(c + 1);
+            else if (pending.get() == 0) {
+                LockSupport.park(this);
+                skipTo(elapsedTicks(now()));
+            }
+            else
+                LockSupport.parkNanos(this, origin + (c + 1) * tickNanos - now);
+        }
+    }
+
+    /**
+     * Creates and starts the ticker thread if not already done.
+     *
+     * @return the ticker thread
+     */
+    private Thread startTicker() {
+        final ReentrantLock tickerLock = this.tickerLock;
+        tickerLock.lock();
+        try {
+            Thread w = ticker;
+            if (w == null) {
+                w = getThreadFactory().newThread(new Runnable() {
+                    public void run() { runTicker(); }
+                });
+                if (w == null)
+                    throw new RejectedExecutionException();
+                w.start();
+                ticker = w;
+            }
+            return w;
+        } finally {
+            tickerLock.unlock();
+        }
+    }
+
+    /**
+     * Removes all tasks from the wheel, returning those not
+     * cancelled, and wakes up the ticker so that it can exit.
+     */
+    private List<Runnable> drainWheel() {
+        ArrayList<Runnable> tasks = new ArrayList<Runnable>();
+        for (Bucket b : buckets) {
+            for (WheelTask<?> p = b.drain(), n; p != null; p = n) {
+                n = p.next;
+                p.next = null;
+                pending.decrementAndGet();
+                if (!p.isCancelled())
+                    tasks.add(p);
+            }
+        }
+        LockSupport.unpark(ticker);
+        return tasks;
+    }
+
+    /**
+     * Cancels all tasks still pending in the wheel.
+     */
+    @Override void onShutdown() {
+        for (Runnable r : drainWheel())
+            ((Future<?>)r).cancel(false);
+    }
+
+    /**
+     * @throws RejectedExecutionException {@inheritDoc}
+     * @throws NullPointerException       {@inheritDoc}
+     */
+    public ScheduledFuture<?> schedule(Runnable command,
+                                       long delay,
+                                       TimeUnit unit) {
+        if (command == null || unit == null)
+            throw new NullPointerException();
+        WheelTask<Void> t =
+            new WheelTask<Void>(command, null, triggerTime(delay, unit));
+        delayedExecute(t);
+        return t;
+    }
+
+    /**
+     * @throws RejectedExecutionException {@inheritDoc}
+     * @throws NullPointerException       {@inheritDoc}
+     */
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable,
+                                           long delay,
+                                           TimeUnit unit) {
+        if (callable == null || unit == null)
+            throw new NullPointerException();
+        WheelTask<V> t =
+            new WheelTask<V>(callable, triggerTime(delay, unit));
+        delayedExecute(t);
+        return t;
+    }
+
+    /**
+     * @throws RejectedExecutionException {@inheritDoc}
+     * @throws NullPointerException       {@inheritDoc}
+     * @throws IllegalArgumentException   {@inheritDoc}
+     */
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command,
+                                                  long initialDelay,
+                                                  long period,
+                                                  TimeUnit unit) {
+        if (command == null || unit == null)
+            throw new NullPointerException();
+        if (period <= 0)
+            throw new IllegalArgumentException();
+        WheelTask<Void> t =
+            new WheelTask<Void>(command,
+                                null,
+                                triggerTime(initialDelay, unit),
+                                unit.toNanos(period));
+        delayedExecute(t);
+        return t;
+    }
+
+    /**
+     * @throws RejectedExecutionException {@inheritDoc}
+     * @throws NullPointerException       {@inheritDoc}
+     * @throws IllegalArgumentException   {@inheritDoc}
+     */
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command,
+                                                     long initialDelay,
+                                                     long delay,
+                                                     TimeUnit unit) {
+        if (command == null || unit == null)
+            throw new NullPointerException();
+        if (delay <= 0)
+            throw new IllegalArgumentException();
+        WheelTask<Void> t =
+            new WheelTask<Void>(command,
+                                null,
+                                triggerTime(initialDelay, unit),
+                                unit.toNanos(-delay));
+        delayedExecute(t);
+        return t;
+    }
+
+    /**
+     * Initiates an orderly shutdown in which previously enabled tasks
+     * are executed, but no new tasks will be accepted. Tasks still
+     * pending in the wheel are cancelled, and periodic tasks are not
+     * rescheduled.  Invocation has no additional effect if already
+     * shut down.
+     *
+     * <p>This method does not wait for previously submitted tasks to
+     * complete execution.  Use {@link #awaitTermination awaitTermination}
+     * to do that.
+     *
+     * @throws SecurityException {@inheritDoc}
+     */
+    public void shutdown() {
+        super.shutdown();
+    }
+
+    /**
+     * Attempts to stop all actively executing tasks, halts the
+     * processing of waiting tasks, and returns a list of the tasks
+     * that were awaiting execution, whether enabled or still pending
+     * in the wheel.
+     *
+     * <p>This method does not wait for actively executing tasks to
+     * terminate.  Use {@link #awaitTermination awaitTermination} to
+     * do that.
+     *
+     * <p>There are no guarantees beyond best-effort attempts to stop
+     * processing actively executing tasks.  This implementation
+     * cancels tasks via {@link Thread#interrupt}, so any task that
+     * fails to respond to interrupts may never terminate.
+     *
+     * @return list of tasks that never commenced execution.
+     *         Each element of this list is a {@link ScheduledFuture}.
+     * @throws SecurityException {@inheritDoc}
+     */
+    public List<Runnable> shutdownNow() {
+        List<Runnable> tasks = super.shutdownNow();
+        tasks.addAll(drainWheel());
+        return tasks;
+    }
+}
@@ -0,0 +1,719 @@
+/*
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+/*
+ *
+ *
+ *
+ *
+ *
+ * Written by Doug Lea with assistance from members of JCP JSR-166
+ * Expert Group and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+package java.util.concurrent;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An unbounded {@linkplain BlockingQueue blocking queue} that spreads
+ * its elements over a number of independently locked <em>lanes</em>,
+ * one per thread slot, and lets consumers take elements from other
+ * lanes when their own is empty (<em>work stealing</em>).
+ *
+ * <p>This class is intended mainly as the work queue of a {@link
+ * ThreadPoolExecutor} that runs large numbers of short tasks. With a
+ * {@link LinkedBlockingQueue}, every submission and every task
+ * retrieval contends for one of two locks shared by all threads.
+ * Here, a thread retrieving an element looks first in the lane
+ * associated with that thread and only then in the others. A consumer
+ * inserting an element adds it to its own lane, so that tasks that
+ * submit further tasks mostly touch distinct locks; any other thread
+ * adds it to a randomly chosen lane, so that elements from a single
+ * producer are spread over all consumers. Used
+ * this way the executor keeps its usual configuration (core and
+ * maximum pool sizes, keep-alive, rejection handler and hooks):
+ *
+ *  <pre> {@code
+ * ExecutorService pool =
+ *   new ThreadPoolExecutor(n, n, 0L, TimeUnit.MILLISECONDS,
+ *                          new WorkStealingBlockingQueue<Runnable>(n));}</pre>
+ *
+ * See also {@link Executors#newWorkStealingThreadPool(int)}.
+ *
+ * <p>Elements in the same lane are retrieved in FIFO order, but there
+ * is no ordering among elements in different lanes, so this queue as
+ * a whole is not FIFO: an element may be retrieved before another
+ * that was inserted earlier by a different thread. The number of
+ * lanes is a power of two fixed at construction; consumers are
+ * assigned to lanes by thread id, so more consumers than lanes share
+ * lanes.
+ *
+ * <p>Since the queue is unbounded, {@code put} never blocks and
+ * {@link #remainingCapacity} always returns {@code Integer.MAX_VALUE}.
+ * The {@code size}, {@code peek}, {@code toArray} and bulk operations
+ * visit the lanes one at a time, so they are not atomic and may not
+ * reflect concurrent insertions and removals. The iterator is
+ * "weakly consistent": it traverses a snapshot of the elements as
+ * taken by {@link #toArray()}.
+ *
+ * <p>This class and its iterator implement all of the
+ * <em>optional</em> methods of the {@link Collection} and {@link
+ * Iterator} interfaces.
+ *
+ * @since 1.8
+ * @param <E> the type of elements held in this collection
+ */
+public class WorkStealingBlockingQueue<E> extends AbstractQueue<E>
+        implements BlockingQueue<E>, java.io.Serializable {
+    private static final long serialVersionUID = -3158521649382164071L;
+
+    /*
+     * Each lane is an ArrayDeque guarded by its own lock, with a
+     * volatile count that lets scans skip empty lanes without
+     * locking. Consumers scan starting at their own lane; in a first
+     * pass other lanes are only tried (tryLock), so that a consumer
+     * never waits behind another thread just to look for work.
+     *
+     * Consumers that find nothing block on a single condition, under
+     * idleLock, which is only touched when some consumer is idle.
+     * A consumer increments idleCount before its final (fully
+     * locked) scan, and a producer reads idleCount after updating a
+     * lane count. Both are volatile, so either the producer sees the
+     * waiter and signals, or the waiter's scan sees the element.
+     *
+     * A lane records the id of the last thread that retrieved elements
+     * with it as home lane. Only that thread inserts into the lane
+     * directly; other threads, such as an external thread submitting
+     * all the tasks of an executor, pick a lane with ThreadLocalRandom,
+     * as otherwise they would fill one lane and leave every other
+     * consumer stealing from it. Thread ids are not reused, so a stale
+     * id only costs a randomly placed insertion.
+     */
+
+    /** Maximum number of lanes */
+    private static final int MAX_LANES = 1 << 16;
+
+    /** A lane: a deque with its own lock */
+    static final class Lane<E> extends ReentrantLock {
+        private static final long serialVersionUID = -4394187926306843406L;
+
+        final ArrayDeque<E> items = new ArrayDeque<E>();
+
+        /** Number of items, written under lock, read without */
+        volatile int count;
+
+        /** Number of items taken by other threads' scans, written under lock */
+        volatile long steals;
+
+        /** Id of the last thread that consumed with this as home lane */
+        transient volatile long consumer;
+
+        void add(E e) {
+            lock();
+            try {
+                items.addLast(e);
+                count = items.size();
+            } finally {
+                unlock();
+            }
+        }
+
+        /** Removes and returns the first item; call with lock held */
+        E pollLocked() {
+            E x = items.pollFirst();
+            if (x != null)
+                count = items.size();
+            return x;
+        }
+    }
+
+    /** The lanes; length is a power of two */
+    private final Lane<E>[] lanes;
+
+    /** Lock held by consumers waiting for elements */
+    private final ReentrantLock idleLock = new ReentrantLock();
+
+    /** Wait queue for waiting takes */
+    private final Condition notEmpty = idleLock.newCondition();
+
+    /** Number of consumers waiting or about to wait; written under idleLock */
+    private transient volatile int idleCount;
+
+    /**
+     * Creates a {@code WorkStealingBlockingQueue} with one lane per
+     * available processor.
+     */
+    public WorkStealingBlockingQueue() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a {@code WorkStealingBlockingQueue} with at least the
+     * given number of lanes. Typically this is the number of threads
+     * that will retrieve elements from the queue.
+     *
+     * @param parallelism the minimum number of lanes
+     * @throws IllegalArgumentException if {@code parallelism} is not
+     *         positive
+     */
+    @SuppressWarnings("unchecked")
+    public WorkStealingBlockingQueue(int parallelism) {
+        if (parallelism <= 0)
+            throw new IllegalArgumentException();
+        int n = 1;
+        while (n < parallelism && n < MAX_LANES)
+            n <<= 1;
+        Lane<E>[] ls = (Lane<E>[]) new Lane<?>[n];
+        for (int i = 0; i < n; ++i)
+            ls[i] = new Lane<E>();
+        this.lanes = ls;
+    }
+
+    /**
+     * Creates a {@code WorkStealingBlockingQueue} with one lane per
+     * available processor, initially containing the elements of the
+     * given collection, added in traversal order of the collection's
+     * iterator.
+     *
+     * @param c the collection of elements to initially contain
+     * @throws NullPointerException if the specified collection or any
+     *         of its elements are null
+     */
+    public WorkStealingBlockingQueue(Collection<? extends E> c) {
+        this();
+        for (E e : c)
+            add(e);
+    }
+
+    /**
+     * Returns the index of the lane of the current thread.
+     */
+    private int home() {
+        return (int)Thread.currentThread().getId() & (lanes.length - 1);
+    }
+
+    /**
+     * Returns the index of the lane into which the current thread
+     * inserts: its own lane if it is the lane's consumer, otherwise a
+     * random one.
+     */
+    private int insertionLane() {
+        long id = Thread.currentThread().getId();
+        int mask = lanes.length - 1;
+        int h = (int)id & mask;
+        if (lanes[h].consumer == id)
+            return h;
+        return ThreadLocalRandom.current().nextInt(mask + 1);
+    }
+
+    /**
+     * Records the current thread as consumer of its lane.
+     */
+    private void claimHome() {
+        long id = Thread.currentThread().getId();
+        Lane<E> l = lanes[(int)id & (lanes.length - 1)];
+        if (l.consumer != id)
+            l.consumer = id;
+    }
+
+    /**
+     * Signals a waiting take. Called only from put/offer, when some
+     * consumer may be waiting.
+     */
+    private void signalNotEmpty() {
+        final ReentrantLock idleLock = this.idleLock;
+        idleLock.lock();
+        try {
+            notEmpty.signal();
+        } finally {
+            idleLock.unlock();
+        }
+    }
+
+    /**
+     * Removes and returns an element from the first non-empty lane,
+     * starting at the current thread's lane.
+     *
+     * @param wait if false, skips lanes whose lock is not free
+     * @return the element, or null if none found
+     */
+    private E scan(boolean wait) {
+        final Lane<E>[] lanes = this.lanes;
+        int mask = lanes.length - 1;
+        int h = home();
+        for (int i = 0; i <= mask; ++i) {
+            Lane<E> l = lanes[(h + i) & mask];
+            if (l.count == 0)
+                continue;
+            if (i == 0 || wait)
+                l.lock();
+            else if (!l.tryLock())
+                continue;
+            try {
+                E x = l.pollLocked();
+                if (x != null) {
+                    if (i != 0)
+                        l.steals++;
+                    return x;
+                }
+            } finally {
+                l.unlock();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns an estimate of the number of elements that were taken
+     * from a lane other than the taking thread's own.
+     */
+    long getStealCount() {
+        long n = 0L;
+        for (Lane<E> l : lanes)
+            n += l.steals;
+        return n;
+    }
+
+    /**
+     * Removes an element without blocking on any lane if possible,
+     * falling back to a fully locked scan.
+     */
+    private E pollAny() {
+        E x = scan(false);
+        return (x != null) ? x : scan(true);
+    }
+
+    /**
+     * Wakes another waiting consumer if elements remain after the
+     * current one has taken one. Call with idleLock held.
+     */
+    private void cascadeSignal() {
+        if (idleCount > 0 && !isEmpty())
+            notEmpty.signal();
+    }
+
+    /**
+     * Inserts the specified element into this queue.
+     *
+     * @return {@code true} (as specified by {@link Collection#add})
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean add(E e) {
+        return offer(e);
+    }
+
+    /**
+     * Inserts the specified element into the lane of the current
+     * thread if it is a consumer of this queue, and otherwise into a
+     * random lane. As the queue is unbounded, this method will never
+     * return {@code false}.
+     *
+     * @return {@code true} (as specified by {@link Queue#offer})
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean offer(E e) {
+        if (e == null) throw new NullPointerException();
+        lanes[insertionLane()].add(e);
+        if (idleCount > 0)
+            signalNotEmpty();
+        return true;
+    }
+
+    /**
+     * Inserts the specified element into this queue. As the queue is
+     * unbounded, this method will never block.
+     *
+     * @throws NullPointerException if the specified element is null
+     */
+    public void put(E e) {
+        offer(e); // never need to block
+    }
+
+    /**
+     * Inserts the specified element into this queue. As the queue is
+     * unbounded, this method will never block or return {@code false}.
+     *
+     * @param e the element to add
+     * @param timeout This parameter is ignored as the method never blocks
+     * @param unit This parameter is ignored as the method never blocks
+     * @return {@code true} (as specified by
+     *  {@link BlockingQueue#offer(Object,long,TimeUnit) BlockingQueue.offer})
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean offer(E e, long timeout, TimeUnit unit) {
+        return offer(e); // never need to block
+    }
+
+    public E poll() {
+        claimHome();
+        return pollAny();
+    }
+
+    public E take() throws InterruptedException {
+        claimHome();
+        E x = scan(false);
+        if (x != null)
+            return x;
+        final ReentrantLock idleLock = this.idleLock;
+        idleLock.lockInterruptibly();
+        try {
+            ++idleCount;
+            try {
+                while ((x = scan(true)) == null)
+                    notEmpty.await();
+            } finally {
+                --idleCount;
+            }
+            cascadeSignal();
+        } finally {
+            idleLock.unlock();
+        }
+        return x;
+    }
+
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        claimHome();
+        E x = scan(false);
+        if (x != null)
+            return x;
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock idleLock = this.idleLock;
+        idleLock.lockInterruptibly();
+        try {
+            ++idleCount;
+            try {
+                while ((x = scan(true)) == null && nanos > 0)
+                    nanos = notEmpty.awaitNanos(nanos);
+            } finally {
+                --idleCount;
+            }
+            if (x != null)
+                cascadeSignal();
+        } finally {
+            idleLock.unlock();
+        }
+        return x;
+    }
+
+    public E peek() {
+        final Lane<E>[] lanes = this.lanes;
+        int mask = lanes.length - 1;
+        int h = home();
+        for (int i = 0; i <= mask; ++i) {
+            Lane<E> l = lanes[(h + i) & mask];
+            if (l.count == 0)
+                continue;
+            l.lock();
+            try {
+                E x = l.items.peekFirst();
+                if (x != null)
+                    return x;
+            } finally {
+                l.unlock();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of elements in this queue.
+     *
+     * @return the number of elements in this queue
+     */
+    public int size() {
+        long n = 0;
+        for (Lane<E> l : lanes)
+            n += l.count;
+        return (n < Integer.MAX_VALUE) ? (int)n : Integer.MAX_VALUE;
+    }
+
+    public boolean isEmpty() {
+        for (Lane<E> l : lanes)
+            if (l.count != 0)
+                return false;
+        return true;
+    }
+
+    /**
+     * Always returns {@code Integer.MAX_VALUE} because
+     * a {@code WorkStealingBlockingQueue} is not capacity constrained.
+     * @return {@code Integer.MAX_VALUE} always
+     */
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Removes a single instance of the specified element from this queue,
+     * if it is present.  More formally, removes an element {@code e} such
+     * that {@code o.equals(e)}, if this queue contains one or more such
+     * elements.
+     * Returns {@code true} if this queue contained the specified element
+     * (or equivalently, if this queue changed as a result of the call).
+     *
+     * @param o element to be removed from this queue, if present
+     * @return {@code true} if this queue changed as a result of the call
+     */
+    public boolean remove(Object o) {
+        if (o == null) return false;
+        for (Lane<E> l : lanes) {
+            if (l.count == 0)
+                continue;
+            l.lock();
+            try {
+                if (l.items.remove(o)) {
+                    l.count = l.items.size();
+                    return true;
+                }
+            } finally {
+                l.unlock();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Identity-based version for use in Itr.remove
+     */
+    void removeEQ(Object o) {
+        for (Lane<E> l : lanes) {
+            l.lock();
+            try {
+                for (Iterator<E> it = l.items.iterator(); it.hasNext(); ) {
+                    if (it.next() == o) {
+                        it.remove();
+                        l.count = l.items.size();
+                        return;
+                    }
+                }
+            } finally {
+                l.unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns {@code true} if this queue contains the specified element.
+     * More formally, returns {@code true} if and only if this queue contains
+     * at least one element {@code e} such that {@code o.equals(e)}.
+     *
+     * @param o object to be checked for containment in this queue
+     * @return {@code true} if this queue contains the specified element
+     */
+    public boolean contains(Object o) {
+        if (o == null) return false;
+        for (Lane<E> l : lanes) {
+            l.lock();
+            try {
+                if (l.items.contains(o))
+                    return true;
+            } finally {
+                l.unlock();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns an array containing all of the elements in this queue,
+     * lane by lane.
+     *
+     * @return an array containing all of the elements in this queue
+     */
+    public Object[] toArray() {
+        ArrayList<Object> all = new ArrayList<Object>();
+        for (Lane<E> l : lanes) {
+            l.lock();
+            try {
+                all.addAll(l.items);
+            } finally {
+                l.unlock();
+            }
+        }
+        return all.toArray();
+    }
+
+    /**
+     * Returns an array containing all of the elements in this queue,
+     * lane by lane; the runtime type of the returned array is that of
+     * the specified array.
+     *
+     * @param a the array into which the elements of the queue are to
+     *          be stored, if it is big enough; otherwise, a new array of the
+     *          same runtime type is allocated for this purpose
+     * @return an array containing all of the elements in this queue
+     * @throws ArrayStoreException if the runtime type of the specified array
+     *         is not a supertype of the runtime type of every element in
+     *         this queue
+     * @throws NullPointerException if the specified array is null
+     */
+    public <T> T[] toArray(T[] a) {
+        ArrayList<E> all = new ArrayList<E>();
+        for (Lane<E> l : lanes) {
+            l.lock();
+            try {
+                all.addAll(l.items);
+            } finally {
+                l.unlock();
+            }
+        }
+        return all.toArray(a);
+    }
+
+    /**
+     * Atomically removes all of the elements of each lane in turn.
+     * The queue will be empty after this call returns, unless
+     * elements were concurrently added.
+     */
+    public void clear() {
+        for (Lane<E> l : lanes) {
+            l.lock();
+            try {
+                l.items.clear();
+                l.count = 0;
+            } finally {
+                l.unlock();
+            }
+        }
+    }
+
+    /**
+     * @throws UnsupportedOperationException {@inheritDoc}
+     * @throws ClassCastException            {@inheritDoc}
+     * @throws NullPointerException          {@inheritDoc}
+     * @throws IllegalArgumentException      {@inheritDoc}
+     */
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @throws UnsupportedOperationException {@inheritDoc}
+     * @throws ClassCastException            {@inheritDoc}
+     * @throws NullPointerException          {@inheritDoc}
+     * @throws IllegalArgumentException      {@inheritDoc}
+     */
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == null)
+            throw new NullPointerException();
+        if (c == this)
+            throw new IllegalArgumentException();
+        int n = 0;
+        for (Lane<E> l : lanes) {
+            if (n >= maxElements)
+                break;
+            if (l.count == 0)
+                continue;
+            l.lock();
+            try {
+                E x;
+                while (n < maxElements && (x = l.pollLocked()) != null) {
+                    c.add(x);
+                    ++n;
+                }
+            } finally {
+                l.unlock();
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Returns an iterator over the elements in this queue. The
+     * iterator does not return the elements in any particular order.
+     *
+     * <p>The returned iterator is a "weakly consistent" iterator that
+     * will never throw {@link java.util.ConcurrentModificationException
+     * ConcurrentModificationException}, and guarantees to traverse
+     * elements as they existed upon construction of the iterator, and
+     * may (but is not guaranteed to) reflect any modifications
+     * subsequent to construction.
+     *
+     * @return an iterator over the elements in this queue
+     */
+    public Iterator<E> iterator() {
+        return new Itr(toArray());
+    }
+
+    /**
+     * Snapshot iterator that works off copy of the lanes' elements.
+     */
+    final class Itr implements Iterator<E> {
+        final Object[] array; // Array of all elements
+        int cursor;           // index of next element to return
+        int lastRet;          // index of last element, or -1 if no such
+
+        Itr(Object[] array) {
+            lastRet = -1;
+            this.array = array;
+        }
+
+        public boolean hasNext() {
+            return cursor < array.length;
+        }
+
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (cursor >= array.length)
+                throw new NoSuchElementException();
+            lastRet = cursor;
+            return (E)array[cursor++];
+        }
+
+        public void remove() {
+            if (lastRet < 0)
+                throw new IllegalStateException();
+            removeEQ(array[lastRet]);
+            lastRet = -1;
+        }
+    }
+
+    /**
+     * Saves this queue to a stream (that is, serializes it), holding
+     * the lock of every lane so that a consistent state is written.
+     */
+    private void writeObject(java.io.ObjectOutputStream s)
+        throws java.io.IOException {
+        int locked = 0;
+        try {
+            for (Lane<E> l : lanes) {
+                l.lock();
+                ++locked;
+            }
+            s.defaultWriteObject();
+        } finally {
+            for (int i = 0; i < locked; ++i)
+                lanes[i].unlock();
+        }
+    }
+}
@@ -296,7 +296,10 @@ public abstract class AbstractQueuedSynchronizer
      * Creates a new <tt>AbstractQueuedSynchronizer</tt> instance
      * with initial synchronization state of zero.
      */
-    protected AbstractQueuedSynchronizer() { }
+    protected AbstractQueuedSynchronizer() {
+        if (ContentionSampler.enabled)
+            contention = ContentionSampler.allocated(this);
+    }
 
     /**
      * Wait queue node class.
@@ -532,6 +535,13 @@ public abstract class AbstractQueuedSynchronizer
      */
     private volatile int state;
 
+    /**
+     * Contention statistics, created when this synchronizer is
+     * constructed or first sampled while the contention monitor is
+     * enabled; null otherwise.
+     */
+    private transient volatile ContentionSampler.Stats contention;
+
     /**
      * Returns the current value of synchronization state.
      * This operation has memory semantics of a <tt>volatile</tt> read.
@@ -575,6 +585,60 @@ public abstract class AbstractQueuedSynchronizer
      */
     static final long spinForTimeoutThreshold = 1000L;
 
+    /** Number of CPUS, to place bounds on some sizings */
+    static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The largest number of times a thread at the front of the queue
+     * retries an acquire before parking, when spinning adaptively.
+     * Spinning is useless on uniprocessors.
+     */
+    static final int MAX_ADAPTIVE_SPINS = (NCPU < 2) ? 0 : 1 << 10;
+
+    /**
+     * The smallest number of adaptive spins, so that a synchronizer
+     * whose hold times have been long keeps probing cheaply whether
+     * they have become short again.
+     */
+    static final int MIN_ADAPTIVE_SPINS = (NCPU < 2) ? 0 : 16;
+
+    /**
+     * The number of spins between yields. Yielding now and then lets
+     * the holder of the synchronizer run if it has been descheduled,
+     * for example because there are more runnable threads than
+     * processors.  A power of two.
+     */
+    static final int SPINS_PER_YIELD = 1 << 6;
+
+    /**
+     * spinPolicy value selecting the default policy: adaptive spinning
+     * for exclusive acquires, no spinning for shared acquires, which
+     * are typically of resources held for long periods (permits,
+     * latches) and may have many waiters at the front of the queue.
+     * Zero, so that it is also the policy after deserialization.
+     */
+    private static final int SPIN_DEFAULT = 0;
+
+    /** spinPolicy value selecting adaptive spinning in both modes */
+    private static final int SPIN_ADAPTIVE = -1;
+
+    /** spinPolicy value disabling spinning */
+    private static final int SPIN_NONE = -2;
+
+    /**
+     * The spin policy: one of SPIN_DEFAULT, SPIN_ADAPTIVE or
+     * SPIN_NONE, or a positive fixed number of spins.
+     */
+    private transient int spinPolicy = SPIN_DEFAULT;
+
+    /**
+     * The current number of adaptive spins. Updated racily, as it is
+     * only a hint: it moves towards twice the number of spins after
+     * which recent acquires succeeded, and decays when spinning fails,
+     * thereby tracking how long the synchronizer is typically held.
+     */
+    private transient int adaptiveSpins = 64;
+
     /**
      * Inserts node into queue, initializing if necessary. See picture above.
      * @param node the node to insert
@@ -818,6 +882,28 @@ public abstract class AbstractQueuedSynchronizer
         return false;
     }
 
+    /**
+     * Starts a sample of a contended acquire that has just been added
+     * to the queue, if the contention monitor is enabled and chooses
+     * to sample it. The queue length recorded excludes the current
+     * thread.
+     *
+     * @return the sample, or null if not sampled
+     */
+    private ContentionSampler.Sample sampleContention() {
+        if (!ContentionSampler.enabled || !ContentionSampler.sample())
+            return null;
+        ContentionSampler.Stats stats = contention;
+        if (stats == null) {
+            stats = ContentionSampler.untagged(this);
+            if (!unsafe.compareAndSwapObject(this, contentionOffset,
+                                             null, stats))
+                stats = contention;
+        }
+        return new ContentionSampler.Sample(stats,
+                                           Math.max(getQueueLength() - 1, 0));
+    }
+
     /**
      * Convenience method to interrupt current thread.
      */
@@ -835,6 +921,89 @@ public abstract class AbstractQueuedSynchronizer
         return Thread.interrupted();
     }
 
+    /**
+     * Returns the number of times to retry an acquire before parking.
+     *
+     * @param shared whether the acquire is in shared mode
+     */
+    private int spinLimit(boolean shared) {
+        int policy = spinPolicy;
+        if (policy > 0)
+            return policy;
+        if (policy == SPIN_NONE || (policy == SPIN_DEFAULT && shared))
+            return 0;
+        int spins = adaptiveSpins;
+        if (spins < MIN_ADAPTIVE_SPINS)
+            return MIN_ADAPTIVE_SPINS;
+        return (spins > MAX_ADAPTIVE_SPINS) ? MAX_ADAPTIVE_SPINS : spins;
+    }
+
+    /**
+     * Updates the adaptive spin count after spinning.
+     *
+     * @param spins the number of spins performed
+     * @param acquired whether spinning ended in an acquire
+     */
+    private void adaptSpins(int spins, boolean acquired) {
+        int policy = spinPolicy;
+        if (policy == SPIN_DEFAULT || policy == SPIN_ADAPTIVE) {
+            int s = adaptiveSpins;
+            if (acquired)
+                s += ((spins << 1) - s) >> 2;
+            else
+                s -= s >> 2;
+            adaptiveSpins = s;
+        }
+    }
+
+    /**
+     * Retries an exclusive acquire for a thread at the front of the
+     * queue that is about to park, in case the synchronizer is about
+     * to be released. Spinning avoids the cost of parking and of
+     * being unparked when hold times are short. The thread yields
+     * every SPINS_PER_YIELD spins, in case the holder is not running.
+     *
+     * @param arg the acquire argument
+     * @return {@code true} if acquired
+     */
+    private boolean spinForAcquire(int arg) {
+        int limit = spinLimit(false);
+        for (int i = 1; i <= limit; ++i) {
+            if (tryAcquire(arg)) {
+                adaptSpins(i, true);
+                return true;
+            }
+            if ((i & (SPINS_PER_YIELD - 1)) == 0)
+                Thread.yield();
+        }
+        if (limit > 0)
+            adaptSpins(limit, false);
+        return false;
+    }
+
+    /**
+     * Shared mode version of spinForAcquire.
+     *
+     * @param arg the acquire argument
+     * @return the result of the last tryAcquireShared, negative if
+     *         not acquired
+     */
+    private int spinForAcquireShared(int arg) {
+        int limit = spinLimit(true);
+        for (int i = 1; i <= limit; ++i) {
+            int r = tryAcquireShared(arg);
+            if (r >= 0) {
+                adaptSpins(i, true);
+                return r;
+            }
+            if ((i & (SPINS_PER_YIELD - 1)) == 0)
+                Thread.yield();
+        }
+        if (limit > 0)
+            adaptSpins(limit, false);
+        return -1;
+    }
+
     /*
      * Various flavors of acquire, varying in exclusive/shared and
      * control modes.  Each is mostly the same, but annoyingly
@@ -858,7 +1027,9 @@ public abstract class AbstractQueuedSynchronizer
             boolean interrupted = false;
             for (;;) {
                 final Node p = node.predecessor();
-                if (p == head && tryAcquire(arg)) {
+                if (p == head && (tryAcquire(arg) ||
+                                  (p.waitStatus == Node.SIGNAL &&
+                                   spinForAcquire(arg)))) {
                     setHead(node);
                     p.next = null; // help GC
                     failed = false;
@@ -881,13 +1052,18 @@ public abstract class AbstractQueuedSynchronizer
     private void doAcquireInterruptibly(int arg)
         throws InterruptedException {
         final Node node = addWaiter(Node.EXCLUSIVE);
+        final ContentionSampler.Sample sample = sampleContention();
         boolean failed = true;
         try {
             for (;;) {
                 final Node p = node.predecessor();
-                if (p == head && tryAcquire(arg)) {
+                if (p == head && (tryAcquire(arg) ||
+                                  (p.waitStatus == Node.SIGNAL &&
+                                   spinForAcquire(arg)))) {
                     setHead(node);
                     p.next = null; // help GC
+                    if (sample != null)
+                        sample.end();
                     failed = false;
                     return;
                 }
@@ -912,13 +1088,18 @@ public abstract class AbstractQueuedSynchronizer
         throws InterruptedException {
         long lastTime = System.nanoTime();
         final Node node = addWaiter(Node.EXCLUSIVE);
+        final ContentionSampler.Sample sample = sampleContention();
         boolean failed = true;
         try {
             for (;;) {
                 final Node p = node.predecessor();
-                if (p == head && tryAcquire(arg)) {
+                if (p == head && (tryAcquire(arg) ||
+                                  (p.waitStatus == Node.SIGNAL &&
+                                   spinForAcquire(arg)))) {
                     setHead(node);
                     p.next = null; // help GC
+                    if (sample != null)
+                        sample.end();
                     failed = false;
                     return true;
                 }
@@ -945,6 +1126,7 @@ public abstract class AbstractQueuedSynchronizer
      */
     private void doAcquireShared(int arg) {
         final Node node = addWaiter(Node.SHARED);
+        final ContentionSampler.Sample sample = sampleContention();
         boolean failed = true;
         try {
             boolean interrupted = false;
@@ -952,11 +1134,15 @@ public abstract class AbstractQueuedSynchronizer
                 final Node p = node.predecessor();
                 if (p == head) {
                     int r = tryAcquireShared(arg);
+                    if (r < 0 && p.waitStatus == Node.SIGNAL)
+                        r = spinForAcquireShared(arg);
                     if (r >= 0) {
                         setHeadAndPropagate(node, r);
                         p.next = null; // help GC
                         if (interrupted)
                             selfInterrupt();
+                        if (sample != null)
+                            sample.end();
                         failed = false;
                         return;
                     }
@@ -978,15 +1164,20 @@ public abstract class AbstractQueuedSynchronizer
     private void doAcquireSharedInterruptibly(int arg)
         throws InterruptedException {
         final Node node = addWaiter(Node.SHARED);
+        final ContentionSampler.Sample sample = sampleContention();
         boolean failed = true;
         try {
             for (;;) {
                 final Node p = node.predecessor();
                 if (p == head) {
                     int r = tryAcquireShared(arg);
+                    if (r < 0 && p.waitStatus == Node.SIGNAL)
+                        r = spinForAcquireShared(arg);
                     if (r >= 0) {
                         setHeadAndPropagate(node, r);
                         p.next = null; // help GC
+                        if (sample != null)
+                            sample.end();
                         failed = false;
                         return;
                     }
@@ -1013,15 +1204,20 @@ public abstract class AbstractQueuedSynchronizer
 
         long lastTime = System.nanoTime();
         final Node node = addWaiter(Node.SHARED);
+        final ContentionSampler.Sample sample = sampleContention();
         boolean failed = true;
         try {
             for (;;) {
                 final Node p = node.predecessor();
                 if (p == head) {
                     int r = tryAcquireShared(arg);
+                    if (r < 0 && p.waitStatus == Node.SIGNAL)
+                        r = spinForAcquireShared(arg);
                     if (r >= 0) {
                         setHeadAndPropagate(node, r);
                         p.next = null; // help GC
+                        if (sample != null)
+                            sample.end();
                         failed = false;
                         return true;
                     }
@@ -1194,9 +1390,15 @@ public abstract class AbstractQueuedSynchronizer
      *        can represent anything you like.
      */
     public final void acquire(int arg) {
-        if (!tryAcquire(arg) &&
-            acquireQueued(addWaiter(Node.EXCLUSIVE), arg))
-            selfInterrupt();
+        if (!tryAcquire(arg)) {
+            Node node = addWaiter(Node.EXCLUSIVE);
+            ContentionSampler.Sample sample = sampleContention();
+            boolean interrupted = acquireQueued(node, arg);
+            if (sample != null)
+                sample.end();
+            if (interrupted)
+                selfInterrupt();
+        }
     }
 
     /**
@@ -1520,6 +1722,54 @@ public abstract class AbstractQueuedSynchronizer
     }
 
 
+    // Spinning control
+
+    /**
+     * Sets the number of times a thread that is next in line to
+     * acquire retries the acquire before parking. Spinning for a short
+     * while avoids the latency of blocking and unblocking the thread
+     * when the synchronizer is held only briefly, at the expense of
+     * processor time when it is not. A negative value selects
+     * adaptive spinning, in which the number of retries follows the
+     * recent hold times of this synchronizer and is zero on
+     * uniprocessors. Zero disables spinning. A spinning thread
+     * periodically yields, in case the thread holding the
+     * synchronizer is not running.
+     *
+     * <p>Unless this method is called, spinning is adaptive for
+     * exclusive acquires and disabled for shared acquires. A limit
+     * that is set applies to both modes.
+     *
+     * @param limit the number of retries, or a negative value for
+     *        adaptive spinning
+     * @since 1.8
+     */
+    protected final void setSpinLimit(int limit) {
+        if (limit < 0)
+            spinPolicy = SPIN_ADAPTIVE;
+        else if (limit == 0)
+            spinPolicy = SPIN_NONE;
+        else
+            spinPolicy = limit;
+    }
+
+    /**
+     * Returns the number of times a thread that is next in line to
+     * acquire retries the acquire before parking.
+     *
+     * @return the number of retries, or {@code -1} if spinning is
+     *         adaptive, including when no limit has been set (in
+     *         which case shared acquires do not spin)
+     * @see #setSpinLimit
+     * @since 1.8
+     */
+    protected final int getSpinLimit() {
+        int policy = spinPolicy;
+        if (policy > 0)
+            return policy;
+        return (policy == SPIN_NONE) ? 0 : -1;
+    }
+
     // Instrumentation and monitoring methods
 
     /**
@@ -2278,6 +2528,7 @@ public abstract class AbstractQueuedSynchronizer
     private static final long tailOffset;
     private static final long waitStatusOffset;
     private static final long nextOffset;
+    private static final long contentionOffset;
 
     static {
         try {
@@ -2291,6 +2542,8 @@ public abstract class AbstractQueuedSynchronizer
                 (Node.class.getDeclaredField("waitStatus"));
             nextOffset = unsafe.objectFieldOffset
                 (Node.class.getDeclaredField("next"));
+            contentionOffset = unsafe.objectFieldOffset
+                (AbstractQueuedSynchronizer.class.getDeclaredField("contention"));
 
         } catch (Exception ex) { throw new Error(ex); }
     }
@@ -0,0 +1,158 @@
+/*
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+/*
+ *
+ *
+ *
+ *
+ *
+ * Written by Doug Lea with assistance from members of JCP JSR-166
+ * Expert Group and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+package java.util.concurrent.locks;
+
+import java.lang.management.LockContentionInfo;
+import java.lang.management.LockContentionMXBean;
+import java.lang.management.ManagementPermission;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+/**
+ * The lock contention monitor, which samples acquisitions of
+ * synchronizers built on {@link AbstractQueuedSynchronizer} or {@link
+ * AbstractQueuedLongSynchronizer} that had to wait in the queue of the
+ * synchronizer. For each sampled acquisition it records the time waited
+ * and the number of threads found waiting ahead, per synchronizer, and
+ * tags each synchronizer created while the monitor is enabled with its
+ * allocation site. The most contended synchronizers are reported
+ * through the {@link LockContentionMXBean} interface, of which the
+ * single instance of this class, also available from {@link
+ * java.lang.management.ManagementFactory#getPlatformMXBean(Class)
+ * ManagementFactory.getPlatformMXBean(LockContentionMXBean.class)},
+ * is the implementation.
+ *
+ * <p>The monitor is disabled unless the system property {@code
+ * java.util.concurrent.locks.contentionMonitor} is {@code true} or it
+ * is {@linkplain #setEnabled enabled} later. While disabled, the only
+ * cost is one volatile read per acquisition that has to wait, and the
+ * synchronizers do not load this class or the management classes it
+ * depends on. While enabled, creating a synchronizer also captures its
+ * allocation site, and each sampled acquisition traverses the wait
+ * queue, once queued, to measure its length.
+ *
+ * @since 1.8
+ */
+public final class ContentionMonitor implements LockContentionMXBean {
+
+    private static final ContentionMonitor instance = new ContentionMonitor();
+
+    private ContentionMonitor() {}
+
+    /**
+     * Returns the lock contention monitor.
+     *
+     * @return the lock contention monitor
+     */
+    public static ContentionMonitor getInstance() {
+        return instance;
+    }
+
+    private static LockContentionInfo toInfo(ContentionSampler.Stats s) {
+        return new LockContentionInfo(s.className, s.identityHashCode,
+                                      s.allocationSite, s.count.get(),
+                                      s.totalWaitTime.get(),
+                                      s.maxWaitTime.get(),
+                                      s.totalQueueLength.get(),
+                                      s.maxQueueLength.get());
+    }
+
+    private static void checkControlAccess() {
+        SecurityManager sm = System.getSecurityManager();
+        if (sm != null)
+            sm.checkPermission(new ManagementPermission("control"));
+    }
+
+    public boolean isEnabled() {
+        return ContentionSampler.enabled;
+    }
+
+    public void setEnabled(boolean enable) {
+        checkControlAccess();
+        ContentionSampler.enabled = enable;
+    }
+
+    public int getSampleInterval() {
+        return ContentionSampler.sampleInterval;
+    }
+
+    public void setSampleInterval(int interval) {
+        if (interval <= 0)
+            throw new IllegalArgumentException("Non-positive interval");
+        checkControlAccess();
+        ContentionSampler.sampleInterval = interval;
+    }
+
+    public LockContentionInfo[] getTopContendedLocks(int maxLocks) {
+        if (maxLocks < 0)
+            throw new IllegalArgumentException("Negative maxLocks");
+        ContentionSampler.prune();
+        List<LockContentionInfo> list = new ArrayList<LockContentionInfo>();
+        for (ContentionSampler.Stats s : ContentionSampler.contended) {
+            LockContentionInfo info = toInfo(s);
+            if (info.getContendedCount() != 0L)
+                list.add(info);
+        }
+        Collections.sort(list, new Comparator<LockContentionInfo>() {
+            public int compare(LockContentionInfo a, LockContentionInfo b) {
+                long x = a.getTotalWaitTime(), y = b.getTotalWaitTime();
+                return (x > y) ? -1 : ((x == y) ? 0 : 1);
+            }
+        });
+        if (list.size() > maxLocks)
+            list = list.subList(0, maxLocks);
+        return list.toArray(new LockContentionInfo[list.size()]);
+    }
+
+    public void reset() {
+        checkControlAccess();
+        for (ContentionSampler.Stats s : ContentionSampler.contended)
+            s.reset();
+    }
+
+    public ObjectName getObjectName() {
+        try {
+            return ObjectName.getInstance(
+                "java.util.concurrent.locks:type=LockContention");
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
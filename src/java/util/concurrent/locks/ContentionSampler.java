@@ -0,0 +1,204 @@
+/*
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+/*
+ *
+ *
+ *
+ *
+ *
+ * Written by Doug Lea with assistance from members of JCP JSR-166
+ * Expert Group and released to the public domain, as explained at
+ * http://creativecommons.org/publicdomain/zero/1.0/
+ */
+
+package java.util.concurrent.locks;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The sampling state behind {@link ContentionMonitor}, read by the
+ * queued synchronizers. This class is kept apart from the monitor so
+ * that synchronizers can check whether sampling is enabled without
+ * loading the management classes the monitor depends on.
+ *
+ * @since 1.8
+ */
+final class ContentionSampler {
+
+    private ContentionSampler() {}
+
+    /** Whether contended acquisitions are sampled */
+    static volatile boolean enabled;
+
+    /** One in this many contended acquisitions is sampled */
+    static volatile int sampleInterval = 1;
+
+    /** The statistics of synchronizers that have been contended */
+    static final ConcurrentLinkedQueue<Stats> contended =
+        new ConcurrentLinkedQueue<Stats>();
+
+    /**
+     * Number of statistics added to the contended queue, used to prune
+     * the statistics of unreachable synchronizers every PRUNE_INTERVAL
+     * additions.
+     */
+    private static final AtomicInteger additions = new AtomicInteger();
+    private static final int PRUNE_INTERVAL = 1024;
+
+    static {
+        enabled = java.security.AccessController.doPrivileged(
+            new sun.security.action.GetBooleanAction(
+                "java.util.concurrent.locks.contentionMonitor")).booleanValue();
+    }
+
+    /**
+     * Frames outside java.util.concurrent, where synchronizers are
+     * allocated by their users.
+     */
+    private static final StackWalker.FrameFilter EXTERNAL_FRAME =
+        new StackWalker.FrameFilter() {
+            public boolean accept(StackTraceElement frame) {
+                return !frame.getClassName().startsWith("java.util.concurrent.");
+            }
+        };
+
+    /**
+     * The contention statistics of one synchronizer.
+     */
+    static final class Stats {
+        final WeakReference<Object> sync;
+        final String className;
+        final int identityHashCode;
+        final String allocationSite;
+        final AtomicBoolean added = new AtomicBoolean();
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong totalWaitTime = new AtomicLong();
+        final AtomicLong maxWaitTime = new AtomicLong();
+        final AtomicLong totalQueueLength = new AtomicLong();
+        final AtomicInteger maxQueueLength = new AtomicInteger();
+
+        Stats(Object sync, String allocationSite) {
+            this.sync = new WeakReference<Object>(sync);
+            this.className = sync.getClass().getName();
+            this.identityHashCode = System.identityHashCode(sync);
+            this.allocationSite = allocationSite;
+        }
+
+        void record(long waitTime, int queueLength) {
+            if (!added.get() && added.compareAndSet(false, true))
+                add(this);
+            count.getAndIncrement();
+            totalWaitTime.getAndAdd(waitTime);
+            totalQueueLength.getAndAdd(queueLength);
+            long w;
+            while (waitTime > (w = maxWaitTime.get()) &&
+                   !maxWaitTime.compareAndSet(w, waitTime))
+                ;
+            int q;
+            while (queueLength > (q = maxQueueLength.get()) &&
+                   !maxQueueLength.compareAndSet(q, queueLength))
+                ;
+        }
+
+        void reset() {
+            count.set(0L);
+            totalWaitTime.set(0L);
+            maxWaitTime.set(0L);
+            totalQueueLength.set(0L);
+            maxQueueLength.set(0);
+        }
+    }
+
+    /**
+     * A sampled contended acquisition in progress.
+     */
+    static final class Sample {
+        private final Stats stats;
+        private final int queueLength;
+        private final long startTime = System.nanoTime();
+
+        Sample(Stats stats, int queueLength) {
+            this.stats = stats;
+            this.queueLength = queueLength;
+        }
+
+        /**
+         * Records the acquisition, once it has succeeded.
+         */
+        void end() {
+            stats.record(System.nanoTime() - startTime, queueLength);
+        }
+    }
+
+    /**
+     * Returns true if the contended acquisition that has just been
+     * queued should be sampled. Called only when enabled.
+     */
+    static boolean sample() {
+        int interval = sampleInterval;
+        return interval <= 1 ||
+            ThreadLocalRandom.current().nextInt(interval) == 0;
+    }
+
+    /**
+     * Returns the statistics for a synchronizer being constructed while
+     * sampling is enabled, tagged with its allocation site.
+     */
+    static Stats allocated(Object sync) {
+        StackTraceElement site =
+            StackWalker.getInstance().findFirst(EXTERNAL_FRAME);
+        return new Stats(sync, (site == null) ? null : site.toString());
+    }
+
+    /**
+     * Returns the statistics for a synchronizer constructed while
+     * sampling was disabled, whose allocation site is unknown.
+     */
+    static Stats untagged(Object sync) {
+        return new Stats(sync, null);
+    }
+
+    private static void add(Stats s) {
+        contended.add(s);
+        if (additions.incrementAndGet() % PRUNE_INTERVAL == 0)
+            prune();
+    }
+
+    /**
+     * Removes the statistics of synchronizers that have been collected.
+     */
+    static void prune() {
+        for (Iterator<Stats> it = contended.iterator(); it.hasNext(); ) {
+            if (it.next().sync.get() == null)
+                it.remove();
+        }
+    }
+}
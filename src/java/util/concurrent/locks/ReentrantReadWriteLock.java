@@ -1232,6 +1232,36 @@ public class ReentrantReadWriteLock
         return sync instanceof FairSync;
     }
 
+    /**
+     * Sets the number of times a thread that is next in line to
+     * acquire the read or write lock retries before blocking. Brief spinning
+     * lowers the latency of acquiring a lock that is held only for
+     * short periods. A negative value selects adaptive spinning based
+     * on recent hold times; zero disables spinning. By default,
+     * spinning is adaptive for the write lock and disabled for the
+     * read lock.
+     *
+     * @param limit the number of retries, or a negative value for
+     *        adaptive spinning
+     * @since 1.8
+     */
+    public void setSpinLimit(int limit) {
+        sync.setSpinLimit(limit);
+    }
+
+    /**
+     * Returns the number of times a thread that is next in line to
+     * acquire the read or write lock retries before blocking.
+     *
+     * @return the number of retries, or {@code -1} if spinning is
+     *         adaptive, as it is by default for the write lock
+     * @see #setSpinLimit
+     * @since 1.8
+     */
+    public int getSpinLimit() {
+        return sync.getSpinLimit();
+    }
+
     /**
      * Returns the thread that currently owns the write lock, or
      * {@code null} if not owned. When this method is called by a
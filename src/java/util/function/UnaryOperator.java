@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.function;
+
+/**
+ * An operation on a single operand that produces a result of the same
+ * type as its operand.
+ *
+ * @param <T> the type of the operand and result of the operator
+ * @see java.util.ArrayList#replaceAll
+ * @since 1.8
+ */
+public interface UnaryOperator<T> {
+
+    /**
+     * Applies this operator to the given operand.
+     *
+     * @param t the operand
+     * @return the result
+     */
+    T apply(T t);
+}
@@ -29,9 +29,6 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.io.*;
 
-import sun.misc.JavaLangAccess;
-import sun.misc.SharedSecrets;
-
 /**
  * LogRecord objects are used to pass logging requests between
  * the logging framework and individual log Handlers.
@@ -530,36 +527,33 @@ public class LogRecord implements java.io.Serializable {
     // Private method to infer the caller's class and method names
     private void inferCaller() {
         needToInferCaller = false;
-        JavaLangAccess access = SharedSecrets.getJavaLangAccess();
-        Throwable throwable = new Throwable();
-        int depth = access.getStackTraceDepth(throwable);
-
-        boolean lookingForLogger = true;
-        for (int ix = 0; ix < depth; ix++) {
-            // Calling getStackTraceElement directly prevents the VM
-            // from paying the cost of building the entire stack frame.
-            StackTraceElement frame =
-                access.getStackTraceElement(throwable, ix);
-            String cname = frame.getClassName();
-            boolean isLoggerImpl = isLoggerImplFrame(cname);
-            if (lookingForLogger) {
-                // Skip all frames until we have found the first logger frame.
-                if (isLoggerImpl) {
-                    lookingForLogger = false;
-                }
-            } else {
-                if (!isLoggerImpl) {
-                    // skip reflection call
-                    if (!cname.startsWith("java.lang.reflect.") && !cname.startsWith("sun.reflect.")) {
-                       // We've found the relevant frame.
-                       setSourceClassName(cname);
-                       setSourceMethodName(frame.getMethodName());
-                       return;
+        // Frames are materialized lazily and the walk stops at the
+        // first frame that is not logger or reflection machinery.
+        StackWalker.getInstance().walk(new StackWalker.FrameVisitor() {
+            private boolean lookingForLogger = true;
+            public boolean visit(StackTraceElement frame) {
+                String cname = frame.getClassName();
+                boolean isLoggerImpl = isLoggerImplFrame(cname);
+                if (lookingForLogger) {
+                    // Skip all frames until we have found the first logger frame.
+                    if (isLoggerImpl) {
+                        lookingForLogger = false;
+                    }
+                } else {
+                    if (!isLoggerImpl) {
+                        // skip reflection call
+                        if (!cname.startsWith("java.lang.reflect.") && !cname.startsWith("sun.reflect.")) {
+                           // We've found the relevant frame.
+                           setSourceClassName(cname);
+                           setSourceMethodName(frame.getMethodName());
+                           return false;
+                        }
                     }
                 }
+                return true;
             }
-        }
-        // We haven't found a suitable frame, so just punt.  This is
+        });
+        // If we haven't found a suitable frame, just punt.  This is
         // OK as we are only committed to making a "best effort" here.
     }
 